@@ -0,0 +1,82 @@
+package org.coldis.library.benchmark.thread;
+
+import java.util.concurrent.TimeUnit;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolSaturationPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Submit throughput of bounded pools, comparing the linked blocking queue with
+ * the lock-free queue (producers block when the queue is full, so throughput
+ * is not inflated by rejections).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueueBenchmark {
+
+	/** No-op task. */
+	private static final Runnable TASK = () -> {};
+
+	/** If the lock-free queue should be used. */
+	@Param({ "false", "true" })
+	public Boolean lockFreeQueue;
+
+	/** Pool. */
+	private DynamicThreadPool pool;
+
+	/**
+	 * Builds the pool.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.pool = new DynamicThreadPoolFactory().withName("queue-benchmark").withCorePoolSize(4).withMaxPoolSize(4).withMaxQueueSize(1 << 16)
+				.withLockFreeQueue(this.lockFreeQueue).withMetrics(false).withSaturationPolicy(DynamicThreadPoolSaturationPolicy.BLOCK).buildPool();
+	}
+
+	/**
+	 * Shuts the pool down.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.pool.shutdown();
+		this.pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Submits from a single producer.
+	 */
+	@Benchmark
+	@Threads(1)
+	public void submit() {
+		this.pool.execute(QueueBenchmark.TASK);
+	}
+
+	/**
+	 * Submits from contending producers.
+	 */
+	@Benchmark
+	@Threads(16)
+	public void submitContended() {
+		this.pool.execute(QueueBenchmark.TASK);
+	}
+
+}
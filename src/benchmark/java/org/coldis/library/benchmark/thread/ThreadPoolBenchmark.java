@@ -0,0 +1,174 @@
+package org.coldis.library.benchmark.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Thread pool benchmark. Compares the pool modes built by
+ * {@link DynamicThreadPoolFactory} for CPU and I/O bound tasks, with one and
+ * many submitting threads (allocation rates come from the GC profiler).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ThreadPoolBenchmark {
+
+	/** Tasks per invocation (for throughput). */
+	private static final int BATCH_SIZE = 64;
+
+	/** CPU work per task (in Blackhole tokens). */
+	private static final long CPU_TOKENS = 500;
+
+	/** I/O wait per task. */
+	private static final long IO_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+	/** Pool mode. */
+	public enum PoolMode {
+
+		/** Fork join pool. */
+		FORK_JOIN,
+
+		/** Platform thread pool. */
+		PLATFORM,
+
+		/** Scheduled thread pool. */
+		SCHEDULED,
+
+		/** Scheduled thread pool with a timing wheel. */
+		TIMING_WHEEL,
+
+		/** Virtual thread pool. */
+		VIRTUAL;
+
+	}
+
+	/** Task shape. */
+	public enum TaskShape {
+
+		/** CPU bound. */
+		CPU,
+
+		/** I/O bound (blocks for a while). */
+		IO;
+
+	}
+
+	/** Pool mode. */
+	@Param
+	public PoolMode mode;
+
+	/** Task shape. */
+	@Param
+	public TaskShape shape;
+
+	/** Pool. */
+	private DynamicThreadPool pool;
+
+	/**
+	 * Builds the pool.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Integer cpus = Runtime.getRuntime().availableProcessors();
+		final DynamicThreadPoolFactory factory = new DynamicThreadPoolFactory().withName("benchmark-" + this.mode.name().toLowerCase()).withMetrics(false);
+		this.pool = switch (this.mode) {
+			case FORK_JOIN -> factory.withParallelism(cpus).buildPool();
+			case PLATFORM -> factory.withCorePoolSize(cpus).withMaxPoolSize(cpus).buildPool();
+			case SCHEDULED -> factory.withScheduled(true).withCorePoolSize(cpus).buildPool();
+			case TIMING_WHEEL -> factory.withScheduled(true).withTimingWheel(true).withCorePoolSize(cpus).buildPool();
+			case VIRTUAL -> factory.withVirtual(true).buildPool();
+		};
+	}
+
+	/**
+	 * Shuts the pool down.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.pool.shutdown();
+		this.pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Runs a task.
+	 */
+	private void runTask() {
+		if (this.shape == TaskShape.CPU) {
+			Blackhole.consumeCPU(ThreadPoolBenchmark.CPU_TOKENS);
+		}
+		else {
+			LockSupport.parkNanos(ThreadPoolBenchmark.IO_NANOS);
+		}
+	}
+
+	/**
+	 * Submits a batch of tasks and waits for them to complete.
+	 */
+	private void submitBatch() throws InterruptedException {
+		final CountDownLatch completed = new CountDownLatch(ThreadPoolBenchmark.BATCH_SIZE);
+		for (int task = 0; task < ThreadPoolBenchmark.BATCH_SIZE; task++) {
+			this.pool.execute(() -> {
+				this.runTask();
+				completed.countDown();
+			});
+		}
+		completed.await();
+	}
+
+	/**
+	 * Submit and complete throughput with a single submitting thread.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@OperationsPerInvocation(ThreadPoolBenchmark.BATCH_SIZE)
+	@Threads(1)
+	public void throughput() throws InterruptedException {
+		this.submitBatch();
+	}
+
+	/**
+	 * Submit and complete throughput with contending submitting threads.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@OperationsPerInvocation(ThreadPoolBenchmark.BATCH_SIZE)
+	@Threads(8)
+	public void throughputContended() throws InterruptedException {
+		this.submitBatch();
+	}
+
+	/**
+	 * Submit to complete latency (percentiles) of single tasks.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Threads(4)
+	public void latency() throws Exception {
+		this.pool.submit(this::runTask).get();
+	}
+
+}
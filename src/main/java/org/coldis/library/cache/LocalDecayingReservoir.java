@@ -0,0 +1,227 @@
+package org.coldis.library.cache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Forward-decay reservoir (weighted sampling as in Cormode et al.). Each value
+ * is weighted by how recent it is relative to a landmark, and is kept if its
+ * weighted random priority is among the highest ones, so recent values are
+ * favored with a fixed reservoir size. Values are kept in a min-heap of
+ * priorities on primitive arrays, and values whose priority is not above the
+ * lowest kept one are rejected without locking. The landmark is moved forward
+ * (rescaling weights) before weights grow too large.
+ */
+class LocalDecayingReservoir {
+
+	/** Decay exponent (since the landmark) after which weights are rescaled. */
+	private static final double RESCALE_EXPONENT = 32;
+
+	/** Decay factor (per millisecond). */
+	private final double alpha;
+
+	/** Values. */
+	private final double[] values;
+
+	/** Weights. */
+	private final double[] weights;
+
+	/** Priorities (min-heap). */
+	private final double[] priorities;
+
+	/** Lock. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Number of values. */
+	private int size;
+
+	/** Landmark (epoch milliseconds). */
+	private volatile long landmark;
+
+	/** Lowest priority kept, once the reservoir is full. */
+	private volatile double threshold;
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param alpha    Decay factor (per millisecond).
+	 * @param size     Reservoir size.
+	 * @param landmark Landmark (epoch milliseconds).
+	 */
+	LocalDecayingReservoir(final double alpha, final int size, final long landmark) {
+		super();
+		this.alpha = alpha;
+		this.values = new double[size];
+		this.weights = new double[size];
+		this.priorities = new double[size];
+		this.landmark = landmark;
+	}
+
+	/**
+	 * Gets the weight of a value at a time.
+	 *
+	 * @param  now      Now (epoch milliseconds).
+	 * @param  landmark Landmark (epoch milliseconds).
+	 * @return          The weight.
+	 */
+	private double getWeight(
+			final long now,
+			final long landmark) {
+		return Math.exp(this.alpha * (now - landmark));
+	}
+
+	/**
+	 * Moves the heap entry at an index down to its position.
+	 *
+	 * @param index Index.
+	 */
+	private void siftDown(
+			final int index) {
+		final double value = this.values[index];
+		final double weight = this.weights[index];
+		final double priority = this.priorities[index];
+		int parent = index;
+		for (int child = (2 * parent) + 1; child < this.size; child = (2 * parent) + 1) {
+			if (((child + 1) < this.size) && (this.priorities[child + 1] < this.priorities[child])) {
+				child++;
+			}
+			if (priority <= this.priorities[child]) {
+				break;
+			}
+			this.values[parent] = this.values[child];
+			this.weights[parent] = this.weights[child];
+			this.priorities[parent] = this.priorities[child];
+			parent = child;
+		}
+		this.values[parent] = value;
+		this.weights[parent] = weight;
+		this.priorities[parent] = priority;
+	}
+
+	/**
+	 * Moves the heap entry at an index up to its position.
+	 *
+	 * @param index Index.
+	 */
+	private void siftUp(
+			final int index) {
+		final double value = this.values[index];
+		final double weight = this.weights[index];
+		final double priority = this.priorities[index];
+		int child = index;
+		for (int parent = (child - 1) / 2; (child > 0) && (priority < this.priorities[parent]); parent = (child - 1) / 2) {
+			this.values[child] = this.values[parent];
+			this.weights[child] = this.weights[parent];
+			this.priorities[child] = this.priorities[parent];
+			child = parent;
+		}
+		this.values[child] = value;
+		this.weights[child] = weight;
+		this.priorities[child] = priority;
+	}
+
+	/**
+	 * Moves the landmark forward, rescaling weights and priorities.
+	 *
+	 * @param now Now (epoch milliseconds).
+	 */
+	private void rescale(
+			final long now) {
+		final double factor = Math.exp(-this.alpha * (now - this.landmark));
+		for (int index = 0; index < this.size; index++) {
+			this.weights[index] *= factor;
+			this.priorities[index] *= factor;
+		}
+		this.threshold *= factor;
+		this.landmark = now;
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value Value.
+	 * @param now   Now (epoch milliseconds).
+	 */
+	void add(
+			final double value,
+			final long now) {
+		// Most values are rejected without locking once the reservoir is full.
+		final double random = 1 - ThreadLocalRandom.current().nextDouble();
+		final long landmark = this.landmark;
+		if ((this.alpha * (now - landmark)) < LocalDecayingReservoir.RESCALE_EXPONENT) {
+			final double threshold = this.threshold;
+			if ((threshold > 0) && ((this.getWeight(now, landmark) / random) <= threshold) && (landmark == this.landmark)) {
+				return;
+			}
+		}
+		this.lock.lock();
+		try {
+			if ((this.alpha * (now - this.landmark)) >= LocalDecayingReservoir.RESCALE_EXPONENT) {
+				this.rescale(now);
+			}
+			final double weight = this.getWeight(now, this.landmark);
+			final double priority = weight / random;
+			if (this.size < this.values.length) {
+				this.values[this.size] = value;
+				this.weights[this.size] = weight;
+				this.priorities[this.size] = priority;
+				this.siftUp(this.size++);
+			}
+			else if (priority > this.priorities[0]) {
+				this.values[0] = value;
+				this.weights[0] = weight;
+				this.priorities[0] = priority;
+				this.siftDown(0);
+			}
+			if (this.size == this.values.length) {
+				this.threshold = this.priorities[0];
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the weighted value at a quantile.
+	 *
+	 * @param  quantile Quantile (between 0 and 1).
+	 * @return          The value (<code>NaN</code> if there are no values).
+	 */
+	double getQuantile(
+			final double quantile) {
+		final double[] values;
+		final double[] weights;
+		this.lock.lock();
+		try {
+			values = Arrays.copyOf(this.values, this.size);
+			weights = Arrays.copyOf(this.weights, this.size);
+		}
+		finally {
+			this.lock.unlock();
+		}
+		if (values.length == 0) {
+			return Double.NaN;
+		}
+		// Walks the values (sorted) up to the quantile weight.
+		final Integer[] indexes = new Integer[values.length];
+		double totalWeight = 0;
+		for (int index = 0; index < values.length; index++) {
+			indexes[index] = index;
+			totalWeight += weights[index];
+		}
+		Arrays.sort(indexes, Comparator.comparingDouble(index -> values[index]));
+		final double quantileWeight = quantile * totalWeight;
+		double seenWeight = 0;
+		for (final Integer index : indexes) {
+			seenWeight += weights[index];
+			if (seenWeight >= quantileWeight) {
+				return values[index];
+			}
+		}
+		return values[indexes[indexes.length - 1]];
+	}
+
+}
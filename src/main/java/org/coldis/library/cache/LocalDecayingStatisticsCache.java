@@ -0,0 +1,219 @@
+package org.coldis.library.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.coldis.library.helper.DateTimeHelper;
+
+/**
+ * Time-decayed statistics cache. Values are recorded in striped cells (as in
+ * the statistics summary cache), and on every tick the cells of the finished
+ * tick are folded into exponentially weighted moving averages of the rate,
+ * mean and variance, so recent values outweigh older ones (with the given half
+ * life) without clearing. Quantiles are estimated from a forward-decay
+ * reservoir. Values recorded in the current tick are only reflected in the
+ * averages once it finishes.
+ */
+public class LocalDecayingStatisticsCache {
+
+	/** Default half life. */
+	public static final Duration DEFAULT_HALF_LIFE = Duration.ofMinutes(1);
+
+	/** Default tick. */
+	public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+	/** Default reservoir size. */
+	public static final Integer DEFAULT_RESERVOIR_SIZE = 1024;
+
+	/** Tick (milliseconds). */
+	private final long tick;
+
+	/** Decay per tick. */
+	private final double tickDecay;
+
+	/** Reservoir. */
+	private final LocalDecayingReservoir reservoir;
+
+	/** Statistics of the current tick. */
+	private final AtomicReference<LocalStatisticsSummaryAccumulator> statistics = new AtomicReference<>(new LocalStatisticsSummaryAccumulator(null));
+
+	/** Lock (for folding ticks into the averages). */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Last tick folded into the averages. */
+	private volatile long lastTick;
+
+	/** If the rate average was initialized. */
+	private boolean rateInitialized;
+
+	/** Rate average (values per tick). */
+	private double rate;
+
+	/** Decayed count. */
+	private double count;
+
+	/** Decayed sum. */
+	private double sum;
+
+	/** Decayed sum of squares. */
+	private double sumOfSquares;
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param halfLife      Half life (after which a value weighs half).
+	 * @param tick          Tick (at least a millisecond).
+	 * @param reservoirSize Reservoir size.
+	 */
+	public LocalDecayingStatisticsCache(final Duration halfLife, final Duration tick, final Integer reservoirSize) {
+		super();
+		if ((halfLife.toMillis() <= 0) || (tick.toMillis() <= 0) || (reservoirSize <= 0)) {
+			throw new IllegalArgumentException("Half life and tick must be at least a millisecond, and the reservoir size positive.");
+		}
+		final long now = DateTimeHelper.getClock().millis();
+		final double alpha = Math.log(2) / halfLife.toMillis();
+		this.tick = tick.toMillis();
+		this.tickDecay = Math.exp(-alpha * this.tick);
+		this.reservoir = new LocalDecayingReservoir(alpha, reservoirSize, now);
+		this.lastTick = Math.floorDiv(now, this.tick);
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param halfLife Half life (after which a value weighs half).
+	 */
+	public LocalDecayingStatisticsCache(final Duration halfLife) {
+		this(halfLife, LocalDecayingStatisticsCache.DEFAULT_TICK, LocalDecayingStatisticsCache.DEFAULT_RESERVOIR_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 */
+	public LocalDecayingStatisticsCache() {
+		this(LocalDecayingStatisticsCache.DEFAULT_HALF_LIFE);
+	}
+
+	/**
+	 * Folds finished ticks into the averages.
+	 *
+	 * @param now Now (epoch milliseconds).
+	 */
+	private void tick(
+			final long now) {
+		final long currentTick = Math.floorDiv(now, this.tick);
+		if (currentTick > this.lastTick) {
+			this.lock.lock();
+			try {
+				final long ticks = currentTick - this.lastTick;
+				if (ticks > 0) {
+					// Values added meanwhile go to the new statistics.
+					final LocalStatisticsSummaryAccumulator tickStatistics = this.statistics.getAndSet(new LocalStatisticsSummaryAccumulator(null));
+					tickStatistics.close();
+					final StatisticalSummary summary = tickStatistics.getSummary();
+					// The finished tick is decayed by the ticks after it.
+					final double decay = Math.pow(this.tickDecay, ticks);
+					final double tickWeight = Math.pow(this.tickDecay, ticks - 1);
+					if (this.rateInitialized) {
+						this.rate = (this.rate * decay) + ((1 - this.tickDecay) * summary.getN() * tickWeight);
+					}
+					// The rate average starts at the first tick with values.
+					else if (summary.getN() > 0) {
+						this.rate = summary.getN() * tickWeight;
+						this.rateInitialized = true;
+					}
+					this.count = (this.count * decay) + (summary.getN() * tickWeight);
+					this.sum = (this.sum * decay) + (summary.getN() == 0 ? 0 : summary.getSum() * tickWeight);
+					this.sumOfSquares = (this.sumOfSquares * decay) + (summary.getN() == 0 ? 0
+							: ((summary.getVariance() * (summary.getN() - 1)) + (summary.getN() * summary.getMean() * summary.getMean())) * tickWeight);
+					this.lastTick = currentTick;
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value Value.
+	 */
+	public void addValue(
+			final double value) {
+		final long now = DateTimeHelper.getClock().millis();
+		this.tick(now);
+		// Statistics being folded are closed, so the value is added to the new ones.
+		while (!this.statistics.get().add(value)) {
+			Thread.onSpinWait();
+		}
+		this.reservoir.add(value, now);
+	}
+
+	/**
+	 * Gets the rate average (values per second).
+	 *
+	 * @return The rate average.
+	 */
+	public Double getRate() {
+		this.tick(DateTimeHelper.getClock().millis());
+		this.lock.lock();
+		try {
+			return (this.rate * 1000) / this.tick;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the decayed mean.
+	 *
+	 * @return The decayed mean (<code>NaN</code> if there are no values).
+	 */
+	public Double getMean() {
+		this.tick(DateTimeHelper.getClock().millis());
+		this.lock.lock();
+		try {
+			return (this.count == 0 ? Double.NaN : this.sum / this.count);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the decayed variance.
+	 *
+	 * @return The decayed variance (<code>NaN</code> if there are no values).
+	 */
+	public Double getVariance() {
+		this.tick(DateTimeHelper.getClock().millis());
+		this.lock.lock();
+		try {
+			final double mean = this.sum / this.count;
+			return (this.count == 0 ? Double.NaN : Math.max((this.sumOfSquares / this.count) - (mean * mean), 0));
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the decayed value at a quantile.
+	 *
+	 * @param  quantile Quantile (between 0 and 1).
+	 * @return          The value (<code>NaN</code> if there are no values).
+	 */
+	public Double getQuantile(
+			final double quantile) {
+		if ((quantile < 0) || (quantile > 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+		}
+		return this.reservoir.getQuantile(quantile);
+	}
+
+}
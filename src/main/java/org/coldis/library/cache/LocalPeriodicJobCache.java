@@ -1,50 +1,293 @@
 package org.coldis.library.cache;
 
+import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
+import java.time.temporal.UnsupportedTemporalTypeException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.coldis.library.helper.DateTimeHelper;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
 
-/** Helper for jobs running periodically. */
+/**
+ * Helper for jobs running periodically. Runs are decided lock-free, by
+ * compare-and-set on the last run of each key kept as local epoch
+ * microseconds (calls that do not run the job do not allocate, apart from the
+ * clock instant). Runs are indexed in buckets by their next run, and due
+ * buckets are cleared in small steps on the shared maintenance executor.
+ * Optionally, the number of keys (or their estimated memory) is bounded, and
+ * the least frequently used keys are evicted (forgetting their last run).
+ * Keys can also be used as rate limits (at most a number of permits per
+ * window), but a key should not be used both ways.
+ */
 public class LocalPeriodicJobCache {
 
-	/** Clear executor. */
-	private final ExecutorService CLEAR_EXECUTOR = Executors.newSingleThreadExecutor();
+	/** Nanoseconds per day. */
+	private static final long NANOS_PER_DAY = ChronoUnit.DAYS.getDuration().toNanos();
+
+	/** Default expiration tick. */
+	public static final Duration DEFAULT_EXPIRATION_TICK = Duration.ofSeconds(1);
+
+	/** Default maximum runs cleared per expiration step. */
+	public static final Integer DEFAULT_EXPIRATION_STEP_SIZE = 4096;
 
 	/** Last job runs. */
-	private final Map<String, LocalPeriodicJobCacheEntry> lastJobRuns = new ConcurrentHashMap<>();
+	private final Map<String, LocalPeriodicJobCacheSlot> lastJobRuns = new ConcurrentHashMap<>();
+
+	/** Runs by next run bucket. */
+	private final ConcurrentSkipListMap<Long, ConcurrentLinkedQueue<LocalPeriodicJobCacheSlot>> expirationBuckets = new ConcurrentSkipListMap<>();
+
+	/** Expiration tick (microseconds, also the bucket size). */
+	private final long expirationTick;
+
+	/** Maximum runs cleared per expiration step. */
+	private final Integer expirationStepSize;
+
+	/** If an expiration step is scheduled. */
+	private final AtomicBoolean expirationScheduled = new AtomicBoolean();
+
+	/** Size bound (<code>null</code> if unbounded). */
+	private final LocalPeriodicJobCacheEviction eviction;
+
+	/** Evicted runs still in the expiration buckets. */
+	private final AtomicLong evictedIndexedRuns = new AtomicLong();
+
+	/** If a purge of evicted runs from the expiration buckets is scheduled. */
+	private final AtomicBoolean purgeScheduled = new AtomicBoolean();
+
+	/** Zone offset of the helper clock (cached until the next offset transition). */
+	private volatile ZoneOffsetWindow zoneOffset;
 
-	/** Cache lock. */
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Zone offset valid for a time window. */
+	private static final class ZoneOffsetWindow {
 
-	/** Number of times to run before clearing expired. */
-	private final Long timesToRunBeforeClearingExpired;
+		/** Zone. */
+		private final ZoneId zone;
 
-	/** Number of times the job was run. */
-	private Long tryRunCount = 0L;
+		/** Offset (microseconds). */
+		private final long offset;
+
+		/** Valid from (epoch microseconds). */
+		private final long validFrom;
+
+		/** Valid until (epoch microseconds, exclusive). */
+		private final long validUntil;
+
+		/**
+		 * Creates a new instance of the class.
+		 *
+		 * @param zone Zone.
+		 * @param now  Now.
+		 */
+		private ZoneOffsetWindow(final ZoneId zone, final Instant now) {
+			super();
+			final ZoneRules rules = zone.getRules();
+			final ZoneOffsetTransition previousTransition = (rules.isFixedOffset() ? null : rules.previousTransition(now));
+			final ZoneOffsetTransition nextTransition = (rules.isFixedOffset() ? null : rules.nextTransition(now));
+			this.zone = zone;
+			this.offset = rules.getOffset(now).getTotalSeconds() * 1_000_000L;
+			this.validFrom = (previousTransition == null ? Long.MIN_VALUE : previousTransition.toEpochSecond() * 1_000_000L);
+			this.validUntil = (nextTransition == null ? Long.MAX_VALUE : nextTransition.toEpochSecond() * 1_000_000L);
+		}
+
+	}
 
 	/**
 	 * Creates a new instance of the class.
 	 *
-	 * @param timesToRunBeforeClearingExpired Number of times to run before clearing
-	 *                                            expired.
+	 * @param expirationTick     Expiration tick (expired runs are cleared within
+	 *                               about a tick).
+	 * @param expirationStepSize Maximum runs cleared per expiration step.
+	 * @param maximumEntries     Maximum keys (<code>null</code> for no maximum).
+	 * @param maximumMemory      Maximum estimated memory of the keys in bytes
+	 *                               (<code>null</code> for no maximum).
 	 */
-	public LocalPeriodicJobCache(final Long timesToRunBeforeClearingExpired) {
+	public LocalPeriodicJobCache(final Duration expirationTick, final Integer expirationStepSize, final Long maximumEntries, final Long maximumMemory) {
 		super();
-		this.timesToRunBeforeClearingExpired = timesToRunBeforeClearingExpired;
+		this.expirationTick = Math.max(LocalPeriodicJobCache.toMicros(expirationTick.getSeconds(), expirationTick.getNano()), 1L);
+		this.expirationStepSize = expirationStepSize;
+		this.eviction = ((maximumEntries == null) && (maximumMemory == null) ? null
+				: new LocalPeriodicJobCacheEviction(maximumEntries, maximumMemory, this::evicted));
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param expirationTick     Expiration tick (expired runs are cleared within
+	 *                               about a tick).
+	 * @param expirationStepSize Maximum runs cleared per expiration step.
+	 */
+	public LocalPeriodicJobCache(final Duration expirationTick, final Integer expirationStepSize) {
+		this(expirationTick, expirationStepSize, null, null);
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param maximumEntries Maximum keys (<code>null</code> for no maximum).
+	 * @param maximumMemory  Maximum estimated memory of the keys in bytes
+	 *                           (<code>null</code> for no maximum).
+	 */
+	public LocalPeriodicJobCache(final Long maximumEntries, final Long maximumMemory) {
+		this(LocalPeriodicJobCache.DEFAULT_EXPIRATION_TICK, LocalPeriodicJobCache.DEFAULT_EXPIRATION_STEP_SIZE, maximumEntries, maximumMemory);
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param      timesToRunBeforeClearingExpired Ignored (expiration is driven by
+	 *                                                 time).
+	 * @deprecated                                 Use
+	 *                                                 {@link #LocalPeriodicJobCache(Duration, Integer)}.
+	 */
+	@Deprecated
+	public LocalPeriodicJobCache(final Long timesToRunBeforeClearingExpired) {
+		this();
 	}
 
 	/**
 	 * Creates a new instance of the class.
 	 */
 	public LocalPeriodicJobCache() {
-		this(10000L);
+		this(LocalPeriodicJobCache.DEFAULT_EXPIRATION_TICK, LocalPeriodicJobCache.DEFAULT_EXPIRATION_STEP_SIZE);
+	}
+
+	/**
+	 * Gets microseconds of a duration.
+	 *
+	 * @param  seconds Seconds.
+	 * @param  nanos   Nanoseconds of the second.
+	 * @return         The microseconds.
+	 */
+	private static long toMicros(
+			final long seconds,
+			final int nanos) {
+		return (seconds * 1_000_000L) + (nanos / 1000);
+	}
+
+	/**
+	 * Gets the current local epoch microseconds (the local date/time of the
+	 * helper clock read as UTC).
+	 *
+	 * @return The current local epoch microseconds.
+	 */
+	private long getCurrentLocalMicros() {
+		final Clock clock = DateTimeHelper.getClock();
+		final Instant instant = clock.instant();
+		final long now = LocalPeriodicJobCache.toMicros(instant.getEpochSecond(), instant.getNano());
+		ZoneOffsetWindow zoneOffset = this.zoneOffset;
+		if ((zoneOffset == null) || !zoneOffset.zone.equals(clock.getZone()) || (now < zoneOffset.validFrom) || (now >= zoneOffset.validUntil)) {
+			zoneOffset = new ZoneOffsetWindow(clock.getZone(), instant);
+			this.zoneOffset = zoneOffset;
+		}
+		return now + zoneOffset.offset;
+	}
+
+	/**
+	 * Gets the microseconds of a maximum wait unit (validated as a date/time
+	 * truncation unit).
+	 *
+	 * @param  maximumWaitUnit Maximum wait unit.
+	 * @return                 The microseconds of the unit.
+	 */
+	private static long getUnitMicros(
+			final TemporalUnit maximumWaitUnit) {
+		final long unitNanos = (maximumWaitUnit == ChronoUnit.NANOS ? 1L : maximumWaitUnit.getDuration().toNanos());
+		if (unitNanos > LocalPeriodicJobCache.NANOS_PER_DAY) {
+			throw new UnsupportedTemporalTypeException("Unit is too large to be used for truncation");
+		}
+		if ((LocalPeriodicJobCache.NANOS_PER_DAY % unitNanos) != 0) {
+			throw new UnsupportedTemporalTypeException("Unit must divide into a standard day without remainder");
+		}
+		return Math.max(unitNanos / 1000L, 1L);
+	}
+
+	/**
+	 * Gets the slot for a key.
+	 *
+	 * @param  key Job key.
+	 * @return     The slot.
+	 */
+	private LocalPeriodicJobCacheSlot getSlot(
+			final String key) {
+		LocalPeriodicJobCacheSlot slot = this.lastJobRuns.get(key);
+		if (slot == null) {
+			final LocalPeriodicJobCacheSlot newSlot = new LocalPeriodicJobCacheSlot(key);
+			slot = this.lastJobRuns.putIfAbsent(key, newSlot);
+			if (slot == null) {
+				slot = newSlot;
+				if (this.eviction != null) {
+					this.eviction.add(newSlot);
+				}
+				return slot;
+			}
+		}
+		if (this.eviction != null) {
+			this.eviction.recordAccess(slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * Removes an evicted slot, and purges evicted runs from the expiration buckets
+	 * once they are as many as the keys (so evicted runs do not pile up there).
+	 *
+	 * @param slot Slot.
+	 */
+	private void evicted(
+			final LocalPeriodicJobCacheSlot slot) {
+		this.lastJobRuns.remove(slot.getKey(), slot);
+		if ((this.evictedIndexedRuns.incrementAndGet() > Math.max(this.eviction.getEntries(), LocalPeriodicJobCache.DEFAULT_EXPIRATION_STEP_SIZE))
+				&& this.purgeScheduled.compareAndSet(false, true)) {
+			DynamicThreadPoolFactory.getMaintenanceExecutor().execute(() -> {
+				this.evictedIndexedRuns.set(0);
+				this.purgeScheduled.set(false);
+				for (final ConcurrentLinkedQueue<LocalPeriodicJobCacheSlot> slots : this.expirationBuckets.values()) {
+					slots.removeIf(LocalPeriodicJobCacheSlot::isRemoved);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets the number of keys.
+	 *
+	 * @return The number of keys.
+	 */
+	public Long getSize() {
+		return (long) this.lastJobRuns.size();
+	}
+
+	/**
+	 * Gets the estimated memory of the keys in bytes (<code>null</code> if the
+	 * cache is unbounded).
+	 *
+	 * @return The estimated memory of the keys.
+	 */
+	public Long getEstimatedMemory() {
+		return (this.eviction == null ? null : this.eviction.getMemory());
+	}
+
+	/**
+	 * Gets the number of evicted keys.
+	 *
+	 * @return The number of evicted keys.
+	 */
+	public Long getEvictions() {
+		return (this.eviction == null ? 0L : this.eviction.getEvictions());
 	}
 
 	/**
@@ -55,17 +298,122 @@ public class LocalPeriodicJobCache {
 	 */
 	public LocalPeriodicJobCacheEntry getLastRun(
 			final String key) {
-		try {
-			// Gets the read lock.
-			this.lock.readLock().lock();
-			synchronized (this.lastJobRuns.computeIfAbsent(key, k -> new LocalPeriodicJobCacheEntry())) {
-				return new LocalPeriodicJobCacheEntry(this.lastJobRuns.get(key));
+		final LocalPeriodicJobCacheSlot slot = this.lastJobRuns.get(key);
+		return (slot == null ? new LocalPeriodicJobCacheEntry() : slot.toEntry());
+	}
+
+	/**
+	 * Indexes a run by its next run.
+	 *
+	 * @param slot         Slot.
+	 * @param nextRunAfter Next run after.
+	 */
+	private void index(
+			final LocalPeriodicJobCacheSlot slot,
+			final long nextRunAfter) {
+		final Long bucket = Math.floorDiv(nextRunAfter, this.expirationTick);
+		ConcurrentLinkedQueue<LocalPeriodicJobCacheSlot> slots = this.expirationBuckets.computeIfAbsent(bucket, newBucket -> new ConcurrentLinkedQueue<>());
+		slots.add(slot);
+		// If the bucket was cleared meanwhile, indexes the run again.
+		while (this.expirationBuckets.get(bucket) != slots) {
+			slots = this.expirationBuckets.computeIfAbsent(bucket, newBucket -> new ConcurrentLinkedQueue<>());
+			slots.add(slot);
+		}
+		this.scheduleExpiration();
+	}
+
+	/**
+	 * Schedules an expiration step (if not yet scheduled).
+	 */
+	private void scheduleExpiration() {
+		if (this.expirationScheduled.compareAndSet(false, true)) {
+			DynamicThreadPoolFactory.getMaintenanceExecutor().schedule(this::expire, this.expirationTick, TimeUnit.MICROSECONDS);
+		}
+	}
+
+	/**
+	 * Runs an expiration step (only buckets that ended at least a tick ago are
+	 * due, so runs are cleared at least a tick after they expire), and schedules
+	 * the next one while runs are indexed.
+	 */
+	private void expire() {
+		final long now = this.getCurrentLocalMicros();
+		if (this.clearExpired(now, Math.floorDiv(now - this.expirationTick, this.expirationTick) - 1, this.expirationStepSize)) {
+			DynamicThreadPoolFactory.getMaintenanceExecutor().execute(this::expire);
+		}
+		else {
+			this.expirationScheduled.set(false);
+			if (!this.expirationBuckets.isEmpty()) {
+				this.scheduleExpiration();
+			}
+		}
+	}
+
+	/**
+	 * Checks if a run from a due bucket expired.
+	 *
+	 * @param slot       Slot.
+	 * @param now        Now.
+	 * @param bucket     Bucket.
+	 * @param notExpired Runs from the bucket that are not yet expired.
+	 */
+	private void checkExpired(
+			final LocalPeriodicJobCacheSlot slot,
+			final long now,
+			final Long bucket,
+			final List<LocalPeriodicJobCacheSlot> notExpired) {
+		if (slot.removeIfExpired(now)) {
+			this.lastJobRuns.remove(slot.getKey(), slot);
+			if (this.eviction != null) {
+				this.eviction.remove(slot);
+			}
+		}
+		// Runs that ran again meanwhile are already indexed in a later bucket.
+		else if (!slot.isRemoved() && (Math.floorDiv(slot.getNextRunAfter(), this.expirationTick) == bucket)) {
+			notExpired.add(slot);
+		}
+	}
+
+	/**
+	 * Clears expired runs from due buckets. Runs that are not expired yet are
+	 * indexed again once the step finishes, so they are not checked again (nor
+	 * counted as work left) in the same step.
+	 *
+	 * @param  now         Now.
+	 * @param  dueBucket   Last due bucket.
+	 * @param  maximumRuns Maximum runs to check.
+	 * @return             If there are still due buckets to clear.
+	 */
+	private boolean clearExpired(
+			final long now,
+			final long dueBucket,
+			final Integer maximumRuns) {
+		final List<LocalPeriodicJobCacheSlot> notExpired = new ArrayList<>();
+		int checkedRuns = 0;
+		Map.Entry<Long, ConcurrentLinkedQueue<LocalPeriodicJobCacheSlot>> bucket = this.expirationBuckets.firstEntry();
+		while ((bucket != null) && (bucket.getKey() <= dueBucket) && (checkedRuns < maximumRuns)) {
+			final ConcurrentLinkedQueue<LocalPeriodicJobCacheSlot> slots = bucket.getValue();
+			LocalPeriodicJobCacheSlot slot;
+			while ((checkedRuns < maximumRuns) && ((slot = slots.poll()) != null)) {
+				this.checkExpired(slot, now, bucket.getKey(), notExpired);
+				checkedRuns++;
+			}
+			// Removes the bucket once empty (and checks runs indexed meanwhile).
+			if (checkedRuns < maximumRuns) {
+				this.expirationBuckets.remove(bucket.getKey(), slots);
+				while ((slot = slots.poll()) != null) {
+					this.checkExpired(slot, now, bucket.getKey(), notExpired);
+					checkedRuns++;
+				}
 			}
+			bucket = this.expirationBuckets.firstEntry();
 		}
-		// Releases the read lock.
-		finally {
-			this.lock.readLock().unlock();
+
+		// Indexes runs that are not yet expired again.
+		for (final LocalPeriodicJobCacheSlot slot : notExpired) {
+			this.index(slot, slot.getNextRunAfter());
 		}
+		return (bucket != null) && (bucket.getKey() <= dueBucket) && (checkedRuns >= maximumRuns);
 	}
 
 	/**
@@ -74,33 +422,23 @@ public class LocalPeriodicJobCache {
 	 * @param kind Job kind.
 	 */
 	public void clear() {
-		try {
-			this.lock.writeLock().lock();
-			this.lastJobRuns.clear();
+		for (final LocalPeriodicJobCacheSlot slot : this.lastJobRuns.values()) {
+			slot.remove();
+			this.lastJobRuns.remove(slot.getKey(), slot);
 		}
-		finally {
-			this.lock.writeLock().unlock();
+		if (this.eviction != null) {
+			this.eviction.clear();
 		}
+		this.expirationBuckets.clear();
 	}
 
 	/**
-	 * Clears expired runs.
+	 * Clears expired runs (from buckets up to the current one, in a single
+	 * pass).
 	 */
 	public void clearExpired() {
-		try {
-			this.lock.writeLock().lock();
-			final LocalDateTime now = DateTimeHelper.getCurrentLocalDateTime();
-			for (final String key : this.lastJobRuns.keySet()) {
-				final LocalPeriodicJobCacheEntry lastRun = this.lastJobRuns.get(key);
-				if (now.isAfter(lastRun.getNextRunAfter())) {
-					this.lastJobRuns.remove(key);
-				}
-			}
-		}
-		finally {
-			this.tryRunCount = 0L;
-			this.lock.writeLock().unlock();
-		}
+		final long now = this.getCurrentLocalMicros();
+		this.clearExpired(now, Math.floorDiv(now, this.expirationTick), Integer.MAX_VALUE);
 	}
 
 	/**
@@ -114,40 +452,93 @@ public class LocalPeriodicJobCache {
 			final String key,
 			final Duration waitPeriod,
 			final TemporalUnit maximumWaitUnit) {
-		try {
-			// Gets the read lock.
-			this.lock.readLock().lock();
-
-			final LocalDateTime now = DateTimeHelper.getCurrentLocalDateTime();
-			final LocalDateTime expiration = DateTimeHelper.maximum(now.minus(waitPeriod), (maximumWaitUnit == null ? null : now.truncatedTo(maximumWaitUnit)));
-
-			// Tries to get the time for the checked key.
-			boolean shouldRun = false;
-			synchronized (this.lastJobRuns.computeIfAbsent(key, k -> new LocalPeriodicJobCacheEntry())) {
-				final LocalPeriodicJobCacheEntry lastRun = this.lastJobRuns.get(key);
-
-				// Should run if the last run was not found or is before the expiration.
-				shouldRun = (lastRun.getLastRunAt().isBefore(expiration));
-
-				// If should run, updates the last run.
-				if (shouldRun) {
-					lastRun.setLastRunAt(now);
-					lastRun.setNextRunAfter(DateTimeHelper.mininum(now.plus(waitPeriod),
-							(maximumWaitUnit == null ? null : maximumWaitUnit.addTo(now.truncatedTo(maximumWaitUnit), 1))));
-				}
+		final long now = this.getCurrentLocalMicros();
+		final long wait = LocalPeriodicJobCache.toMicros(waitPeriod.getSeconds(), waitPeriod.getNano());
+		long expiration = now - wait;
+		long nextRunAfter = now + wait;
+		if (maximumWaitUnit != null) {
+			final long unit = LocalPeriodicJobCache.getUnitMicros(maximumWaitUnit);
+			final long truncated = now - Math.floorMod(now, unit);
+			expiration = Math.max(expiration, truncated);
+			nextRunAfter = Math.min(nextRunAfter, truncated + unit);
+		}
+
+		// Should run if the last run was not found or is before the expiration (a
+		// removed slot is replaced and tried again).
+		LocalPeriodicJobCacheSlot slot = this.getSlot(key);
+		while (!slot.tryRun(now, expiration, nextRunAfter)) {
+			if (!slot.isRemoved()) {
+				return false;
 			}
+			this.lastJobRuns.remove(key, slot);
+			slot = this.getSlot(key);
+		}
+		this.index(slot, nextRunAfter);
+		return true;
+	}
 
-			// Returns if the job should run.
-			return shouldRun;
+	/**
+	 * Tries to acquire permits for a key, allowing at most a number of permits
+	 * per sliding window. With a maximum wait unit, permits from before the start
+	 * of the current unit are not counted (windows should divide the unit, and
+	 * are at most the unit).
+	 *
+	 * @param  key             Key.
+	 * @param  permits         Permits to acquire.
+	 * @param  limit           Maximum permits per window.
+	 * @param  window          Window.
+	 * @param  maximumWaitUnit Maximum wait unit.
+	 * @return                 If the permits were acquired.
+	 */
+	public Boolean tryAcquire(
+			final String key,
+			final Integer permits,
+			final Integer limit,
+			final Duration window,
+			final TemporalUnit maximumWaitUnit) {
+		if ((permits < 1) || (limit < 0) || (limit > LocalPeriodicJobCacheSlot.MAXIMUM_PERMITS)) {
+			throw new IllegalArgumentException("Permits must be positive and the limit at most " + LocalPeriodicJobCacheSlot.MAXIMUM_PERMITS + ".");
 		}
-		// Releases the read lock.
-		finally {
-			this.lock.readLock().unlock();
-			this.tryRunCount++;
-			if (this.tryRunCount >= this.timesToRunBeforeClearingExpired) {
-				this.CLEAR_EXECUTOR.execute(() -> this.clearExpired());
+		final long now = this.getCurrentLocalMicros();
+		final long unit = (maximumWaitUnit == null ? Long.MAX_VALUE : LocalPeriodicJobCache.getUnitMicros(maximumWaitUnit));
+		final long windowSize = Math.min(Math.max(LocalPeriodicJobCache.toMicros(window.getSeconds(), window.getNano()), 1L), unit);
+		final long currentWindow = Math.floorDiv(now, windowSize);
+		final long currentWindowStart = currentWindow * windowSize;
+		final double previousWeight = ((maximumWaitUnit != null) && ((currentWindowStart - windowSize) < (now - Math.floorMod(now, unit))) ? 0
+				: 1.0 - ((double) (now - currentWindowStart) / windowSize));
+
+		// Acquires the permits (a removed slot is replaced and tried again).
+		LocalPeriodicJobCacheSlot slot = this.getSlot(key);
+		while (!slot.tryAcquire(currentWindow, previousWeight, permits, limit) || slot.isRemoved()) {
+			if (!slot.isRemoved()) {
+				return false;
 			}
+			this.lastJobRuns.remove(key, slot);
+			slot = this.getSlot(key);
+		}
+
+		// The permits are kept until the next window ends.
+		final long expiration = currentWindowStart + (2 * windowSize);
+		if (slot.extendNextRunAfter(expiration)) {
+			this.index(slot, expiration);
 		}
+		return true;
+	}
+
+	/**
+	 * Tries to acquire a permit for a key, allowing at most a number of permits
+	 * per sliding window.
+	 *
+	 * @param  key    Key.
+	 * @param  limit  Maximum permits per window.
+	 * @param  window Window.
+	 * @return        If the permit was acquired.
+	 */
+	public Boolean tryAcquire(
+			final String key,
+			final Integer limit,
+			final Duration window) {
+		return this.tryAcquire(key, 1, limit, window, null);
 	}
 
 	/**
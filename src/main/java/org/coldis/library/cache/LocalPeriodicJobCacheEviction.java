@@ -0,0 +1,503 @@
+package org.coldis.library.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Size bound of the periodic job cache (window TinyLFU). Keys are striped over
+ * segments, each one with a small admission window, a segmented LRU main space
+ * (probation and protected) and a frequency sketch. New keys enter the window,
+ * and keys leaving it only replace the probation victim if they were used more
+ * often, so floods of one-off keys do not flush hot keys. Accesses are only
+ * recorded if the segment lock is free, so lookups never block.
+ */
+class LocalPeriodicJobCacheEviction {
+
+	/** Estimated memory per entry, besides the key characters (map node, slot, index node and key). */
+	static final long ENTRY_OVERHEAD = 160;
+
+	/** Estimated average key length (to size regions by memory). */
+	private static final long AVERAGE_KEY_LENGTH = 32;
+
+	/** Minimum entries per segment. */
+	private static final long MINIMUM_SEGMENT_SIZE = 64;
+
+	/** Window region. */
+	private static final int WINDOW = 1;
+
+	/** Probation region. */
+	private static final int PROBATION = 2;
+
+	/** Protected region. */
+	private static final int PROTECTED = 3;
+
+	/** Frequency sketch (4-bit count-min, halved periodically so old usage fades). */
+	private static final class FrequencySketch {
+
+		/** Hash seeds. */
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+		/** Mask to halve counters. */
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		/** Counters (16 per long). */
+		private final long[] table;
+
+		/** Increments before counters are halved. */
+		private final int sampleSize;
+
+		/** Increments since counters were halved. */
+		private int size;
+
+		/**
+		 * Creates a new instance of the class.
+		 *
+		 * @param maximumEntries Maximum entries.
+		 */
+		private FrequencySketch(final long maximumEntries) {
+			super();
+			final int length = Integer.highestOneBit((int) Math.min(Math.max(maximumEntries, 8) - 1, 1 << 20)) << 1;
+			this.table = new long[length];
+			this.sampleSize = length * 10;
+		}
+
+		/**
+		 * Gets the counter index of a hash.
+		 *
+		 * @param  hash Hash.
+		 * @param  row  Row.
+		 * @return      The counter index (long index shifted left by 4, plus the
+		 *              counter).
+		 */
+		private int indexOf(
+				final int hash,
+				final int row) {
+			long index = (hash + FrequencySketch.SEEDS[row]) * FrequencySketch.SEEDS[row];
+			index += (index >>> 32);
+			return (int) index & ((this.table.length << 4) - 1);
+		}
+
+		/**
+		 * Gets the estimated frequency of a hash.
+		 *
+		 * @param  hash Hash.
+		 * @return      The estimated frequency.
+		 */
+		private int frequency(
+				final int hash) {
+			int frequency = Integer.MAX_VALUE;
+			for (int row = 0; row < 4; row++) {
+				final int index = this.indexOf(hash, row);
+				frequency = Math.min(frequency, (int) ((this.table[index >>> 4] >>> ((index & 15) << 2)) & 15L));
+			}
+			return frequency;
+		}
+
+		/**
+		 * Increments the frequency of a hash.
+		 *
+		 * @param hash Hash.
+		 */
+		private void increment(
+				final int hash) {
+			boolean added = false;
+			for (int row = 0; row < 4; row++) {
+				final int index = this.indexOf(hash, row);
+				final int offset = (index & 15) << 2;
+				if (((this.table[index >>> 4] >>> offset) & 15L) != 15L) {
+					this.table[index >>> 4] += (1L << offset);
+					added = true;
+				}
+			}
+			if (added && (++this.size >= this.sampleSize)) {
+				for (int index = 0; index < this.table.length; index++) {
+					this.table[index] = (this.table[index] >>> 1) & FrequencySketch.RESET_MASK;
+				}
+				this.size /= 2;
+			}
+		}
+
+	}
+
+	/** Segment. */
+	private static final class Segment {
+
+		/** Lock. */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/** Maximum entries. */
+		private final long maximumEntries;
+
+		/** Maximum memory. */
+		private final long maximumMemory;
+
+		/** Maximum window entries. */
+		private final long maximumWindowEntries;
+
+		/** Maximum protected entries. */
+		private final long maximumProtectedEntries;
+
+		/** Frequency sketch. */
+		private final FrequencySketch sketch;
+
+		/** Window region (sentinel of a circular list, least recent first). */
+		private final LocalPeriodicJobCacheSlot window = Segment.newRegion();
+
+		/** Probation region. */
+		private final LocalPeriodicJobCacheSlot probation = Segment.newRegion();
+
+		/** Protected region. */
+		private final LocalPeriodicJobCacheSlot protectedRegion = Segment.newRegion();
+
+		/** Window entries. */
+		private long windowEntries;
+
+		/** Protected entries. */
+		private long protectedEntries;
+
+		/** Entries. */
+		private volatile long entries;
+
+		/** Estimated memory. */
+		private volatile long memory;
+
+		/**
+		 * Creates a new instance of the class.
+		 *
+		 * @param maximumEntries Maximum entries.
+		 * @param maximumMemory  Maximum memory.
+		 */
+		private Segment(final long maximumEntries, final long maximumMemory) {
+			super();
+			this.maximumEntries = maximumEntries;
+			this.maximumMemory = maximumMemory;
+			final long regionEntries = Math.min(maximumEntries,
+					maximumMemory / (LocalPeriodicJobCacheEviction.ENTRY_OVERHEAD + (2 * LocalPeriodicJobCacheEviction.AVERAGE_KEY_LENGTH)));
+			this.maximumWindowEntries = Math.max(regionEntries / 100, 1);
+			this.maximumProtectedEntries = ((regionEntries - this.maximumWindowEntries) * 4) / 5;
+			this.sketch = new FrequencySketch(regionEntries);
+		}
+
+		/**
+		 * Creates an empty region.
+		 *
+		 * @return The region sentinel.
+		 */
+		private static LocalPeriodicJobCacheSlot newRegion() {
+			final LocalPeriodicJobCacheSlot sentinel = new LocalPeriodicJobCacheSlot(null);
+			sentinel.previous = sentinel;
+			sentinel.next = sentinel;
+			return sentinel;
+		}
+
+		/**
+		 * Unlinks a slot from its region.
+		 *
+		 * @param slot Slot.
+		 */
+		private void unlink(
+				final LocalPeriodicJobCacheSlot slot) {
+			slot.previous.next = slot.next;
+			slot.next.previous = slot.previous;
+			slot.previous = null;
+			slot.next = null;
+			if (slot.region == LocalPeriodicJobCacheEviction.WINDOW) {
+				this.windowEntries--;
+			}
+			else if (slot.region == LocalPeriodicJobCacheEviction.PROTECTED) {
+				this.protectedEntries--;
+			}
+			slot.region = 0;
+		}
+
+		/**
+		 * Links a slot as the most recent of a region.
+		 *
+		 * @param slot   Slot.
+		 * @param region Region.
+		 */
+		private void link(
+				final LocalPeriodicJobCacheSlot slot,
+				final int region) {
+			final LocalPeriodicJobCacheSlot sentinel = (region == LocalPeriodicJobCacheEviction.WINDOW ? this.window
+					: (region == LocalPeriodicJobCacheEviction.PROBATION ? this.probation : this.protectedRegion));
+			slot.previous = sentinel.previous;
+			slot.next = sentinel;
+			sentinel.previous.next = slot;
+			sentinel.previous = slot;
+			slot.region = region;
+			if (region == LocalPeriodicJobCacheEviction.WINDOW) {
+				this.windowEntries++;
+			}
+			else if (region == LocalPeriodicJobCacheEviction.PROTECTED) {
+				this.protectedEntries++;
+			}
+		}
+
+		/**
+		 * Records an access to a slot.
+		 *
+		 * @param slot Slot.
+		 * @param hash Key hash.
+		 */
+		private void access(
+				final LocalPeriodicJobCacheSlot slot,
+				final int hash) {
+			this.sketch.increment(hash);
+			final int region = slot.region;
+			if (region != 0) {
+				this.unlink(slot);
+				// Probation entries used again are protected (demoting the least recent
+				// protected entry if needed).
+				this.link(slot, (region == LocalPeriodicJobCacheEviction.WINDOW ? region : LocalPeriodicJobCacheEviction.PROTECTED));
+				if (this.protectedEntries > this.maximumProtectedEntries) {
+					final LocalPeriodicJobCacheSlot demoted = this.protectedRegion.next;
+					this.unlink(demoted);
+					this.link(demoted, LocalPeriodicJobCacheEviction.PROBATION);
+				}
+			}
+		}
+
+		/**
+		 * Removes a slot.
+		 *
+		 * @param slot Slot.
+		 */
+		private void remove(
+				final LocalPeriodicJobCacheSlot slot) {
+			if (slot.region != 0) {
+				this.unlink(slot);
+				this.entries--;
+				this.memory -= LocalPeriodicJobCacheEviction.getWeight(slot);
+			}
+		}
+
+		/**
+		 * Evicts entries while the segment is over its bounds. Entries leaving the
+		 * window go to probation, and the least frequently used of the probation
+		 * victim (least recent) and candidate (most recent) is evicted.
+		 *
+		 * @param evictionListener Eviction listener.
+		 * @return                 The number of evicted entries.
+		 */
+		private int evict(
+				final Consumer<LocalPeriodicJobCacheSlot> evictionListener) {
+			while (this.windowEntries > this.maximumWindowEntries) {
+				final LocalPeriodicJobCacheSlot candidate = this.window.next;
+				this.unlink(candidate);
+				this.link(candidate, LocalPeriodicJobCacheEviction.PROBATION);
+			}
+			int evicted = 0;
+			while ((this.entries > this.maximumEntries) || ((this.memory > this.maximumMemory) && (this.entries > 0))) {
+				LocalPeriodicJobCacheSlot evictedSlot = this.probation.next;
+				if (evictedSlot == this.probation) {
+					evictedSlot = (this.protectedRegion.next == this.protectedRegion ? this.window.next : this.protectedRegion.next);
+				}
+				else {
+					final LocalPeriodicJobCacheSlot candidate = this.probation.previous;
+					if ((candidate != evictedSlot) && (this.sketch.frequency(LocalPeriodicJobCacheEviction.hash(candidate.getKey())) <= this
+							.sketch.frequency(LocalPeriodicJobCacheEviction.hash(evictedSlot.getKey())))) {
+						evictedSlot = candidate;
+					}
+				}
+				this.remove(evictedSlot);
+				evictedSlot.remove();
+				evictionListener.accept(evictedSlot);
+				evicted++;
+			}
+			return evicted;
+		}
+
+		/**
+		 * Clears the segment.
+		 */
+		private void clear() {
+			for (final LocalPeriodicJobCacheSlot region : new LocalPeriodicJobCacheSlot[] { this.window, this.probation, this.protectedRegion }) {
+				while (region.next != region) {
+					this.remove(region.next);
+				}
+			}
+		}
+
+	}
+
+	/** Segments. */
+	private final Segment[] segments;
+
+	/** Eviction listener. */
+	private final Consumer<LocalPeriodicJobCacheSlot> evictionListener;
+
+	/** Evictions. */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param maximumEntries   Maximum entries (<code>null</code> for no maximum).
+	 * @param maximumMemory    Maximum estimated memory in bytes (<code>null</code>
+	 *                             for no maximum).
+	 * @param evictionListener Eviction listener (called with the segment lock
+	 *                             held).
+	 */
+	LocalPeriodicJobCacheEviction(final Long maximumEntries, final Long maximumMemory, final Consumer<LocalPeriodicJobCacheSlot> evictionListener) {
+		super();
+		final long entries = (maximumEntries == null ? Long.MAX_VALUE : maximumEntries);
+		final long memory = (maximumMemory == null ? Long.MAX_VALUE : maximumMemory);
+		final long regionEntries = Math.min(entries, memory / (LocalPeriodicJobCacheEviction.ENTRY_OVERHEAD + (2 * LocalPeriodicJobCacheEviction.AVERAGE_KEY_LENGTH)));
+		// Stripes only bounds large enough to keep segments meaningful.
+		final int segments = Integer.highestOneBit((int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+				regionEntries / LocalPeriodicJobCacheEviction.MINIMUM_SEGMENT_SIZE)));
+		this.segments = new Segment[segments];
+		for (int segment = 0; segment < segments; segment++) {
+			this.segments[segment] = new Segment(Math.ceilDiv(entries, segments), Math.ceilDiv(memory, segments));
+		}
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * Gets the hash of a key.
+	 *
+	 * @param  key Key.
+	 * @return     The hash.
+	 */
+	private static int hash(
+			final String key) {
+		final int hash = key.hashCode() * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Gets the estimated memory of a slot.
+	 *
+	 * @param  slot Slot.
+	 * @return      The estimated memory.
+	 */
+	static long getWeight(
+			final LocalPeriodicJobCacheSlot slot) {
+		return LocalPeriodicJobCacheEviction.ENTRY_OVERHEAD + (2L * slot.getKey().length());
+	}
+
+	/**
+	 * Gets the segment of a hash.
+	 *
+	 * @param  hash Hash.
+	 * @return      The segment.
+	 */
+	private Segment getSegment(
+			final int hash) {
+		return this.segments[(hash >>> 16) & (this.segments.length - 1)];
+	}
+
+	/**
+	 * Records an access to a slot (skipped if the segment is busy).
+	 *
+	 * @param slot Slot.
+	 */
+	void recordAccess(
+			final LocalPeriodicJobCacheSlot slot) {
+		final int hash = LocalPeriodicJobCacheEviction.hash(slot.getKey());
+		final Segment segment = this.getSegment(hash);
+		if (segment.lock.tryLock()) {
+			try {
+				segment.access(slot, hash);
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds a new slot, evicting others if the bound is exceeded.
+	 *
+	 * @param slot Slot.
+	 */
+	void add(
+			final LocalPeriodicJobCacheSlot slot) {
+		final int hash = LocalPeriodicJobCacheEviction.hash(slot.getKey());
+		final Segment segment = this.getSegment(hash);
+		segment.lock.lock();
+		try {
+			// Slots removed meanwhile are not added.
+			if (!slot.isRemoved() && (slot.region == 0)) {
+				segment.sketch.increment(hash);
+				segment.link(slot, LocalPeriodicJobCacheEviction.WINDOW);
+				segment.entries++;
+				segment.memory += LocalPeriodicJobCacheEviction.getWeight(slot);
+				this.evictions.add(segment.evict(this.evictionListener));
+			}
+		}
+		finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a slot (that expired).
+	 *
+	 * @param slot Slot.
+	 */
+	void remove(
+			final LocalPeriodicJobCacheSlot slot) {
+		final Segment segment = this.getSegment(LocalPeriodicJobCacheEviction.hash(slot.getKey()));
+		segment.lock.lock();
+		try {
+			segment.remove(slot);
+		}
+		finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Clears all segments.
+	 */
+	void clear() {
+		for (final Segment segment : this.segments) {
+			segment.lock.lock();
+			try {
+				segment.clear();
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return The number of entries.
+	 */
+	long getEntries() {
+		long entries = 0;
+		for (final Segment segment : this.segments) {
+			entries += segment.entries;
+		}
+		return entries;
+	}
+
+	/**
+	 * Gets the estimated memory.
+	 *
+	 * @return The estimated memory.
+	 */
+	long getMemory() {
+		long memory = 0;
+		for (final Segment segment : this.segments) {
+			memory += segment.memory;
+		}
+		return memory;
+	}
+
+	/**
+	 * Gets the number of evictions.
+	 *
+	 * @return The number of evictions.
+	 */
+	long getEvictions() {
+		return this.evictions.sum();
+	}
+
+}
@@ -0,0 +1,249 @@
+package org.coldis.library.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Lock-free run state of a periodic job key. The last run is kept in a single
+ * atomic field as local epoch microseconds (the local date/time read as UTC,
+ * so runs compare as the local date/time entries do), and a run is granted by
+ * compare-and-set on it. While the granted run publishes its next run, the
+ * state is flagged as updating.
+ */
+class LocalPeriodicJobCacheSlot {
+
+	/** Never run state. */
+	private static final long NEVER_RUN = Long.MIN_VALUE;
+
+	/** Removed state (the slot must be replaced). */
+	private static final long REMOVED = Long.MAX_VALUE - 1;
+
+	/** Updating flag. */
+	private static final long UPDATING = 1L;
+
+	/** Maximum permits per window. */
+	static final int MAXIMUM_PERMITS = (1 << 20) - 1;
+
+	/** Permits window mask. */
+	private static final long PERMITS_WINDOW_MASK = (1L << 24) - 1;
+
+	/** State handle. */
+	private static final VarHandle STATE;
+
+	/** Next run after handle. */
+	private static final VarHandle NEXT_RUN_AFTER;
+
+	/** Permits handle. */
+	private static final VarHandle PERMITS;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(LocalPeriodicJobCacheSlot.class, "state", long.class);
+			NEXT_RUN_AFTER = MethodHandles.lookup().findVarHandle(LocalPeriodicJobCacheSlot.class, "nextRunAfter", long.class);
+			PERMITS = MethodHandles.lookup().findVarHandle(LocalPeriodicJobCacheSlot.class, "permits", long.class);
+		}
+		catch (final ReflectiveOperationException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+	/** Key. */
+	private final String key;
+
+	/** State (last run at shifted left, with the updating flag). */
+	private volatile long state = LocalPeriodicJobCacheSlot.NEVER_RUN;
+
+	/** Next run after (local epoch microseconds). */
+	private volatile long nextRunAfter = Long.MIN_VALUE;
+
+	/**
+	 * Permits state, for keys used as rate limits (low bits of the window, and
+	 * permits acquired in the previous and current windows).
+	 */
+	private volatile long permits;
+
+	/** Eviction region (guarded by the eviction segment lock). */
+	int region;
+
+	/** Previous slot in the eviction region (guarded by the eviction segment lock). */
+	LocalPeriodicJobCacheSlot previous;
+
+	/** Next slot in the eviction region (guarded by the eviction segment lock). */
+	LocalPeriodicJobCacheSlot next;
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param key Key.
+	 */
+	LocalPeriodicJobCacheSlot(final String key) {
+		super();
+		this.key = key;
+	}
+
+	/**
+	 * Gets the key.
+	 *
+	 * @return The key.
+	 */
+	String getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Gets the next run after (local epoch microseconds).
+	 *
+	 * @return The next run after.
+	 */
+	long getNextRunAfter() {
+		return this.nextRunAfter;
+	}
+
+	/**
+	 * Tries to run the job.
+	 *
+	 * @param  now          Now (local epoch microseconds).
+	 * @param  expiration   The job runs if the last run is before it.
+	 * @param  nextRunAfter Next run after, if the job runs.
+	 * @return              If the job should run.
+	 */
+	boolean tryRun(
+			final long now,
+			final long expiration,
+			final long nextRunAfter) {
+		long state = this.state;
+		while (((state & LocalPeriodicJobCacheSlot.UPDATING) == 0) && (state != LocalPeriodicJobCacheSlot.REMOVED) && ((state >> 1) < expiration)) {
+			final long updating = (now << 1) | LocalPeriodicJobCacheSlot.UPDATING;
+			if (LocalPeriodicJobCacheSlot.STATE.compareAndSet(this, state, updating)) {
+				this.nextRunAfter = nextRunAfter;
+				// Publishes the run (unless the slot was removed meanwhile).
+				LocalPeriodicJobCacheSlot.STATE.compareAndSet(this, updating, now << 1);
+				return true;
+			}
+			state = this.state;
+		}
+		return false;
+	}
+
+	/**
+	 * Tries to acquire permits with a sliding window counter (the permits of the
+	 * previous window are weighted by how much of it still overlaps the sliding
+	 * window).
+	 *
+	 * @param  window         Current window.
+	 * @param  previousWeight Weight of the previous window permits.
+	 * @param  permits        Permits to acquire.
+	 * @param  limit          Maximum permits per window.
+	 * @return                If the permits were acquired.
+	 */
+	boolean tryAcquire(
+			final long window,
+			final double previousWeight,
+			final int permits,
+			final int limit) {
+		final long windowBits = window & LocalPeriodicJobCacheSlot.PERMITS_WINDOW_MASK;
+		long state = this.permits;
+		while (this.state != LocalPeriodicJobCacheSlot.REMOVED) {
+			final long stateWindow = state >>> 40;
+			long previous = 0;
+			long current = 0;
+			if (stateWindow == windowBits) {
+				previous = (state >>> 20) & LocalPeriodicJobCacheSlot.MAXIMUM_PERMITS;
+				current = state & LocalPeriodicJobCacheSlot.MAXIMUM_PERMITS;
+			}
+			else if (stateWindow == ((window - 1) & LocalPeriodicJobCacheSlot.PERMITS_WINDOW_MASK)) {
+				previous = state & LocalPeriodicJobCacheSlot.MAXIMUM_PERMITS;
+			}
+			if (((previous * previousWeight) + current + permits) > limit) {
+				return false;
+			}
+			if (LocalPeriodicJobCacheSlot.PERMITS.compareAndSet(this, state, (windowBits << 40) | (previous << 20) | (current + permits))) {
+				return true;
+			}
+			state = this.permits;
+		}
+		return false;
+	}
+
+	/**
+	 * Extends the next run after (so the slot does not expire before it).
+	 *
+	 * @param  nextRunAfter Next run after.
+	 * @return              If the next run after was extended.
+	 */
+	boolean extendNextRunAfter(
+			final long nextRunAfter) {
+		long currentNextRunAfter = this.nextRunAfter;
+		while (currentNextRunAfter < nextRunAfter) {
+			if (LocalPeriodicJobCacheSlot.NEXT_RUN_AFTER.compareAndSet(this, currentNextRunAfter, nextRunAfter)) {
+				return true;
+			}
+			currentNextRunAfter = this.nextRunAfter;
+		}
+		return false;
+	}
+
+	/**
+	 * If the slot was removed.
+	 *
+	 * @return If the slot was removed.
+	 */
+	boolean isRemoved() {
+		return this.state == LocalPeriodicJobCacheSlot.REMOVED;
+	}
+
+	/**
+	 * Removes the slot if the next run is due.
+	 *
+	 * @param  now Now (local epoch microseconds).
+	 * @return     If the slot was removed.
+	 */
+	boolean removeIfExpired(
+			final long now) {
+		final long state = this.state;
+		return ((state & LocalPeriodicJobCacheSlot.UPDATING) == 0) && (state != LocalPeriodicJobCacheSlot.REMOVED) && (now > this.nextRunAfter)
+				&& LocalPeriodicJobCacheSlot.STATE.compareAndSet(this, state, LocalPeriodicJobCacheSlot.REMOVED);
+	}
+
+	/**
+	 * Removes the slot.
+	 */
+	void remove() {
+		this.state = LocalPeriodicJobCacheSlot.REMOVED;
+	}
+
+	/**
+	 * Converts local epoch microseconds to a local date/time.
+	 *
+	 * @param  micros Local epoch microseconds.
+	 * @return        The local date/time.
+	 */
+	private static LocalDateTime toLocalDateTime(
+			final long micros) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Gets a consistent copy of the slot as an entry.
+	 *
+	 * @return The entry.
+	 */
+	LocalPeriodicJobCacheEntry toEntry() {
+		long state;
+		long nextRunAfter;
+		do {
+			state = this.state;
+			nextRunAfter = this.nextRunAfter;
+			if ((state & LocalPeriodicJobCacheSlot.UPDATING) != 0) {
+				Thread.onSpinWait();
+			}
+		}
+		while (((state & LocalPeriodicJobCacheSlot.UPDATING) != 0) || (state != this.state));
+		return ((state == LocalPeriodicJobCacheSlot.NEVER_RUN) || (state == LocalPeriodicJobCacheSlot.REMOVED) ? new LocalPeriodicJobCacheEntry()
+				: new LocalPeriodicJobCacheEntry(LocalPeriodicJobCacheSlot.toLocalDateTime(state >> 1),
+						LocalPeriodicJobCacheSlot.toLocalDateTime(nextRunAfter)));
+	}
+
+}
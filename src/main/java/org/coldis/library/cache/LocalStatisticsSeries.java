@@ -0,0 +1,352 @@
+package org.coldis.library.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+
+/**
+ * Ring of per-interval statistics buckets of a named series. Every bucket is a
+ * fixed stride of a single primitive array (interval, count, mean, second
+ * moment, sum, minimum and maximum, doubles kept as raw bits), so a series
+ * costs a single allocation. A bucket is claimed (its interval flagged as busy)
+ * while values are added to it or it is read, so its mean and second moment
+ * stay consistent, and it is reused (reset) by the first value of a newer
+ * interval. Buckets are merged with the parallel (Chan et al.) variance
+ * algorithm.
+ */
+class LocalStatisticsSeries {
+
+	/** Bucket interval offset. */
+	private static final int INTERVAL = 0;
+
+	/** Bucket count offset. */
+	private static final int COUNT = 1;
+
+	/** Bucket mean offset. */
+	private static final int MEAN = 2;
+
+	/** Bucket second moment (sum of squared differences from the mean) offset. */
+	private static final int SECOND_MOMENT = 3;
+
+	/** Bucket sum offset. */
+	private static final int SUM = 4;
+
+	/** Bucket minimum offset. */
+	private static final int MINIMUM = 5;
+
+	/** Bucket maximum offset. */
+	private static final int MAXIMUM = 6;
+
+	/** Bucket stride. */
+	private static final int STRIDE = 7;
+
+	/** Never used bucket interval. */
+	private static final long NEVER_USED = Long.MIN_VALUE;
+
+	/** Busy flag (bucket claimed). */
+	private static final long BUSY = 1L;
+
+	/** Removed state. */
+	private static final int REMOVED = -1;
+
+	/** NaN bits. */
+	private static final long NAN = Double.doubleToRawLongBits(Double.NaN);
+
+	/** Buckets handle. */
+	private static final VarHandle BUCKETS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/** State handle. */
+	private static final VarHandle STATE;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(LocalStatisticsSeries.class, "state", int.class);
+		}
+		catch (final ReflectiveOperationException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+	/** Buckets. */
+	private final long[] buckets;
+
+	/** State (values being added, or removed). */
+	private volatile int state;
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param intervals Number of intervals (buckets).
+	 */
+	LocalStatisticsSeries(final int intervals) {
+		super();
+		this.buckets = new long[intervals * LocalStatisticsSeries.STRIDE];
+		for (int bucket = 0; bucket < this.buckets.length; bucket += LocalStatisticsSeries.STRIDE) {
+			this.buckets[bucket + LocalStatisticsSeries.INTERVAL] = LocalStatisticsSeries.NEVER_USED;
+		}
+	}
+
+	/**
+	 * Gets the number of intervals.
+	 *
+	 * @return The number of intervals.
+	 */
+	private int getIntervals() {
+		return this.buckets.length / LocalStatisticsSeries.STRIDE;
+	}
+
+	/**
+	 * Gets a double bucket field (of a claimed bucket).
+	 *
+	 * @param  field Field index.
+	 * @return       The field value.
+	 */
+	private double getDouble(
+			final int field) {
+		return Double.longBitsToDouble(this.buckets[field]);
+	}
+
+	/**
+	 * Sets a double bucket field (of a claimed bucket).
+	 *
+	 * @param field Field index.
+	 * @param value Value.
+	 */
+	private void setDouble(
+			final int field,
+			final double value) {
+		this.buckets[field] = Double.doubleToRawLongBits(value);
+	}
+
+	/**
+	 * Claims the bucket for an interval, resetting it if it holds an older
+	 * interval.
+	 *
+	 * @param  interval Interval.
+	 * @return          The bucket index (or -1 if the bucket holds a newer
+	 *                  interval).
+	 */
+	private int claimBucket(
+			final long interval) {
+		final int bucket = Math.floorMod(interval, this.getIntervals()) * LocalStatisticsSeries.STRIDE;
+		long bucketInterval = (long) LocalStatisticsSeries.BUCKETS.getVolatile(this.buckets, bucket + LocalStatisticsSeries.INTERVAL);
+		for (;;) {
+			if ((bucketInterval & LocalStatisticsSeries.BUSY) == 0) {
+				if ((bucketInterval >> 1) > interval) {
+					return -1;
+				}
+				if (LocalStatisticsSeries.BUCKETS.compareAndSet(this.buckets, bucket + LocalStatisticsSeries.INTERVAL, bucketInterval,
+						(interval << 1) | LocalStatisticsSeries.BUSY)) {
+					// Buckets holding an older interval are reset.
+					if (bucketInterval != (interval << 1)) {
+						this.buckets[bucket + LocalStatisticsSeries.COUNT] = 0;
+						this.setDouble(bucket + LocalStatisticsSeries.MEAN, 0);
+						this.setDouble(bucket + LocalStatisticsSeries.SECOND_MOMENT, 0);
+						this.setDouble(bucket + LocalStatisticsSeries.SUM, 0);
+						this.buckets[bucket + LocalStatisticsSeries.MINIMUM] = LocalStatisticsSeries.NAN;
+						this.buckets[bucket + LocalStatisticsSeries.MAXIMUM] = LocalStatisticsSeries.NAN;
+					}
+					return bucket;
+				}
+			}
+			Thread.onSpinWait();
+			bucketInterval = (long) LocalStatisticsSeries.BUCKETS.getVolatile(this.buckets, bucket + LocalStatisticsSeries.INTERVAL);
+		}
+	}
+
+	/**
+	 * Releases a claimed bucket.
+	 *
+	 * @param bucket   Bucket index.
+	 * @param interval Bucket interval (shifted).
+	 */
+	private void releaseBucket(
+			final int bucket,
+			final long interval) {
+		LocalStatisticsSeries.BUCKETS.setVolatile(this.buckets, bucket + LocalStatisticsSeries.INTERVAL, interval);
+	}
+
+	/**
+	 * Tries to add aggregated values to an interval.
+	 *
+	 * @param  interval     Interval.
+	 * @param  count        Count.
+	 * @param  mean         Mean.
+	 * @param  secondMoment Second moment (sum of squared differences from the
+	 *                          mean).
+	 * @param  sum          Sum.
+	 * @param  minimum      Minimum.
+	 * @param  maximum      Maximum.
+	 * @return              If the values were added (or <code>false</code> if the
+	 *                      series was removed).
+	 */
+	boolean add(
+			final long interval,
+			final long count,
+			final double mean,
+			final double secondMoment,
+			final double sum,
+			final double minimum,
+			final double maximum) {
+		// Values being added hold the series, so it is not removed meanwhile.
+		int state = this.state;
+		while (state != LocalStatisticsSeries.REMOVED) {
+			if (LocalStatisticsSeries.STATE.compareAndSet(this, state, state + 1)) {
+				try {
+					// Values older than the ring are dropped.
+					final int bucket = this.claimBucket(interval);
+					if (bucket >= 0) {
+						final long bucketCount = this.buckets[bucket + LocalStatisticsSeries.COUNT];
+						final double bucketMean = this.getDouble(bucket + LocalStatisticsSeries.MEAN);
+						final double bucketMinimum = this.getDouble(bucket + LocalStatisticsSeries.MINIMUM);
+						final double bucketMaximum = this.getDouble(bucket + LocalStatisticsSeries.MAXIMUM);
+						final long mergedCount = bucketCount + count;
+						final double difference = mean - bucketMean;
+						this.buckets[bucket + LocalStatisticsSeries.COUNT] = mergedCount;
+						this.setDouble(bucket + LocalStatisticsSeries.MEAN, bucketMean + ((difference * count) / mergedCount));
+						this.setDouble(bucket + LocalStatisticsSeries.SECOND_MOMENT, this.getDouble(bucket + LocalStatisticsSeries.SECOND_MOMENT) + secondMoment
+								+ ((difference * difference * bucketCount * count) / mergedCount));
+						this.setDouble(bucket + LocalStatisticsSeries.SUM, this.getDouble(bucket + LocalStatisticsSeries.SUM) + sum);
+						this.setDouble(bucket + LocalStatisticsSeries.MINIMUM, (Double.isNaN(bucketMinimum) || (minimum < bucketMinimum) ? minimum : bucketMinimum));
+						this.setDouble(bucket + LocalStatisticsSeries.MAXIMUM, (Double.isNaN(bucketMaximum) || (maximum > bucketMaximum) ? maximum : bucketMaximum));
+						this.releaseBucket(bucket, interval << 1);
+					}
+					return true;
+				}
+				finally {
+					LocalStatisticsSeries.STATE.getAndAdd(this, -1);
+				}
+			}
+			state = this.state;
+		}
+		return false;
+	}
+
+	/**
+	 * Tries to add a value to an interval.
+	 *
+	 * @param  interval Interval.
+	 * @param  value    Value.
+	 * @return          If the value was added (or <code>false</code> if the
+	 *                  series was removed).
+	 */
+	boolean add(
+			final long interval,
+			final double value) {
+		return this.add(interval, 1, value, 0, value, value, value);
+	}
+
+	/**
+	 * Merges the buckets of another series (with the same number of intervals)
+	 * within the ring of the current interval.
+	 *
+	 * @param  series          Series.
+	 * @param  currentInterval Current interval.
+	 * @return                 If the series was merged (or <code>false</code> if
+	 *                         this series was removed).
+	 */
+	boolean merge(
+			final LocalStatisticsSeries series,
+			final long currentInterval) {
+		boolean merged = true;
+		for (int bucket = 0; merged && (bucket < series.buckets.length); bucket += LocalStatisticsSeries.STRIDE) {
+			final long[] values = series.getBucketValues(bucket);
+			if ((values != null) && (values[LocalStatisticsSeries.COUNT] > 0)
+					&& (values[LocalStatisticsSeries.INTERVAL] > (currentInterval - this.getIntervals()))) {
+				merged = this.add(values[LocalStatisticsSeries.INTERVAL], values[LocalStatisticsSeries.COUNT],
+						Double.longBitsToDouble(values[LocalStatisticsSeries.MEAN]), Double.longBitsToDouble(values[LocalStatisticsSeries.SECOND_MOMENT]),
+						Double.longBitsToDouble(values[LocalStatisticsSeries.SUM]), Double.longBitsToDouble(values[LocalStatisticsSeries.MINIMUM]),
+						Double.longBitsToDouble(values[LocalStatisticsSeries.MAXIMUM]));
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Gets a copy of a bucket (with the interval unshifted).
+	 *
+	 * @param  bucket Bucket index.
+	 * @return        The bucket values (or <code>null</code> if the bucket was
+	 *                never used).
+	 */
+	private long[] getBucketValues(
+			final int bucket) {
+		// Claims the bucket as it is, so values are not added meanwhile.
+		long bucketInterval = (long) LocalStatisticsSeries.BUCKETS.getVolatile(this.buckets, bucket + LocalStatisticsSeries.INTERVAL);
+		while (((bucketInterval & LocalStatisticsSeries.BUSY) != 0) || ((bucketInterval != LocalStatisticsSeries.NEVER_USED)
+				&& !LocalStatisticsSeries.BUCKETS.compareAndSet(this.buckets, bucket + LocalStatisticsSeries.INTERVAL, bucketInterval,
+						bucketInterval | LocalStatisticsSeries.BUSY))) {
+			Thread.onSpinWait();
+			bucketInterval = (long) LocalStatisticsSeries.BUCKETS.getVolatile(this.buckets, bucket + LocalStatisticsSeries.INTERVAL);
+		}
+		if (bucketInterval == LocalStatisticsSeries.NEVER_USED) {
+			return null;
+		}
+		final long[] values = new long[LocalStatisticsSeries.STRIDE];
+		System.arraycopy(this.buckets, bucket, values, 0, LocalStatisticsSeries.STRIDE);
+		values[LocalStatisticsSeries.INTERVAL] = bucketInterval >> 1;
+		this.releaseBucket(bucket, bucketInterval);
+		return values;
+	}
+
+	/**
+	 * Gets the summary of the values in a window.
+	 *
+	 * @param  currentInterval Current interval.
+	 * @param  windowIntervals Number of intervals in the window (the current one
+	 *                             included).
+	 * @return                 The summary.
+	 */
+	StatisticalSummary getSummary(
+			final long currentInterval,
+			final int windowIntervals) {
+		long count = 0;
+		double mean = 0;
+		double secondMoment = 0;
+		double sum = 0;
+		double minimum = Double.NaN;
+		double maximum = Double.NaN;
+		for (int bucket = 0; bucket < this.buckets.length; bucket += LocalStatisticsSeries.STRIDE) {
+			final long[] values = this.getBucketValues(bucket);
+			if ((values != null) && (values[LocalStatisticsSeries.COUNT] > 0) && (values[LocalStatisticsSeries.INTERVAL] <= currentInterval)
+					&& (values[LocalStatisticsSeries.INTERVAL] > (currentInterval - windowIntervals))) {
+				final long bucketCount = values[LocalStatisticsSeries.COUNT];
+				final double bucketMinimum = Double.longBitsToDouble(values[LocalStatisticsSeries.MINIMUM]);
+				final double bucketMaximum = Double.longBitsToDouble(values[LocalStatisticsSeries.MAXIMUM]);
+				final long mergedCount = count + bucketCount;
+				final double difference = Double.longBitsToDouble(values[LocalStatisticsSeries.MEAN]) - mean;
+				secondMoment += Double.longBitsToDouble(values[LocalStatisticsSeries.SECOND_MOMENT])
+						+ ((difference * difference * count * bucketCount) / mergedCount);
+				mean += (difference * bucketCount) / mergedCount;
+				count = mergedCount;
+				sum += Double.longBitsToDouble(values[LocalStatisticsSeries.SUM]);
+				minimum = (Double.isNaN(minimum) || (bucketMinimum < minimum) ? bucketMinimum : minimum);
+				maximum = (Double.isNaN(maximum) || (bucketMaximum > maximum) ? bucketMaximum : maximum);
+			}
+		}
+		return new StatisticalSummaryValues((count == 0 ? Double.NaN : mean), (count == 0 ? Double.NaN : (count == 1 ? 0 : secondMoment / (count - 1))),
+				count, maximum, minimum, sum);
+	}
+
+	/**
+	 * Removes the series if it has no values within the ring of the current
+	 * interval.
+	 *
+	 * @param  currentInterval Current interval.
+	 * @return                 If the series was removed.
+	 */
+	boolean removeIfExpired(
+			final long currentInterval) {
+		// Values added before the series is held for removal are checked again.
+		if (LocalStatisticsSeries.STATE.compareAndSet(this, 0, LocalStatisticsSeries.REMOVED)) {
+			if (this.getSummary(currentInterval, this.getIntervals()).getN() == 0) {
+				return true;
+			}
+			this.state = 0;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.coldis.library.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.coldis.library.helper.DateTimeHelper;
+
+/**
+ * Keyed statistics cache. Each named series keeps a ring of per-interval
+ * buckets (by default, 60 one second intervals), so windowed summaries and
+ * rates are computed from the buckets without keeping the values.
+ */
+public class LocalStatisticsSeriesCache {
+
+	/** Default interval. */
+	public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+
+	/** Default number of intervals. */
+	public static final Integer DEFAULT_INTERVALS = 60;
+
+	/** Interval (milliseconds). */
+	private final long interval;
+
+	/** Number of intervals. */
+	private final int intervals;
+
+	/** Series. */
+	private final Map<String, LocalStatisticsSeries> series = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param interval  Interval (bucket duration, at least a millisecond).
+	 * @param intervals Number of intervals (buckets) per series.
+	 */
+	public LocalStatisticsSeriesCache(final Duration interval, final Integer intervals) {
+		super();
+		if ((interval.toMillis() <= 0) || (intervals <= 0)) {
+			throw new IllegalArgumentException("Interval must be at least a millisecond, and the number of intervals positive.");
+		}
+		this.interval = interval.toMillis();
+		this.intervals = intervals;
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 */
+	public LocalStatisticsSeriesCache() {
+		this(LocalStatisticsSeriesCache.DEFAULT_INTERVAL, LocalStatisticsSeriesCache.DEFAULT_INTERVALS);
+	}
+
+	/**
+	 * Gets the interval.
+	 *
+	 * @return The interval.
+	 */
+	public Duration getInterval() {
+		return Duration.ofMillis(this.interval);
+	}
+
+	/**
+	 * Gets the number of intervals.
+	 *
+	 * @return The number of intervals.
+	 */
+	public Integer getIntervals() {
+		return this.intervals;
+	}
+
+	/**
+	 * Gets the number of series.
+	 *
+	 * @return The number of series.
+	 */
+	public Integer getSize() {
+		return this.series.size();
+	}
+
+	/**
+	 * Gets the current interval.
+	 *
+	 * @return The current interval.
+	 */
+	private long getCurrentInterval() {
+		return Math.floorDiv(DateTimeHelper.getClock().millis(), this.interval);
+	}
+
+	/**
+	 * Gets the number of intervals in a window (at least one, and at most the
+	 * number of intervals).
+	 *
+	 * @param  window Window.
+	 * @return        The number of intervals in the window.
+	 */
+	private int getWindowIntervals(
+			final Duration window) {
+		return (int) Math.max(Math.min(Math.ceilDiv(window.toMillis(), this.interval), this.intervals), 1);
+	}
+
+	/**
+	 * Adds a value to a series.
+	 *
+	 * @param key   Key.
+	 * @param value Value.
+	 */
+	public void addValue(
+			final String key,
+			final double value) {
+		final long currentInterval = this.getCurrentInterval();
+		// Removed series are replaced.
+		LocalStatisticsSeries series = this.series.computeIfAbsent(key, newKey -> new LocalStatisticsSeries(this.intervals));
+		while (!series.add(currentInterval, value)) {
+			this.series.remove(key, series);
+			series = this.series.computeIfAbsent(key, newKey -> new LocalStatisticsSeries(this.intervals));
+		}
+	}
+
+	/**
+	 * Gets the summary of a series within a window (of whole intervals, the
+	 * current one included).
+	 *
+	 * @param  key    Key.
+	 * @param  window Window.
+	 * @return        The summary (<code>null</code> if the series does not
+	 *                exist).
+	 */
+	public StatisticalSummary getSummary(
+			final String key,
+			final Duration window) {
+		final LocalStatisticsSeries series = this.series.get(key);
+		return (series == null ? null : series.getSummary(this.getCurrentInterval(), this.getWindowIntervals(window)));
+	}
+
+	/**
+	 * Gets the rate (values per second) of a series within a window (of whole
+	 * intervals, the current one included).
+	 *
+	 * @param  key    Key.
+	 * @param  window Window.
+	 * @return        The rate.
+	 */
+	public Double getRate(
+			final String key,
+			final Duration window) {
+		final StatisticalSummary summary = this.getSummary(key, window);
+		return (summary == null ? 0 : (summary.getN() * 1000.0) / (this.getWindowIntervals(window) * this.interval));
+	}
+
+	/**
+	 * Gets a snapshot of the summaries of all series within a window (of whole
+	 * intervals, the current one included).
+	 *
+	 * @param  window Window.
+	 * @return        The summaries by key.
+	 */
+	public Map<String, StatisticalSummary> getSummaries(
+			final Duration window) {
+		final long currentInterval = this.getCurrentInterval();
+		final int windowIntervals = this.getWindowIntervals(window);
+		final Map<String, StatisticalSummary> summaries = new HashMap<>(this.series.size() * 2);
+		this.series.forEach((key, series) -> summaries.put(key, series.getSummary(currentInterval, windowIntervals)));
+		return summaries;
+	}
+
+	/**
+	 * Merges all series of another cache (with the same intervals) into this
+	 * one, interval by interval.
+	 *
+	 * @param cache Cache.
+	 */
+	public void merge(
+			final LocalStatisticsSeriesCache cache) {
+		if ((cache.interval != this.interval) || (cache.intervals != this.intervals)) {
+			throw new IllegalArgumentException("Only caches with the same intervals can be merged.");
+		}
+		final long currentInterval = this.getCurrentInterval();
+		cache.series.forEach((key, series) -> {
+			LocalStatisticsSeries mergedSeries = this.series.computeIfAbsent(key, newKey -> new LocalStatisticsSeries(this.intervals));
+			while (!mergedSeries.merge(series, currentInterval)) {
+				this.series.remove(key, mergedSeries);
+				mergedSeries = this.series.computeIfAbsent(key, newKey -> new LocalStatisticsSeries(this.intervals));
+			}
+		});
+	}
+
+	/**
+	 * Clears series with no values within their intervals.
+	 */
+	public void clearExpired() {
+		final long currentInterval = this.getCurrentInterval();
+		this.series.forEach((key, series) -> {
+			if (series.removeIfExpired(currentInterval)) {
+				this.series.remove(key, series);
+			}
+		});
+	}
+
+}
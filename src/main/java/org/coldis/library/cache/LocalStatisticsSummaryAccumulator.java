@@ -0,0 +1,222 @@
+package org.coldis.library.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+
+/**
+ * Striped statistics accumulator. Values are recorded in padded cells picked
+ * by the recording thread (so threads rarely share a cell), each one keeping
+ * count, sum, min, max and second moment. Cells are only merged once the
+ * accumulator is closed. A cell is claimed while a value is recorded and
+ * closing claims every cell for good, so closing waits for values being
+ * recorded and values recorded afterwards go to the next accumulator.
+ * Optionally, each cell also keeps a quantile sketch (created on its first
+ * value), merged into the accumulator quantiles when it is closed.
+ */
+class LocalStatisticsSummaryAccumulator {
+
+	/** Free cell. */
+	private static final int FREE = 0;
+
+	/** Cell claimed by a recording thread. */
+	private static final int CLAIMED = 1;
+
+	/** Closed cell. */
+	private static final int CLOSED = 2;
+
+	/** Cell state handle. */
+	private static final VarHandle CELL_STATE;
+
+	static {
+		try {
+			CELL_STATE = MethodHandles.lookup().findVarHandle(Cell.class, "state", int.class);
+		}
+		catch (final ReflectiveOperationException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+	/** Cell padded to its own cache lines. */
+	@SuppressWarnings("unused")
+	private static final class Cell {
+
+		/** Padding. */
+		private long p01, p02, p03, p04, p05, p06, p07;
+
+		/** State. */
+		private volatile int state;
+
+		/** Count. */
+		private long count;
+
+		/** Mean. */
+		private double mean;
+
+		/** Second moment (sum of squared differences from the mean). */
+		private double secondMoment;
+
+		/** Sum. */
+		private double sum;
+
+		/** Minimum. */
+		private double minimum = Double.NaN;
+
+		/** Maximum. */
+		private double maximum = Double.NaN;
+
+		/** Quantiles (<code>null</code> until a value is tracked). */
+		private QuantileSketch quantiles;
+
+		/** Padding. */
+		private long p11, p12, p13, p14, p15, p16, p17;
+
+		/**
+		 * Adds a value.
+		 *
+		 * @param value Value.
+		 */
+		private void add(
+				final double value) {
+			this.count++;
+			final double difference = value - this.mean;
+			this.mean += difference / this.count;
+			this.secondMoment += difference * (value - this.mean);
+			this.sum += value;
+			this.minimum = ((this.count == 1) || (value < this.minimum) ? value : this.minimum);
+			this.maximum = ((this.count == 1) || (value > this.maximum) ? value : this.maximum);
+		}
+
+	}
+
+	/** Cells. */
+	private final Cell[] cells;
+
+	/** Quantiles merged from the cells (<code>null</code> if not tracked). */
+	private final QuantileSketch quantiles;
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param cells     Number of cells (rounded up to a power of two).
+	 * @param quantiles Quantiles (<code>null</code> if not tracked).
+	 */
+	LocalStatisticsSummaryAccumulator(final int cells, final QuantileSketch quantiles) {
+		super();
+		this.cells = new Cell[Integer.highestOneBit(Math.max(cells - 1, 1)) << 1];
+		for (int cell = 0; cell < this.cells.length; cell++) {
+			this.cells[cell] = new Cell();
+		}
+		this.quantiles = quantiles;
+	}
+
+	/**
+	 * Creates a new instance of the class (with cells for twice the processors).
+	 *
+	 * @param quantiles Quantiles (<code>null</code> if not tracked).
+	 */
+	LocalStatisticsSummaryAccumulator(final QuantileSketch quantiles) {
+		this(Runtime.getRuntime().availableProcessors() * 2, quantiles);
+	}
+
+	/**
+	 * Gets the quantiles (merged from the cells once the accumulator is closed).
+	 *
+	 * @return The quantiles (<code>null</code> if not tracked).
+	 */
+	QuantileSketch getQuantiles() {
+		return this.quantiles;
+	}
+
+	/**
+	 * Gets the first cell to try for the current thread.
+	 *
+	 * @return The cell index.
+	 */
+	private int getProbe() {
+		final long threadId = Thread.currentThread().threadId() * 0x9e3779b97f4a7c15L;
+		return (int) (threadId ^ (threadId >>> 32));
+	}
+
+	/**
+	 * Tries to add a value.
+	 *
+	 * @param  value Value.
+	 * @return       If the value was added (or <code>false</code> if the
+	 *               accumulator is closed).
+	 */
+	boolean add(
+			final double value) {
+		final int mask = this.cells.length - 1;
+		for (int probe = this.getProbe();; probe++) {
+			final Cell cell = this.cells[probe & mask];
+			final int state = cell.state;
+			if (state == LocalStatisticsSummaryAccumulator.CLOSED) {
+				return false;
+			}
+			// Busy cells are skipped (trying the next one).
+			if ((state == LocalStatisticsSummaryAccumulator.FREE)
+					&& LocalStatisticsSummaryAccumulator.CELL_STATE.compareAndSet(cell, LocalStatisticsSummaryAccumulator.FREE,
+							LocalStatisticsSummaryAccumulator.CLAIMED)) {
+				cell.add(value);
+				if (this.quantiles != null) {
+					if (cell.quantiles == null) {
+						cell.quantiles = this.quantiles.newEmptySketch();
+					}
+					cell.quantiles.add(value);
+				}
+				cell.state = LocalStatisticsSummaryAccumulator.FREE;
+				return true;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Closes the accumulator, waiting for values being added, and merges the
+	 * cells quantiles.
+	 */
+	void close() {
+		for (final Cell cell : this.cells) {
+			while (!LocalStatisticsSummaryAccumulator.CELL_STATE.compareAndSet(cell, LocalStatisticsSummaryAccumulator.FREE,
+					LocalStatisticsSummaryAccumulator.CLOSED) && (cell.state != LocalStatisticsSummaryAccumulator.CLOSED)) {
+				Thread.onSpinWait();
+			}
+			if (cell.quantiles != null) {
+				this.quantiles.merge(cell.quantiles);
+				cell.quantiles = null;
+			}
+		}
+	}
+
+	/**
+	 * Gets the summary of the (closed) accumulator, merging its cells.
+	 *
+	 * @return The summary.
+	 */
+	StatisticalSummary getSummary() {
+		long count = 0;
+		double mean = 0;
+		double secondMoment = 0;
+		double sum = 0;
+		double minimum = Double.NaN;
+		double maximum = Double.NaN;
+		for (final Cell cell : this.cells) {
+			if (cell.count > 0) {
+				final long mergedCount = count + cell.count;
+				final double difference = cell.mean - mean;
+				secondMoment += cell.secondMoment + ((difference * difference * count * cell.count) / mergedCount);
+				mean += (difference * cell.count) / mergedCount;
+				count = mergedCount;
+				sum += cell.sum;
+				minimum = (Double.isNaN(minimum) || (cell.minimum < minimum) ? cell.minimum : minimum);
+				maximum = (Double.isNaN(maximum) || (cell.maximum > maximum) ? cell.maximum : maximum);
+			}
+		}
+		return new StatisticalSummaryValues((count == 0 ? Double.NaN : mean), (count == 0 ? Double.NaN : (count == 1 ? 0 : secondMoment / (count - 1))),
+				count, maximum, minimum, sum);
+	}
+
+}
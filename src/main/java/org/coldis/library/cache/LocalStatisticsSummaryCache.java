@@ -1,59 +1,104 @@
 package org.coldis.library.cache;
 
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.math3.stat.descriptive.AggregateSummaryStatistics;
 import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
-import org.apache.commons.math3.stat.descriptive.SynchronizedSummaryStatistics;
 
 /**
- * Statistics summary cache.
+ * Statistics summary cache. Values are recorded in striped cells (so
+ * recording threads do not contend), and cells are only merged when the
+ * statistics are merged and cleared. Optionally, quantiles are tracked in a
+ * mergeable sketch too.
  */
 public class LocalStatisticsSummaryCache {
 
-	/** Cache lock. */
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Quantiles template (<code>null</code> if quantiles are not tracked). */
+	private final QuantileSketch quantilesTemplate;
 
 	/** Statistics. */
-	SummaryStatistics statistics = new SynchronizedSummaryStatistics();
+	private final AtomicReference<LocalStatisticsSummaryAccumulator> statistics;
 
 	/**
-	 * Cache
+	 * Creates a new instance of the class.
 	 *
-	 * /** Adds a value to the statistics.
+	 * @param quantilesTemplate Quantiles template (an empty sketch with the
+	 *                              parameters to use, or <code>null</code> if
+	 *                              quantiles should not be tracked).
+	 */
+	public LocalStatisticsSummaryCache(final QuantileSketch quantilesTemplate) {
+		super();
+		this.quantilesTemplate = quantilesTemplate;
+		this.statistics = new AtomicReference<>(this.newStatistics());
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 */
+	public LocalStatisticsSummaryCache() {
+		this(null);
+	}
+
+	/**
+	 * Creates new (empty) statistics.
+	 *
+	 * @return The new statistics.
+	 */
+	private LocalStatisticsSummaryAccumulator newStatistics() {
+		return new LocalStatisticsSummaryAccumulator(this.quantilesTemplate == null ? null : this.quantilesTemplate.newEmptySketch());
+	}
+
+	/**
+	 * Adds a value to the statistics.
 	 *
 	 * @param value Value to add.
 	 */
 	public void addValue(
 			final double value) {
-		try {
-			this.lock.readLock().lock();
-			this.statistics.addValue(value);
-		}
-		finally {
-			this.lock.readLock().unlock();
+		// Statistics being merged are closed, so the value is added to the new ones.
+		while (!this.statistics.get().add(value)) {
+			Thread.onSpinWait();
 		}
 	}
 
+	/**
+	 * Clears local statistics (waiting for values being added).
+	 *
+	 * @return The cleared statistics.
+	 */
+	private LocalStatisticsSummaryAccumulator clear() {
+		final LocalStatisticsSummaryAccumulator cachedStatistics = this.statistics.getAndSet(this.newStatistics());
+		cachedStatistics.close();
+		return cachedStatistics;
+	}
+
 	/**
 	 * Merges and clears local statistics.
 	 *
 	 * @param  mainStatistics Main statistics to merge with.
-	 * @return
 	 * @return                Computed statistics.
 	 */
 	public StatisticalSummary mergeAndClear(
 			final StatisticalSummary mainStatistics) {
-		SummaryStatistics cachedStatistics = null;
-		try {
-			this.lock.writeLock().lock();
-			cachedStatistics = this.statistics;
-			this.statistics = new SynchronizedSummaryStatistics();
-		}
-		finally {
-			this.lock.writeLock().unlock();
+		return AggregateSummaryStatistics.aggregate(List.of(mainStatistics, this.clear().getSummary()));
+	}
+
+	/**
+	 * Merges and clears local statistics, merging local quantiles into the main
+	 * quantiles too.
+	 *
+	 * @param  mainStatistics Main statistics to merge with.
+	 * @param  mainQuantiles  Main quantiles to merge local quantiles into (with
+	 *                            the same parameters as the quantiles template).
+	 * @return                Computed statistics.
+	 */
+	public StatisticalSummary mergeAndClear(
+			final StatisticalSummary mainStatistics,
+			final QuantileSketch mainQuantiles) {
+		final LocalStatisticsSummaryAccumulator cachedStatistics = this.clear();
+		if (cachedStatistics.getQuantiles() != null) {
+			mainQuantiles.merge(cachedStatistics.getQuantiles());
 		}
 		return AggregateSummaryStatistics.aggregate(List.of(mainStatistics, cachedStatistics.getSummary()));
 	}
@@ -0,0 +1,318 @@
+package org.coldis.library.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Mergeable quantile sketch (logarithmic buckets, as in DDSketch). Values are
+ * counted in buckets whose bounds grow geometrically, so any quantile is
+ * estimated within the relative accuracy. Buckets are fixed primitive arrays
+ * covering a range of magnitudes (values beyond it are counted in the edge
+ * buckets, and smaller ones as zero), and are updated atomically, so values
+ * can be added and sketches merged concurrently without locks.
+ */
+public class QuantileSketch {
+
+	/** Default relative accuracy. */
+	public static final Double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+	/** Default minimum magnitude (smaller values are counted as zero). */
+	public static final Double DEFAULT_MINIMUM_VALUE = 1e-9;
+
+	/** Default maximum magnitude. */
+	public static final Double DEFAULT_MAXIMUM_VALUE = 1e12;
+
+	/** Counts handle. */
+	private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/** Relative accuracy. */
+	private final double relativeAccuracy;
+
+	/** Minimum magnitude. */
+	private final double minimumValue;
+
+	/** Maximum magnitude. */
+	private final double maximumValue;
+
+	/** Bucket growth factor. */
+	private final double gamma;
+
+	/** Logarithm of the bucket growth factor. */
+	private final double logGamma;
+
+	/** Logarithmic index of the first bucket. */
+	private final int indexOffset;
+
+	/** Positive value counts. */
+	private final long[] positiveCounts;
+
+	/** Negative value counts (by magnitude). */
+	private final long[] negativeCounts;
+
+	/** Zero value counts (a single counter). */
+	private final long[] zeroCount = new long[1];
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param relativeAccuracy Relative accuracy (between 0 and 1).
+	 * @param minimumValue     Minimum magnitude (smaller values are counted as
+	 *                             zero).
+	 * @param maximumValue     Maximum magnitude.
+	 */
+	public QuantileSketch(final Double relativeAccuracy, final Double minimumValue, final Double maximumValue) {
+		super();
+		if ((relativeAccuracy <= 0) || (relativeAccuracy >= 1) || (minimumValue <= 0) || (maximumValue <= minimumValue)) {
+			throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, and the minimum value positive and less than the maximum.");
+		}
+		this.relativeAccuracy = relativeAccuracy;
+		this.minimumValue = minimumValue;
+		this.maximumValue = maximumValue;
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.logGamma = Math.log(this.gamma);
+		this.indexOffset = (int) Math.ceil(Math.log(minimumValue) / this.logGamma);
+		final int buckets = ((int) Math.ceil(Math.log(maximumValue) / this.logGamma) - this.indexOffset) + 1;
+		this.positiveCounts = new long[buckets];
+		this.negativeCounts = new long[buckets];
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @param relativeAccuracy Relative accuracy (between 0 and 1).
+	 */
+	public QuantileSketch(final Double relativeAccuracy) {
+		this(relativeAccuracy, QuantileSketch.DEFAULT_MINIMUM_VALUE, QuantileSketch.DEFAULT_MAXIMUM_VALUE);
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 */
+	public QuantileSketch() {
+		this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * Creates an empty sketch with the same parameters.
+	 *
+	 * @return The empty sketch.
+	 */
+	public QuantileSketch newEmptySketch() {
+		return new QuantileSketch(this.relativeAccuracy, this.minimumValue, this.maximumValue);
+	}
+
+	/**
+	 * Gets the relative accuracy.
+	 *
+	 * @return The relative accuracy.
+	 */
+	public Double getRelativeAccuracy() {
+		return this.relativeAccuracy;
+	}
+
+	/**
+	 * Gets the minimum magnitude.
+	 *
+	 * @return The minimum magnitude.
+	 */
+	public Double getMinimumValue() {
+		return this.minimumValue;
+	}
+
+	/**
+	 * Gets the maximum magnitude.
+	 *
+	 * @return The maximum magnitude.
+	 */
+	public Double getMaximumValue() {
+		return this.maximumValue;
+	}
+
+	/**
+	 * If the sketch has the given parameters.
+	 *
+	 * @param  relativeAccuracy Relative accuracy.
+	 * @param  minimumValue     Minimum magnitude.
+	 * @param  maximumValue     Maximum magnitude.
+	 * @return                  If the sketch has the given parameters.
+	 */
+	boolean hasParameters(
+			final double relativeAccuracy,
+			final double minimumValue,
+			final double maximumValue) {
+		return (relativeAccuracy == this.relativeAccuracy) && (minimumValue == this.minimumValue) && (maximumValue == this.maximumValue);
+	}
+
+	/**
+	 * Gets the number of buckets (per sign).
+	 *
+	 * @return The number of buckets.
+	 */
+	int getBuckets() {
+		return this.positiveCounts.length;
+	}
+
+	/**
+	 * Gets the count of a bucket.
+	 *
+	 * @param  negative If the bucket is a negative value bucket.
+	 * @param  bucket   Bucket.
+	 * @return          The count.
+	 */
+	long getCount(
+			final boolean negative,
+			final int bucket) {
+		return (long) QuantileSketch.COUNTS.getVolatile(negative ? this.negativeCounts : this.positiveCounts, bucket);
+	}
+
+	/**
+	 * Adds to the count of a bucket.
+	 *
+	 * @param negative If the bucket is a negative value bucket.
+	 * @param bucket   Bucket.
+	 * @param count    Count.
+	 */
+	void addCount(
+			final boolean negative,
+			final int bucket,
+			final long count) {
+		QuantileSketch.COUNTS.getAndAdd(negative ? this.negativeCounts : this.positiveCounts, bucket, count);
+	}
+
+	/**
+	 * Gets the zero value count.
+	 *
+	 * @return The zero value count.
+	 */
+	long getZeroCount() {
+		return (long) QuantileSketch.COUNTS.getVolatile(this.zeroCount, 0);
+	}
+
+	/**
+	 * Adds to the zero value count.
+	 *
+	 * @param count Count.
+	 */
+	void addZeroCount(
+			final long count) {
+		QuantileSketch.COUNTS.getAndAdd(this.zeroCount, 0, count);
+	}
+
+	/**
+	 * Gets the bucket of a magnitude.
+	 *
+	 * @param  magnitude Magnitude (at least the minimum value).
+	 * @return           The bucket.
+	 */
+	private int getBucket(
+			final double magnitude) {
+		return Math.max(Math.min((int) Math.ceil(Math.log(magnitude) / this.logGamma) - this.indexOffset, this.positiveCounts.length - 1), 0);
+	}
+
+	/**
+	 * Gets the value of a bucket (within the relative accuracy of the values
+	 * counted in it).
+	 *
+	 * @param  bucket Bucket.
+	 * @return        The bucket value.
+	 */
+	private double getBucketValue(
+			final int bucket) {
+		return (2 * Math.pow(this.gamma, bucket + this.indexOffset)) / (this.gamma + 1);
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value Value.
+	 */
+	public void add(
+			final double value) {
+		if (value >= this.minimumValue) {
+			QuantileSketch.COUNTS.getAndAdd(this.positiveCounts, this.getBucket(value), 1L);
+		}
+		else if (value <= -this.minimumValue) {
+			QuantileSketch.COUNTS.getAndAdd(this.negativeCounts, this.getBucket(-value), 1L);
+		}
+		else if (!Double.isNaN(value)) {
+			QuantileSketch.COUNTS.getAndAdd(this.zeroCount, 0, 1L);
+		}
+	}
+
+	/**
+	 * Merges another sketch (with the same parameters) into this one.
+	 *
+	 * @param sketch Sketch.
+	 */
+	public void merge(
+			final QuantileSketch sketch) {
+		if (!this.hasParameters(sketch.relativeAccuracy, sketch.minimumValue, sketch.maximumValue)) {
+			throw new IllegalArgumentException("Only sketches with the same parameters can be merged.");
+		}
+		for (int bucket = 0; bucket < this.positiveCounts.length; bucket++) {
+			final long positiveCount = (long) QuantileSketch.COUNTS.getVolatile(sketch.positiveCounts, bucket);
+			final long negativeCount = (long) QuantileSketch.COUNTS.getVolatile(sketch.negativeCounts, bucket);
+			if (positiveCount != 0) {
+				QuantileSketch.COUNTS.getAndAdd(this.positiveCounts, bucket, positiveCount);
+			}
+			if (negativeCount != 0) {
+				QuantileSketch.COUNTS.getAndAdd(this.negativeCounts, bucket, negativeCount);
+			}
+		}
+		QuantileSketch.COUNTS.getAndAdd(this.zeroCount, 0, (long) QuantileSketch.COUNTS.getVolatile(sketch.zeroCount, 0));
+	}
+
+	/**
+	 * Gets the number of values.
+	 *
+	 * @return The number of values.
+	 */
+	public Long getCount() {
+		long count = (long) QuantileSketch.COUNTS.getVolatile(this.zeroCount, 0);
+		for (int bucket = 0; bucket < this.positiveCounts.length; bucket++) {
+			count += (long) QuantileSketch.COUNTS.getVolatile(this.positiveCounts, bucket);
+			count += (long) QuantileSketch.COUNTS.getVolatile(this.negativeCounts, bucket);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the estimated value at a quantile.
+	 *
+	 * @param  quantile Quantile (between 0 and 1).
+	 * @return          The estimated value (<code>NaN</code> if there are no
+	 *                  values).
+	 */
+	public Double getQuantile(
+			final double quantile) {
+		if ((quantile < 0) || (quantile > 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+		}
+		final long count = this.getCount();
+		if (count == 0) {
+			return Double.NaN;
+		}
+		// Walks the buckets from the lowest value up to the quantile rank.
+		final long rank = (long) (quantile * (count - 1));
+		long seen = 0;
+		for (int bucket = this.negativeCounts.length - 1; bucket >= 0; bucket--) {
+			seen += (long) QuantileSketch.COUNTS.getVolatile(this.negativeCounts, bucket);
+			if (seen > rank) {
+				return -this.getBucketValue(bucket);
+			}
+		}
+		seen += (long) QuantileSketch.COUNTS.getVolatile(this.zeroCount, 0);
+		if (seen > rank) {
+			return 0.0;
+		}
+		for (int bucket = 0; bucket < this.positiveCounts.length; bucket++) {
+			seen += (long) QuantileSketch.COUNTS.getVolatile(this.positiveCounts, bucket);
+			if (seen > rank) {
+				return this.getBucketValue(bucket);
+			}
+		}
+		// Values added meanwhile may leave the rank beyond the buckets walked.
+		return this.getBucketValue(this.positiveCounts.length - 1);
+	}
+
+}
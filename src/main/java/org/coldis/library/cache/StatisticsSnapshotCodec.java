@@ -0,0 +1,511 @@
+package org.coldis.library.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+
+/**
+ * Compact binary snapshots of statistics summaries and quantile sketches, to
+ * be merged across nodes. Every snapshot starts with the format version and
+ * type. Counts are variable length (7 bits per byte), sketch buckets are
+ * encoded sparsely (the number of non-empty buckets as a fixed 4 bytes int,
+ * then gaps from the previous non-empty bucket and counts), and doubles are
+ * fixed 8 bytes. Fixed size values are big endian, whatever the buffer order. Snapshots are read from and written
+ * to the buffer position (advancing it), so many snapshots can be
+ * concatenated in a buffer, decoded without copying and merged directly on
+ * the encoded buffers.
+ */
+public class StatisticsSnapshotCodec {
+
+	/** Format version. */
+	public static final byte VERSION = 1;
+
+	/** Summary type. */
+	public static final byte SUMMARY = 1;
+
+	/** Quantile sketch type. */
+	public static final byte QUANTILE_SKETCH = 2;
+
+	/** Header size. */
+	private static final int HEADER_SIZE = 2;
+
+	/**
+	 * Writes a variable length (unsigned) long.
+	 *
+	 * @param buffer Buffer.
+	 * @param value  Value.
+	 */
+	private static void putVarLong(
+			final ByteBuffer buffer,
+			final long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0) {
+			buffer.put((byte) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+		buffer.put((byte) remaining);
+	}
+
+	/**
+	 * Reads a variable length (unsigned) long.
+	 *
+	 * @param  buffer Buffer.
+	 * @return        The value.
+	 */
+	private static long getVarLong(
+			final ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			final byte part = buffer.get();
+			value |= (long) (part & 0x7F) << shift;
+			if (part >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Variable length value is too long.");
+	}
+
+	/**
+	 * Gets the size of a variable length (unsigned) long.
+	 *
+	 * @param  value Value.
+	 * @return       The size.
+	 */
+	private static int getVarLongSize(
+			final long value) {
+		return Math.max(((Long.SIZE - Long.numberOfLeadingZeros(value)) + 6) / 7, 1);
+	}
+
+	/**
+	 * Writes a double (big endian, whatever the buffer order).
+	 *
+	 * @param buffer Buffer.
+	 * @param value  Value.
+	 */
+	private static void putDouble(
+			final ByteBuffer buffer,
+			final double value) {
+		final long bits = Double.doubleToRawLongBits(value);
+		buffer.putLong(buffer.order() == ByteOrder.BIG_ENDIAN ? bits : Long.reverseBytes(bits));
+	}
+
+	/**
+	 * Reads a double (big endian, whatever the buffer order).
+	 *
+	 * @param  buffer Buffer.
+	 * @return        The value.
+	 */
+	private static double getDouble(
+			final ByteBuffer buffer) {
+		final long bits = buffer.getLong();
+		return Double.longBitsToDouble(buffer.order() == ByteOrder.BIG_ENDIAN ? bits : Long.reverseBytes(bits));
+	}
+
+	/**
+	 * Writes an int at a position (big endian, whatever the buffer order).
+	 *
+	 * @param buffer   Buffer.
+	 * @param position Position.
+	 * @param value    Value.
+	 */
+	private static void putInt(
+			final ByteBuffer buffer,
+			final int position,
+			final int value) {
+		buffer.putInt(position, buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value));
+	}
+
+	/**
+	 * Reads an int (big endian, whatever the buffer order).
+	 *
+	 * @param  buffer Buffer.
+	 * @return        The value.
+	 */
+	private static int getInt(
+			final ByteBuffer buffer) {
+		final int value = buffer.getInt();
+		return (buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value));
+	}
+
+	/**
+	 * Writes a header.
+	 *
+	 * @param buffer Buffer.
+	 * @param type   Type.
+	 */
+	private static void putHeader(
+			final ByteBuffer buffer,
+			final byte type) {
+		buffer.put(StatisticsSnapshotCodec.VERSION);
+		buffer.put(type);
+	}
+
+	/**
+	 * Reads and checks a header.
+	 *
+	 * @param buffer Buffer.
+	 * @param type   Expected type.
+	 */
+	private static void getHeader(
+			final ByteBuffer buffer,
+			final byte type) {
+		final byte version = buffer.get();
+		final byte actualType = buffer.get();
+		if (version != StatisticsSnapshotCodec.VERSION) {
+			throw new IllegalArgumentException("Unsupported snapshot version: " + version + ".");
+		}
+		if (actualType != type) {
+			throw new IllegalArgumentException("Unexpected snapshot type: " + actualType + ".");
+		}
+	}
+
+	/**
+	 * Gets the type of the snapshot at the buffer position (without reading it).
+	 *
+	 * @param  buffer Buffer.
+	 * @return        The type.
+	 */
+	public static byte getType(
+			final ByteBuffer buffer) {
+		return buffer.get(buffer.position() + 1);
+	}
+
+	/**
+	 * Gets the encoded size of a summary.
+	 *
+	 * @param  summary Summary.
+	 * @return         The encoded size.
+	 */
+	public static int getEncodedSize(
+			final StatisticalSummary summary) {
+		return StatisticsSnapshotCodec.HEADER_SIZE + StatisticsSnapshotCodec.getVarLongSize(summary.getN())
+				+ (summary.getN() == 0 ? 0 : 5 * Double.BYTES);
+	}
+
+	/**
+	 * Encodes a summary (empty summaries are encoded as the count only).
+	 *
+	 * @param summary Summary.
+	 * @param buffer  Buffer.
+	 */
+	public static void encode(
+			final StatisticalSummary summary,
+			final ByteBuffer buffer) {
+		StatisticsSnapshotCodec.putHeader(buffer, StatisticsSnapshotCodec.SUMMARY);
+		StatisticsSnapshotCodec.putVarLong(buffer, summary.getN());
+		if (summary.getN() > 0) {
+			StatisticsSnapshotCodec.putDouble(buffer, summary.getMean());
+			StatisticsSnapshotCodec.putDouble(buffer, summary.getVariance());
+			StatisticsSnapshotCodec.putDouble(buffer, summary.getMin());
+			StatisticsSnapshotCodec.putDouble(buffer, summary.getMax());
+			StatisticsSnapshotCodec.putDouble(buffer, summary.getSum());
+		}
+	}
+
+	/**
+	 * Encodes a summary.
+	 *
+	 * @param  summary Summary.
+	 * @return         The encoded summary (ready to be read).
+	 */
+	public static ByteBuffer encode(
+			final StatisticalSummary summary) {
+		final ByteBuffer buffer = ByteBuffer.allocate(StatisticsSnapshotCodec.getEncodedSize(summary));
+		StatisticsSnapshotCodec.encode(summary, buffer);
+		return buffer.flip();
+	}
+
+	/**
+	 * Merges summary values (as in the statistics summary accumulator).
+	 *
+	 * @param  summary  Summary.
+	 * @param  count    Count.
+	 * @param  mean     Mean.
+	 * @param  variance Variance.
+	 * @param  minimum  Minimum.
+	 * @param  maximum  Maximum.
+	 * @param  sum      Sum.
+	 * @return          The merged summary.
+	 */
+	private static StatisticalSummary merge(
+			final StatisticalSummary summary,
+			final long count,
+			final double mean,
+			final double variance,
+			final double minimum,
+			final double maximum,
+			final double sum) {
+		if (count == 0) {
+			return summary;
+		}
+		if (summary.getN() == 0) {
+			return new StatisticalSummaryValues(mean, variance, count, maximum, minimum, sum);
+		}
+		final long mergedCount = summary.getN() + count;
+		final double difference = mean - summary.getMean();
+		final double secondMoment = (summary.getVariance() * (summary.getN() - 1)) + (variance * (count - 1))
+				+ ((difference * difference * summary.getN() * count) / mergedCount);
+		return new StatisticalSummaryValues(summary.getMean() + ((difference * count) / mergedCount), secondMoment / (mergedCount - 1), mergedCount,
+				Math.max(summary.getMax(), maximum), Math.min(summary.getMin(), minimum), summary.getSum() + sum);
+	}
+
+	/**
+	 * Decodes an encoded summary and merges it with another summary.
+	 *
+	 * @param  buffer  Buffer with the encoded summary.
+	 * @param  summary Summary to merge with.
+	 * @return         The merged summary.
+	 */
+	public static StatisticalSummary mergeSummary(
+			final ByteBuffer buffer,
+			final StatisticalSummary summary) {
+		StatisticsSnapshotCodec.getHeader(buffer, StatisticsSnapshotCodec.SUMMARY);
+		final long count = StatisticsSnapshotCodec.getVarLong(buffer);
+		return (count == 0 ? summary
+				: StatisticsSnapshotCodec.merge(summary, count, StatisticsSnapshotCodec.getDouble(buffer), StatisticsSnapshotCodec.getDouble(buffer),
+						StatisticsSnapshotCodec.getDouble(buffer), StatisticsSnapshotCodec.getDouble(buffer), StatisticsSnapshotCodec.getDouble(buffer)));
+	}
+
+	/**
+	 * Decodes a summary.
+	 *
+	 * @param  buffer Buffer with the encoded summary.
+	 * @return        The summary.
+	 */
+	public static StatisticalSummary decodeSummary(
+			final ByteBuffer buffer) {
+		return StatisticsSnapshotCodec.mergeSummary(buffer, new StatisticalSummaryValues(Double.NaN, Double.NaN, 0, Double.NaN, Double.NaN, 0));
+	}
+
+	/**
+	 * Gets the encoded size of sketch buckets.
+	 *
+	 * @param  sketch   Sketch.
+	 * @param  negative If the negative value buckets are encoded.
+	 * @return          The encoded size.
+	 */
+	private static int getEncodedSize(
+			final QuantileSketch sketch,
+			final boolean negative) {
+		int size = Integer.BYTES;
+		int previousBucket = -1;
+		for (int bucket = 0; bucket < sketch.getBuckets(); bucket++) {
+			final long count = sketch.getCount(negative, bucket);
+			if (count > 0) {
+				size += StatisticsSnapshotCodec.getVarLongSize(bucket - previousBucket - 1) + StatisticsSnapshotCodec.getVarLongSize(count);
+				previousBucket = bucket;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the encoded size of a sketch.
+	 *
+	 * @param  sketch Sketch.
+	 * @return        The encoded size.
+	 */
+	public static int getEncodedSize(
+			final QuantileSketch sketch) {
+		return StatisticsSnapshotCodec.HEADER_SIZE + (3 * Double.BYTES) + StatisticsSnapshotCodec.getVarLongSize(sketch.getZeroCount())
+				+ StatisticsSnapshotCodec.getEncodedSize(sketch, false) + StatisticsSnapshotCodec.getEncodedSize(sketch, true);
+	}
+
+	/**
+	 * Encodes sketch buckets (the number of non-empty buckets, and the gap from
+	 * the previous non-empty bucket and count of each one).
+	 *
+	 * @param sketch   Sketch.
+	 * @param negative If the negative value buckets are encoded.
+	 * @param buffer   Buffer.
+	 */
+	private static void encode(
+			final QuantileSketch sketch,
+			final boolean negative,
+			final ByteBuffer buffer) {
+		// The number of buckets is written once they are.
+		final int bucketsPosition = buffer.position();
+		buffer.position(bucketsPosition + Integer.BYTES);
+		int buckets = 0;
+		int previousBucket = -1;
+		for (int bucket = 0; bucket < sketch.getBuckets(); bucket++) {
+			final long count = sketch.getCount(negative, bucket);
+			if (count > 0) {
+				StatisticsSnapshotCodec.putVarLong(buffer, bucket - previousBucket - 1);
+				StatisticsSnapshotCodec.putVarLong(buffer, count);
+				previousBucket = bucket;
+				buckets++;
+			}
+		}
+		StatisticsSnapshotCodec.putInt(buffer, bucketsPosition, buckets);
+	}
+
+	/**
+	 * Encodes a sketch (which should not be updated meanwhile, as closed or main
+	 * sketches).
+	 *
+	 * @param sketch Sketch.
+	 * @param buffer Buffer.
+	 */
+	public static void encode(
+			final QuantileSketch sketch,
+			final ByteBuffer buffer) {
+		StatisticsSnapshotCodec.putHeader(buffer, StatisticsSnapshotCodec.QUANTILE_SKETCH);
+		StatisticsSnapshotCodec.putDouble(buffer, sketch.getRelativeAccuracy());
+		StatisticsSnapshotCodec.putDouble(buffer, sketch.getMinimumValue());
+		StatisticsSnapshotCodec.putDouble(buffer, sketch.getMaximumValue());
+		StatisticsSnapshotCodec.putVarLong(buffer, sketch.getZeroCount());
+		StatisticsSnapshotCodec.encode(sketch, false, buffer);
+		StatisticsSnapshotCodec.encode(sketch, true, buffer);
+	}
+
+	/**
+	 * Encodes a sketch (which should not be updated meanwhile, as closed or main
+	 * sketches).
+	 *
+	 * @param  sketch Sketch.
+	 * @return        The encoded sketch (ready to be read).
+	 */
+	public static ByteBuffer encode(
+			final QuantileSketch sketch) {
+		final ByteBuffer buffer = ByteBuffer.allocate(StatisticsSnapshotCodec.getEncodedSize(sketch));
+		StatisticsSnapshotCodec.encode(sketch, buffer);
+		return buffer.flip();
+	}
+
+	/**
+	 * Decodes encoded sketch buckets into a sketch.
+	 *
+	 * @param buffer   Buffer.
+	 * @param negative If the buckets are negative value buckets.
+	 * @param sketch   Sketch.
+	 */
+	private static void mergeSketch(
+			final ByteBuffer buffer,
+			final boolean negative,
+			final QuantileSketch sketch) {
+		final int buckets = StatisticsSnapshotCodec.getInt(buffer);
+		long bucket = -1;
+		for (int entry = 0; entry < buckets; entry++) {
+			bucket += StatisticsSnapshotCodec.getVarLong(buffer) + 1;
+			if (bucket >= sketch.getBuckets()) {
+				throw new IllegalArgumentException("Sketch bucket is out of range: " + bucket + ".");
+			}
+			sketch.addCount(negative, (int) bucket, StatisticsSnapshotCodec.getVarLong(buffer));
+		}
+	}
+
+	/**
+	 * Decodes an encoded sketch and merges it into another sketch (with the same
+	 * parameters), without intermediate copies.
+	 *
+	 * @param buffer Buffer with the encoded sketch.
+	 * @param sketch Sketch to merge into.
+	 */
+	public static void mergeSketch(
+			final ByteBuffer buffer,
+			final QuantileSketch sketch) {
+		StatisticsSnapshotCodec.getHeader(buffer, StatisticsSnapshotCodec.QUANTILE_SKETCH);
+		if (!sketch.hasParameters(StatisticsSnapshotCodec.getDouble(buffer), StatisticsSnapshotCodec.getDouble(buffer),
+				StatisticsSnapshotCodec.getDouble(buffer))) {
+			throw new IllegalArgumentException("Only sketches with the same parameters can be merged.");
+		}
+		sketch.addZeroCount(StatisticsSnapshotCodec.getVarLong(buffer));
+		StatisticsSnapshotCodec.mergeSketch(buffer, false, sketch);
+		StatisticsSnapshotCodec.mergeSketch(buffer, true, sketch);
+	}
+
+	/**
+	 * Decodes a sketch.
+	 *
+	 * @param  buffer Buffer with the encoded sketch.
+	 * @return        The sketch.
+	 */
+	public static QuantileSketch decodeSketch(
+			final ByteBuffer buffer) {
+		// Parameters are read ahead to create the sketch.
+		final ByteBuffer parameters = buffer.duplicate().position(buffer.position() + StatisticsSnapshotCodec.HEADER_SIZE).order(buffer.order());
+		final QuantileSketch sketch = new QuantileSketch(StatisticsSnapshotCodec.getDouble(parameters), StatisticsSnapshotCodec.getDouble(parameters),
+				StatisticsSnapshotCodec.getDouble(parameters));
+		StatisticsSnapshotCodec.mergeSketch(buffer, sketch);
+		return sketch;
+	}
+
+	/**
+	 * Merges encoded sketch buckets into encoded buckets (joining both sparse
+	 * bucket lists).
+	 *
+	 * @param first  First buffer.
+	 * @param second Second buffer.
+	 * @param output Output buffer.
+	 */
+	private static void mergeSketchBuckets(
+			final ByteBuffer first,
+			final ByteBuffer second,
+			final ByteBuffer output) {
+		int firstRemaining = StatisticsSnapshotCodec.getInt(first);
+		int secondRemaining = StatisticsSnapshotCodec.getInt(second);
+		final int bucketsPosition = output.position();
+		output.position(bucketsPosition + Integer.BYTES);
+		int buckets = 0;
+		long previousBucket = -1;
+		long firstBucket = (firstRemaining > 0 ? StatisticsSnapshotCodec.getVarLong(first) : Long.MAX_VALUE);
+		long secondBucket = (secondRemaining > 0 ? StatisticsSnapshotCodec.getVarLong(second) : Long.MAX_VALUE);
+		while ((firstRemaining > 0) || (secondRemaining > 0)) {
+			final long bucket = Math.min(firstBucket, secondBucket);
+			long count = 0;
+			if (firstBucket == bucket) {
+				count += StatisticsSnapshotCodec.getVarLong(first);
+				firstRemaining--;
+				firstBucket = (firstRemaining > 0 ? bucket + StatisticsSnapshotCodec.getVarLong(first) + 1 : Long.MAX_VALUE);
+			}
+			if (secondBucket == bucket) {
+				count += StatisticsSnapshotCodec.getVarLong(second);
+				secondRemaining--;
+				secondBucket = (secondRemaining > 0 ? bucket + StatisticsSnapshotCodec.getVarLong(second) + 1 : Long.MAX_VALUE);
+			}
+			StatisticsSnapshotCodec.putVarLong(output, bucket - previousBucket - 1);
+			StatisticsSnapshotCodec.putVarLong(output, count);
+			previousBucket = bucket;
+			buckets++;
+		}
+		StatisticsSnapshotCodec.putInt(output, bucketsPosition, buckets);
+	}
+
+	/**
+	 * Merges two encoded snapshots (of the same type, and sketches with the same
+	 * parameters) into an encoded snapshot, without decoding them.
+	 *
+	 * @param first  First buffer.
+	 * @param second Second buffer.
+	 * @param output Output buffer (with room for at most the size of both
+	 *                   snapshots).
+	 */
+	public static void merge(
+			final ByteBuffer first,
+			final ByteBuffer second,
+			final ByteBuffer output) {
+		final byte type = StatisticsSnapshotCodec.getType(first);
+		if (type == StatisticsSnapshotCodec.SUMMARY) {
+			StatisticsSnapshotCodec.encode(StatisticsSnapshotCodec.mergeSummary(second, StatisticsSnapshotCodec.decodeSummary(first)), output);
+		}
+		else {
+			StatisticsSnapshotCodec.getHeader(first, StatisticsSnapshotCodec.QUANTILE_SKETCH);
+			StatisticsSnapshotCodec.getHeader(second, StatisticsSnapshotCodec.QUANTILE_SKETCH);
+			StatisticsSnapshotCodec.putHeader(output, StatisticsSnapshotCodec.QUANTILE_SKETCH);
+			for (int parameter = 0; parameter < 3; parameter++) {
+				final double value = StatisticsSnapshotCodec.getDouble(first);
+				if (Double.compare(value, StatisticsSnapshotCodec.getDouble(second)) != 0) {
+					throw new IllegalArgumentException("Only sketches with the same parameters can be merged.");
+				}
+				StatisticsSnapshotCodec.putDouble(output, value);
+			}
+			StatisticsSnapshotCodec.putVarLong(output, StatisticsSnapshotCodec.getVarLong(first) + StatisticsSnapshotCodec.getVarLong(second));
+			StatisticsSnapshotCodec.mergeSketchBuckets(first, second, output);
+			StatisticsSnapshotCodec.mergeSketchBuckets(first, second, output);
+		}
+	}
+
+}
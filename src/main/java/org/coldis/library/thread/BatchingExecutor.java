@@ -0,0 +1,374 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batching executor. Submitted items are buffered in a lock-free queue and
+ * handed to a batch handler on a shared executor once a batch is full or the
+ * linger time passes, so tiny tasks pay the dispatch (and thread wake-up) cost
+ * once per batch instead of once per item. The number of batches running at
+ * the same time is bounded, and items submitted meanwhile wait in the buffer.
+ * Batches rejected by the executor are dropped (and counted). Closing flushes
+ * the buffer and rejects further items.
+ *
+ * @param <TypeItem> Item type.
+ */
+public class BatchingExecutor<TypeItem> implements AutoCloseable {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchingExecutor.class);
+
+	/** Default max batch size. */
+	public static final Integer DEFAULT_MAX_BATCH_SIZE = 256;
+
+	/** Default linger time. */
+	public static final Duration DEFAULT_LINGER = Duration.ofMillis(5);
+
+	/** Default max in-flight batches. */
+	public static final Integer DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+
+	/** Executor. */
+	private final Executor executor;
+
+	/** Batch handler. */
+	private final Consumer<List<TypeItem>> handler;
+
+	/** Max batch size. */
+	private final int maxBatchSize;
+
+	/** Linger time (nanos). */
+	private final long lingerNanos;
+
+	/** Max in-flight batches. */
+	private final int maxInFlightBatches;
+
+	/** Buffered items. */
+	private final Queue<TypeItem> buffer = new ConcurrentLinkedQueue<>();
+
+	/** Buffered items not yet assigned to a batch. */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/** In-flight batches. */
+	private final AtomicInteger inFlightBatches = new AtomicInteger();
+
+	/** If a linger flush is scheduled. */
+	private final AtomicBoolean lingerScheduled = new AtomicBoolean();
+
+	/** When the oldest partial batch item was buffered (nanos). */
+	private volatile long lingerStart;
+
+	/** Handled batches. */
+	private final LongAdder batches = new LongAdder();
+
+	/** Handled items. */
+	private final LongAdder items = new LongAdder();
+
+	/** Items dropped because their batch was rejected. */
+	private final LongAdder rejectedItems = new LongAdder();
+
+	/** If the executor is closed. */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor           Executor.
+	 * @param handler            Batch handler.
+	 * @param maxBatchSize       Max batch size (a batch is dispatched as soon as
+	 *                               it is full).
+	 * @param linger             Linger time (partial batches are dispatched
+	 *                               after it).
+	 * @param maxInFlightBatches Max batches running at the same time.
+	 */
+	public BatchingExecutor(final Executor executor, final Consumer<List<TypeItem>> handler, final Integer maxBatchSize, final Duration linger,
+			final Integer maxInFlightBatches) {
+		super();
+		this.executor = executor;
+		this.handler = handler;
+		this.maxBatchSize = Math.max(maxBatchSize, 1);
+		this.lingerNanos = Math.max(linger.toNanos(), 1);
+		this.maxInFlightBatches = Math.max(maxInFlightBatches, 1);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Executor.
+	 * @param handler  Batch handler.
+	 */
+	public BatchingExecutor(final Executor executor, final Consumer<List<TypeItem>> handler) {
+		this(executor, handler, BatchingExecutor.DEFAULT_MAX_BATCH_SIZE, BatchingExecutor.DEFAULT_LINGER, BatchingExecutor.DEFAULT_MAX_IN_FLIGHT_BATCHES);
+	}
+
+	/** Batch. */
+	private class Batch implements Runnable {
+
+		/** Batch size. */
+		private final int size;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param size Batch size.
+		 */
+		Batch(final int size) {
+			super();
+			this.size = size;
+		}
+
+		/**
+		 * Handles the batch.
+		 */
+		@Override
+		public void run() {
+			final List<TypeItem> batchItems = new ArrayList<>(this.size);
+			try {
+				// Items are counted after being buffered, so reserved items are always
+				// there.
+				for (int itemNumber = 0; itemNumber < this.size; itemNumber++) {
+					batchItems.add(BatchingExecutor.this.buffer.poll());
+				}
+				BatchingExecutor.this.handler.accept(batchItems);
+			}
+			catch (final Throwable throwable) {
+				BatchingExecutor.LOGGER.error("Batch of " + this.size + " items failed: " + throwable.getLocalizedMessage());
+				BatchingExecutor.LOGGER.debug("Batch of " + this.size + " items failed.", throwable);
+			}
+			finally {
+				BatchingExecutor.this.batches.increment();
+				BatchingExecutor.this.items.add(this.size);
+				BatchingExecutor.this.inFlightBatches.decrementAndGet();
+				// Dispatches the items buffered meanwhile (all of them, once closed).
+				BatchingExecutor.this.dispatch(BatchingExecutor.this.closed);
+				if (BatchingExecutor.this.pending.get() > 0) {
+					BatchingExecutor.this.scheduleLinger(BatchingExecutor.this.lingerNanos);
+				}
+			}
+		}
+
+		/**
+		 * Drops the batch (if it is rejected by the executor).
+		 *
+		 * @param exception Rejection.
+		 */
+		void reject(
+				final RejectedExecutionException exception) {
+			for (int itemNumber = 0; itemNumber < this.size; itemNumber++) {
+				BatchingExecutor.this.buffer.poll();
+			}
+			BatchingExecutor.this.rejectedItems.add(this.size);
+			BatchingExecutor.this.inFlightBatches.decrementAndGet();
+			BatchingExecutor.LOGGER.error("Batch of " + this.size + " items rejected: " + exception.getLocalizedMessage());
+			BatchingExecutor.LOGGER.debug("Batch of " + this.size + " items rejected.", exception);
+		}
+
+	}
+
+	/**
+	 * Reserves the items for a batch.
+	 *
+	 * @param  partial If partial batches should be reserved.
+	 * @return         The batch size (0 if there is no batch to dispatch).
+	 */
+	private int reserve(
+			final boolean partial) {
+		for (;;) {
+			final int currentPending = this.pending.get();
+			if ((currentPending <= 0) || (!partial && (currentPending < this.maxBatchSize))) {
+				return 0;
+			}
+			final int size = Math.min(currentPending, this.maxBatchSize);
+			if (this.pending.compareAndSet(currentPending, currentPending - size)) {
+				// Items left behind start a new partial batch.
+				this.lingerStart = System.nanoTime();
+				return size;
+			}
+		}
+	}
+
+	/**
+	 * Dispatches batches while there are free in-flight slots.
+	 *
+	 * @param partial If partial batches should be dispatched.
+	 */
+	private void dispatch(
+			final boolean partial) {
+		for (;;) {
+			// Takes an in-flight slot.
+			final int currentInFlightBatches = this.inFlightBatches.get();
+			if ((currentInFlightBatches >= this.maxInFlightBatches) || (this.pending.get() <= 0)) {
+				return;
+			}
+			if (this.inFlightBatches.compareAndSet(currentInFlightBatches, currentInFlightBatches + 1)) {
+				final int size = this.reserve(partial);
+				// Releases the slot if there is no batch to dispatch.
+				if (size == 0) {
+					this.inFlightBatches.decrementAndGet();
+					return;
+				}
+				final Batch batch = new Batch(size);
+				try {
+					this.executor.execute(batch);
+				}
+				// If the batch cannot be scheduled, it is dropped (running it in the
+				// caller thread would dispatch the next batches from it as well), and
+				// the items left are dispatched later.
+				catch (final RejectedExecutionException exception) {
+					batch.reject(exception);
+					if (this.pending.get() > 0) {
+						this.scheduleLinger(this.lingerNanos);
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flushes the partial batch if it lingered long enough (or schedules the
+	 * flush again otherwise).
+	 */
+	private void flushLingered() {
+		this.lingerScheduled.set(false);
+		final long remainingNanos = (this.lingerStart + this.lingerNanos) - System.nanoTime();
+		if ((remainingNanos > 0) && (this.pending.get() > 0)) {
+			this.scheduleLinger(remainingNanos);
+		}
+		else {
+			this.flush();
+		}
+	}
+
+	/**
+	 * Schedules a flush of partial batches.
+	 *
+	 * @param delayNanos Delay (nanos).
+	 */
+	private void scheduleLinger(
+			final long delayNanos) {
+		if (this.lingerScheduled.compareAndSet(false, true)) {
+			try {
+				DynamicThreadPoolFactory.getMaintenanceExecutor().schedule(this::flushLingered, delayNanos, TimeUnit.NANOSECONDS);
+			}
+			catch (final RejectedExecutionException exception) {
+				this.lingerScheduled.set(false);
+				this.flush();
+			}
+		}
+	}
+
+	/**
+	 * Submits an item.
+	 *
+	 * @param item Item.
+	 */
+	public void submit(
+			final TypeItem item) {
+		if (this.closed) {
+			throw new RejectedExecutionException("Item " + item + " rejected: batching executor is closed.");
+		}
+		this.buffer.offer(item);
+		final int currentPending = this.pending.incrementAndGet();
+		// Dispatches full batches right away.
+		if (currentPending >= this.maxBatchSize) {
+			this.dispatch(false);
+		}
+		// Partial batches wait for the linger time.
+		else if (currentPending == 1) {
+			this.lingerStart = System.nanoTime();
+			this.scheduleLinger(this.lingerNanos);
+		}
+	}
+
+	/**
+	 * Dispatches the buffered items now (as long as there are free in-flight
+	 * slots, otherwise they are dispatched when running batches finish).
+	 */
+	public void flush() {
+		this.dispatch(true);
+	}
+
+	/**
+	 * Closes the executor, dispatching the buffered items (as running batches
+	 * finish, if there are no free in-flight slots) and rejecting further items.
+	 * The underlying executor is not shut down.
+	 *
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.flush();
+	}
+
+	/**
+	 * Gets the underlying executor.
+	 *
+	 * @return The underlying executor.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Gets the number of buffered items not yet assigned to a batch.
+	 *
+	 * @return The number of buffered items not yet assigned to a batch.
+	 */
+	public Integer getPending() {
+		return Math.max(this.pending.get(), 0);
+	}
+
+	/**
+	 * Gets the number of in-flight batches.
+	 *
+	 * @return The number of in-flight batches.
+	 */
+	public Integer getInFlightBatches() {
+		return this.inFlightBatches.get();
+	}
+
+	/**
+	 * Gets the number of handled batches.
+	 *
+	 * @return The number of handled batches.
+	 */
+	public long getBatches() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * Gets the number of handled items.
+	 *
+	 * @return The number of handled items.
+	 */
+	public long getItems() {
+		return this.items.sum();
+	}
+
+	/**
+	 * Gets the number of items dropped because their batch was rejected.
+	 *
+	 * @return The number of items dropped because their batch was rejected.
+	 */
+	public long getRejectedItems() {
+		return this.rejectedItems.sum();
+	}
+
+}
@@ -0,0 +1,304 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-per-task executor for virtual threads. Instead of pooling virtual
+ * threads, every task gets a new virtual thread and concurrency is bounded by
+ * permits: at most <code>maxConcurrency</code> tasks run at once, and at most
+ * <code>maxWaiting</code> further tasks wait (parked) for a permit. When the
+ * limit is reached, submission waits up to the admission timeout (if any) and
+ * is then rejected. Tasks still waiting for a permit are handed back by
+ * {@link #shutdownNow()}, and tasks interrupted while waiting are dropped
+ * (cancelled, if they are futures).
+ */
+public class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(BoundedVirtualThreadExecutor.class);
+
+	/** Thread per task executor. */
+	private final ExecutorService executor;
+
+	/** Max concurrency. */
+	private final Integer maxConcurrency;
+
+	/** Max admitted tasks (running and waiting). */
+	private final Integer maxAdmitted;
+
+	/** Concurrency permits (<code>null</code> if unbounded). */
+	private final Semaphore concurrency;
+
+	/** Admission permits (<code>null</code> if unbounded). */
+	private final Semaphore admission;
+
+	/** Admission timeout (<code>null</code> if submission should not wait). */
+	private final Duration admissionTimeout;
+
+	/** Running tasks. */
+	private final AtomicInteger running = new AtomicInteger();
+
+	/** Tasks not started yet. */
+	private final Set<AdmittedTask> waitingTasks = ConcurrentHashMap.newKeySet();
+
+	/** Tasks dropped because they were interrupted while waiting. */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/** Admitted task (which waits for a permit on its own virtual thread). */
+	private class AdmittedTask implements Runnable {
+
+		/** Command. */
+		private final Runnable command;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param command Command.
+		 */
+		AdmittedTask(final Runnable command) {
+			super();
+			this.command = command;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			final BoundedVirtualThreadExecutor executor = BoundedVirtualThreadExecutor.this;
+			try {
+				if (executor.concurrency != null) {
+					executor.concurrency.acquire();
+				}
+				try {
+					// Runs the command, unless it was handed back by shutdown now.
+					if (executor.waitingTasks.remove(this)) {
+						executor.running.incrementAndGet();
+						try {
+							this.command.run();
+						}
+						finally {
+							executor.running.decrementAndGet();
+						}
+					}
+				}
+				finally {
+					if (executor.concurrency != null) {
+						executor.concurrency.release();
+					}
+				}
+			}
+			catch (final InterruptedException exception) {
+				// Drops the command, so futures do not wait for it forever.
+				if (executor.waitingTasks.remove(this)) {
+					executor.dropped.incrementAndGet();
+					if (this.command instanceof final Future<?> future) {
+						future.cancel(false);
+					}
+					BoundedVirtualThreadExecutor.LOGGER.warn("Task " + this.command + " was interrupted while waiting for a permit and did not run.");
+				}
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				executor.release();
+			}
+		}
+
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param threadFactory    Thread factory.
+	 * @param maxConcurrency   Max tasks running at once
+	 *                             ({@link Integer#MAX_VALUE} for unbounded).
+	 * @param maxWaiting       Max tasks waiting for a permit
+	 *                             ({@link Integer#MAX_VALUE} for unbounded).
+	 * @param admissionTimeout How long submission waits for admission
+	 *                             (<code>null</code> to reject right away).
+	 */
+	public BoundedVirtualThreadExecutor(
+			final ThreadFactory threadFactory,
+			final Integer maxConcurrency,
+			final Integer maxWaiting,
+			final Duration admissionTimeout) {
+		super();
+		this.executor = Executors.newThreadPerTaskExecutor(threadFactory);
+		this.maxConcurrency = maxConcurrency;
+		this.maxAdmitted = (int) Math.min(Integer.MAX_VALUE, ((long) maxConcurrency) + maxWaiting);
+		this.concurrency = (maxConcurrency == Integer.MAX_VALUE ? null : new Semaphore(maxConcurrency));
+		this.admission = (this.maxAdmitted == Integer.MAX_VALUE ? null : new Semaphore(this.maxAdmitted));
+		this.admissionTimeout = admissionTimeout;
+	}
+
+	/**
+	 * Gets the max concurrency.
+	 *
+	 * @return The max concurrency.
+	 */
+	public Integer getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * Gets the number of tasks currently running.
+	 *
+	 * @return The number of tasks currently running.
+	 */
+	public Integer getActiveCount() {
+		return this.running.get();
+	}
+
+	/**
+	 * Gets the number of tasks dropped because they were interrupted while
+	 * waiting for a permit.
+	 *
+	 * @return The number of dropped tasks.
+	 */
+	public Long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Gets the number of tasks waiting for a permit.
+	 *
+	 * @return The number of tasks waiting for a permit.
+	 */
+	public Integer getQueueSize() {
+		return (this.concurrency == null ? 0 : this.concurrency.getQueueLength());
+	}
+
+	/**
+	 * Acquires admission for a new task.
+	 *
+	 * @return If the task was admitted.
+	 */
+	private boolean admit() {
+		boolean admitted = true;
+		if (this.admission != null) {
+			try {
+				admitted = (this.admissionTimeout == null ? this.admission.tryAcquire()
+						: this.admission.tryAcquire(this.admissionTimeout.toNanos(), TimeUnit.NANOSECONDS));
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				admitted = false;
+			}
+		}
+		return admitted;
+	}
+
+	/**
+	 * Releases the admission of a task.
+	 */
+	private void release() {
+		if (this.admission != null) {
+			this.admission.release();
+		}
+	}
+
+	/**
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(
+			final Runnable command) {
+		// Rejects the task if it cannot be admitted.
+		if (!this.admit()) {
+			throw new RejectedExecutionException("Task " + command + " rejected from " + this + ".");
+		}
+
+		// Starts a new virtual thread for the task, which waits for a permit.
+		final AdmittedTask task = new AdmittedTask(command);
+		this.waitingTasks.add(task);
+		try {
+			this.executor.execute(task);
+		}
+		catch (final RejectedExecutionException exception) {
+			this.waitingTasks.remove(task);
+			this.release();
+			throw exception;
+		}
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdownNow()
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		// Hands back the tasks that did not start (before interrupting them).
+		this.executor.shutdown();
+		final List<Runnable> commands = new ArrayList<>();
+		for (final AdmittedTask task : this.waitingTasks) {
+			if (this.waitingTasks.remove(task)) {
+				commands.add(task.command);
+			}
+		}
+		this.executor.shutdownNow();
+		return commands;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return this.executor.isShutdown();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return this.executor.isTerminated();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long,
+	 *      java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean awaitTermination(
+			final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "BoundedVirtualThreadExecutor [maxConcurrency=" + this.maxConcurrency + ", maxAdmitted=" + this.maxAdmitted + ", active=" + this.getActiveCount()
+				+ ", waiting=" + this.getQueueSize() + "]";
+	}
+
+}
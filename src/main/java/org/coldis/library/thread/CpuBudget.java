@@ -0,0 +1,281 @@
+package org.coldis.library.thread;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CPU budget of the process. Besides the processors the JVM sees, the cgroup
+ * (v1 or v2) CPU quota and cpuset are read, so fractional container limits
+ * (such as 1.5 CPUs) are taken into account. The budget is re-evaluated
+ * periodically while there are listeners, which are notified when it changes.
+ */
+public class CpuBudget {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CpuBudget.class);
+
+	/** Default cgroup root. */
+	public static final Path DEFAULT_CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+
+	/** Default refresh interval. */
+	public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+	/** Default CPU budget. */
+	private static final CpuBudget DEFAULT = new CpuBudget(CpuBudget.DEFAULT_CGROUP_ROOT, null);
+
+	/** Cgroup root. */
+	private final Path cgroupRoot;
+
+	/** Host CPUs (<code>null</code> to use the processors available to the JVM). */
+	private final Integer hostCpus;
+
+	/** Current CPUs. */
+	private volatile Double cpus;
+
+	/** Listeners. */
+	private final List<Consumer<Double>> listeners = new CopyOnWriteArrayList<>();
+
+	/** Periodic refresh. */
+	private ScheduledFuture<?> refreshing;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cgroupRoot Cgroup root.
+	 * @param hostCpus   Host CPUs (<code>null</code> to use the processors
+	 *                       available to the JVM).
+	 */
+	public CpuBudget(final Path cgroupRoot, final Integer hostCpus) {
+		super();
+		this.cgroupRoot = cgroupRoot;
+		this.hostCpus = hostCpus;
+		this.cpus = this.detect();
+	}
+
+	/**
+	 * Gets the default CPU budget (from the default cgroup root).
+	 *
+	 * @return The default CPU budget.
+	 */
+	public static CpuBudget getDefault() {
+		return CpuBudget.DEFAULT;
+	}
+
+	/**
+	 * Gets the current CPUs (possibly fractional).
+	 *
+	 * @return The current CPUs.
+	 */
+	public Double getCpus() {
+		return this.cpus;
+	}
+
+	/**
+	 * Reads a cgroup file.
+	 *
+	 * @param  path File path (relative to the cgroup root).
+	 * @return      The file content (<code>null</code> if it cannot be read).
+	 */
+	private String read(
+			final String path) {
+		final Path actualPath = this.cgroupRoot.resolve(path);
+		String content = null;
+		if (Files.isReadable(actualPath)) {
+			try {
+				content = Files.readString(actualPath).trim();
+			}
+			catch (final IOException exception) {
+				CpuBudget.LOGGER.debug("Could not read cgroup file '" + actualPath + "'.", exception);
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Reads the first readable cgroup file.
+	 *
+	 * @param  paths File paths (relative to the cgroup root).
+	 * @return       The file content (<code>null</code> if none can be read).
+	 */
+	private String readFirst(
+			final String... paths) {
+		String content = null;
+		for (final String path : paths) {
+			content = (content == null ? this.read(path) : content);
+		}
+		return content;
+	}
+
+	/**
+	 * Gets the CPUs allowed by a quota.
+	 *
+	 * @param  quota  Quota (negative or "max" if unlimited).
+	 * @param  period Period.
+	 * @return        The CPUs allowed by the quota (<code>null</code> if
+	 *                unlimited).
+	 */
+	private static Double getQuotaCpus(
+			final String quota,
+			final String period) {
+		Double quotaCpus = null;
+		if ((quota != null) && (period != null) && !"max".equals(quota)) {
+			try {
+				final Double actualQuota = Double.parseDouble(quota);
+				final Double actualPeriod = Double.parseDouble(period);
+				quotaCpus = ((actualQuota > 0) && (actualPeriod > 0) ? actualQuota / actualPeriod : null);
+			}
+			catch (final NumberFormatException exception) {
+				CpuBudget.LOGGER.debug("Invalid cgroup CPU quota '" + quota + "/" + period + "'.", exception);
+			}
+		}
+		return quotaCpus;
+	}
+
+	/**
+	 * Gets the number of CPUs in a cpuset list (such as "0-3,6").
+	 *
+	 * @param  cpuset Cpuset list.
+	 * @return        The number of CPUs (<code>null</code> if not available).
+	 */
+	static Integer getCpusetCpus(
+			final String cpuset) {
+		Integer cpusetCpus = null;
+		if ((cpuset != null) && !cpuset.isBlank()) {
+			try {
+				cpusetCpus = 0;
+				for (final String range : cpuset.split(",")) {
+					final String[] bounds = range.trim().split("-");
+					cpusetCpus += (bounds.length == 1 ? 1 : (Integer.parseInt(bounds[1].trim()) - Integer.parseInt(bounds[0].trim())) + 1);
+				}
+			}
+			catch (final NumberFormatException exception) {
+				CpuBudget.LOGGER.debug("Invalid cgroup cpuset '" + cpuset + "'.", exception);
+				cpusetCpus = null;
+			}
+		}
+		return cpusetCpus;
+	}
+
+	/**
+	 * Detects the current CPUs (the lowest of the host CPUs, the cgroup CPU
+	 * quota and the cgroup cpuset).
+	 *
+	 * @return The current CPUs.
+	 */
+	public final Double detect() {
+		Double detectedCpus = (double) (this.hostCpus == null ? Runtime.getRuntime().availableProcessors() : this.hostCpus);
+		Double quotaCpus = null;
+		Integer cpusetCpus = null;
+
+		// Cgroup v2.
+		final String cpuMax = this.read("cpu.max");
+		if (cpuMax != null) {
+			final String[] quotaAndPeriod = cpuMax.split("\\s+");
+			quotaCpus = CpuBudget.getQuotaCpus(quotaAndPeriod[0], (quotaAndPeriod.length > 1 ? quotaAndPeriod[1] : "100000"));
+			cpusetCpus = CpuBudget.getCpusetCpus(this.readFirst("cpuset.cpus.effective", "cpuset.cpus"));
+		}
+
+		// Cgroup v1.
+		else {
+			quotaCpus = CpuBudget.getQuotaCpus(this.readFirst("cpu/cpu.cfs_quota_us", "cpu,cpuacct/cpu.cfs_quota_us"),
+					this.readFirst("cpu/cpu.cfs_period_us", "cpu,cpuacct/cpu.cfs_period_us"));
+			cpusetCpus = CpuBudget.getCpusetCpus(this.readFirst("cpuset/cpuset.effective_cpus", "cpuset/cpuset.cpus"));
+		}
+
+		// Uses the lowest limit.
+		detectedCpus = (quotaCpus == null ? detectedCpus : Math.min(detectedCpus, quotaCpus));
+		detectedCpus = (cpusetCpus == null ? detectedCpus : Math.min(detectedCpus, cpusetCpus));
+		return detectedCpus;
+	}
+
+	/**
+	 * Re-evaluates the CPU budget and notifies the listeners if it changed.
+	 *
+	 * @return If the CPU budget changed.
+	 */
+	public boolean refresh() {
+		final Double previousCpus = this.cpus;
+		final Double currentCpus = this.detect();
+		final boolean changed = !currentCpus.equals(previousCpus);
+		if (changed) {
+			this.cpus = currentCpus;
+			CpuBudget.LOGGER.info("CPU budget changed from " + previousCpus + " to " + currentCpus + ".");
+			for (final Consumer<Double> listener : this.listeners) {
+				try {
+					listener.accept(currentCpus);
+				}
+				catch (final Exception exception) {
+					CpuBudget.LOGGER.error("Could not notify CPU budget change: " + exception.getLocalizedMessage());
+					CpuBudget.LOGGER.debug("Could not notify CPU budget change.", exception);
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Starts re-evaluating the CPU budget periodically.
+	 *
+	 * @param interval Refresh interval.
+	 */
+	public synchronized void start(
+			final Duration interval) {
+		if (this.refreshing == null) {
+			this.refreshing = DynamicThreadPoolFactory.getMaintenanceExecutor().scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(),
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops re-evaluating the CPU budget periodically.
+	 */
+	public synchronized void stop() {
+		if (this.refreshing != null) {
+			this.refreshing.cancel(false);
+			this.refreshing = null;
+		}
+	}
+
+	/**
+	 * Adds a listener for CPU budget changes (and starts re-evaluating the budget
+	 * periodically, if not started yet).
+	 *
+	 * @param listener Listener.
+	 */
+	public void addListener(
+			final Consumer<Double> listener) {
+		this.listeners.add(listener);
+		this.start(CpuBudget.DEFAULT_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * Removes a listener for CPU budget changes.
+	 *
+	 * @param listener Listener.
+	 */
+	public void removeListener(
+			final Consumer<Double> listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CpuBudget [cgroupRoot=" + this.cgroupRoot + ", cpus=" + this.cpus + "]";
+	}
+
+}
@@ -0,0 +1,157 @@
+package org.coldis.library.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Dynamic scheduled thread pool handle. Scheduled tasks are decorated the
+ * same way as the tasks submitted for immediate execution, and instrumented
+ * (and shed) by run if the pool is instrumented.
+ */
+public class DynamicScheduledThreadPool extends DynamicThreadPool implements ScheduledExecutorService {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name             Pool name.
+	 * @param executor         Executor.
+	 * @param metrics          Metrics (<code>null</code> if the pool is not
+	 *                             instrumented).
+	 * @param propagateContext If the {@link ThreadMapContextHolder} attributes
+	 *                             should be propagated to tasks.
+	 */
+	public DynamicScheduledThreadPool(
+			final String name,
+			final ScheduledExecutorService executor,
+			final DynamicThreadPoolMetrics metrics,
+			final Boolean propagateContext) {
+		super(name, executor, metrics, propagateContext);
+	}
+
+	/**
+	 * @see org.coldis.library.thread.DynamicThreadPool#getExecutor()
+	 */
+	@Override
+	public ScheduledExecutorService getExecutor() {
+		return (ScheduledExecutorService) super.getExecutor();
+	}
+
+	/**
+	 * Schedules a task (recording its metrics, if the pool is instrumented).
+	 *
+	 * @param  <FutureType> Future type.
+	 * @param  periodic     If the task is periodic.
+	 * @param  scheduler    Schedules the task (given its instrumentation, which is
+	 *                          <code>null</code> if the pool is not instrumented).
+	 * @return              The scheduled future.
+	 */
+	private <FutureType extends ScheduledFuture<?>> FutureType schedule(
+			final boolean periodic,
+			final Function<DynamicThreadPoolMetrics.ScheduledInstrumentation, FutureType> scheduler) {
+		final DynamicThreadPoolMetrics metrics = this.getMetrics();
+		// If the pool is not instrumented, schedules the task as is.
+		if (metrics == null) {
+			return scheduler.apply(null);
+		}
+		// Otherwise, records the task metrics.
+		final DynamicThreadPoolMetrics.ScheduledInstrumentation instrumentation = metrics.new ScheduledInstrumentation(periodic);
+		metrics.recordSubmitted();
+		try {
+			final FutureType future = scheduler.apply(instrumentation);
+			instrumentation.setFuture(future);
+			return future;
+		}
+		catch (final RejectedExecutionException exception) {
+			metrics.recordRejected();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Decorates a scheduled task.
+	 *
+	 * @param  task            Task.
+	 * @param  instrumentation Instrumentation (<code>null</code> if the pool is
+	 *                             not instrumented).
+	 * @return                 The decorated task.
+	 */
+	private Runnable decorate(
+			final Runnable task,
+			final DynamicThreadPoolMetrics.ScheduledInstrumentation instrumentation) {
+		final Runnable decoratedTask = this.decorate(task);
+		return (instrumentation == null ? decoratedTask : instrumentation.instrument(decoratedTask));
+	}
+
+	/**
+	 * Decorates a scheduled task.
+	 *
+	 * @param  <Type>          Result type.
+	 * @param  task            Task.
+	 * @param  instrumentation Instrumentation (<code>null</code> if the pool is
+	 *                             not instrumented).
+	 * @return                 The decorated task.
+	 */
+	private <Type> Callable<Type> decorate(
+			final Callable<Type> task,
+			final DynamicThreadPoolMetrics.ScheduledInstrumentation instrumentation) {
+		final Callable<Type> decoratedTask = this.decorate(task);
+		return (instrumentation == null ? decoratedTask : instrumentation.instrument(decoratedTask));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#schedule(java.lang.Runnable,
+	 *      long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> schedule(
+			final Runnable command,
+			final long delay,
+			final TimeUnit unit) {
+		return this.schedule(false, instrumentation -> this.getExecutor().schedule(this.decorate(command, instrumentation), delay, unit));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#schedule(java.util.concurrent.Callable,
+	 *      long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public <Type> ScheduledFuture<Type> schedule(
+			final Callable<Type> callable,
+			final long delay,
+			final TimeUnit unit) {
+		return this.schedule(false, instrumentation -> this.getExecutor().schedule(this.decorate(callable, instrumentation), delay, unit));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate(java.lang.Runnable,
+	 *      long, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(
+			final Runnable command,
+			final long initialDelay,
+			final long period,
+			final TimeUnit unit) {
+		return this.schedule(true,
+				instrumentation -> this.getExecutor().scheduleAtFixedRate(this.decorate(command, instrumentation), initialDelay, period, unit));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay(java.lang.Runnable,
+	 *      long, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(
+			final Runnable command,
+			final long initialDelay,
+			final long delay,
+			final TimeUnit unit) {
+		return this.schedule(true,
+				instrumentation -> this.getExecutor().scheduleWithFixedDelay(this.decorate(command, instrumentation), initialDelay, delay, unit));
+	}
+
+}
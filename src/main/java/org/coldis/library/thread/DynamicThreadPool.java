@@ -0,0 +1,286 @@
+package org.coldis.library.thread;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dynamic thread pool handle. Wraps the executor built by
+ * {@link DynamicThreadPoolFactory} and exposes runtime management for it.
+ */
+public class DynamicThreadPool extends AbstractExecutorService {
+
+	/** Pool name. */
+	private final String name;
+
+	/** Executor. */
+	private final ExecutorService executor;
+
+	/** Metrics. */
+	private final DynamicThreadPoolMetrics metrics;
+
+	/** If the thread map context should be propagated to tasks. */
+	private final boolean propagateContext;
+
+	/** Sizing controller. */
+	private volatile DynamicThreadPoolSizingController controller;
+
+	/** Readiness (completed once the pool is warmed up). */
+	private volatile CompletableFuture<Void> readiness = CompletableFuture.completedFuture(null);
+
+	/** Actions run when the pool management stops. */
+	private final List<Runnable> stopActions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name             Pool name.
+	 * @param executor         Executor.
+	 * @param metrics          Metrics (<code>null</code> if the pool is not
+	 *                             instrumented).
+	 * @param propagateContext If the {@link ThreadMapContextHolder} attributes
+	 *                             should be propagated to tasks.
+	 */
+	public DynamicThreadPool(final String name, final ExecutorService executor, final DynamicThreadPoolMetrics metrics, final Boolean propagateContext) {
+		super();
+		this.name = name;
+		this.executor = executor;
+		this.metrics = metrics;
+		this.propagateContext = propagateContext;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name     Pool name.
+	 * @param executor Executor.
+	 */
+	public DynamicThreadPool(final String name, final ExecutorService executor) {
+		this(name, executor, null, false);
+	}
+
+	/**
+	 * Gets the name.
+	 *
+	 * @return The name.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the underlying executor.
+	 *
+	 * @return The underlying executor.
+	 */
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Gets the metrics.
+	 *
+	 * @return The metrics (<code>null</code> if the pool is not instrumented).
+	 */
+	public DynamicThreadPoolMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Gets the sizing controller.
+	 *
+	 * @return The sizing controller (<code>null</code> if the pool is not
+	 *         adaptive).
+	 */
+	public DynamicThreadPoolSizingController getController() {
+		return this.controller;
+	}
+
+	/**
+	 * Sets the sizing controller.
+	 *
+	 * @param controller New sizing controller.
+	 */
+	void setController(
+			final DynamicThreadPoolSizingController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Gets if the pool is ready (its workers are started and warmed up, if the
+	 * pool was built to).
+	 *
+	 * @return If the pool is ready.
+	 */
+	public boolean isReady() {
+		return this.readiness.isDone();
+	}
+
+	/**
+	 * Gets the pool readiness.
+	 *
+	 * @return The pool readiness (completed once the pool is ready).
+	 */
+	public CompletableFuture<Void> getReadiness() {
+		return this.readiness.copy();
+	}
+
+	/**
+	 * Sets the pool readiness.
+	 *
+	 * @param readiness New pool readiness.
+	 */
+	void setReadiness(
+			final CompletableFuture<Void> readiness) {
+		this.readiness = readiness;
+	}
+
+	/**
+	 * Adds an action to run when the pool management stops (on shutdown).
+	 *
+	 * @param stopAction Stop action.
+	 */
+	void addStopAction(
+			final Runnable stopAction) {
+		this.stopActions.add(stopAction);
+	}
+
+	/**
+	 * Gets if the thread map context is propagated to tasks.
+	 *
+	 * @return If the thread map context is propagated to tasks.
+	 */
+	public Boolean getPropagateContext() {
+		return this.propagateContext;
+	}
+
+	/**
+	 * Starts a fan-out on the pool.
+	 *
+	 * @param  <Type> Result type.
+	 * @return        The fan-out.
+	 */
+	public <Type> FanOut<Type> fanOut() {
+		return new FanOut<>(this);
+	}
+
+	/**
+	 * Decorates a task before it is submitted.
+	 *
+	 * @param  task Task.
+	 * @return      The decorated task.
+	 */
+	protected Runnable decorate(
+			final Runnable task) {
+		return (this.propagateContext ? ThreadMapContextHolder.wrap(task) : task);
+	}
+
+	/**
+	 * Decorates a task before it is submitted.
+	 *
+	 * @param  <Type> Result type.
+	 * @param  task   Task.
+	 * @return        The decorated task.
+	 */
+	protected <Type> Callable<Type> decorate(
+			final Callable<Type> task) {
+		return (this.propagateContext ? ThreadMapContextHolder.wrap(task) : task);
+	}
+
+	/**
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(
+			final Runnable command) {
+		final Runnable task = this.decorate(command);
+		// If the pool is not instrumented, submits the task as is.
+		if (this.metrics == null) {
+			this.executor.execute(task);
+		}
+		// Otherwise, records the task metrics.
+		else {
+			this.metrics.recordSubmitted();
+			try {
+				this.executor.execute(this.metrics.instrument(task, command));
+			}
+			catch (final RejectedExecutionException exception) {
+				this.metrics.recordRejected();
+				throw exception;
+			}
+		}
+	}
+
+	/**
+	 * Stops the pool management (sizing and metrics).
+	 */
+	private void stopManagement() {
+		if (this.controller != null) {
+			this.controller.stop();
+		}
+		this.stopActions.forEach(Runnable::run);
+		this.stopActions.clear();
+		if ((this.metrics != null) && !this.executor.isShutdown()) {
+			DynamicThreadPoolMetrics.unbind(this);
+		}
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		this.stopManagement();
+		this.executor.shutdown();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdownNow()
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		this.stopManagement();
+		return this.executor.shutdownNow();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return this.executor.isShutdown();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return this.executor.isTerminated();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long,
+	 *      java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean awaitTermination(
+			final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "DynamicThreadPool [name=" + this.name + (this.metrics == null ? "" : ", " + this.metrics) + "]";
+	}
+
+}
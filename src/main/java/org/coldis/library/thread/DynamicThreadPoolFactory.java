@@ -1,18 +1,24 @@
 package org.coldis.library.thread;
 
+import java.lang.ref.WeakReference;
 import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
 import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.coldis.library.helper.RandomHelper;
@@ -29,6 +35,9 @@ public class DynamicThreadPoolFactory {
 	 */
 	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolFactory.class);
 
+	/** Max queue size for lock-free queues (their ring buffer is preallocated). */
+	public static final Integer MAX_LOCK_FREE_QUEUE_SIZE = 1 << 20;
+
 	/**
 	 * Pool name.
 	 */
@@ -42,6 +51,15 @@ public class DynamicThreadPoolFactory {
 	/** If it is a scheduled thread pool. */
 	private Boolean scheduled;
 
+	/** If a timing wheel should be used by scheduled thread pools. */
+	private Boolean timingWheel;
+
+	/** Timing wheel tick duration. */
+	private Duration tickDuration;
+
+	/** Timing wheel size (buckets per level). */
+	private Integer wheelSize;
+
 	/** If virtual threads should be used. */
 	private Boolean virtual;
 
@@ -80,9 +98,63 @@ public class DynamicThreadPoolFactory {
 	/** Fair queue */
 	private Boolean fairQueue;
 
+	/** If bounded queues should be lock-free. */
+	private Boolean lockFreeQueue;
+
 	/** Keep alive. */
 	private Duration keepAlive;
 
+	/** Admission timeout (bounded virtual thread pools). */
+	private Duration admissionTimeout;
+
+	/** If the thread map context should be propagated to tasks. */
+	private Boolean propagateContext;
+
+	/** If the pool should be instrumented. */
+	private Boolean metrics;
+
+	/** If the pool size should be adjusted at runtime. */
+	private Boolean adaptive;
+
+	/** Min pool size (lower bound for adaptive sizing). */
+	private Integer minPoolSize;
+
+	/** Min pool size CPU multiplier. */
+	private Double minPoolSizeCpuMultiplier;
+
+	/** Adaptive sizing sampling interval. */
+	private Duration adaptiveInterval;
+
+	/** Adaptive sizing target queue wait. */
+	private Duration adaptiveTargetQueueWait;
+
+	/** Saturation policy. */
+	private DynamicThreadPoolSaturationPolicy saturationPolicy;
+
+	/** Saturation timeout (for blocking policies). */
+	private Duration saturationTimeout;
+
+	/** Load shedding target queue wait. */
+	private Duration sheddingTargetQueueWait;
+
+	/** Load shedding interval. */
+	private Duration sheddingInterval;
+
+	/** CPU budget (used by CPU multipliers). */
+	private CpuBudget cpuBudget;
+
+	/** If built pools should be resized when the CPU budget changes. */
+	private Boolean cpuBudgetRescale;
+
+	/** If worker threads should be started when the pool is built. */
+	private Boolean prestart;
+
+	/** Warm-up workload (run once on every worker before the pool is ready). */
+	private Runnable warmUp;
+
+	/** Warm-up timeout. */
+	private Duration warmUpTimeout;
+
 	/**
 	 * Default constructor.
 	 */
@@ -98,6 +170,9 @@ public class DynamicThreadPoolFactory {
 		this.name = factory.getName();
 		this.priority = factory.getPriority();
 		this.scheduled = factory.getScheduled();
+		this.timingWheel = factory.getTimingWheel();
+		this.tickDuration = factory.getTickDuration();
+		this.wheelSize = factory.getWheelSize();
 		this.virtual = factory.getVirtual();
 		this.daemon = factory.getDaemon();
 		this.parallelism = factory.getParallelism();
@@ -110,7 +185,25 @@ public class DynamicThreadPoolFactory {
 		this.maxPoolSizeCpuMultiplier = factory.getMaxPoolSizeCpuMultiplier();
 		this.maxQueueSize = factory.getMaxQueueSize();
 		this.fairQueue = factory.getFairQueue();
+		this.lockFreeQueue = factory.getLockFreeQueue();
 		this.keepAlive = factory.getKeepAlive();
+		this.admissionTimeout = factory.getAdmissionTimeout();
+		this.propagateContext = factory.getPropagateContext();
+		this.metrics = factory.getMetrics();
+		this.adaptive = factory.getAdaptive();
+		this.minPoolSize = factory.getMinPoolSize();
+		this.minPoolSizeCpuMultiplier = factory.getMinPoolSizeCpuMultiplier();
+		this.adaptiveInterval = factory.getAdaptiveInterval();
+		this.adaptiveTargetQueueWait = factory.getAdaptiveTargetQueueWait();
+		this.saturationPolicy = factory.getSaturationPolicy();
+		this.saturationTimeout = factory.getSaturationTimeout();
+		this.sheddingTargetQueueWait = factory.getSheddingTargetQueueWait();
+		this.sheddingInterval = factory.getSheddingInterval();
+		this.cpuBudget = factory.getCpuBudget();
+		this.cpuBudgetRescale = factory.getCpuBudgetRescale();
+		this.prestart = factory.getPrestart();
+		this.warmUp = factory.getWarmUp();
+		this.warmUpTimeout = factory.getWarmUpTimeout();
 	}
 
 	/**
@@ -129,7 +222,7 @@ public class DynamicThreadPoolFactory {
 	 *
 	 * @return The name.
 	 */
-	private String getName() {
+	public String getName() {
 		return (this.name == null ? "thread-pool-" + RandomHelper.getPositiveRandomLongAsString(100L) : this.name);
 	}
 
@@ -173,6 +266,67 @@ public class DynamicThreadPoolFactory {
 		return (this.scheduled == null ? false : this.scheduled);
 	}
 
+	/**
+	 * Sets the timingWheel (if scheduled thread pools use a hashed timing wheel
+	 * instead of a delay queue).
+	 *
+	 * @param timingWheel New timingWheel.
+	 */
+	public DynamicThreadPoolFactory withTimingWheel(
+			final Boolean timingWheel) {
+		this.timingWheel = timingWheel;
+		return this;
+	}
+
+	/**
+	 * Gets the timingWheel.
+	 *
+	 * @return The timingWheel.
+	 */
+	private Boolean getTimingWheel() {
+		return (this.timingWheel == null ? false : this.timingWheel);
+	}
+
+	/**
+	 * Sets the tickDuration (timing wheel resolution).
+	 *
+	 * @param tickDuration New tickDuration.
+	 */
+	public DynamicThreadPoolFactory withTickDuration(
+			final Duration tickDuration) {
+		this.tickDuration = tickDuration;
+		return this;
+	}
+
+	/**
+	 * Gets the tickDuration.
+	 *
+	 * @return The tickDuration.
+	 */
+	private Duration getTickDuration() {
+		return (this.tickDuration == null ? TimingWheelScheduledExecutor.DEFAULT_TICK_DURATION : this.tickDuration);
+	}
+
+	/**
+	 * Sets the wheelSize (timing wheel buckets per level).
+	 *
+	 * @param wheelSize New wheelSize.
+	 */
+	public DynamicThreadPoolFactory withWheelSize(
+			final Integer wheelSize) {
+		this.wheelSize = wheelSize;
+		return this;
+	}
+
+	/**
+	 * Gets the wheelSize.
+	 *
+	 * @return The wheelSize.
+	 */
+	private Integer getWheelSize() {
+		return (this.wheelSize == null ? TimingWheelScheduledExecutor.DEFAULT_WHEEL_SIZE : this.wheelSize);
+	}
+
 	/**
 	 * Sets the virtual.
 	 *
@@ -415,6 +569,28 @@ public class DynamicThreadPoolFactory {
 		return this;
 	}
 
+	/**
+	 * Gets the lockFreeQueue.
+	 *
+	 * @return The lockFreeQueue.
+	 */
+	private Boolean getLockFreeQueue() {
+		return (this.lockFreeQueue == null ? false : this.lockFreeQueue);
+	}
+
+	/**
+	 * Sets the lockFreeQueue (if bounded thread pools should use a lock-free
+	 * array queue instead of a linked blocking queue).
+	 *
+	 * @param  lockFreeQueue New lockFreeQueue.
+	 * @return               The factory.
+	 */
+	public DynamicThreadPoolFactory withLockFreeQueue(
+			final Boolean lockFreeQueue) {
+		this.lockFreeQueue = lockFreeQueue;
+		return this;
+	}
+
 	/**
 	 * Sets the keepAlive.
 	 *
@@ -435,6 +611,423 @@ public class DynamicThreadPoolFactory {
 		return (this.keepAlive == null ? Duration.ofSeconds(60) : this.keepAlive);
 	}
 
+	/**
+	 * Sets the admissionTimeout (how long submission to a virtual thread pool
+	 * waits for a permit before being rejected).
+	 *
+	 * @param admissionTimeout New admissionTimeout.
+	 */
+	public DynamicThreadPoolFactory withAdmissionTimeout(
+			final Duration admissionTimeout) {
+		this.admissionTimeout = admissionTimeout;
+		return this;
+	}
+
+	/**
+	 * Gets the admission timeout.
+	 *
+	 * @return The admission timeout.
+	 */
+	private Duration getAdmissionTimeout() {
+		return this.admissionTimeout;
+	}
+
+	/**
+	 * Sets the propagateContext (if tasks submitted through the pool handle run
+	 * with the {@link ThreadMapContextHolder} attributes of the submitting
+	 * thread).
+	 *
+	 * @param propagateContext New propagateContext.
+	 */
+	public DynamicThreadPoolFactory withPropagateContext(
+			final Boolean propagateContext) {
+		this.propagateContext = propagateContext;
+		return this;
+	}
+
+	/**
+	 * Gets the propagateContext.
+	 *
+	 * @return The propagateContext.
+	 */
+	private Boolean getPropagateContext() {
+		return (this.propagateContext == null ? false : this.propagateContext);
+	}
+
+	/**
+	 * Sets the metrics.
+	 *
+	 * @param metrics New metrics.
+	 */
+	public DynamicThreadPoolFactory withMetrics(
+			final Boolean metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Gets the metrics.
+	 *
+	 * @return The metrics.
+	 */
+	private Boolean getMetrics() {
+		return (this.metrics == null ? true : this.metrics);
+	}
+
+	/**
+	 * Sets the adaptive.
+	 *
+	 * @param adaptive New adaptive.
+	 */
+	public DynamicThreadPoolFactory withAdaptive(
+			final Boolean adaptive) {
+		this.adaptive = adaptive;
+		return this;
+	}
+
+	/**
+	 * Gets the adaptive.
+	 *
+	 * @return The adaptive.
+	 */
+	private Boolean getAdaptive() {
+		return (this.adaptive == null ? false : this.adaptive);
+	}
+
+	/**
+	 * Sets the minPoolSize.
+	 *
+	 * @param minPoolSize New minPoolSize.
+	 */
+	public DynamicThreadPoolFactory withMinPoolSize(
+			final Integer minPoolSize) {
+		this.minPoolSize = minPoolSize;
+		return this;
+	}
+
+	/**
+	 * Gets the min pool size.
+	 *
+	 * @return The min pool size.
+	 */
+	private Integer getMinPoolSize() {
+		return this.minPoolSize;
+	}
+
+	/**
+	 * Sets the minPoolSizeCpuMultiplier.
+	 *
+	 * @param minPoolSizeCpuMultiplier New minPoolSizeCpuMultiplier.
+	 */
+	public DynamicThreadPoolFactory withMinPoolSizeCpuMultiplier(
+			final Double minPoolSizeCpuMultiplier) {
+		this.minPoolSizeCpuMultiplier = minPoolSizeCpuMultiplier;
+		return this;
+	}
+
+	/**
+	 * Gets the min pool size CPU multiplier.
+	 *
+	 * @return The min pool size CPU multiplier.
+	 */
+	private Double getMinPoolSizeCpuMultiplier() {
+		return this.minPoolSizeCpuMultiplier;
+	}
+
+	/**
+	 * Sets the adaptiveInterval.
+	 *
+	 * @param adaptiveInterval New adaptiveInterval.
+	 */
+	public DynamicThreadPoolFactory withAdaptiveInterval(
+			final Duration adaptiveInterval) {
+		this.adaptiveInterval = adaptiveInterval;
+		return this;
+	}
+
+	/**
+	 * Gets the adaptive sizing sampling interval.
+	 *
+	 * @return The adaptive sizing sampling interval.
+	 */
+	private Duration getAdaptiveInterval() {
+		return (this.adaptiveInterval == null ? Duration.ofSeconds(5) : this.adaptiveInterval);
+	}
+
+	/**
+	 * Sets the adaptiveTargetQueueWait.
+	 *
+	 * @param adaptiveTargetQueueWait New adaptiveTargetQueueWait.
+	 */
+	public DynamicThreadPoolFactory withAdaptiveTargetQueueWait(
+			final Duration adaptiveTargetQueueWait) {
+		this.adaptiveTargetQueueWait = adaptiveTargetQueueWait;
+		return this;
+	}
+
+	/**
+	 * Gets the adaptive sizing target queue wait.
+	 *
+	 * @return The adaptive sizing target queue wait.
+	 */
+	private Duration getAdaptiveTargetQueueWait() {
+		return (this.adaptiveTargetQueueWait == null ? Duration.ofMillis(50) : this.adaptiveTargetQueueWait);
+	}
+
+	/**
+	 * Sets the saturationPolicy (what happens when all threads are busy and the
+	 * queue is full).
+	 *
+	 * @param saturationPolicy New saturationPolicy.
+	 */
+	public DynamicThreadPoolFactory withSaturationPolicy(
+			final DynamicThreadPoolSaturationPolicy saturationPolicy) {
+		this.saturationPolicy = saturationPolicy;
+		return this;
+	}
+
+	/**
+	 * Gets the saturationPolicy.
+	 *
+	 * @return The saturationPolicy.
+	 */
+	private DynamicThreadPoolSaturationPolicy getSaturationPolicy() {
+		return (this.saturationPolicy == null ? DynamicThreadPoolSaturationPolicy.ABORT : this.saturationPolicy);
+	}
+
+	/**
+	 * Sets the saturationTimeout (how long a blocked submission waits for room
+	 * in the queue before being rejected).
+	 *
+	 * @param saturationTimeout New saturationTimeout.
+	 */
+	public DynamicThreadPoolFactory withSaturationTimeout(
+			final Duration saturationTimeout) {
+		this.saturationTimeout = saturationTimeout;
+		return this;
+	}
+
+	/**
+	 * Gets the saturationTimeout.
+	 *
+	 * @return The saturationTimeout.
+	 */
+	private Duration getSaturationTimeout() {
+		return (this.saturationTimeout == null ? Duration.ofSeconds(1) : this.saturationTimeout);
+	}
+
+	/**
+	 * Sets the sheddingTargetQueueWait (queue wait above which tasks are shed
+	 * while the pool is overloaded).
+	 *
+	 * @param sheddingTargetQueueWait New sheddingTargetQueueWait.
+	 */
+	public DynamicThreadPoolFactory withSheddingTargetQueueWait(
+			final Duration sheddingTargetQueueWait) {
+		this.sheddingTargetQueueWait = sheddingTargetQueueWait;
+		return this;
+	}
+
+	/**
+	 * Gets the sheddingTargetQueueWait.
+	 *
+	 * @return The sheddingTargetQueueWait.
+	 */
+	private Duration getSheddingTargetQueueWait() {
+		return (this.sheddingTargetQueueWait == null ? Duration.ofMillis(5) : this.sheddingTargetQueueWait);
+	}
+
+	/**
+	 * Sets the sheddingInterval (how long the queue wait must stay above the
+	 * target before tasks are shed).
+	 *
+	 * @param sheddingInterval New sheddingInterval.
+	 */
+	public DynamicThreadPoolFactory withSheddingInterval(
+			final Duration sheddingInterval) {
+		this.sheddingInterval = sheddingInterval;
+		return this;
+	}
+
+	/**
+	 * Gets the sheddingInterval.
+	 *
+	 * @return The sheddingInterval.
+	 */
+	private Duration getSheddingInterval() {
+		return (this.sheddingInterval == null ? Duration.ofMillis(100) : this.sheddingInterval);
+	}
+
+	/**
+	 * Sets the cpuBudget (used by the CPU multipliers).
+	 *
+	 * @param cpuBudget New cpuBudget.
+	 */
+	public DynamicThreadPoolFactory withCpuBudget(
+			final CpuBudget cpuBudget) {
+		this.cpuBudget = cpuBudget;
+		return this;
+	}
+
+	/**
+	 * Gets the cpuBudget.
+	 *
+	 * @return The cpuBudget.
+	 */
+	private CpuBudget getCpuBudget() {
+		return (this.cpuBudget == null ? CpuBudget.getDefault() : this.cpuBudget);
+	}
+
+	/**
+	 * Sets the cpuBudgetRescale (if built pools are resized when the CPU budget
+	 * changes, unless resized at runtime meanwhile; disabled by default).
+	 *
+	 * @param cpuBudgetRescale New cpuBudgetRescale.
+	 */
+	public DynamicThreadPoolFactory withCpuBudgetRescale(
+			final Boolean cpuBudgetRescale) {
+		this.cpuBudgetRescale = cpuBudgetRescale;
+		return this;
+	}
+
+	/**
+	 * Gets the cpuBudgetRescale.
+	 *
+	 * @return The cpuBudgetRescale.
+	 */
+	private Boolean getCpuBudgetRescale() {
+		return (this.cpuBudgetRescale == null ? false : this.cpuBudgetRescale);
+	}
+
+	/**
+	 * Sets the prestart (if worker threads are started when the pool is built,
+	 * instead of on demand).
+	 *
+	 * @param prestart New prestart.
+	 */
+	public DynamicThreadPoolFactory withPrestart(
+			final Boolean prestart) {
+		this.prestart = prestart;
+		return this;
+	}
+
+	/**
+	 * Gets the prestart.
+	 *
+	 * @return The prestart.
+	 */
+	private Boolean getPrestart() {
+		return (this.prestart == null ? false : this.prestart);
+	}
+
+	/**
+	 * Sets the warmUp (workload run once on every worker before the pool is
+	 * ready, see {@link DynamicThreadPool#isReady()}).
+	 *
+	 * @param warmUp New warmUp.
+	 */
+	public DynamicThreadPoolFactory withWarmUp(
+			final Runnable warmUp) {
+		this.warmUp = warmUp;
+		return this;
+	}
+
+	/**
+	 * Gets the warmUp.
+	 *
+	 * @return The warmUp.
+	 */
+	private Runnable getWarmUp() {
+		return this.warmUp;
+	}
+
+	/**
+	 * Sets the warmUpTimeout (how long warm-up tasks wait for each other).
+	 *
+	 * @param warmUpTimeout New warmUpTimeout.
+	 */
+	public DynamicThreadPoolFactory withWarmUpTimeout(
+			final Duration warmUpTimeout) {
+		this.warmUpTimeout = warmUpTimeout;
+		return this;
+	}
+
+	/**
+	 * Gets the warmUpTimeout.
+	 *
+	 * @return The warmUpTimeout.
+	 */
+	private Duration getWarmUpTimeout() {
+		return (this.warmUpTimeout == null ? Duration.ofMinutes(1) : this.warmUpTimeout);
+	}
+
+	/**
+	 * Rescales a built pool on CPU budget changes. The pool is only weakly
+	 * referenced (so the budget does not keep it alive), and pools resized at
+	 * runtime since the last rescale are left as they are.
+	 */
+	private static final class CpuBudgetRescaler implements Consumer<Double> {
+
+		/** Pool configuration. */
+		private final DynamicThreadPoolFactory configuration;
+
+		/** CPU budget. */
+		private final CpuBudget cpuBudget;
+
+		/** Pool. */
+		private final WeakReference<DynamicThreadPool> pool;
+
+		/** Core pool size (or parallelism) last applied. */
+		private int corePoolSize;
+
+		/** Max pool size (or parallelism) last applied. */
+		private int maxPoolSize;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param configuration Pool configuration.
+		 * @param cpuBudget     CPU budget.
+		 * @param pool          Pool.
+		 */
+		private CpuBudgetRescaler(final DynamicThreadPoolFactory configuration, final CpuBudget cpuBudget, final DynamicThreadPool pool) {
+			super();
+			this.configuration = configuration;
+			this.cpuBudget = cpuBudget;
+			this.pool = new WeakReference<>(pool);
+			final ExecutorService executor = DynamicThreadPoolFactory.getSizedExecutor(pool);
+			this.corePoolSize = DynamicThreadPoolFactory.getCorePoolSize(executor);
+			this.maxPoolSize = DynamicThreadPoolFactory.getMaxPoolSize(executor);
+		}
+
+		/**
+		 * @see java.util.function.Consumer#accept(java.lang.Object)
+		 */
+		@Override
+		public synchronized void accept(
+				final Double cpus) {
+			final DynamicThreadPool actualPool = this.pool.get();
+			// Pools no longer referenced stop listening.
+			if (actualPool == null) {
+				this.cpuBudget.removeListener(this);
+			}
+			else {
+				final ExecutorService executor = DynamicThreadPoolFactory.getSizedExecutor(actualPool);
+				if ((actualPool.getController() == null) && ((DynamicThreadPoolFactory.getCorePoolSize(executor) != this.corePoolSize)
+						|| (DynamicThreadPoolFactory.getMaxPoolSize(executor) != this.maxPoolSize))) {
+					DynamicThreadPoolFactory.LOGGER
+							.info("Thread pool '" + actualPool.getName() + "' was resized at runtime, so it is not rescaled for " + cpus + " CPUs.");
+				}
+				else {
+					this.configuration.rescale(actualPool, executor);
+					this.corePoolSize = DynamicThreadPoolFactory.getCorePoolSize(executor);
+					this.maxPoolSize = DynamicThreadPoolFactory.getMaxPoolSize(executor);
+				}
+			}
+		}
+
+	}
+
 	/** Configurable thread factory. */
 	static class ConfigurableThreadFactory implements ThreadFactory {
 
@@ -449,18 +1042,23 @@ public class DynamicThreadPoolFactory {
 		private final ThreadFactory delegate;
 
 		/** Name prefix. */
-		private String namePrefix;
+		private final String namePrefix;
 
 		/** Priority. */
 		private final Integer priority;
 
+		/** Daemon. */
+		private final Boolean daemon;
+
 		/**
 		 * Delegate constructor.
 		 */
-		public ConfigurableThreadFactory(final ThreadFactory delegate, final String namePrefix, final Integer priority) {
+		public ConfigurableThreadFactory(final ThreadFactory delegate, final String namePrefix, final Integer priority, final Boolean daemon) {
 			super();
 			this.delegate = delegate;
+			this.namePrefix = namePrefix;
 			this.priority = priority;
+			this.daemon = daemon;
 		}
 
 		/**
@@ -473,6 +1071,10 @@ public class DynamicThreadPoolFactory {
 			final String name = (this.namePrefix + "-" + this.threadNumber.getAndIncrement());
 			newThread.setName(name);
 			newThread.setPriority(this.priority);
+			// Virtual threads are always daemon.
+			if (!newThread.isVirtual()) {
+				newThread.setDaemon(this.daemon);
+			}
 			return newThread;
 		}
 
@@ -492,18 +1094,27 @@ public class DynamicThreadPoolFactory {
 		private final ForkJoinWorkerThreadFactory delegate;
 
 		/** Name prefix. */
-		private String namePrefix;
+		private final String namePrefix;
 
 		/** Priority. */
 		private final Integer priority;
 
+		/** Daemon. */
+		private final Boolean daemon;
+
 		/**
 		 * Delegate constructor.
 		 */
-		public ConfigurableForkJoinWorkerThreadFactory(final ForkJoinWorkerThreadFactory delegate, final String namePrefix, final Integer priority) {
+		public ConfigurableForkJoinWorkerThreadFactory(
+				final ForkJoinWorkerThreadFactory delegate,
+				final String namePrefix,
+				final Integer priority,
+				final Boolean daemon) {
 			super();
 			this.delegate = delegate;
+			this.namePrefix = namePrefix;
 			this.priority = priority;
+			this.daemon = daemon;
 		}
 
 		/**
@@ -516,71 +1127,414 @@ public class DynamicThreadPoolFactory {
 			final String name = (this.namePrefix + "-" + this.threadNumber.getAndIncrement());
 			newThread.setName(name);
 			newThread.setPriority(this.priority);
+			newThread.setDaemon(this.daemon);
 			return newThread;
 		}
 
 	}
 
 	/**
-	 * Builds the thread pool.
+	 * Gets the actual factory (with sizes resolved against the available
+	 * processors).
 	 *
-	 * @return The created thread pool.
+	 * @return The actual factory.
 	 */
-	public Executor build() {
-		Executor executor = null;
+	private DynamicThreadPoolFactory getActualFactory() {
 		// Gets the parameters.
+		final Double cpus = this.getCpuBudget().getCpus();
 		Integer actualParallelism = ((this.getParallelism() == null) || (this.getParallelism() < 0)
-				? (this.getParallelismCpuMultiplier() == null ? null
-						: ((Double) (((Integer) Runtime.getRuntime().availableProcessors()).doubleValue() * this.getParallelismCpuMultiplier())).intValue())
+				? (this.getParallelismCpuMultiplier() == null ? null : DynamicThreadPoolFactory.getCpuBasedSize(cpus, this.getParallelismCpuMultiplier()))
 				: this.getParallelism());
 		actualParallelism = (actualParallelism == null ? null : Math.max(actualParallelism, 1));
 		Integer actualMinRunnable = ((this.getMinRunnable() == null) || (this.getMinRunnable() < 0)
-				? (((Double) (((Integer) Runtime.getRuntime().availableProcessors()).doubleValue() * this.getMinRunnableCpuMultiplier())).intValue())
+				? DynamicThreadPoolFactory.getCpuBasedSize(cpus, this.getMinRunnableCpuMultiplier())
 				: this.getMinRunnable());
 		actualMinRunnable = (actualMinRunnable == null ? null : Math.max(actualMinRunnable, 1));
 		Integer actualCorePoolSize = ((this.getCorePoolSize() == null) || (this.getCorePoolSize() < 0)
-				? ((Double) (((Integer) Runtime.getRuntime().availableProcessors()).doubleValue() * this.getCorePoolSizeCpuMultiplier())).intValue()
+				? DynamicThreadPoolFactory.getCpuBasedSize(cpus, this.getCorePoolSizeCpuMultiplier())
 				: this.getCorePoolSize());
 		actualCorePoolSize = (actualParallelism == null ? actualCorePoolSize : Math.max(actualParallelism, actualCorePoolSize));
 		Integer actualMaxPoolSize = ((this.getMaxPoolSize() == null) || (this.getMaxPoolSize() < 0)
-				? (this.getMaxPoolSizeCpuMultiplier() == null ? Integer.MAX_VALUE
-						: ((Double) (((Integer) Runtime.getRuntime().availableProcessors()).doubleValue() * this.getMaxPoolSizeCpuMultiplier())).intValue())
+				? (this.getMaxPoolSizeCpuMultiplier() == null ? Integer.MAX_VALUE : DynamicThreadPoolFactory.getCpuBasedSize(cpus, this.getMaxPoolSizeCpuMultiplier()))
 				: this.getMaxPoolSize());
 		actualMaxPoolSize = (Math.max(actualCorePoolSize, actualMaxPoolSize));
-		final Long actualKeepAliveMillis = this.getKeepAlive().toMillis();
+		Integer actualMinPoolSize = ((this.getMinPoolSize() == null) || (this.getMinPoolSize() < 0)
+				? (this.getMinPoolSizeCpuMultiplier() == null ? 1 : DynamicThreadPoolFactory.getCpuBasedSize(cpus, this.getMinPoolSizeCpuMultiplier()))
+				: this.getMinPoolSize());
+		actualMinPoolSize = Math.max(Math.min(actualMinPoolSize, (actualParallelism == null ? actualCorePoolSize : actualParallelism)), 1);
+		return new DynamicThreadPoolFactory(this).withParallelism(actualParallelism).withMinRunnable(actualMinRunnable).withCorePoolSize(actualCorePoolSize)
+				.withMaxPoolSize(actualMaxPoolSize).withMinPoolSize(actualMinPoolSize);
+	}
+
+	/**
+	 * Gets a size based on the CPU budget (at least 1, even for fractional
+	 * budgets).
+	 *
+	 * @param  cpus       CPUs.
+	 * @param  multiplier CPU multiplier.
+	 * @return            The size.
+	 */
+	private static Integer getCpuBasedSize(
+			final Double cpus,
+			final Double multiplier) {
+		return Math.max(((Double) (cpus * multiplier)).intValue(), 1);
+	}
+
+	/**
+	 * Gets the max size for adaptive sizing.
+	 *
+	 * @param  actualFactory Actual factory.
+	 * @return               The max size for adaptive sizing.
+	 */
+	private static Integer getAdaptiveMaxSize(
+			final DynamicThreadPoolFactory actualFactory) {
+		return (actualFactory.getParallelism() == null
+				? (actualFactory.getMaxPoolSize() == Integer.MAX_VALUE ? actualFactory.getCorePoolSize() : actualFactory.getMaxPoolSize())
+				: (actualFactory.getMaxPoolSize() == Integer.MAX_VALUE ? actualFactory.getParallelism()
+						: Math.min(actualFactory.getMaxPoolSize(), DynamicThreadPoolSizingController.MAX_PARALLELISM)));
+	}
+
+	/**
+	 * Gets the executor that is sized for a pool (timing wheel pools are sized by
+	 * their worker pool).
+	 *
+	 * @param  pool Pool.
+	 * @return      The sized executor.
+	 */
+	private static ExecutorService getSizedExecutor(
+			final DynamicThreadPool pool) {
+		return (pool.getExecutor() instanceof final TimingWheelScheduledExecutor timingWheelExecutor ? timingWheelExecutor.getWorker() : pool.getExecutor());
+	}
+
+	/**
+	 * Gets the core pool size (or parallelism) of an executor.
+	 *
+	 * @param  executor Executor.
+	 * @return          The core pool size (-1 if not sized).
+	 */
+	private static int getCorePoolSize(
+			final ExecutorService executor) {
+		return (executor instanceof final ForkJoinPool forkJoinPool ? forkJoinPool.getParallelism()
+				: (executor instanceof final ThreadPoolExecutor threadPoolExecutor ? threadPoolExecutor.getCorePoolSize() : -1));
+	}
+
+	/**
+	 * Gets the max pool size (or parallelism) of an executor.
+	 *
+	 * @param  executor Executor.
+	 * @return          The max pool size (-1 if not sized).
+	 */
+	private static int getMaxPoolSize(
+			final ExecutorService executor) {
+		return (executor instanceof final ForkJoinPool forkJoinPool ? forkJoinPool.getParallelism()
+				: (executor instanceof final ThreadPoolExecutor threadPoolExecutor ? threadPoolExecutor.getMaximumPoolSize() : -1));
+	}
+
+	/**
+	 * Resizes a pool to the sizes resolved against the current CPU budget.
+	 *
+	 * @param pool     Pool.
+	 * @param executor Sized executor.
+	 */
+	private void rescale(
+			final DynamicThreadPool pool,
+			final ExecutorService executor) {
+		final DynamicThreadPoolFactory actualFactory = this.getActualFactory();
+		// Adaptive pools get new bounds.
+		if (pool.getController() != null) {
+			pool.getController().setBounds(actualFactory.getMinPoolSize(), DynamicThreadPoolFactory.getAdaptiveMaxSize(actualFactory));
+		}
+		else if (executor instanceof final ForkJoinPool forkJoinPool) {
+			forkJoinPool.setParallelism(Math.min(actualFactory.getParallelism(), DynamicThreadPoolSizingController.MAX_PARALLELISM));
+		}
+		else if (executor instanceof final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor) {
+			scheduledThreadPoolExecutor.setCorePoolSize(actualFactory.getCorePoolSize());
+		}
+		else if (executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			// Max size must never be lower than the core size.
+			if (actualFactory.getCorePoolSize() > threadPoolExecutor.getMaximumPoolSize()) {
+				threadPoolExecutor.setMaximumPoolSize(actualFactory.getMaxPoolSize());
+				threadPoolExecutor.setCorePoolSize(actualFactory.getCorePoolSize());
+			}
+			else {
+				threadPoolExecutor.setCorePoolSize(actualFactory.getCorePoolSize());
+				threadPoolExecutor.setMaximumPoolSize(actualFactory.getMaxPoolSize());
+			}
+		}
+		DynamicThreadPoolFactory.LOGGER.info("Thread pool '" + pool.getName() + "' rescaled for " + this.getCpuBudget().getCpus() + " CPUs.");
+	}
+
+	/**
+	 * Builds the executor for an actual factory.
+	 *
+	 * @param  actualFactory Actual factory.
+	 * @return               The created executor.
+	 */
+	private ExecutorService buildExecutor(
+			final DynamicThreadPoolFactory actualFactory) {
+		ExecutorService executor = null;
+		final Long actualKeepAliveMillis = actualFactory.getKeepAlive().toMillis();
 		final TimeUnit actualKeepAliveUnit = TimeUnit.MILLISECONDS;
-		final ThreadFactory factory = (this.getVirtual() ? Thread.ofVirtual().factory() : Thread.ofPlatform().factory());
-		final DynamicThreadPoolFactory actualFactory = new DynamicThreadPoolFactory(this).withParallelism(actualParallelism).withMinRunnable(actualMinRunnable)
-				.withCorePoolSize(actualCorePoolSize).withMaxPoolSize(actualMaxPoolSize);
-		DynamicThreadPoolFactory.LOGGER.info("Thread pool '" + this.getName() + "' created: '" + ToStringBuilder.reflectionToString(actualFactory) + "'.");
+		final ThreadFactory factory = (actualFactory.getVirtual() ? Thread.ofVirtual().factory() : Thread.ofPlatform().factory());
+		DynamicThreadPoolFactory.LOGGER.info("Thread pool '" + actualFactory.getName() + "' created: '" + ToStringBuilder.reflectionToString(actualFactory) + "'.");
 
 		// If parallelism is set.
-		if (actualParallelism != null) {
-			final ForkJoinPool forkJoinPool = new ForkJoinPool(actualParallelism,
-					new ConfigurableForkJoinWorkerThreadFactory(ForkJoinPool.defaultForkJoinWorkerThreadFactory, this.getName(), this.getPriority()), null,
-					true, actualCorePoolSize, actualMaxPoolSize, actualMinRunnable, null, actualKeepAliveMillis, actualKeepAliveUnit);
+		if (actualFactory.getParallelism() != null) {
+			final ForkJoinPool forkJoinPool = new ForkJoinPool(actualFactory.getParallelism(),
+					new ConfigurableForkJoinWorkerThreadFactory(ForkJoinPool.defaultForkJoinWorkerThreadFactory, actualFactory.getName(),
+							actualFactory.getPriority(), actualFactory.getDaemon()),
+					null, true, actualFactory.getCorePoolSize(), actualFactory.getMaxPoolSize(), actualFactory.getMinRunnable(), null, actualKeepAliveMillis,
+					actualKeepAliveUnit);
 			executor = forkJoinPool;
 		}
 
+		// If it is a scheduled thread pool using a timing wheel, due tasks run on
+		// a worker pool (with a fixed size, as a scheduled thread pool). The worker
+		// rejects tasks right away, so the ticker never runs or waits for them.
+		else if (actualFactory.getScheduled() && actualFactory.getTimingWheel()) {
+			final DynamicThreadPoolFactory workerFactory = new DynamicThreadPoolFactory(actualFactory).withScheduled(false)
+					.withMaxPoolSize(actualFactory.getMaxPoolSize() == Integer.MAX_VALUE ? actualFactory.getCorePoolSize() : actualFactory.getMaxPoolSize())
+					.withSaturationPolicy(DynamicThreadPoolSaturationPolicy.ABORT).withAdmissionTimeout(null);
+			final TimingWheelScheduledExecutor timingWheelExecutor = new TimingWheelScheduledExecutor(this.buildExecutor(workerFactory),
+					new ConfigurableThreadFactory(Thread.ofPlatform().factory(), actualFactory.getName() + "-ticker", actualFactory.getPriority(), true),
+					actualFactory.getTickDuration(), actualFactory.getWheelSize());
+			executor = timingWheelExecutor;
+		}
+
 		// If it is a scheduled thread pool.
-		else if (this.getScheduled()) {
-			final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(actualCorePoolSize,
-					new ConfigurableThreadFactory(factory, this.getName(), this.getPriority()));
+		else if (actualFactory.getScheduled()) {
+			final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(actualFactory.getCorePoolSize(),
+					new ConfigurableThreadFactory(factory, actualFactory.getName(), actualFactory.getPriority(), actualFactory.getDaemon()),
+					actualFactory.getSaturationPolicy().getHandler(actualFactory.getSaturationTimeout()));
 			executor = scheduledThreadPoolExecutor;
 		}
 
+		// If virtual threads should be used, creates a thread per task (bounded by
+		// the max pool size and max queue size). Blocking on saturation is done
+		// by the admission timeout.
+		else if (actualFactory.getVirtual()) {
+			final Duration actualAdmissionTimeout = ((actualFactory.getAdmissionTimeout() == null)
+					&& (actualFactory.getSaturationPolicy() == DynamicThreadPoolSaturationPolicy.BLOCK) ? actualFactory.getSaturationTimeout()
+							: actualFactory.getAdmissionTimeout());
+			final BoundedVirtualThreadExecutor virtualThreadExecutor = new BoundedVirtualThreadExecutor(
+					new ConfigurableThreadFactory(factory, actualFactory.getName(), actualFactory.getPriority(), actualFactory.getDaemon()),
+					actualFactory.getMaxPoolSize(), actualFactory.getMaxQueueSize(), actualAdmissionTimeout);
+			executor = virtualThreadExecutor;
+		}
+
 		// Otherwise, uses a common pool.
 		else {
-			final BlockingQueue<Runnable> queue = ((actualMaxPoolSize == null) || (actualMaxPoolSize == Integer.MAX_VALUE)
-					? new SynchronousQueue<>(this.getFairQueue())
-					: new LinkedBlockingQueue<>(this.getMaxQueueSize()));
-			final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(actualCorePoolSize, actualMaxPoolSize, actualKeepAliveMillis,
-					actualKeepAliveUnit, queue, new ConfigurableThreadFactory(factory, this.getName(), this.getPriority()));
+			final BlockingQueue<Runnable> queue = ((actualFactory.getMaxPoolSize() == null) || (actualFactory.getMaxPoolSize() == Integer.MAX_VALUE)
+					? new SynchronousQueue<>(actualFactory.getFairQueue())
+					: (actualFactory.getLockFreeQueue() && (actualFactory.getMaxQueueSize() <= DynamicThreadPoolFactory.MAX_LOCK_FREE_QUEUE_SIZE)
+							? new MpmcArrayBlockingQueue<>(actualFactory.getMaxQueueSize())
+							: new LinkedBlockingQueue<>(actualFactory.getMaxQueueSize())));
+			if (actualFactory.getLockFreeQueue() && !(queue instanceof MpmcArrayBlockingQueue)) {
+				DynamicThreadPoolFactory.LOGGER.warn("Lock-free queue requires a bounded max pool size and a max queue size up to "
+						+ DynamicThreadPoolFactory.MAX_LOCK_FREE_QUEUE_SIZE + " for thread pool '" + actualFactory.getName()
+						+ "', a regular queue is used instead.");
+			}
+			final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(actualFactory.getCorePoolSize(), actualFactory.getMaxPoolSize(),
+					actualKeepAliveMillis, actualKeepAliveUnit, queue,
+					new ConfigurableThreadFactory(factory, actualFactory.getName(), actualFactory.getPriority(), actualFactory.getDaemon()),
+					actualFactory.getSaturationPolicy().getHandler(actualFactory.getSaturationTimeout()));
 			executor = threadPoolExecutor;
 		}
 
+		// Fork join and virtual thread pools have no rejection handler.
+		if (((executor instanceof ForkJoinPool) || (executor instanceof BoundedVirtualThreadExecutor))
+				&& ((actualFactory.getSaturationPolicy() == DynamicThreadPoolSaturationPolicy.CALLER_RUNS)
+						|| (actualFactory.getSaturationPolicy() == DynamicThreadPoolSaturationPolicy.DISCARD_OLDEST))) {
+			DynamicThreadPoolFactory.LOGGER.warn("Saturation policy '" + actualFactory.getSaturationPolicy() + "' is not supported for thread pool '"
+					+ actualFactory.getName() + "', tasks are rejected instead.");
+		}
+
 		// Returns the executor.
 		return executor;
 	}
 
+	/**
+	 * Builds the thread pool.
+	 *
+	 * @return The created thread pool.
+	 */
+	public Executor build() {
+		return this.buildExecutor(this.getActualFactory());
+	}
+
+	/**
+	 * Builds the thread pool handle, which allows the pool to be managed at
+	 * runtime.
+	 *
+	 * @return The created thread pool handle.
+	 */
+	public DynamicThreadPool buildPool() {
+		final DynamicThreadPoolFactory actualFactory = this.getActualFactory();
+		final ExecutorService executor = this.buildExecutor(actualFactory);
+		// Adaptive sizing and load shedding rely on the pool metrics.
+		final LatencyLoadShedder shedder = (actualFactory.getSaturationPolicy() == DynamicThreadPoolSaturationPolicy.SHED_LATENCY
+				? new LatencyLoadShedder(actualFactory.getSheddingTargetQueueWait(), actualFactory.getSheddingInterval())
+				: null);
+		final DynamicThreadPoolMetrics metrics = (actualFactory.getMetrics() || actualFactory.getAdaptive() || (shedder != null)
+				? new DynamicThreadPoolMetrics(executor, shedder)
+				: null);
+		final DynamicThreadPool pool = (executor instanceof final ScheduledExecutorService scheduledExecutor
+				? new DynamicScheduledThreadPool(actualFactory.getName(), scheduledExecutor, metrics, actualFactory.getPropagateContext())
+				: new DynamicThreadPool(actualFactory.getName(), executor, metrics, actualFactory.getPropagateContext()));
+		if (pool.getMetrics() != null) {
+			DynamicThreadPoolMetrics.bind(pool);
+		}
+
+		// If the pool should be adaptive, starts the sizing controller.
+		if (actualFactory.getAdaptive()) {
+			// Scheduled pools hold delayed tasks in the queue and virtual thread pools
+			// create a thread per task, so they are not resized.
+			if ((executor instanceof ScheduledExecutorService) || (executor instanceof BoundedVirtualThreadExecutor)) {
+				DynamicThreadPoolFactory.LOGGER.warn("Adaptive sizing is not supported for thread pool '" + actualFactory.getName() + "'.");
+			}
+			else {
+				final DynamicThreadPoolSizingController controller = new DynamicThreadPoolSizingController(pool, actualFactory.getMinPoolSize(),
+						DynamicThreadPoolFactory.getAdaptiveMaxSize(actualFactory), actualFactory.getAdaptiveTargetQueueWait());
+				pool.setController(controller);
+				controller.start(actualFactory.getAdaptiveInterval());
+			}
+		}
+
+		// If the pool should follow the CPU budget, resizes it on changes (virtual
+		// thread pools are not bound to CPUs).
+		if (actualFactory.getCpuBudgetRescale() && !(executor instanceof BoundedVirtualThreadExecutor)) {
+			final CpuBudgetRescaler rescaler = new CpuBudgetRescaler(new DynamicThreadPoolFactory(this), actualFactory.getCpuBudget(), pool);
+			actualFactory.getCpuBudget().addListener(rescaler);
+			pool.addStopAction(() -> actualFactory.getCpuBudget().removeListener(rescaler));
+		}
+
+		// Starts and warms up the workers (the pool is ready afterwards).
+		pool.setReadiness(DynamicThreadPoolWarmUp.start(pool, actualFactory.getPrestart(), actualFactory.getWarmUp(), actualFactory.getWarmUpTimeout()));
+
+		// Returns the pool.
+		return pool;
+	}
+
+	/**
+	 * Builds the thread pool in the default registry (or gets the live pool with
+	 * the same name and configuration).
+	 *
+	 * @return The registered thread pool.
+	 */
+	public DynamicThreadPool buildRegistered() {
+		return DynamicThreadPoolRegistry.getDefault().getOrBuild(this);
+	}
+
+	/**
+	 * Builds a keyed serial executor on top of a new thread pool (tasks for the
+	 * same key run in order, and tasks for different keys run in parallel).
+	 *
+	 * @param  <TypeKey> Key type.
+	 * @return           The created keyed serial executor.
+	 */
+	public <TypeKey> KeyedSerialExecutor<TypeKey> buildKeyedSerial() {
+		return new KeyedSerialExecutor<>(this.buildPool());
+	}
+
+	/**
+	 * Builds a batching executor on top of a new thread pool (items are handed to
+	 * the handler in batches).
+	 *
+	 * @param  <TypeItem>         Item type.
+	 * @param  handler            Batch handler.
+	 * @param  maxBatchSize       Max batch size.
+	 * @param  linger             Linger time (partial batches are dispatched
+	 *                                after it).
+	 * @param  maxInFlightBatches Max batches running at the same time.
+	 * @return                    The created batching executor.
+	 */
+	public <TypeItem> BatchingExecutor<TypeItem> buildBatching(
+			final Consumer<List<TypeItem>> handler,
+			final Integer maxBatchSize,
+			final Duration linger,
+			final Integer maxInFlightBatches) {
+		return new BatchingExecutor<>(this.buildPool(), handler, maxBatchSize, linger, maxInFlightBatches);
+	}
+
+	/**
+	 * Builds a batching executor on top of a new thread pool, with the default
+	 * batch size, linger time and max in-flight batches.
+	 *
+	 * @param  <TypeItem> Item type.
+	 * @param  handler    Batch handler.
+	 * @return            The created batching executor.
+	 */
+	public <TypeItem> BatchingExecutor<TypeItem> buildBatching(
+			final Consumer<List<TypeItem>> handler) {
+		return new BatchingExecutor<>(this.buildPool(), handler);
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.name, this.priority, this.scheduled, this.timingWheel, this.tickDuration, this.wheelSize, this.virtual, this.daemon,
+				this.parallelism, this.parallelismCpuMultiplier, this.minRunnable, this.minRunnableCpuMultiplier, this.corePoolSize,
+				this.corePoolSizeCpuMultiplier, this.maxPoolSize, this.maxPoolSizeCpuMultiplier, this.maxQueueSize, this.fairQueue, this.lockFreeQueue,
+				this.keepAlive, this.admissionTimeout, this.propagateContext, this.metrics, this.adaptive, this.minPoolSize,
+				this.minPoolSizeCpuMultiplier, this.adaptiveInterval, this.adaptiveTargetQueueWait, this.saturationPolicy, this.saturationTimeout,
+				this.sheddingTargetQueueWait, this.sheddingInterval, this.cpuBudget, this.cpuBudgetRescale, this.prestart, this.warmUp, this.warmUpTimeout);
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(
+			final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DynamicThreadPoolFactory)) {
+			return false;
+		}
+		final DynamicThreadPoolFactory other = (DynamicThreadPoolFactory) obj;
+		return Objects.equals(this.name, other.name) && Objects.equals(this.priority, other.priority)
+				&& Objects.equals(this.timingWheel, other.timingWheel) && Objects.equals(this.tickDuration, other.tickDuration)
+				&& Objects.equals(this.wheelSize, other.wheelSize)
+				&& Objects.equals(this.scheduled, other.scheduled) && Objects.equals(this.virtual, other.virtual)
+				&& Objects.equals(this.daemon, other.daemon) && Objects.equals(this.parallelism, other.parallelism)
+				&& Objects.equals(this.parallelismCpuMultiplier, other.parallelismCpuMultiplier) && Objects.equals(this.minRunnable, other.minRunnable)
+				&& Objects.equals(this.minRunnableCpuMultiplier, other.minRunnableCpuMultiplier) && Objects.equals(this.corePoolSize, other.corePoolSize)
+				&& Objects.equals(this.corePoolSizeCpuMultiplier, other.corePoolSizeCpuMultiplier) && Objects.equals(this.maxPoolSize, other.maxPoolSize)
+				&& Objects.equals(this.maxPoolSizeCpuMultiplier, other.maxPoolSizeCpuMultiplier) && Objects.equals(this.maxQueueSize, other.maxQueueSize)
+				&& Objects.equals(this.fairQueue, other.fairQueue) && Objects.equals(this.lockFreeQueue, other.lockFreeQueue)
+				&& Objects.equals(this.keepAlive, other.keepAlive)
+				&& Objects.equals(this.admissionTimeout, other.admissionTimeout) && Objects.equals(this.propagateContext, other.propagateContext)
+				&& Objects.equals(this.metrics, other.metrics) && Objects.equals(this.adaptive, other.adaptive)
+				&& Objects.equals(this.minPoolSize, other.minPoolSize) && Objects.equals(this.minPoolSizeCpuMultiplier, other.minPoolSizeCpuMultiplier)
+				&& Objects.equals(this.adaptiveInterval, other.adaptiveInterval)
+				&& Objects.equals(this.adaptiveTargetQueueWait, other.adaptiveTargetQueueWait)
+				&& Objects.equals(this.saturationPolicy, other.saturationPolicy) && Objects.equals(this.saturationTimeout, other.saturationTimeout)
+				&& Objects.equals(this.sheddingTargetQueueWait, other.sheddingTargetQueueWait)
+				&& Objects.equals(this.sheddingInterval, other.sheddingInterval) && Objects.equals(this.cpuBudget, other.cpuBudget)
+				&& Objects.equals(this.cpuBudgetRescale, other.cpuBudgetRescale) && Objects.equals(this.prestart, other.prestart)
+				&& Objects.equals(this.warmUp, other.warmUp) && Objects.equals(this.warmUpTimeout, other.warmUpTimeout);
+	}
+
+	/**
+	 * Gets the shared maintenance executor (used for periodic background work,
+	 * such as pool sizing).
+	 *
+	 * @return The shared maintenance executor.
+	 */
+	public static ScheduledExecutorService getMaintenanceExecutor() {
+		return MaintenanceExecutorHolder.EXECUTOR;
+	}
+
+	/** Lazy holder for the maintenance executor. */
+	private static class MaintenanceExecutorHolder {
+
+		/** Maintenance executor. */
+		private static final ScheduledExecutorService EXECUTOR = (ScheduledExecutorService) new DynamicThreadPoolFactory()
+				.withName("dynamic-thread-pool-maintenance").withScheduled(true).withDaemon(true).withCorePoolSize(1).build();
+
+	}
+
 }
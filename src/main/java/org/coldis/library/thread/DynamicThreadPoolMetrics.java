@@ -0,0 +1,479 @@
+package org.coldis.library.thread;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dynamic thread pool metrics. Counters and latency histograms are updated by
+ * the tasks submitted through the {@link DynamicThreadPool} handle, and gauges
+ * are read from the underlying executor on demand.
+ */
+public class DynamicThreadPoolMetrics {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolMetrics.class);
+
+	/** Binders (registered and discovered via {@link ServiceLoader}). */
+	private static final List<DynamicThreadPoolMetricsBinder> BINDERS = new CopyOnWriteArrayList<>(
+			ServiceLoader.load(DynamicThreadPoolMetricsBinder.class).stream().map(ServiceLoader.Provider::get).toList());
+
+	/** Executor. */
+	private final ExecutorService executor;
+
+	/** Submitted tasks. */
+	private final LongAdder submitted = new LongAdder();
+
+	/** Completed tasks. */
+	private final LongAdder completed = new LongAdder();
+
+	/** Failed tasks. */
+	private final LongAdder failed = new LongAdder();
+
+	/** Rejected tasks. */
+	private final LongAdder rejected = new LongAdder();
+
+	/** Load shedder. */
+	private final LatencyLoadShedder shedder;
+
+	/** Queue wait (nanos). */
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+
+	/** Execution time (nanos). */
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+
+	/**
+	 * Scheduled task instrumentation. Each run records how late it started as
+	 * its queue wait, and its execution time. Runs are shed the same way as other
+	 * tasks (one-shot tasks are cancelled, and periodic tasks skip the run).
+	 */
+	class ScheduledInstrumentation {
+
+		/** If the task is periodic. */
+		private final boolean periodic;
+
+		/** Scheduled future (<code>null</code> until the task is scheduled). */
+		private volatile ScheduledFuture<?> future;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param periodic If the task is periodic.
+		 */
+		ScheduledInstrumentation(final boolean periodic) {
+			super();
+			this.periodic = periodic;
+		}
+
+		/**
+		 * Sets the scheduled future.
+		 *
+		 * @param future Scheduled future.
+		 */
+		void setFuture(
+				final ScheduledFuture<?> future) {
+			this.future = future;
+		}
+
+		/**
+		 * Starts a run.
+		 *
+		 * @param  startedAt Run start (nanos).
+		 * @return           If the run should go on (it is not shed).
+		 */
+		private boolean start(
+				final long startedAt) {
+			final ScheduledFuture<?> currentFuture = this.future;
+			// The delay is negative while the run is late (and the next run is set only
+			// after this one).
+			final long waitNanos = (currentFuture == null ? 0 : Math.max(-currentFuture.getDelay(TimeUnit.NANOSECONDS), 0));
+			final boolean shed = DynamicThreadPoolMetrics.this.recordStart(startedAt, waitNanos);
+			if (shed && !this.periodic && (currentFuture != null)) {
+				currentFuture.cancel(false);
+			}
+			return !shed;
+		}
+
+		/**
+		 * Wraps a scheduled task.
+		 *
+		 * @param  task Task.
+		 * @return      The instrumented task.
+		 */
+		Runnable instrument(
+				final Runnable task) {
+			return () -> {
+				final long startedAt = System.nanoTime();
+				if (this.start(startedAt)) {
+					boolean success = false;
+					try {
+						task.run();
+						success = true;
+					}
+					finally {
+						DynamicThreadPoolMetrics.this.recordExecution(System.nanoTime() - startedAt, success);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Wraps a scheduled task.
+		 *
+		 * @param  <Type> Result type.
+		 * @param  task   Task.
+		 * @return        The instrumented task.
+		 */
+		<Type> Callable<Type> instrument(
+				final Callable<Type> task) {
+			return () -> {
+				final long startedAt = System.nanoTime();
+				Type result = null;
+				if (this.start(startedAt)) {
+					boolean success = false;
+					try {
+						result = task.call();
+						success = true;
+					}
+					finally {
+						DynamicThreadPoolMetrics.this.recordExecution(System.nanoTime() - startedAt, success);
+					}
+				}
+				return result;
+			};
+		}
+
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Executor.
+	 * @param shedder  Load shedder (<code>null</code> if tasks are never shed).
+	 */
+	public DynamicThreadPoolMetrics(final ExecutorService executor, final LatencyLoadShedder shedder) {
+		super();
+		// Timing wheel gauges are read from its worker.
+		this.executor = (executor instanceof final TimingWheelScheduledExecutor timingWheelExecutor ? timingWheelExecutor.getWorker() : executor);
+		this.shedder = shedder;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Executor.
+	 */
+	public DynamicThreadPoolMetrics(final ExecutorService executor) {
+		this(executor, null);
+	}
+
+	/**
+	 * Registers a metrics binder for pools built from now on.
+	 *
+	 * @param binder Binder.
+	 */
+	public static void registerBinder(
+			final DynamicThreadPoolMetricsBinder binder) {
+		DynamicThreadPoolMetrics.BINDERS.add(binder);
+	}
+
+	/**
+	 * Unregisters a metrics binder.
+	 *
+	 * @param binder Binder.
+	 */
+	public static void unregisterBinder(
+			final DynamicThreadPoolMetricsBinder binder) {
+		DynamicThreadPoolMetrics.BINDERS.remove(binder);
+	}
+
+	/**
+	 * Binds a pool to all binders.
+	 *
+	 * @param pool Pool.
+	 */
+	static void bind(
+			final DynamicThreadPool pool) {
+		for (final DynamicThreadPoolMetricsBinder binder : DynamicThreadPoolMetrics.BINDERS) {
+			try {
+				binder.bind(pool);
+			}
+			catch (final Exception exception) {
+				DynamicThreadPoolMetrics.LOGGER.error("Could not bind metrics for thread pool '" + pool.getName() + "': " + exception.getLocalizedMessage());
+				DynamicThreadPoolMetrics.LOGGER.debug("Could not bind metrics for thread pool '" + pool.getName() + "'.", exception);
+			}
+		}
+	}
+
+	/**
+	 * Unbinds a pool from all binders.
+	 *
+	 * @param pool Pool.
+	 */
+	static void unbind(
+			final DynamicThreadPool pool) {
+		for (final DynamicThreadPoolMetricsBinder binder : DynamicThreadPoolMetrics.BINDERS) {
+			try {
+				binder.unbind(pool);
+			}
+			catch (final Exception exception) {
+				DynamicThreadPoolMetrics.LOGGER.error("Could not unbind metrics for thread pool '" + pool.getName() + "': " + exception.getLocalizedMessage());
+				DynamicThreadPoolMetrics.LOGGER.debug("Could not unbind metrics for thread pool '" + pool.getName() + "'.", exception);
+			}
+		}
+	}
+
+	/**
+	 * Records a submitted task.
+	 */
+	void recordSubmitted() {
+		this.submitted.increment();
+	}
+
+	/**
+	 * Records a rejected task.
+	 */
+	void recordRejected() {
+		this.rejected.increment();
+	}
+
+	/**
+	 * Records the time a task waited in the queue.
+	 *
+	 * @param waitNanos Queue wait in nanos.
+	 */
+	void recordQueueWait(
+			final long waitNanos) {
+		this.queueWait.record(waitNanos);
+	}
+
+	/**
+	 * Records a task execution.
+	 *
+	 * @param executionNanos Execution time in nanos.
+	 * @param success        If the task completed successfully.
+	 */
+	void recordExecution(
+			final long executionNanos,
+			final boolean success) {
+		this.executionTime.record(executionNanos);
+		if (success) {
+			this.completed.increment();
+		}
+		else {
+			this.failed.increment();
+		}
+	}
+
+	/**
+	 * Records the time a task waited and checks if it should be shed.
+	 *
+	 * @param  startedAt Task start (nanos).
+	 * @param  waitNanos Queue wait in nanos.
+	 * @return           If the task should be shed.
+	 */
+	private boolean recordStart(
+			final long startedAt,
+			final long waitNanos) {
+		this.recordQueueWait(waitNanos);
+		return (this.shedder != null) && this.shedder.shouldShed(startedAt, waitNanos);
+	}
+
+	/**
+	 * Wraps a task so it records queue wait and execution time (and is shed if
+	 * the pool is overloaded).
+	 *
+	 * @param  task    Task.
+	 * @param  command Original command (cancelled if it is a future and the
+	 *                     task is shed, and whose outcome is recorded if it is a
+	 *                     future that completes when the task runs).
+	 * @return         The instrumented task.
+	 */
+	Runnable instrument(
+			final Runnable task,
+			final Runnable command) {
+		final long submittedAt = System.nanoTime();
+		return () -> {
+			final long startedAt = System.nanoTime();
+			// Drops the task if it should be shed.
+			if (this.recordStart(startedAt, startedAt - submittedAt)) {
+				if (command instanceof final Future<?> future) {
+					future.cancel(false);
+				}
+				return;
+			}
+			boolean success = false;
+			try {
+				task.run();
+				// Futures (such as the ones from submit and invoke all) keep the task
+				// exception instead of throwing it.
+				success = (!(command instanceof final Future<?> future) || (future.state() != Future.State.FAILED));
+			}
+			finally {
+				this.recordExecution(System.nanoTime() - startedAt, success);
+			}
+		};
+	}
+
+	/**
+	 * Gets the number of submitted tasks.
+	 *
+	 * @return The number of submitted tasks.
+	 */
+	public long getSubmitted() {
+		return this.submitted.sum();
+	}
+
+	/**
+	 * Gets the number of completed tasks.
+	 *
+	 * @return The number of completed tasks.
+	 */
+	public long getCompleted() {
+		return this.completed.sum();
+	}
+
+	/**
+	 * Gets the number of failed tasks.
+	 *
+	 * @return The number of failed tasks.
+	 */
+	public long getFailed() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Gets the number of rejected tasks.
+	 *
+	 * @return The number of rejected tasks.
+	 */
+	public long getRejected() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * Gets the load shedder.
+	 *
+	 * @return The load shedder (<code>null</code> if tasks are never shed).
+	 */
+	public LatencyLoadShedder getShedder() {
+		return this.shedder;
+	}
+
+	/**
+	 * Gets the number of shed tasks.
+	 *
+	 * @return The number of shed tasks.
+	 */
+	public long getShed() {
+		return (this.shedder == null ? 0 : this.shedder.getShed());
+	}
+
+	/**
+	 * Gets the queue wait histogram (nanos).
+	 *
+	 * @return The queue wait histogram.
+	 */
+	public LatencyHistogram getQueueWait() {
+		return this.queueWait;
+	}
+
+	/**
+	 * Gets the execution time histogram (nanos).
+	 *
+	 * @return The execution time histogram.
+	 */
+	public LatencyHistogram getExecutionTime() {
+		return this.executionTime;
+	}
+
+	/**
+	 * Gets the number of active threads.
+	 *
+	 * @return The number of active threads.
+	 */
+	public long getActiveThreads() {
+		long activeThreads = 0;
+		if (this.executor instanceof final ForkJoinPool forkJoinPool) {
+			activeThreads = forkJoinPool.getActiveThreadCount();
+		}
+		else if (this.executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			activeThreads = threadPoolExecutor.getActiveCount();
+		}
+		else if (this.executor instanceof final BoundedVirtualThreadExecutor virtualThreadExecutor) {
+			activeThreads = virtualThreadExecutor.getActiveCount();
+		}
+		return activeThreads;
+	}
+
+	/**
+	 * Gets the number of threads in the pool.
+	 *
+	 * @return The number of threads in the pool.
+	 */
+	public long getPoolSize() {
+		long poolSize = 0;
+		if (this.executor instanceof final ForkJoinPool forkJoinPool) {
+			poolSize = forkJoinPool.getPoolSize();
+		}
+		else if (this.executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			poolSize = threadPoolExecutor.getPoolSize();
+		}
+		else if (this.executor instanceof final BoundedVirtualThreadExecutor virtualThreadExecutor) {
+			poolSize = virtualThreadExecutor.getActiveCount() + virtualThreadExecutor.getQueueSize();
+		}
+		return poolSize;
+	}
+
+	/**
+	 * Gets the number of queued tasks.
+	 *
+	 * @return The number of queued tasks.
+	 */
+	public long getQueueDepth() {
+		long queueDepth = 0;
+		if (this.executor instanceof final ForkJoinPool forkJoinPool) {
+			queueDepth = forkJoinPool.getQueuedSubmissionCount() + forkJoinPool.getQueuedTaskCount();
+		}
+		else if (this.executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			queueDepth = threadPoolExecutor.getQueue().size();
+		}
+		else if (this.executor instanceof final BoundedVirtualThreadExecutor virtualThreadExecutor) {
+			queueDepth = virtualThreadExecutor.getQueueSize();
+		}
+		return queueDepth;
+	}
+
+	/**
+	 * Gets the number of stolen tasks (fork join pools only).
+	 *
+	 * @return The number of stolen tasks.
+	 */
+	public long getStealCount() {
+		return (this.executor instanceof final ForkJoinPool forkJoinPool ? forkJoinPool.getStealCount() : 0);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "submitted=" + this.getSubmitted() + ", completed=" + this.getCompleted() + ", failed=" + this.getFailed() + ", rejected=" + this.getRejected()
+				+ ", shed=" + this.getShed() + ", activeThreads=" + this.getActiveThreads() + ", poolSize=" + this.getPoolSize() + ", queueDepth=" + this.getQueueDepth() + ", stealCount="
+				+ this.getStealCount() + ", queueWait=[" + this.getQueueWait() + "], executionTime=[" + this.getExecutionTime() + "]";
+	}
+
+}
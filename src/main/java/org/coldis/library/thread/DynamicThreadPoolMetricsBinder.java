@@ -0,0 +1,28 @@
+package org.coldis.library.thread;
+
+/**
+ * Metrics binder SPI. Implementations bridge {@link DynamicThreadPoolMetrics}
+ * to a metrics library, and are either discovered with
+ * {@link java.util.ServiceLoader} or registered with
+ * {@link DynamicThreadPoolMetrics#registerBinder(DynamicThreadPoolMetricsBinder)}.
+ */
+public interface DynamicThreadPoolMetricsBinder {
+
+	/**
+	 * Binds a pool (called once the pool is built).
+	 *
+	 * @param pool Pool.
+	 */
+	void bind(
+			DynamicThreadPool pool);
+
+	/**
+	 * Unbinds a pool (called once the pool is shut down).
+	 *
+	 * @param pool Pool.
+	 */
+	default void unbind(
+			final DynamicThreadPool pool) {
+	}
+
+}
@@ -0,0 +1,227 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of named thread pools. Pools are built once per name (requesting a
+ * pool again with the same configuration returns the live one), so they are
+ * owned and can be listed and drained in a deterministic order.
+ */
+public class DynamicThreadPoolRegistry {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolRegistry.class);
+
+	/** Default registry. */
+	private static final DynamicThreadPoolRegistry DEFAULT = new DynamicThreadPoolRegistry();
+
+	/** Registration sequence. */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** Registrations by pool name. */
+	private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+	/** Pool registration. */
+	private static class Registration {
+
+		/** Registration order. */
+		private final Long order;
+
+		/** Pool configuration. */
+		private final DynamicThreadPoolFactory configuration;
+
+		/** Pool. */
+		private final DynamicThreadPool pool;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param order         Registration order.
+		 * @param configuration Pool configuration.
+		 * @param pool          Pool.
+		 */
+		Registration(final Long order, final DynamicThreadPoolFactory configuration, final DynamicThreadPool pool) {
+			super();
+			this.order = order;
+			this.configuration = configuration;
+			this.pool = pool;
+		}
+
+		/**
+		 * Gets the registration order.
+		 *
+		 * @return The registration order.
+		 */
+		Long getOrder() {
+			return this.order;
+		}
+
+		/**
+		 * Gets the pool configuration.
+		 *
+		 * @return The pool configuration.
+		 */
+		DynamicThreadPoolFactory getConfiguration() {
+			return this.configuration;
+		}
+
+		/**
+		 * Gets the pool.
+		 *
+		 * @return The pool.
+		 */
+		DynamicThreadPool getPool() {
+			return this.pool;
+		}
+
+	}
+
+	/**
+	 * Gets the default registry.
+	 *
+	 * @return The default registry.
+	 */
+	public static DynamicThreadPoolRegistry getDefault() {
+		return DynamicThreadPoolRegistry.DEFAULT;
+	}
+
+	/**
+	 * Gets the pool for a configuration, building it if there is no live pool
+	 * with the same name.
+	 *
+	 * @param  factory               Pool configuration.
+	 * @return                       The pool.
+	 * @throws IllegalStateException If a live pool with the same name has a
+	 *                                   different configuration.
+	 */
+	public DynamicThreadPool getOrBuild(
+			final DynamicThreadPoolFactory factory) {
+		final DynamicThreadPoolFactory configuration = new DynamicThreadPoolFactory(factory);
+		for (;;) {
+			final Registration currentRegistration = this.registrations.get(configuration.getName());
+			if ((currentRegistration != null) && !currentRegistration.getPool().isShutdown()) {
+				// Reuses the pool if the configuration is the same.
+				if (currentRegistration.getConfiguration().equals(configuration)) {
+					return currentRegistration.getPool();
+				}
+				throw new IllegalStateException("Thread pool '" + configuration.getName() + "' is already registered with a different configuration.");
+			}
+
+			// Builds the pool if there is none (or the previous one was shut down). The
+			// pool is built outside the map (so other pools are not blocked meanwhile),
+			// and the one that loses a concurrent registration is shut down.
+			final Registration registration = new Registration(this.sequence.incrementAndGet(), configuration, configuration.buildPool());
+			final boolean registered = (currentRegistration == null ? this.registrations.putIfAbsent(configuration.getName(), registration) == null
+					: this.registrations.replace(configuration.getName(), currentRegistration, registration));
+			if (registered) {
+				return registration.getPool();
+			}
+			registration.getPool().shutdownNow();
+		}
+	}
+
+	/**
+	 * Gets a pool by name.
+	 *
+	 * @param  name Pool name.
+	 * @return      The pool (<code>null</code> if there is none).
+	 */
+	public DynamicThreadPool get(
+			final String name) {
+		final Registration registration = this.registrations.get(name);
+		return (registration == null ? null : registration.getPool());
+	}
+
+	/**
+	 * Gets the registered pools (in registration order).
+	 *
+	 * @return The registered pools.
+	 */
+	public List<DynamicThreadPool> getPools() {
+		return this.registrations.values().stream().sorted(Comparator.comparing(Registration::getOrder)).map(Registration::getPool).toList();
+	}
+
+	/**
+	 * Gets if all registered pools are ready (see
+	 * {@link DynamicThreadPool#isReady()}), so it can back health checks.
+	 *
+	 * @return If all registered pools are ready.
+	 */
+	public boolean isReady() {
+		return this.registrations.values().stream().allMatch(registration -> registration.getPool().isReady());
+	}
+
+	/**
+	 * Drains a pool gracefully: stops intake, waits for the queued and running
+	 * tasks until the deadline, and then cancels what is left.
+	 *
+	 * @param  pool     Pool.
+	 * @param  deadline Deadline (nanos).
+	 * @return          If the pool finished its tasks before the deadline.
+	 */
+	private static boolean drain(
+			final DynamicThreadPool pool,
+			final long deadline) {
+		boolean drained = false;
+		pool.shutdown();
+		try {
+			drained = pool.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+			if (!drained) {
+				final List<Runnable> cancelled = pool.shutdownNow();
+				DynamicThreadPoolRegistry.LOGGER.warn("Thread pool '" + pool.getName() + "' did not drain in time, " + cancelled.size()
+						+ " queued tasks were cancelled.");
+			}
+		}
+		catch (final InterruptedException exception) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		return drained;
+	}
+
+	/**
+	 * Drains a pool gracefully and removes it from the registry.
+	 *
+	 * @param  name    Pool name.
+	 * @param  timeout How long to wait for the pool tasks before cancelling them.
+	 * @return         If the pool finished its tasks in time (or there is no
+	 *                 such pool).
+	 */
+	public boolean drain(
+			final String name,
+			final Duration timeout) {
+		final Registration registration = this.registrations.remove(name);
+		return (registration == null) || DynamicThreadPoolRegistry.drain(registration.getPool(), System.nanoTime() + timeout.toNanos());
+	}
+
+	/**
+	 * Drains all pools gracefully (one at a time, in registration order, so
+	 * pools that hand tasks over to pools registered later are drained first),
+	 * and removes them from the registry. All pools share the same deadline.
+	 *
+	 * @param  timeout How long to wait for all pool tasks before cancelling them.
+	 * @return         If all pools finished their tasks in time.
+	 */
+	public boolean drainAll(
+			final Duration timeout) {
+		final long deadline = System.nanoTime() + timeout.toNanos();
+		boolean drained = true;
+		for (final Registration registration : this.registrations.values().stream().sorted(Comparator.comparing(Registration::getOrder)).toList()) {
+			this.registrations.remove(registration.getPool().getName(), registration);
+			drained = DynamicThreadPoolRegistry.drain(registration.getPool(), deadline) && drained;
+		}
+		return drained;
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a pool does when it is saturated (all threads are busy and the queue is
+ * full). Policies only come into play once the pool is bounded (by the max
+ * pool size and max queue size).
+ */
+public enum DynamicThreadPoolSaturationPolicy {
+
+	/**
+	 * Rejects the task with a {@link RejectedExecutionException}.
+	 */
+	ABORT,
+
+	/**
+	 * Runs the task in the submitting thread (which slows down the producer).
+	 */
+	CALLER_RUNS,
+
+	/**
+	 * Blocks the submitting thread until there is room in the queue, and rejects
+	 * the task if the saturation timeout elapses first.
+	 */
+	BLOCK,
+
+	/**
+	 * Drops the oldest queued task to make room for the new one (suitable when
+	 * only the latest work matters).
+	 */
+	DISCARD_OLDEST,
+
+	/**
+	 * Rejects the task when saturated, and also sheds queued tasks whenever the
+	 * queue wait stays above a target (see {@link LatencyLoadShedder}).
+	 */
+	SHED_LATENCY;
+
+	/**
+	 * Gets the rejected execution handler for the policy.
+	 *
+	 * @param  timeout Saturation timeout (for blocking policies).
+	 * @return         The rejected execution handler.
+	 */
+	RejectedExecutionHandler getHandler(
+			final Duration timeout) {
+		return switch (this) {
+			case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+			case BLOCK -> new BlockingPolicy(timeout);
+			case DISCARD_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+			default -> new ThreadPoolExecutor.AbortPolicy();
+		};
+	}
+
+	/** Blocks the submitting thread until the task is queued. */
+	static class BlockingPolicy implements RejectedExecutionHandler {
+
+		/** Timeout (nanos). */
+		private final long timeoutNanos;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param timeout Timeout.
+		 */
+		BlockingPolicy(final Duration timeout) {
+			super();
+			this.timeoutNanos = timeout.toNanos();
+		}
+
+		/**
+		 * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable,
+		 *      java.util.concurrent.ThreadPoolExecutor)
+		 */
+		@Override
+		public void rejectedExecution(
+				final Runnable task,
+				final ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Task " + task + " rejected: executor is shut down.");
+			}
+			try {
+				if (!executor.getQueue().offer(task, this.timeoutNanos, TimeUnit.NANOSECONDS)) {
+					throw new RejectedExecutionException("Task " + task + " rejected: queue still full after " + this.timeoutNanos + "ns.");
+				}
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Task " + task + " rejected: interrupted while waiting for the queue.", exception);
+			}
+		}
+
+	}
+
+}
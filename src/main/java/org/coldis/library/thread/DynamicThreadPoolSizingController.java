@@ -0,0 +1,266 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adaptive sizing controller for a dynamic thread pool. Periodically samples
+ * queue depth, queue wait and worker utilization, and resizes the pool (core
+ * size for {@link ThreadPoolExecutor}, parallelism for {@link ForkJoinPool})
+ * within the configured bounds.
+ */
+public class DynamicThreadPoolSizingController {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolSizingController.class);
+
+	/** Maximum fork join pool parallelism. */
+	public static final Integer MAX_PARALLELISM = 0x7fff;
+
+	/** Utilization above which the pool may grow. */
+	public static final Double HIGH_UTILIZATION = 0.75D;
+
+	/** Utilization below which the pool may shrink. */
+	public static final Double LOW_UTILIZATION = 0.25D;
+
+	/** Pool. */
+	private final DynamicThreadPool pool;
+
+	/** Min size. */
+	private volatile Integer minSize;
+
+	/** Max size. */
+	private volatile Integer maxSize;
+
+	/** Target queue wait in nanos. */
+	private final Long targetQueueWaitNanos;
+
+	/** Queue wait total (nanos) at the last sample. */
+	private long lastQueueWaitNanos;
+
+	/** Queue wait count at the last sample. */
+	private long lastQueueWaitCount;
+
+	/** Sampling task. */
+	private ScheduledFuture<?> sampling;
+
+	/** Last sampled queue depth. */
+	private volatile Long lastQueueDepth = 0L;
+
+	/** Last sampled average queue wait. */
+	private volatile Duration lastQueueWait = Duration.ZERO;
+
+	/** Last sampled utilization. */
+	private volatile Double lastUtilization = 0D;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pool            Pool.
+	 * @param minSize         Min size.
+	 * @param maxSize         Max size.
+	 * @param targetQueueWait Target queue wait.
+	 */
+	public DynamicThreadPoolSizingController(
+			final DynamicThreadPool pool,
+			final Integer minSize,
+			final Integer maxSize,
+			final Duration targetQueueWait) {
+		super();
+		this.pool = pool;
+		this.minSize = Math.max(minSize, 1);
+		this.maxSize = Math.max(maxSize, this.minSize);
+		this.targetQueueWaitNanos = targetQueueWait.toNanos();
+	}
+
+	/**
+	 * Gets the min size.
+	 *
+	 * @return The min size.
+	 */
+	public Integer getMinSize() {
+		return this.minSize;
+	}
+
+	/**
+	 * Gets the max size.
+	 *
+	 * @return The max size.
+	 */
+	public Integer getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Sets the size bounds (and resizes the pool into them).
+	 *
+	 * @param minSize Min size.
+	 * @param maxSize Max size.
+	 */
+	public synchronized void setBounds(
+			final Integer minSize,
+			final Integer maxSize) {
+		this.minSize = Math.max(minSize, 1);
+		this.maxSize = Math.max(maxSize, this.minSize);
+		this.resize(this.getCurrentSize());
+	}
+
+	/**
+	 * Gets the last sampled queue depth.
+	 *
+	 * @return The last sampled queue depth.
+	 */
+	public Long getLastQueueDepth() {
+		return this.lastQueueDepth;
+	}
+
+	/**
+	 * Gets the last sampled average queue wait.
+	 *
+	 * @return The last sampled average queue wait.
+	 */
+	public Duration getLastQueueWait() {
+		return this.lastQueueWait;
+	}
+
+	/**
+	 * Gets the last sampled utilization.
+	 *
+	 * @return The last sampled utilization.
+	 */
+	public Double getLastUtilization() {
+		return this.lastUtilization;
+	}
+
+	/**
+	 * Starts sampling periodically.
+	 *
+	 * @param interval Sampling interval.
+	 */
+	public synchronized void start(
+			final Duration interval) {
+		if (this.sampling == null) {
+			this.sampling = DynamicThreadPoolFactory.getMaintenanceExecutor().scheduleWithFixedDelay(() -> {
+				try {
+					this.sample();
+				}
+				catch (final Exception exception) {
+					DynamicThreadPoolSizingController.LOGGER.error("Could not sample thread pool '" + this.pool.getName() + "': " + exception.getLocalizedMessage());
+					DynamicThreadPoolSizingController.LOGGER.debug("Could not sample thread pool '" + this.pool.getName() + "'.", exception);
+				}
+			}, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops sampling.
+	 */
+	public synchronized void stop() {
+		if (this.sampling != null) {
+			this.sampling.cancel(false);
+			this.sampling = null;
+		}
+	}
+
+	/**
+	 * Gets the current pool size (core size or parallelism).
+	 *
+	 * @return The current pool size.
+	 */
+	public Integer getCurrentSize() {
+		final ExecutorService executor = this.pool.getExecutor();
+		Integer currentSize = null;
+		if (executor instanceof final ForkJoinPool forkJoinPool) {
+			currentSize = forkJoinPool.getParallelism();
+		}
+		else if (executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			currentSize = threadPoolExecutor.getCorePoolSize();
+		}
+		return currentSize;
+	}
+
+	/**
+	 * Resizes the pool (within the configured bounds).
+	 *
+	 * @param  size New size.
+	 * @return      The actual new size.
+	 */
+	public synchronized Integer resize(
+			final Integer size) {
+		final Integer actualSize = Math.max(this.minSize, Math.min(this.maxSize, size));
+		final ExecutorService executor = this.pool.getExecutor();
+		if (executor instanceof final ForkJoinPool forkJoinPool) {
+			if (forkJoinPool.getParallelism() != actualSize) {
+				forkJoinPool.setParallelism(actualSize);
+			}
+		}
+		else if (executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			if (threadPoolExecutor.getCorePoolSize() != actualSize) {
+				// Max size must never be lower than the core size.
+				if (threadPoolExecutor.getMaximumPoolSize() < actualSize) {
+					threadPoolExecutor.setMaximumPoolSize(actualSize);
+				}
+				threadPoolExecutor.setCorePoolSize(actualSize);
+			}
+		}
+		return actualSize;
+	}
+
+	/**
+	 * Samples the pool and resizes it if needed.
+	 *
+	 * @return The pool size after the sample.
+	 */
+	public synchronized Integer sample() {
+		final DynamicThreadPoolMetrics metrics = this.pool.getMetrics();
+		final Integer currentSize = this.getCurrentSize();
+		Integer newSize = currentSize;
+
+		// Samples the pool.
+		if (currentSize != null) {
+			final long queueDepth = metrics.getQueueDepth();
+			final long activeThreads = metrics.getActiveThreads();
+			final long queueWaitNanos = metrics.getQueueWait().getSum();
+			final long queueWaitCount = metrics.getQueueWait().getCount();
+			final long waitCount = queueWaitCount - this.lastQueueWaitCount;
+			final long waitNanos = queueWaitNanos - this.lastQueueWaitNanos;
+			this.lastQueueWaitCount = queueWaitCount;
+			this.lastQueueWaitNanos = queueWaitNanos;
+			final long averageQueueWaitNanos = (waitCount == 0 ? 0 : waitNanos / waitCount);
+			final double utilization = Math.min(1D, ((double) activeThreads) / currentSize);
+			this.lastQueueDepth = queueDepth;
+			this.lastQueueWait = Duration.ofNanos(averageQueueWaitNanos);
+			this.lastUtilization = utilization;
+
+			// Grows the pool if tasks are waiting and workers are busy.
+			final boolean queueWaitAboveTarget = (averageQueueWaitNanos > this.targetQueueWaitNanos);
+			if ((queueWaitAboveTarget || (queueDepth > currentSize)) && (utilization >= DynamicThreadPoolSizingController.HIGH_UTILIZATION)) {
+				newSize = currentSize + Math.max(1, currentSize / 4);
+			}
+			// Shrinks the pool if nothing is waiting and workers are mostly idle.
+			else if ((queueDepth == 0) && !queueWaitAboveTarget && (utilization <= DynamicThreadPoolSizingController.LOW_UTILIZATION)) {
+				newSize = currentSize - Math.max(1, currentSize / 8);
+			}
+
+			// Resizes the pool.
+			newSize = this.resize(newSize);
+			if (!newSize.equals(currentSize)) {
+				DynamicThreadPoolSizingController.LOGGER.debug("Thread pool '" + this.pool.getName() + "' resized from '" + currentSize + "' to '" + newSize
+						+ "' (queue depth '" + queueDepth + "', queue wait '" + this.lastQueueWait + "', utilization '" + utilization + "').");
+			}
+		}
+
+		// Returns the new size.
+		return newSize;
+	}
+
+}
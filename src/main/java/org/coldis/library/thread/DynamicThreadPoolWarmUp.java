@@ -0,0 +1,167 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool warm-up. Worker threads are started up front and a warm-up workload
+ * runs once on each of them (so class loading and JIT compilation happen
+ * before traffic arrives). Each warm-up task waits for the others before
+ * finishing, so no worker runs it twice while another one stays cold.
+ */
+class DynamicThreadPoolWarmUp {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolWarmUp.class);
+
+	/** Pool name. */
+	private final String name;
+
+	/** Warm-up workload. */
+	private final Runnable workload;
+
+	/** Warm-up timeout. */
+	private final Duration timeout;
+
+	/** Workers that started the warm-up. */
+	private final CountDownLatch started;
+
+	/** Workers that did not finish the warm-up yet. */
+	private final AtomicInteger remaining;
+
+	/** If warm-up timed out. */
+	private final AtomicBoolean timedOut = new AtomicBoolean();
+
+	/** Readiness. */
+	private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name     Pool name.
+	 * @param workload Warm-up workload.
+	 * @param timeout  Warm-up timeout.
+	 * @param workers  Workers.
+	 */
+	private DynamicThreadPoolWarmUp(final String name, final Runnable workload, final Duration timeout, final int workers) {
+		super();
+		this.name = name;
+		this.workload = workload;
+		this.timeout = timeout;
+		this.started = new CountDownLatch(workers);
+		this.remaining = new AtomicInteger(workers);
+	}
+
+	/**
+	 * Runs the warm-up on a worker.
+	 */
+	private void run() {
+		try {
+			this.workload.run();
+		}
+		catch (final Throwable throwable) {
+			DynamicThreadPoolWarmUp.LOGGER.error("Warm-up of thread pool '" + this.name + "' failed: " + throwable.getLocalizedMessage());
+			DynamicThreadPoolWarmUp.LOGGER.debug("Warm-up of thread pool '" + this.name + "' failed.", throwable);
+		}
+		finally {
+			this.started.countDown();
+			// Holds the worker until every worker got a warm-up task.
+			try {
+				if (!this.started.await(this.timeout.toNanos(), TimeUnit.NANOSECONDS) && this.timedOut.compareAndSet(false, true)) {
+					DynamicThreadPoolWarmUp.LOGGER.warn("Warm-up of thread pool '" + this.name + "' timed out, " + this.started.getCount()
+							+ " workers may be cold.");
+				}
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			this.finish();
+		}
+	}
+
+	/**
+	 * Finishes the warm-up of a worker (the pool is ready once all workers
+	 * finish).
+	 */
+	private void finish() {
+		if (this.remaining.decrementAndGet() == 0) {
+			this.readiness.complete(null);
+			DynamicThreadPoolWarmUp.LOGGER.info("Thread pool '" + this.name + "' is ready.");
+		}
+	}
+
+	/**
+	 * Gets the number of workers for an executor.
+	 *
+	 * @param  executor Executor.
+	 * @return          The number of workers.
+	 */
+	private static int getWorkers(
+			final ExecutorService executor) {
+		int workers = 1;
+		if (executor instanceof final ForkJoinPool forkJoinPool) {
+			workers = forkJoinPool.getParallelism();
+		}
+		else if (executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			workers = Math.max(threadPoolExecutor.getCorePoolSize(), 1);
+		}
+		return workers;
+	}
+
+	/**
+	 * Starts the workers of a pool and warms them up.
+	 *
+	 * @param  pool     Pool.
+	 * @param  prestart If worker threads should be started up front.
+	 * @param  workload Warm-up workload (<code>null</code> for none).
+	 * @param  timeout  Warm-up timeout.
+	 * @return          The pool readiness.
+	 */
+	static CompletableFuture<Void> start(
+			final DynamicThreadPool pool,
+			final Boolean prestart,
+			final Runnable workload,
+			final Duration timeout) {
+		// Timing wheel tasks run on its worker pool.
+		final ExecutorService executor = (pool.getExecutor() instanceof final TimingWheelScheduledExecutor timingWheelExecutor
+				? timingWheelExecutor.getWorker()
+				: pool.getExecutor());
+		CompletableFuture<Void> readiness = CompletableFuture.completedFuture(null);
+		if (prestart && (executor instanceof final ThreadPoolExecutor threadPoolExecutor)) {
+			threadPoolExecutor.prestartAllCoreThreads();
+		}
+
+		// Fork join pools have no prestart, so workers are started by the warm-up
+		// tasks themselves.
+		if ((workload != null) || (prestart && (executor instanceof ForkJoinPool))) {
+			final int workers = DynamicThreadPoolWarmUp.getWorkers(executor);
+			final DynamicThreadPoolWarmUp warmUp = new DynamicThreadPoolWarmUp(pool.getName(), (workload == null ? () -> {} : workload), timeout, workers);
+			readiness = warmUp.readiness;
+			for (int worker = 0; worker < workers; worker++) {
+				try {
+					executor.execute(warmUp::run);
+				}
+				catch (final RejectedExecutionException exception) {
+					DynamicThreadPoolWarmUp.LOGGER.warn("Warm-up of thread pool '" + pool.getName() + "' rejected: " + exception.getLocalizedMessage());
+					warmUp.started.countDown();
+					warmUp.finish();
+				}
+			}
+		}
+		return readiness;
+	}
+
+}
@@ -0,0 +1,331 @@
+package org.coldis.library.thread;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stall and starvation watchdog for registered pools. Pools are sampled
+ * periodically (off the task path, from counters the pools keep anyway and
+ * from their worker thread states), and a pool is reported as stalled when:
+ * <ul>
+ * <li>no task completed since the last sample while tasks are queued; or</li>
+ * <li>the ratio of busy workers that are blocked or waiting reaches a
+ * threshold.</li>
+ * </ul>
+ * Stalls are logged once (with stack samples of the busy workers) when they
+ * start, and again when the pool recovers. Virtual thread pools are only
+ * checked for progress.
+ */
+public class DynamicThreadPoolWatchdog {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(DynamicThreadPoolWatchdog.class);
+
+	/** Default sampling interval. */
+	public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+
+	/** Default blocked worker ratio threshold. */
+	public static final Double DEFAULT_BLOCKED_RATIO_THRESHOLD = 0.9;
+
+	/** Default stack depth (for stack samples). */
+	public static final Integer DEFAULT_STACK_DEPTH = 16;
+
+	/** Default stack samples per stall. */
+	public static final Integer DEFAULT_STACK_SAMPLES = 4;
+
+	/** Worker thread name (pool name followed by the worker number). */
+	private static final Pattern WORKER_NAME = Pattern.compile("(.+)-\\d+");
+
+	/** Registry. */
+	private final DynamicThreadPoolRegistry registry;
+
+	/** Blocked worker ratio threshold. */
+	private final double blockedRatioThreshold;
+
+	/** Stack depth. */
+	private final int stackDepth;
+
+	/** Stack samples per stall. */
+	private final int stackSamples;
+
+	/** Pool states. */
+	private final Map<DynamicThreadPool, PoolState> states = new ConcurrentHashMap<>();
+
+	/** Periodic sampling. */
+	private ScheduledFuture<?> sampling;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry              Registry.
+	 * @param blockedRatioThreshold Blocked worker ratio threshold.
+	 * @param stackDepth            Stack depth (for stack samples).
+	 * @param stackSamples          Stack samples per stall.
+	 */
+	public DynamicThreadPoolWatchdog(final DynamicThreadPoolRegistry registry, final Double blockedRatioThreshold, final Integer stackDepth,
+			final Integer stackSamples) {
+		super();
+		this.registry = registry;
+		this.blockedRatioThreshold = blockedRatioThreshold;
+		this.stackDepth = Math.max(stackDepth, 1);
+		this.stackSamples = Math.max(stackSamples, 0);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry Registry.
+	 */
+	public DynamicThreadPoolWatchdog(final DynamicThreadPoolRegistry registry) {
+		this(registry, DynamicThreadPoolWatchdog.DEFAULT_BLOCKED_RATIO_THRESHOLD, DynamicThreadPoolWatchdog.DEFAULT_STACK_DEPTH,
+				DynamicThreadPoolWatchdog.DEFAULT_STACK_SAMPLES);
+	}
+
+	/** Pool state between samples. */
+	private static class PoolState {
+
+		/** Progress at the last sample. */
+		private Long progress;
+
+		/** Current stall reason (<code>null</code> if not stalled). */
+		private volatile String stall;
+
+	}
+
+	/**
+	 * Gets the progress of a pool (tasks that finished so far).
+	 *
+	 * @param  pool Pool.
+	 * @return      The progress (<code>null</code> if not available, for pools
+	 *              without metrics that are not thread pool executors).
+	 */
+	private static Long getProgress(
+			final DynamicThreadPool pool) {
+		final ExecutorService executor = (pool.getExecutor() instanceof final TimingWheelScheduledExecutor timingWheelExecutor
+				? timingWheelExecutor.getWorker()
+				: pool.getExecutor());
+		Long progress = null;
+		if (pool.getMetrics() != null) {
+			progress = pool.getMetrics().getCompleted() + pool.getMetrics().getFailed() + pool.getMetrics().getShed();
+		}
+		else if (executor instanceof final ThreadPoolExecutor threadPoolExecutor) {
+			progress = threadPoolExecutor.getCompletedTaskCount();
+		}
+		return progress;
+	}
+
+	/**
+	 * Gets the number of tasks waiting for a pool. Scheduled tasks that are not
+	 * due yet (such as periodic tasks between runs) are not waiting for the pool,
+	 * so they are not counted.
+	 *
+	 * @param  pool   Pool.
+	 * @param  gauges Pool gauges.
+	 * @return        The number of tasks waiting for the pool.
+	 */
+	private static long getQueueDepth(
+			final DynamicThreadPool pool,
+			final DynamicThreadPoolMetrics gauges) {
+		return (pool.getExecutor() instanceof final ScheduledThreadPoolExecutor scheduledExecutor
+				? scheduledExecutor.getQueue().stream()
+						.filter(task -> !(task instanceof final Delayed delayedTask) || (delayedTask.getDelay(TimeUnit.NANOSECONDS) <= 0)).count()
+				: gauges.getQueueDepth());
+	}
+
+	/**
+	 * Gets if a worker is idle (waiting for tasks in the pool itself).
+	 *
+	 * @param  threadInfo Worker thread info.
+	 * @return            If the worker is idle.
+	 */
+	private static boolean isIdle(
+			final ThreadInfo threadInfo) {
+		return Arrays.stream(threadInfo.getStackTrace())
+				.anyMatch(frame -> (ThreadPoolExecutor.class.getName().equals(frame.getClassName()) && "getTask".equals(frame.getMethodName()))
+						|| (ForkJoinPool.class.getName().equals(frame.getClassName()) && "awaitWork".equals(frame.getMethodName())));
+	}
+
+	/**
+	 * Gets if a worker is blocked (or waiting).
+	 *
+	 * @param  threadInfo Worker thread info.
+	 * @return            If the worker is blocked.
+	 */
+	private static boolean isBlocked(
+			final ThreadInfo threadInfo) {
+		return switch (threadInfo.getThreadState()) {
+			case BLOCKED, WAITING, TIMED_WAITING -> true;
+			default -> false;
+		};
+	}
+
+	/**
+	 * Appends a stack sample of a worker.
+	 *
+	 * @param diagnostic Diagnostic.
+	 * @param threadInfo Worker thread info.
+	 */
+	private static void appendStack(
+			final StringBuilder diagnostic,
+			final ThreadInfo threadInfo) {
+		diagnostic.append("\n\tthread=").append(threadInfo.getThreadName()).append(", state=").append(threadInfo.getThreadState());
+		if (threadInfo.getLockName() != null) {
+			diagnostic.append(", lock=").append(threadInfo.getLockName());
+		}
+		if (threadInfo.getLockOwnerName() != null) {
+			diagnostic.append(", lockOwner=").append(threadInfo.getLockOwnerName());
+		}
+		for (final StackTraceElement frame : threadInfo.getStackTrace()) {
+			diagnostic.append("\n\t\tat ").append(frame);
+		}
+	}
+
+	/**
+	 * Gets if a thread is a pool worker (named after the pool).
+	 *
+	 * @param  pool       Pool.
+	 * @param  threadInfo Thread info.
+	 * @return            If the thread is a pool worker.
+	 */
+	private static boolean isWorker(
+			final DynamicThreadPool pool,
+			final ThreadInfo threadInfo) {
+		final Matcher workerName = DynamicThreadPoolWatchdog.WORKER_NAME.matcher(threadInfo.getThreadName());
+		return workerName.matches() && workerName.group(1).equals(pool.getName());
+	}
+
+	/**
+	 * Samples a pool.
+	 *
+	 * @param  pool    Pool.
+	 * @param  threads Platform thread infos.
+	 * @return         The diagnostic (<code>null</code> if the pool did not start
+	 *                 stalling).
+	 */
+	private String sample(
+			final DynamicThreadPool pool,
+			final List<ThreadInfo> threads) {
+		final PoolState state = this.states.computeIfAbsent(pool, key -> new PoolState());
+		final DynamicThreadPoolMetrics gauges = (pool.getMetrics() == null ? new DynamicThreadPoolMetrics(pool.getExecutor()) : pool.getMetrics());
+		final long queueDepth = DynamicThreadPoolWatchdog.getQueueDepth(pool, gauges);
+		final Long progress = DynamicThreadPoolWatchdog.getProgress(pool);
+
+		// Gets the busy and blocked workers (named after the pool).
+		final List<ThreadInfo> workers = threads.stream().filter(threadInfo -> DynamicThreadPoolWatchdog.isWorker(pool, threadInfo)).toList();
+		final List<ThreadInfo> busyWorkers = workers.stream().filter(threadInfo -> !DynamicThreadPoolWatchdog.isIdle(threadInfo)).toList();
+		final long blockedWorkers = busyWorkers.stream().filter(DynamicThreadPoolWatchdog::isBlocked).count();
+		final double blockedRatio = (busyWorkers.isEmpty() ? 0 : ((double) blockedWorkers) / busyWorkers.size());
+
+		// Checks if the pool is stalled.
+		String stall = null;
+		if ((state.progress != null) && state.progress.equals(progress) && (queueDepth > 0)) {
+			stall = "no-progress";
+		}
+		else if ((blockedWorkers > 0) && (blockedRatio >= this.blockedRatioThreshold)) {
+			stall = "blocked-workers";
+		}
+		final String previousStall = state.stall;
+		state.progress = progress;
+		state.stall = stall;
+
+		// Reports stall changes.
+		String diagnostic = null;
+		if ((stall != null) && (previousStall == null)) {
+			final StringBuilder actualDiagnostic = new StringBuilder("Thread pool stall detected: pool=").append(pool.getName()).append(", reason=")
+					.append(stall).append(", progress=").append(progress).append(", queueDepth=").append(queueDepth).append(", activeThreads=")
+					.append(gauges.getActiveThreads()).append(", poolSize=").append(gauges.getPoolSize()).append(", busyWorkers=")
+					.append(busyWorkers.size()).append(", blockedWorkers=").append(blockedWorkers).append(", workers=").append(workers.size());
+			busyWorkers.stream().limit(this.stackSamples).forEach(threadInfo -> DynamicThreadPoolWatchdog.appendStack(actualDiagnostic, threadInfo));
+			diagnostic = actualDiagnostic.toString();
+			DynamicThreadPoolWatchdog.LOGGER.warn(diagnostic);
+		}
+		else if ((stall == null) && (previousStall != null)) {
+			DynamicThreadPoolWatchdog.LOGGER.info("Thread pool stall recovered: pool=" + pool.getName() + ", reason=" + previousStall + ", progress="
+					+ progress + ", queueDepth=" + queueDepth + ".");
+		}
+		return diagnostic;
+	}
+
+	/**
+	 * Samples all registered pools.
+	 *
+	 * @return The diagnostics of the pools that started stalling.
+	 */
+	public synchronized List<String> sample() {
+		final List<DynamicThreadPool> pools = this.registry.getPools();
+		this.states.keySet().retainAll(pools);
+		final List<String> diagnostics = new ArrayList<>();
+		try {
+			// Thread states are only read if there are platform thread pools.
+			final List<ThreadInfo> threads = (pools.stream().allMatch(pool -> pool.getExecutor() instanceof BoundedVirtualThreadExecutor) ? List.of()
+					: Arrays.asList(ManagementFactory.getThreadMXBean().dumpAllThreads(false, false, this.stackDepth)));
+			for (final DynamicThreadPool pool : pools) {
+				final String diagnostic = this.sample(pool, threads);
+				if (diagnostic != null) {
+					diagnostics.add(diagnostic);
+				}
+			}
+		}
+		catch (final Exception exception) {
+			DynamicThreadPoolWatchdog.LOGGER.error("Could not sample thread pools: " + exception.getLocalizedMessage());
+			DynamicThreadPoolWatchdog.LOGGER.debug("Could not sample thread pools.", exception);
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * Gets the names of the pools currently stalled.
+	 *
+	 * @return The names of the pools currently stalled.
+	 */
+	public Set<String> getStalledPools() {
+		return this.states.entrySet().stream().filter(entry -> entry.getValue().stall != null).map(entry -> entry.getKey().getName())
+				.collect(Collectors.toSet());
+	}
+
+	/**
+	 * Starts sampling the registered pools periodically.
+	 *
+	 * @param interval Sampling interval.
+	 */
+	public synchronized void start(
+			final Duration interval) {
+		if (this.sampling == null) {
+			this.sampling = DynamicThreadPoolFactory.getMaintenanceExecutor().scheduleWithFixedDelay(this::sample, interval.toMillis(), interval.toMillis(),
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops sampling the registered pools.
+	 */
+	public synchronized void stop() {
+		if (this.sampling != null) {
+			this.sampling.cancel(false);
+			this.sampling = null;
+		}
+	}
+
+}
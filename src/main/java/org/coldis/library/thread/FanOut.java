@@ -0,0 +1,405 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.coldis.library.exception.IntegrationException;
+import org.coldis.library.model.RetriableIn;
+import org.coldis.library.model.SimpleMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Structured fan-out/fan-in. Tasks are forked on an executor and joined in the
+ * calling thread, which waits for all (or the first required) results until
+ * the deadline. Tasks still running when the join returns (or fails) are
+ * cancelled and waited for (up to the cancellation timeout), so no task
+ * outlives the fan-out unless it ignores interruption for longer than that.
+ * The {@link ThreadMapContextHolder}
+ * attributes of the forking thread are propagated to the tasks.
+ *
+ * @param <Type> Result type.
+ */
+public class FanOut<Type> {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(FanOut.class);
+
+	/** Failure status code (when the failure has none). */
+	private static final Integer FAILURE_STATUS_CODE = 500;
+
+	/** Timeout status code. */
+	private static final Integer TIMEOUT_STATUS_CODE = 504;
+
+	/** Default cancellation timeout. */
+	public static final Duration DEFAULT_CANCELLATION_TIMEOUT = Duration.ofSeconds(1);
+
+	/** Executor. */
+	private final Executor executor;
+
+	/** If the thread map context should be propagated to tasks. */
+	private final boolean propagateContext;
+
+	/** Tasks. */
+	private final List<Callable<Type>> tasks = new ArrayList<>();
+
+	/** Required results (<code>null</code> for all). */
+	private Integer required;
+
+	/** Timeout (<code>null</code> to wait forever). */
+	private Duration timeout;
+
+	/** Failure policy. */
+	private FanOutFailurePolicy failurePolicy;
+
+	/** Cancellation timeout (to wait for cancelled tasks to finish). */
+	private Duration cancellationTimeout;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor         Executor.
+	 * @param propagateContext If the {@link ThreadMapContextHolder} attributes
+	 *                             should be propagated to tasks.
+	 */
+	public FanOut(final Executor executor, final Boolean propagateContext) {
+		super();
+		this.executor = executor;
+		this.propagateContext = propagateContext;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pool Pool (which may propagate the context already).
+	 */
+	public FanOut(final DynamicThreadPool pool) {
+		this(pool, !pool.getPropagateContext());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Executor.
+	 */
+	public FanOut(final Executor executor) {
+		this(executor, true);
+	}
+
+	/**
+	 * Forked task.
+	 */
+	private class ForkedTask extends FutureTask<Type> {
+
+		/** Fork order. */
+		private final int order;
+
+		/** Completed tasks. */
+		private final BlockingQueue<ForkedTask> completed;
+
+		/** Finished (after running, even if cancelled meanwhile). */
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		/** If the task started running. */
+		private volatile boolean started;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param task      Task.
+		 * @param order     Fork order.
+		 * @param completed Completed tasks.
+		 */
+		ForkedTask(final Callable<Type> task, final int order, final BlockingQueue<ForkedTask> completed) {
+			super(task);
+			this.order = order;
+			this.completed = completed;
+		}
+
+		/**
+		 * @see java.util.concurrent.FutureTask#run()
+		 */
+		@Override
+		public void run() {
+			// Flags the task before it runs, so a cancelled task either waits for it
+			// or never runs it.
+			this.started = true;
+			try {
+				super.run();
+			}
+			finally {
+				this.finished.countDown();
+			}
+		}
+
+		/**
+		 * Waits for the task to finish if it started running.
+		 *
+		 * @param  deadline             Deadline (nanos).
+		 * @return                      If the task is not running anymore.
+		 * @throws InterruptedException If interrupted while waiting.
+		 */
+		boolean awaitFinished(
+				final long deadline) throws InterruptedException {
+			return !this.started || this.finished.await(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @see java.util.concurrent.FutureTask#done()
+		 */
+		@Override
+		protected void done() {
+			this.completed.add(this);
+		}
+
+		/**
+		 * Fails the task (when it cannot be forked).
+		 *
+		 * @param throwable Failure.
+		 */
+		void fail(
+				final Throwable throwable) {
+			this.setException(throwable);
+		}
+
+	}
+
+	/**
+	 * Sets the required results (the fan-out returns as soon as they are
+	 * available).
+	 *
+	 * @param  required Required results (<code>null</code> for all).
+	 * @return          The fan-out.
+	 */
+	public FanOut<Type> withRequired(
+			final Integer required) {
+		this.required = required;
+		return this;
+	}
+
+	/**
+	 * Gets the required results.
+	 *
+	 * @return The required results.
+	 */
+	private int getRequired() {
+		return (this.required == null ? this.tasks.size() : Math.min(Math.max(this.required, 0), this.tasks.size()));
+	}
+
+	/**
+	 * Sets the timeout (the deadline is set when the tasks are joined).
+	 *
+	 * @param  timeout Timeout (<code>null</code> to wait forever).
+	 * @return         The fan-out.
+	 */
+	public FanOut<Type> withTimeout(
+			final Duration timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Sets the failure policy.
+	 *
+	 * @param  failurePolicy Failure policy.
+	 * @return               The fan-out.
+	 */
+	public FanOut<Type> withFailurePolicy(
+			final FanOutFailurePolicy failurePolicy) {
+		this.failurePolicy = failurePolicy;
+		return this;
+	}
+
+	/**
+	 * Gets the failure policy.
+	 *
+	 * @return The failure policy.
+	 */
+	private FanOutFailurePolicy getFailurePolicy() {
+		return (this.failurePolicy == null ? FanOutFailurePolicy.FAIL_FAST : this.failurePolicy);
+	}
+
+	/**
+	 * Sets the cancellation timeout (how long to wait for cancelled tasks to
+	 * finish before the join returns).
+	 *
+	 * @param  cancellationTimeout Cancellation timeout.
+	 * @return                     The fan-out.
+	 */
+	public FanOut<Type> withCancellationTimeout(
+			final Duration cancellationTimeout) {
+		this.cancellationTimeout = cancellationTimeout;
+		return this;
+	}
+
+	/**
+	 * Gets the cancellation timeout.
+	 *
+	 * @return The cancellation timeout.
+	 */
+	private Duration getCancellationTimeout() {
+		return (this.cancellationTimeout == null ? FanOut.DEFAULT_CANCELLATION_TIMEOUT : this.cancellationTimeout);
+	}
+
+	/**
+	 * Cancels the tasks and waits for the ones that are running to finish (up to
+	 * the cancellation timeout, keeping the interrupt status).
+	 *
+	 * @param forkedTasks Forked tasks.
+	 */
+	private void cancel(
+			final List<ForkedTask> forkedTasks) {
+		for (final ForkedTask forkedTask : forkedTasks) {
+			forkedTask.cancel(true);
+		}
+		final long deadline = System.nanoTime() + this.getCancellationTimeout().toNanos();
+		boolean interrupted = Thread.interrupted();
+		for (final ForkedTask forkedTask : forkedTasks) {
+			boolean waited = false;
+			while (!waited) {
+				try {
+					if (!forkedTask.awaitFinished(deadline)) {
+						FanOut.LOGGER.warn("Fan-out task " + forkedTask.order + " is still running after being cancelled.");
+					}
+					waited = true;
+				}
+				catch (final InterruptedException exception) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Adds a task to be forked.
+	 *
+	 * @param  task Task.
+	 * @return      The fan-out.
+	 */
+	public FanOut<Type> fork(
+			final Callable<Type> task) {
+		this.tasks.add(this.propagateContext ? ThreadMapContextHolder.wrap(task) : task);
+		return this;
+	}
+
+	/**
+	 * Gets the retry time for a task failure.
+	 *
+	 * @param  throwable Failure.
+	 * @return           The retry time (<code>null</code> if it should not be
+	 *                   retried).
+	 */
+	private static Duration getRetryIn(
+			final Throwable throwable) {
+		return (throwable instanceof final RetriableIn retriable ? retriable.getRetryIn() : IntegrationException.DEFAULT_RETRY_IN);
+	}
+
+	/**
+	 * Builds the fan-out failure.
+	 *
+	 * @param  failures Task failures.
+	 * @return          The fan-out failure.
+	 */
+	private IntegrationException getFailure(
+			final List<Throwable> failures) {
+		final Throwable firstFailure = failures.get(0);
+		// Fails fast with the first failure retry, and otherwise with the longest
+		// retry (not retrying if any failure should not be retried).
+		Duration retryIn = FanOut.getRetryIn(firstFailure);
+		if (this.getFailurePolicy() == FanOutFailurePolicy.TOLERATE) {
+			for (final Throwable failure : failures) {
+				final Duration failureRetryIn = FanOut.getRetryIn(failure);
+				retryIn = ((retryIn == null) || (failureRetryIn == null) ? null
+						: (failureRetryIn.compareTo(retryIn) > 0 ? failureRetryIn : retryIn));
+			}
+		}
+		final Integer statusCode = (firstFailure instanceof final IntegrationException integrationException ? integrationException.getStatusCode()
+				: FanOut.FAILURE_STATUS_CODE);
+		final IntegrationException failure = new IntegrationException(new SimpleMessage("fanout.failed"), statusCode, retryIn, firstFailure);
+		failures.stream().skip(1).forEach(failure::addSuppressed);
+		return failure;
+	}
+
+	/**
+	 * Forks the tasks and waits for the required results (tasks still running
+	 * afterwards are cancelled and waited for).
+	 *
+	 * @return                      The results of the tasks that completed
+	 *                              successfully (in fork order, and no more than
+	 *                              the required results).
+	 * @throws IntegrationException If the required results cannot be reached,
+	 *                                  the deadline passes, or the thread is
+	 *                                  interrupted.
+	 */
+	public List<Type> join() throws IntegrationException {
+		final int actualRequired = this.getRequired();
+		final long deadline = System.nanoTime() + (this.timeout == null ? 0 : this.timeout.toNanos());
+		final BlockingQueue<ForkedTask> completed = new LinkedBlockingQueue<>();
+		final List<ForkedTask> forkedTasks = new ArrayList<>(this.tasks.size());
+		final List<ForkedTask> succeeded = new ArrayList<>(actualRequired);
+		final List<Throwable> failures = new ArrayList<>();
+		try {
+			// Forks the tasks.
+			for (int order = 0; order < this.tasks.size(); order++) {
+				final ForkedTask forkedTask = new ForkedTask(this.tasks.get(order), order, completed);
+				forkedTasks.add(forkedTask);
+				try {
+					this.executor.execute(forkedTask);
+				}
+				catch (final RejectedExecutionException exception) {
+					forkedTask.fail(exception);
+				}
+			}
+
+			// Joins the tasks until the required results are available.
+			while (succeeded.size() < actualRequired) {
+				final long remaining = (this.timeout == null ? Long.MAX_VALUE : deadline - System.nanoTime());
+				final ForkedTask forkedTask = (remaining > 0 ? completed.poll(remaining, TimeUnit.NANOSECONDS) : null);
+				if (forkedTask == null) {
+					throw new IntegrationException(new SimpleMessage("fanout.timeout"), FanOut.TIMEOUT_STATUS_CODE,
+							IntegrationException.DEFAULT_RETRY_IN, null);
+				}
+				try {
+					forkedTask.get();
+					succeeded.add(forkedTask);
+				}
+				catch (final ExecutionException exception) {
+					failures.add(Objects.requireNonNullElse(exception.getCause(), exception));
+					// Fails if failures are not tolerated or the required results
+					// cannot be reached anymore.
+					if ((this.getFailurePolicy() == FanOutFailurePolicy.FAIL_FAST)
+							|| ((forkedTasks.size() - failures.size()) < actualRequired)) {
+						throw this.getFailure(failures);
+					}
+				}
+			}
+		}
+		catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IntegrationException(new SimpleMessage("fanout.interrupted"), exception);
+		}
+		// Cancels the tasks that are not needed anymore.
+		finally {
+			this.cancel(forkedTasks);
+		}
+		return succeeded.stream().sorted(Comparator.comparingInt(forkedTask -> forkedTask.order)).map(FutureTask::resultNow).toList();
+	}
+
+}
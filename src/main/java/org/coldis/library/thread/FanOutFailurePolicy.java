@@ -0,0 +1,25 @@
+package org.coldis.library.thread;
+
+import org.coldis.library.exception.IntegrationException;
+
+/**
+ * What a fan-out does when one of its tasks fails. Either way, the fan-out
+ * fails with an {@link IntegrationException} whose retry time comes from the
+ * task failures.
+ */
+public enum FanOutFailurePolicy {
+
+	/**
+	 * Fails on the first task failure (and cancels the other tasks). The retry
+	 * time is the one of the failure.
+	 */
+	FAIL_FAST,
+
+	/**
+	 * Ignores task failures while the required results can still be reached,
+	 * and fails once they cannot. The retry time is the longest one among the
+	 * failures (so all failed tasks can be expected to succeed again).
+	 */
+	TOLERATE;
+
+}
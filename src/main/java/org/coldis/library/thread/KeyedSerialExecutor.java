@@ -0,0 +1,336 @@
+package org.coldis.library.thread;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keyed serial executor. Tasks for the same key run one at a time and in
+ * submission order, while tasks for different keys run in parallel on a
+ * shared executor. Each active key has a lock-free queue that is drained by a
+ * single task at a time, and idle keys are removed, so there is neither a
+ * thread nor a lock per key.
+ *
+ * @param <TypeKey> Key type.
+ */
+public class KeyedSerialExecutor<TypeKey> {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+	/** Default number of tasks run for a key before yielding to other keys. */
+	public static final Integer DEFAULT_BATCH_SIZE = 64;
+
+	/** Executor. */
+	private final Executor executor;
+
+	/** If the thread map context should be propagated to tasks. */
+	private final boolean propagateContext;
+
+	/** Tasks run for a key before yielding to other keys. */
+	private final int batchSize;
+
+	/** Key queues. */
+	private final Map<TypeKey, KeyQueue> queues = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor         Executor.
+	 * @param propagateContext If the {@link ThreadMapContextHolder} attributes
+	 *                             should be propagated to tasks.
+	 * @param batchSize        Tasks run for a key before yielding to other
+	 *                             keys.
+	 */
+	public KeyedSerialExecutor(final Executor executor, final Boolean propagateContext, final Integer batchSize) {
+		super();
+		this.executor = executor;
+		this.propagateContext = propagateContext;
+		this.batchSize = Math.max(batchSize, 1);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pool Pool.
+	 */
+	public KeyedSerialExecutor(final DynamicThreadPool pool) {
+		this(pool, pool.getPropagateContext(), KeyedSerialExecutor.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Executor.
+	 */
+	public KeyedSerialExecutor(final Executor executor) {
+		this(executor, false, KeyedSerialExecutor.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Task submitted for a result.
+	 *
+	 * @param <Type> Result type.
+	 */
+	private static class ResultTask<Type> implements Runnable {
+
+		/** Task. */
+		private final Callable<Type> task;
+
+		/** Result. */
+		private final CompletableFuture<Type> result = new CompletableFuture<>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param task Task.
+		 */
+		ResultTask(final Callable<Type> task) {
+			super();
+			this.task = task;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				this.result.complete(this.task.call());
+			}
+			catch (final Throwable throwable) {
+				this.result.completeExceptionally(throwable);
+			}
+		}
+
+	}
+
+	/** Queue for a key. */
+	private class KeyQueue implements Runnable {
+
+		/** Key. */
+		private final TypeKey key;
+
+		/** Tasks. */
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		/** Pending tasks (or -1 once the queue is retired). */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key Key.
+		 */
+		KeyQueue(final TypeKey key) {
+			super();
+			this.key = key;
+		}
+
+		/**
+		 * Adds a task to the queue (throwing a {@link RejectedExecutionException}
+		 * if the queue drain cannot be scheduled).
+		 *
+		 * @param  task Task.
+		 * @return      If the task was added (<code>false</code> if the queue is
+		 *              retired).
+		 */
+		boolean offer(
+				final Runnable task) {
+			for (;;) {
+				final int currentPending = this.pending.get();
+				// If the queue is retired, a new one must be used.
+				if (currentPending < 0) {
+					return false;
+				}
+				// Otherwise, adds the task and schedules the drain if the queue was idle.
+				if (this.pending.compareAndSet(currentPending, currentPending + 1)) {
+					this.tasks.offer(task);
+					if (currentPending == 0) {
+						final RejectedExecutionException exception = this.schedule();
+						if (exception != null) {
+							throw exception;
+						}
+					}
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Schedules the queue drain. If it cannot be scheduled (the executor is
+		 * shut down), the pending tasks are rejected instead of being run in the
+		 * caller thread.
+		 *
+		 * @return The rejection (<code>null</code> if the drain was scheduled).
+		 */
+		private RejectedExecutionException schedule() {
+			try {
+				KeyedSerialExecutor.this.executor.execute(this);
+				return null;
+			}
+			catch (final RejectedExecutionException exception) {
+				KeyedSerialExecutor.LOGGER.warn("Keyed task drain for '" + this.key + "' rejected, rejecting its pending tasks.");
+				this.reject(exception);
+				return exception;
+			}
+		}
+
+		/**
+		 * Takes the next task.
+		 *
+		 * @return The next task.
+		 */
+		private Runnable next() {
+			// Waits for a task that is being added.
+			Runnable task = this.tasks.poll();
+			while (task == null) {
+				Thread.onSpinWait();
+				task = this.tasks.poll();
+			}
+			return task;
+		}
+
+		/**
+		 * Finishes a task.
+		 *
+		 * @return If the drain should stop (there are no more tasks).
+		 */
+		private boolean finish() {
+			// If there are no more tasks, retires the queue (unless a task has just been
+			// added, in which case its submitter schedules a new drain).
+			if (this.pending.decrementAndGet() == 0) {
+				if (this.pending.compareAndSet(0, -1)) {
+					KeyedSerialExecutor.this.queues.remove(this.key, this);
+				}
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Rejects the pending tasks.
+		 *
+		 * @param exception Rejection.
+		 */
+		private void reject(
+				final RejectedExecutionException exception) {
+			boolean finished = false;
+			while (!finished) {
+				final Runnable task = this.next();
+				if (task instanceof final ResultTask<?> resultTask) {
+					resultTask.result.completeExceptionally(exception);
+				}
+				else {
+					KeyedSerialExecutor.LOGGER.warn("Keyed task for '" + this.key + "' discarded: " + exception.getLocalizedMessage());
+				}
+				finished = this.finish();
+			}
+		}
+
+		/**
+		 * Drains the queue.
+		 */
+		@Override
+		public void run() {
+			for (int taskNumber = 0; taskNumber < KeyedSerialExecutor.this.batchSize; taskNumber++) {
+				// Runs the task.
+				final Runnable task = this.next();
+				try {
+					task.run();
+				}
+				catch (final Throwable throwable) {
+					KeyedSerialExecutor.LOGGER.error("Keyed task for '" + this.key + "' failed: " + throwable.getLocalizedMessage());
+					KeyedSerialExecutor.LOGGER.debug("Keyed task for '" + this.key + "' failed.", throwable);
+				}
+				if (this.finish()) {
+					return;
+				}
+			}
+			// Yields to other keys if there are tasks left.
+			this.schedule();
+		}
+
+	}
+
+	/**
+	 * Adds a task after the previous tasks for the same key.
+	 *
+	 * @param key  Key.
+	 * @param task Task.
+	 */
+	private void enqueue(
+			final TypeKey key,
+			final Runnable task) {
+		KeyQueue queue = this.queues.computeIfAbsent(key, KeyQueue::new);
+		while (!queue.offer(task)) {
+			// Retired queues are removed right after retirement.
+			this.queues.remove(key, queue);
+			queue = this.queues.computeIfAbsent(key, KeyQueue::new);
+		}
+	}
+
+	/**
+	 * Executes a task after the previous tasks for the same key. Once the
+	 * underlying executor rejects the tasks (it is shut down), a
+	 * {@link RejectedExecutionException} is thrown and the tasks left for the key
+	 * are discarded.
+	 *
+	 * @param key  Key.
+	 * @param task Task.
+	 */
+	public void execute(
+			final TypeKey key,
+			final Runnable task) {
+		this.enqueue(key, (this.propagateContext ? ThreadMapContextHolder.wrap(task) : task));
+	}
+
+	/**
+	 * Submits a task after the previous tasks for the same key. Once the
+	 * underlying executor rejects the tasks (it is shut down), a
+	 * {@link RejectedExecutionException} is thrown and the results of the tasks
+	 * left for the key are completed with it.
+	 *
+	 * @param  <Type> Result type.
+	 * @param  key    Key.
+	 * @param  task   Task.
+	 * @return        The task result future.
+	 */
+	public <Type> CompletableFuture<Type> submit(
+			final TypeKey key,
+			final Callable<Type> task) {
+		final ResultTask<Type> resultTask = new ResultTask<>(this.propagateContext ? ThreadMapContextHolder.wrap(task) : task);
+		this.enqueue(key, resultTask);
+		return resultTask.result;
+	}
+
+	/**
+	 * Gets the underlying executor.
+	 *
+	 * @return The underlying executor.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Gets the number of keys with pending tasks.
+	 *
+	 * @return The number of keys with pending tasks.
+	 */
+	public Integer getActiveKeys() {
+		return this.queues.size();
+	}
+
+}
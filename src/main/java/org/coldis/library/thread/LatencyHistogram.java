@@ -0,0 +1,155 @@
+package org.coldis.library.thread;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram. Values are bucketed by their power
+ * of two and then linearly into {@link #SUB_BUCKETS} sub buckets, which keeps
+ * the relative error of percentiles under 1/{@link #SUB_BUCKETS} with fixed
+ * memory and no allocation on record.
+ */
+public class LatencyHistogram {
+
+	/** Sub bucket bits. */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/** Number of linear sub buckets per power of two. */
+	public static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+
+	/** Number of buckets. */
+	static final int BUCKETS = (Long.SIZE - LatencyHistogram.SUB_BUCKET_BITS + 1) * LatencyHistogram.SUB_BUCKETS;
+
+	/** Bucket counts. */
+	private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+
+	/** Total count. */
+	private final LongAdder count = new LongAdder();
+
+	/** Total sum. */
+	private final LongAdder sum = new LongAdder();
+
+	/** Maximum value. */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Gets the bucket index for a value.
+	 *
+	 * @param  value Value.
+	 * @return       The bucket index.
+	 */
+	static int getBucketIndex(
+			final long value) {
+		final long actualValue = Math.max(value, 0);
+		// Small values are stored in the first linear buckets.
+		if (actualValue < LatencyHistogram.SUB_BUCKETS) {
+			return (int) actualValue;
+		}
+		// Otherwise, uses the power of two and the bits following the highest one.
+		final int exponent = (Long.SIZE - 1 - Long.numberOfLeadingZeros(actualValue)) - LatencyHistogram.SUB_BUCKET_BITS;
+		final int subBucket = (int) (actualValue >>> exponent) & (LatencyHistogram.SUB_BUCKETS - 1);
+		return ((exponent + 1) * LatencyHistogram.SUB_BUCKETS) + subBucket;
+	}
+
+	/**
+	 * Gets the highest value for a bucket index.
+	 *
+	 * @param  index Bucket index.
+	 * @return       The highest value for the bucket.
+	 */
+	static long getBucketUpperBound(
+			final int index) {
+		final int exponent = (index / LatencyHistogram.SUB_BUCKETS) - 1;
+		final long subBucket = index % LatencyHistogram.SUB_BUCKETS;
+		// Linear buckets hold a single value.
+		if (exponent < 0) {
+			return subBucket;
+		}
+		final long lowerBound = (LatencyHistogram.SUB_BUCKETS | subBucket) << exponent;
+		return lowerBound + ((1L << exponent) - 1);
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value Value.
+	 */
+	public void record(
+			final long value) {
+		this.counts.incrementAndGet(LatencyHistogram.getBucketIndex(value));
+		this.count.increment();
+		this.sum.add(value);
+		this.max.accumulate(value);
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return The number of recorded values.
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * Gets the sum of recorded values.
+	 *
+	 * @return The sum of recorded values.
+	 */
+	public long getSum() {
+		return this.sum.sum();
+	}
+
+	/**
+	 * Gets the maximum recorded value.
+	 *
+	 * @return The maximum recorded value.
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Gets the mean recorded value.
+	 *
+	 * @return The mean recorded value.
+	 */
+	public double getMean() {
+		final long actualCount = this.getCount();
+		return (actualCount == 0 ? 0D : ((double) this.getSum()) / actualCount);
+	}
+
+	/**
+	 * Gets the (approximate) value at a percentile.
+	 *
+	 * @param  percentile Percentile (from 0 to 100).
+	 * @return            The value at the percentile.
+	 */
+	public long getPercentile(
+			final double percentile) {
+		long total = 0;
+		for (int index = 0; index < LatencyHistogram.BUCKETS; index++) {
+			total += this.counts.get(index);
+		}
+		final long rank = (long) Math.ceil((Math.max(0D, Math.min(100D, percentile)) / 100D) * total);
+		long accumulated = 0;
+		for (int index = 0; index < LatencyHistogram.BUCKETS; index++) {
+			accumulated += this.counts.get(index);
+			if ((accumulated >= rank) && (accumulated > 0)) {
+				return Math.min(LatencyHistogram.getBucketUpperBound(index), this.getMax());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "count=" + this.getCount() + ", mean=" + ((long) this.getMean()) + ", p50=" + this.getPercentile(50) + ", p99=" + this.getPercentile(99)
+				+ ", max=" + this.getMax();
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queue latency load shedder (CoDel-like). The minimum queue wait seen by
+ * dequeued tasks is tracked per interval: if even the fastest task in an
+ * interval waited longer than the target, the queue is standing (not just a
+ * burst) and the pool is overloaded. While overloaded, tasks that waited longer
+ * than the target are dropped at dequeue instead of run, which drains the
+ * standing queue and keeps tail latency close to the target. The overloaded
+ * state ends after the first interval whose minimum wait is within the target.
+ */
+public class LatencyLoadShedder {
+
+	/** No samples in the interval. */
+	private static final long NO_SAMPLES = Long.MAX_VALUE;
+
+	/** Target queue wait (nanos). */
+	private final long targetNanos;
+
+	/** Interval (nanos). */
+	private final long intervalNanos;
+
+	/** Current interval start (nanos). */
+	private final AtomicLong intervalStart = new AtomicLong(System.nanoTime());
+
+	/** Min queue wait in the current interval (nanos). */
+	private final AtomicLong intervalMinWait = new AtomicLong(LatencyLoadShedder.NO_SAMPLES);
+
+	/** If the pool is overloaded. */
+	private volatile boolean overloaded;
+
+	/** Shed tasks. */
+	private final LongAdder shed = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param target   Target queue wait.
+	 * @param interval Interval used to detect a standing queue.
+	 */
+	public LatencyLoadShedder(final Duration target, final Duration interval) {
+		super();
+		this.targetNanos = target.toNanos();
+		this.intervalNanos = Math.max(interval.toNanos(), 1);
+	}
+
+	/**
+	 * Records the queue wait of a dequeued task and decides whether it should be
+	 * shed.
+	 *
+	 * @param  now       Current time (nanos).
+	 * @param  waitNanos Queue wait (nanos).
+	 * @return           If the task should be shed.
+	 */
+	public boolean shouldShed(
+			final long now,
+			final long waitNanos) {
+		// Closes the interval if it is over (only one thread evaluates it).
+		final long currentIntervalStart = this.intervalStart.get();
+		if (((now - currentIntervalStart) >= this.intervalNanos) && this.intervalStart.compareAndSet(currentIntervalStart, now)) {
+			final long minWait = this.intervalMinWait.getAndSet(LatencyLoadShedder.NO_SAMPLES);
+			this.overloaded = ((minWait != LatencyLoadShedder.NO_SAMPLES) && (minWait > this.targetNanos));
+		}
+
+		// Updates the interval min wait.
+		long currentMinWait = this.intervalMinWait.get();
+		while ((waitNanos < currentMinWait) && !this.intervalMinWait.compareAndSet(currentMinWait, waitNanos)) {
+			currentMinWait = this.intervalMinWait.get();
+		}
+
+		// Sheds the task if overloaded and it waited too long.
+		final boolean shouldShed = (this.overloaded && (waitNanos > this.targetNanos));
+		if (shouldShed) {
+			this.shed.increment();
+		}
+		return shouldShed;
+	}
+
+	/**
+	 * Gets if the pool is overloaded.
+	 *
+	 * @return If the pool is overloaded.
+	 */
+	public boolean isOverloaded() {
+		return this.overloaded;
+	}
+
+	/**
+	 * Gets the number of shed tasks.
+	 *
+	 * @return The number of shed tasks.
+	 */
+	public long getShed() {
+		return this.shed.sum();
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "overloaded=" + this.overloaded + ", shed=" + this.getShed();
+	}
+
+}
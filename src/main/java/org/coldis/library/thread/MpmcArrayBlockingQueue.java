@@ -0,0 +1,427 @@
+package org.coldis.library.thread;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free bounded multi-producer multi-consumer queue, backed by a ring
+ * buffer where each slot has a sequence number (so producers and consumers
+ * only contend on a CAS of their own index, and nothing is allocated per
+ * element). Head and tail indices are padded to avoid false sharing. Idle
+ * consumers park, and producers wake one up only when there are waiting
+ * consumers.
+ * <p>
+ * Elements are removed from the middle of the queue on a slow path (scanning
+ * the ring and replacing the element with a removed marker, which consumers
+ * skip).
+ *
+ * @param <Type> Element type.
+ */
+public class MpmcArrayBlockingQueue<Type> extends AbstractQueue<Type> implements BlockingQueue<Type> {
+
+	/** Spins before a consumer parks. */
+	private static final int SPINS = 64;
+
+	/** Max park time for producers waiting for room (nanos). */
+	private static final long MAX_PRODUCER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** Removed element marker. */
+	private static final Object REMOVED = new Object();
+
+	/** Element array handle. */
+	private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	/** Sequence array handle. */
+	private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/** Padded index value handle. */
+	private static final VarHandle INDEX_VALUE;
+
+	static {
+		try {
+			INDEX_VALUE = MethodHandles.lookup().findVarHandle(PaddedIndex.class, "value", long.class);
+		}
+		catch (final ReflectiveOperationException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+	/** Index padded to its own cache line. */
+	@SuppressWarnings("unused")
+	private static final class PaddedIndex {
+
+		/** Padding. */
+		private long p01, p02, p03, p04, p05, p06, p07;
+
+		/** Value. */
+		private volatile long value;
+
+		/** Padding. */
+		private long p11, p12, p13, p14, p15, p16, p17;
+
+	}
+
+	/** Capacity. */
+	private final int capacity;
+
+	/** Ring mask. */
+	private final int mask;
+
+	/** Elements. */
+	private final Object[] elements;
+
+	/** Slot sequences. */
+	private final long[] sequences;
+
+	/** Tail (next producer position). */
+	private final PaddedIndex tail = new PaddedIndex();
+
+	/** Head (next consumer position). */
+	private final PaddedIndex head = new PaddedIndex();
+
+	/** Parked consumers. */
+	private final Queue<Thread> waitingConsumers = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity Capacity.
+	 */
+	public MpmcArrayBlockingQueue(final Integer capacity) {
+		super();
+		if ((capacity == null) || (capacity <= 0) || (capacity > (1 << 30))) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+		}
+		this.capacity = capacity;
+		final int ringSize = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+		this.mask = ringSize - 1;
+		this.elements = new Object[ringSize];
+		this.sequences = new long[ringSize];
+		for (int index = 0; index < ringSize; index++) {
+			this.sequences[index] = index;
+		}
+	}
+
+	/**
+	 * Wakes up a waiting consumer, if any.
+	 */
+	private void signalConsumer() {
+		// Orders the element publication before the waiting consumers check (a
+		// consumer registers before polling again, so neither side misses the
+		// other).
+		VarHandle.fullFence();
+		if (!this.waitingConsumers.isEmpty()) {
+			final Thread consumer = this.waitingConsumers.poll();
+			if (consumer != null) {
+				LockSupport.unpark(consumer);
+			}
+		}
+	}
+
+	/**
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(
+			final Type element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+		for (;;) {
+			final long currentTail = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.tail);
+			final int slot = (int) (currentTail & this.mask);
+			final long sequence = (long) MpmcArrayBlockingQueue.SEQUENCES.getAcquire(this.sequences, slot);
+			// If the slot is free and the queue is not full, claims it.
+			if (sequence == currentTail) {
+				if ((currentTail - (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head)) >= this.capacity) {
+					return false;
+				}
+				if (MpmcArrayBlockingQueue.INDEX_VALUE.compareAndSet(this.tail, currentTail, currentTail + 1)) {
+					this.elements[slot] = element;
+					MpmcArrayBlockingQueue.SEQUENCES.setRelease(this.sequences, slot, currentTail + 1);
+					this.signalConsumer();
+					return true;
+				}
+			}
+			// If the slot was not consumed yet, the queue is full.
+			else if (sequence < currentTail) {
+				return false;
+			}
+			// Otherwise, another producer claimed the slot.
+		}
+	}
+
+	/**
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Type poll() {
+		for (;;) {
+			final long currentHead = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head);
+			final int slot = (int) (currentHead & this.mask);
+			final long sequence = (long) MpmcArrayBlockingQueue.SEQUENCES.getAcquire(this.sequences, slot);
+			// If the slot is filled, claims it.
+			if (sequence == (currentHead + 1)) {
+				if (MpmcArrayBlockingQueue.INDEX_VALUE.compareAndSet(this.head, currentHead, currentHead + 1)) {
+					final Object element = MpmcArrayBlockingQueue.ELEMENTS.getAndSet(this.elements, slot, (Object) null);
+					MpmcArrayBlockingQueue.SEQUENCES.setRelease(this.sequences, slot, currentHead + this.mask + 1);
+					// Removed elements are skipped.
+					if (element != MpmcArrayBlockingQueue.REMOVED) {
+						return (Type) element;
+					}
+				}
+			}
+			// If the slot was not filled yet, the queue is empty.
+			else if (sequence < (currentHead + 1)) {
+				return null;
+			}
+			// Otherwise, another consumer claimed the slot.
+		}
+	}
+
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Type peek() {
+		// Skips removed (or concurrently consumed) elements.
+		for (long position = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head);; position++) {
+			final int slot = (int) (position & this.mask);
+			if ((long) MpmcArrayBlockingQueue.SEQUENCES.getAcquire(this.sequences, slot) != (position + 1)) {
+				return null;
+			}
+			final Object element = MpmcArrayBlockingQueue.ELEMENTS.getVolatile(this.elements, slot);
+			if ((element != null) && (element != MpmcArrayBlockingQueue.REMOVED)) {
+				return (Type) element;
+			}
+		}
+	}
+
+	/**
+	 * Polls an element, waiting until the deadline.
+	 *
+	 * @param  deadline             Deadline (nanos, or <code>null</code> to wait
+	 *                                  forever).
+	 * @return                      The element (<code>null</code> if the deadline
+	 *                              passed).
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	private Type poll(
+			final Long deadline) throws InterruptedException {
+		Type element = null;
+		for (int spin = 0; (element == null) && (spin < MpmcArrayBlockingQueue.SPINS); spin++) {
+			element = this.poll();
+			if (element == null) {
+				Thread.onSpinWait();
+			}
+		}
+		// Parks until an element is added.
+		final Thread consumer = Thread.currentThread();
+		while (element == null) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			final long remaining = (deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime());
+			if (remaining <= 0) {
+				break;
+			}
+			this.waitingConsumers.offer(consumer);
+			VarHandle.fullFence();
+			// Checks again after registering, so a concurrent offer is not missed.
+			element = this.poll();
+			if (element == null) {
+				if (deadline == null) {
+					LockSupport.park(this);
+				}
+				else {
+					LockSupport.parkNanos(this, remaining);
+				}
+				element = this.poll();
+			}
+			this.waitingConsumers.remove(consumer);
+		}
+		// Passes the wake-up on if there are elements left (a wake-up may have
+		// been consumed by a consumer that did not need it).
+		if ((element != null) && !this.isEmpty()) {
+			this.signalConsumer();
+		}
+		return element;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#take()
+	 */
+	@Override
+	public Type take() throws InterruptedException {
+		return this.poll((Long) null);
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#poll(long,
+	 *      java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public Type poll(
+			final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		return this.poll((Long) (System.nanoTime() + unit.toNanos(timeout)));
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#offer(java.lang.Object, long,
+	 *      java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean offer(
+			final Type element,
+			final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long parkNanos = 1;
+		boolean offered = this.offer(element);
+		while (!offered && ((deadline - System.nanoTime()) > 0)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			// Backs off while waiting for room.
+			LockSupport.parkNanos(this, Math.min(parkNanos, deadline - System.nanoTime()));
+			parkNanos = Math.min(parkNanos * 2, MpmcArrayBlockingQueue.MAX_PRODUCER_PARK_NANOS);
+			offered = this.offer(element);
+		}
+		return offered;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#put(java.lang.Object)
+	 */
+	@Override
+	public void put(
+			final Type element) throws InterruptedException {
+		while (!this.offer(element, Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+			// Waits until there is room.
+		}
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		// Reads head first, so the size is never negative.
+		final long currentHead = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head);
+		final long currentTail = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.tail);
+		return (int) Math.max(Math.min(currentTail - currentHead, this.capacity), 0);
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return this.peek() == null;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#remainingCapacity()
+	 */
+	@Override
+	public int remainingCapacity() {
+		return this.capacity - this.size();
+	}
+
+	/**
+	 * Removes an element from the middle of the queue (slow path, scanning the
+	 * ring).
+	 *
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(
+			final Object element) {
+		if (element != null) {
+			final long currentTail = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.tail);
+			for (long position = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head); position < currentTail; position++) {
+				final int slot = (int) (position & this.mask);
+				final Object currentElement = MpmcArrayBlockingQueue.ELEMENTS.getVolatile(this.elements, slot);
+				// Only published elements are replaced (unless consumed meanwhile).
+				if (((long) MpmcArrayBlockingQueue.SEQUENCES.getAcquire(this.sequences, slot) == (position + 1)) && (currentElement != null)
+						&& (currentElement != MpmcArrayBlockingQueue.REMOVED) && element.equals(currentElement)
+						&& MpmcArrayBlockingQueue.ELEMENTS.compareAndSet(this.elements, slot, currentElement, MpmcArrayBlockingQueue.REMOVED)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+	 */
+	@Override
+	public int drainTo(
+			final Collection<? super Type> collection) {
+		return this.drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	public int drainTo(
+			final Collection<? super Type> collection,
+			final int maxElements) {
+		int drained = 0;
+		for (Type element = (maxElements > 0 ? this.poll() : null); element != null; element = (drained < maxElements ? this.poll() : null)) {
+			collection.add(element);
+			drained++;
+		}
+		return drained;
+	}
+
+	/**
+	 * Gets a weakly consistent iterator over a snapshot of the queue (removal is
+	 * not supported).
+	 *
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Iterator<Type> iterator() {
+		final List<Type> snapshot = new ArrayList<>();
+		final long currentTail = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.tail);
+		for (long position = (long) MpmcArrayBlockingQueue.INDEX_VALUE.getVolatile(this.head); position < currentTail; position++) {
+			final int slot = (int) (position & this.mask);
+			final Object element = MpmcArrayBlockingQueue.ELEMENTS.getVolatile(this.elements, slot);
+			if (((long) MpmcArrayBlockingQueue.SEQUENCES.getAcquire(this.sequences, slot) == (position + 1)) && (element != null)
+					&& (element != MpmcArrayBlockingQueue.REMOVED)) {
+				snapshot.add((Type) element);
+			}
+		}
+		final Iterator<Type> iterator = snapshot.iterator();
+		return new Iterator<>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Type next() {
+				return iterator.next();
+			}
+		};
+	}
+
+}
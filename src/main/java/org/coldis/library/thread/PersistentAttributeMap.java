@@ -0,0 +1,215 @@
+package org.coldis.library.thread;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable persistent attribute map. Updates return a new map and leave the
+ * original untouched, so a map can be shared between threads and scopes
+ * without copies. Attributes are kept in flat arrays, which suits the few
+ * attributes a context usually holds: reads do not allocate.
+ */
+public final class PersistentAttributeMap extends AbstractMap<String, Object> {
+
+	/** Empty map. */
+	public static final PersistentAttributeMap EMPTY = new PersistentAttributeMap(new String[0], new Object[0]);
+
+	/** Keys. */
+	private final String[] keys;
+
+	/** Values. */
+	private final Object[] values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keys   Keys.
+	 * @param values Values.
+	 */
+	private PersistentAttributeMap(final String[] keys, final Object[] values) {
+		super();
+		this.keys = keys;
+		this.values = values;
+	}
+
+	/**
+	 * Creates a map from other attributes.
+	 *
+	 * @param  attributes Attributes.
+	 * @return            The persistent map.
+	 */
+	public static PersistentAttributeMap of(
+			final Map<String, Object> attributes) {
+		PersistentAttributeMap map = PersistentAttributeMap.EMPTY;
+		if (attributes instanceof final PersistentAttributeMap persistentAttributes) {
+			map = persistentAttributes;
+		}
+		else if ((attributes != null) && !attributes.isEmpty()) {
+			final String[] keys = new String[attributes.size()];
+			final Object[] values = new Object[attributes.size()];
+			int index = 0;
+			for (final Entry<String, Object> attribute : attributes.entrySet()) {
+				keys[index] = attribute.getKey();
+				values[index] = attribute.getValue();
+				index++;
+			}
+			map = new PersistentAttributeMap(keys, values);
+		}
+		return map;
+	}
+
+	/**
+	 * Gets the index of a key.
+	 *
+	 * @param  key Key.
+	 * @return     The index of the key (or -1 if not found).
+	 */
+	private int indexOf(
+			final Object key) {
+		for (int index = 0; index < this.keys.length; index++) {
+			if (Objects.equals(this.keys[index], key)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets a new map with an attribute set.
+	 *
+	 * @param  key   Attribute key.
+	 * @param  value Attribute value.
+	 * @return       The new map.
+	 */
+	public PersistentAttributeMap with(
+			final String key,
+			final Object value) {
+		final int index = this.indexOf(key);
+		PersistentAttributeMap map = null;
+		if (index >= 0) {
+			final Object[] newValues = this.values.clone();
+			newValues[index] = value;
+			map = new PersistentAttributeMap(this.keys, newValues);
+		}
+		else {
+			final String[] newKeys = Arrays.copyOf(this.keys, this.keys.length + 1);
+			final Object[] newValues = Arrays.copyOf(this.values, this.values.length + 1);
+			newKeys[this.keys.length] = key;
+			newValues[this.values.length] = value;
+			map = new PersistentAttributeMap(newKeys, newValues);
+		}
+		return map;
+	}
+
+	/**
+	 * Gets a new map with all the given attributes set.
+	 *
+	 * @param  attributes Attributes.
+	 * @return            The new map.
+	 */
+	public PersistentAttributeMap withAll(
+			final Map<String, Object> attributes) {
+		PersistentAttributeMap map = this;
+		if ((attributes != null) && (attributes != this)) {
+			for (final Entry<String, Object> attribute : attributes.entrySet()) {
+				map = map.with(attribute.getKey(), attribute.getValue());
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Gets a new map without an attribute.
+	 *
+	 * @param  key Attribute key.
+	 * @return     The new map.
+	 */
+	public PersistentAttributeMap without(
+			final String key) {
+		final int index = this.indexOf(key);
+		PersistentAttributeMap map = this;
+		if (index >= 0) {
+			final String[] newKeys = new String[this.keys.length - 1];
+			final Object[] newValues = new Object[this.values.length - 1];
+			System.arraycopy(this.keys, 0, newKeys, 0, index);
+			System.arraycopy(this.values, 0, newValues, 0, index);
+			System.arraycopy(this.keys, index + 1, newKeys, index, this.keys.length - index - 1);
+			System.arraycopy(this.values, index + 1, newValues, index, this.values.length - index - 1);
+			map = new PersistentAttributeMap(newKeys, newValues);
+		}
+		return map;
+	}
+
+	/**
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return this.keys.length;
+	}
+
+	/**
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(
+			final Object key) {
+		return this.indexOf(key) >= 0;
+	}
+
+	/**
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public Object get(
+			final Object key) {
+		final int index = this.indexOf(key);
+		return (index < 0 ? null : this.values[index]);
+	}
+
+	/**
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<>() {
+
+					/** Current index. */
+					private int index;
+
+					@Override
+					public boolean hasNext() {
+						return this.index < PersistentAttributeMap.this.keys.length;
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						if (!this.hasNext()) {
+							throw new NoSuchElementException();
+						}
+						final Entry<String, Object> entry = new SimpleImmutableEntry<>(PersistentAttributeMap.this.keys[this.index],
+								PersistentAttributeMap.this.values[this.index]);
+						this.index++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return PersistentAttributeMap.this.keys.length;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,221 @@
+package org.coldis.library.thread;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copy-on-write thread map context. Taking a snapshot only marks the current
+ * attributes as shared, and the attributes are copied on the first write
+ * after that, so capturing the context (for each submitted task) is O(1).
+ */
+class ThreadMapContext extends AbstractMap<String, Object> {
+
+	/** Attributes. */
+	private Map<String, Object> attributes;
+
+	/** If the attributes are shared with a snapshot (and must be copied on write). */
+	private boolean shared;
+
+	/**
+	 * Default constructor.
+	 */
+	ThreadMapContext() {
+		this(new HashMap<>(), false);
+	}
+
+	/**
+	 * Snapshot constructor.
+	 *
+	 * @param attributes Attributes.
+	 * @param shared     If the attributes are shared.
+	 */
+	ThreadMapContext(final Map<String, Object> attributes, final boolean shared) {
+		super();
+		this.attributes = attributes;
+		this.shared = shared;
+	}
+
+	/**
+	 * Takes a snapshot of the attributes. The snapshot must not be changed.
+	 *
+	 * @return The attributes snapshot.
+	 */
+	Map<String, Object> snapshot() {
+		this.shared = true;
+		return this.attributes;
+	}
+
+	/**
+	 * Gets the attributes for writing (copying them if shared).
+	 *
+	 * @return The writable attributes.
+	 */
+	private Map<String, Object> getWritableAttributes() {
+		if (this.shared) {
+			this.attributes = new HashMap<>(this.attributes);
+			this.shared = false;
+		}
+		return this.attributes;
+	}
+
+	/**
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return this.attributes.size();
+	}
+
+	/**
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(
+			final Object key) {
+		return this.attributes.containsKey(key);
+	}
+
+	/**
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public Object get(
+			final Object key) {
+		return this.attributes.get(key);
+	}
+
+	/**
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public Object put(
+			final String key,
+			final Object value) {
+		return this.getWritableAttributes().put(key, value);
+	}
+
+	/**
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	public Object remove(
+			final Object key) {
+		return (this.attributes.containsKey(key) ? this.getWritableAttributes().remove(key) : null);
+	}
+
+	/**
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear() {
+		this.attributes = new HashMap<>();
+		this.shared = false;
+	}
+
+	/**
+	 * Entry that writes through the context (copying the attributes if shared).
+	 */
+	private class ContextEntry extends AbstractMap.SimpleEntry<String, Object> {
+
+		/** Serial. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param entry Attributes entry.
+		 */
+		ContextEntry(final Entry<String, Object> entry) {
+			super(entry);
+		}
+
+		/**
+		 * @see java.util.AbstractMap.SimpleEntry#setValue(java.lang.Object)
+		 */
+		@Override
+		public Object setValue(
+				final Object value) {
+			ThreadMapContext.this.put(this.getKey(), value);
+			return super.setValue(value);
+		}
+
+	}
+
+	/**
+	 * Entry set view that writes through the context (copying the attributes if
+	 * shared). Iterators go over the attributes as they were when created, so
+	 * copying them meanwhile does not affect the iteration.
+	 */
+	private class ContextEntrySet extends AbstractSet<Entry<String, Object>> {
+
+		/**
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			return ThreadMapContext.this.size();
+		}
+
+		/**
+		 * @see java.util.AbstractCollection#clear()
+		 */
+		@Override
+		public void clear() {
+			ThreadMapContext.this.clear();
+		}
+
+		/**
+		 * @see java.util.AbstractCollection#iterator()
+		 */
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			final Map<String, Object> iteratedAttributes = ThreadMapContext.this.attributes;
+			final Iterator<Entry<String, Object>> iterator = iteratedAttributes.entrySet().iterator();
+			return new Iterator<>() {
+
+				/** Current entry. */
+				private ContextEntry current;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Entry<String, Object> next() {
+					this.current = new ContextEntry(iterator.next());
+					return this.current;
+				}
+
+				@Override
+				public void remove() {
+					if (this.current == null) {
+						throw new IllegalStateException();
+					}
+					// Removes directly only from attributes that are not shared.
+					if ((ThreadMapContext.this.attributes == iteratedAttributes) && !ThreadMapContext.this.shared) {
+						iterator.remove();
+					}
+					else {
+						ThreadMapContext.this.remove(this.current.getKey());
+					}
+					this.current = null;
+				}
+			};
+		}
+
+	}
+
+	/**
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new ContextEntrySet();
+	}
+
+}
@@ -1,40 +1,253 @@
 package org.coldis.library.thread;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
- * Thread context holder.
+ * Thread context holder. Attributes either live in a mutable per-thread map
+ * ({@link #getAttributes()}, {@link #setAttribute(String, Object)}) or are
+ * bound immutably for the extent of a scope ({@link #runWith(Map, Runnable)}),
+ * in which case reads do not allocate and, when the runtime supports scoped
+ * values, no per-thread map is kept.
  */
 public class ThreadMapContextHolder {
 
 	/**
 	 * Thread local variable.
 	 */
-	private static final ThreadLocal<Object> THREAD_LOCAL_MAP_CONTEXT = new ThreadLocal<>();
+	private static final ThreadLocal<ThreadMapContext> THREAD_LOCAL_MAP_CONTEXT = new ThreadLocal<>();
 
 	/**
-	 * Gets the thread attributes.
+	 * View of the scoped attributes, which are read as they are until the first
+	 * write (that creates the thread map from them).
+	 */
+	private static class ScopedAttributes extends AbstractMap<String, Object> {
+
+		/** Scoped attributes. */
+		private final PersistentAttributeMap scopedAttributes;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param scopedAttributes Scoped attributes.
+		 */
+		ScopedAttributes(final PersistentAttributeMap scopedAttributes) {
+			super();
+			this.scopedAttributes = scopedAttributes;
+		}
+
+		/**
+		 * Gets the attributes to read (the thread map, once there is one).
+		 *
+		 * @return The attributes to read.
+		 */
+		private Map<String, Object> getReadableAttributes() {
+			final ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+			return (attributes == null ? this.scopedAttributes : attributes);
+		}
+
+		/**
+		 * @see java.util.AbstractMap#size()
+		 */
+		@Override
+		public int size() {
+			return this.getReadableAttributes().size();
+		}
+
+		/**
+		 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+		 */
+		@Override
+		public boolean containsKey(
+				final Object key) {
+			return this.getReadableAttributes().containsKey(key);
+		}
+
+		/**
+		 * @see java.util.AbstractMap#get(java.lang.Object)
+		 */
+		@Override
+		public Object get(
+				final Object key) {
+			return this.getReadableAttributes().get(key);
+		}
+
+		/**
+		 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+		 */
+		@Override
+		public Object put(
+				final String key,
+				final Object value) {
+			return ThreadMapContextHolder.getContext().put(key, value);
+		}
+
+		/**
+		 * @see java.util.AbstractMap#remove(java.lang.Object)
+		 */
+		@Override
+		public Object remove(
+				final Object key) {
+			return (this.getReadableAttributes().containsKey(key) ? ThreadMapContextHolder.getContext().remove(key) : null);
+		}
+
+		/**
+		 * @see java.util.AbstractMap#clear()
+		 */
+		@Override
+		public void clear() {
+			ThreadMapContextHolder.getContext().clear();
+		}
+
+		/**
+		 * Entries are read-only until the thread map is created.
+		 *
+		 * @see java.util.AbstractMap#entrySet()
+		 */
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return this.getReadableAttributes().entrySet();
+		}
+
+	}
+
+	/**
+	 * Gets the thread context, creating it if there is none (from the scoped
+	 * attributes, copied on the first write).
+	 *
+	 * @return The thread context.
+	 */
+	private static ThreadMapContext getContext() {
+		ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		if (attributes == null) {
+			final PersistentAttributeMap scopedAttributes = ThreadMapScopedBinding.get();
+			attributes = (scopedAttributes == null ? new ThreadMapContext() : new ThreadMapContext(scopedAttributes, true));
+			ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.set(attributes);
+		}
+		return attributes;
+	}
+
+	/**
+	 * Gets the thread attributes. Inside a scope with no thread map yet, a view
+	 * of the scoped attributes is returned instead, and the thread map is only
+	 * created by the first write.
 	 *
 	 * @return The thread attributes.
 	 */
-	@SuppressWarnings("unchecked")
 	public static Map<String, Object> getAttributes() {
-		final Map<String, Object> attributes = (ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get() == null ? new HashMap<>()
-				: (Map<String, Object>) ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get());
-		ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.set(attributes);
-		return attributes;
+		final ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		final PersistentAttributeMap scopedAttributes = (attributes == null ? ThreadMapScopedBinding.get() : null);
+		return (scopedAttributes == null ? ThreadMapContextHolder.getContext() : new ScopedAttributes(scopedAttributes));
 	}
 
 	/**
-	 * Gets a thread attribute.
+	 * Gets a thread attribute (without allocating a thread map if there is
+	 * none).
 	 *
 	 * @param  key A thread attribute.
 	 * @return     The attribute value.
 	 */
 	public static Object getAttribute(
 			final String key) {
-		return ThreadMapContextHolder.getAttributes().get(key);
+		final ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		Object value = null;
+		if (attributes != null) {
+			value = attributes.get(key);
+		}
+		else {
+			final PersistentAttributeMap scopedAttributes = ThreadMapScopedBinding.get();
+			value = (scopedAttributes == null ? null : scopedAttributes.get(key));
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the attributes bound to the current scope.
+	 *
+	 * @return The attributes bound to the current scope.
+	 */
+	public static PersistentAttributeMap getScopedAttributes() {
+		final PersistentAttributeMap scopedAttributes = ThreadMapScopedBinding.get();
+		return (scopedAttributes == null ? PersistentAttributeMap.EMPTY : scopedAttributes);
+	}
+
+	/**
+	 * Runs a task with the given attributes bound. Inside the task, the
+	 * attributes are read without allocation and are seen by structured
+	 * subtasks. Changes to the thread attributes made inside the task are
+	 * discarded once it finishes.
+	 *
+	 * @param attributes Attributes.
+	 * @param task       Task.
+	 */
+	public static void runWith(
+			final Map<String, Object> attributes,
+			final Runnable task) {
+		final PersistentAttributeMap scopedAttributes = PersistentAttributeMap.of(attributes);
+		ThreadMapScopedBinding.run(scopedAttributes, () -> {
+			final ThreadMapContext previous = ThreadMapContextHolder.restore(null);
+			try {
+				task.run();
+			}
+			finally {
+				ThreadMapContextHolder.reset(previous);
+			}
+		});
+	}
+
+	/**
+	 * Runs a task with an attribute added to the current ones.
+	 *
+	 * @param key   Attribute key.
+	 * @param value Attribute value.
+	 * @param task  Task.
+	 */
+	public static void runWith(
+			final String key,
+			final Object value,
+			final Runnable task) {
+		ThreadMapContextHolder.runWith(ThreadMapContextHolder.getCurrentAttributes().with(key, value), task);
+	}
+
+	/**
+	 * Calls a task with the given attributes bound.
+	 *
+	 * @param  <Type>     Result type.
+	 * @param  attributes Attributes.
+	 * @param  task       Task.
+	 * @return            The task result.
+	 * @throws Exception  If the task fails.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Type> Type callWith(
+			final Map<String, Object> attributes,
+			final Callable<Type> task) throws Exception {
+		final Object[] result = new Object[2];
+		ThreadMapContextHolder.runWith(attributes, () -> {
+			try {
+				result[0] = task.call();
+			}
+			catch (final Exception exception) {
+				result[1] = exception;
+			}
+		});
+		if (result[1] != null) {
+			throw (Exception) result[1];
+		}
+		return (Type) result[0];
+	}
+
+	/**
+	 * Gets the current attributes (scoped and thread ones) as a persistent map.
+	 *
+	 * @return The current attributes.
+	 */
+	private static PersistentAttributeMap getCurrentAttributes() {
+		final ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		return (attributes == null ? ThreadMapContextHolder.getScopedAttributes() : ThreadMapContextHolder.getScopedAttributes().withAll(attributes.snapshot()));
 	}
 
 	/**
@@ -46,7 +259,7 @@ public class ThreadMapContextHolder {
 	public static void setAttribute(
 			final String key,
 			final Object value) {
-		ThreadMapContextHolder.getAttributes().put(key, value);
+		ThreadMapContextHolder.getContext().put(key, value);
 	}
 
 	/**
@@ -55,4 +268,107 @@ public class ThreadMapContextHolder {
 	public static void clear() {
 		ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.remove();
 	}
+
+	/**
+	 * Takes a snapshot of the thread attributes (without copying them).
+	 *
+	 * @return The attributes snapshot (<code>null</code> if there is no context).
+	 */
+	private static Map<String, Object> snapshot() {
+		final ThreadMapContext attributes = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		return (attributes == null ? null : attributes.snapshot());
+	}
+
+	/**
+	 * Gets a read-only snapshot of the thread attributes.
+	 *
+	 * @return A read-only snapshot of the thread attributes.
+	 */
+	public static Map<String, Object> getSnapshot() {
+		final Map<String, Object> snapshot = ThreadMapContextHolder.snapshot();
+		return (snapshot == null ? ThreadMapContextHolder.getScopedAttributes() : Collections.unmodifiableMap(snapshot));
+	}
+
+	/**
+	 * Replaces the thread context with a snapshot.
+	 *
+	 * @param  snapshot Attributes snapshot.
+	 * @return          The previous thread context.
+	 */
+	private static ThreadMapContext restore(
+			final Map<String, Object> snapshot) {
+		final ThreadMapContext previous = ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.get();
+		if (snapshot == null) {
+			ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.remove();
+		}
+		else {
+			ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.set(new ThreadMapContext(snapshot, true));
+		}
+		return previous;
+	}
+
+	/**
+	 * Resets the thread context to a previous one.
+	 *
+	 * @param previous Previous thread context.
+	 */
+	private static void reset(
+			final ThreadMapContext previous) {
+		if (previous == null) {
+			ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.remove();
+		}
+		else {
+			ThreadMapContextHolder.THREAD_LOCAL_MAP_CONTEXT.set(previous);
+		}
+	}
+
+	/**
+	 * Wraps a task so it runs with a snapshot of the current thread attributes
+	 * (taken now), and the executing thread context is reset afterwards.
+	 *
+	 * @param  task Task.
+	 * @return      The wrapped task.
+	 */
+	public static Runnable wrap(
+			final Runnable task) {
+		final Map<String, Object> snapshot = ThreadMapContextHolder.snapshot();
+		final PersistentAttributeMap scopedSnapshot = ThreadMapScopedBinding.get();
+		final Runnable restoringTask = () -> {
+			final ThreadMapContext previous = ThreadMapContextHolder.restore(snapshot);
+			try {
+				task.run();
+			}
+			finally {
+				ThreadMapContextHolder.reset(previous);
+			}
+		};
+		// Binds the scoped attributes again, if any.
+		return (scopedSnapshot == null ? restoringTask : () -> ThreadMapScopedBinding.run(scopedSnapshot, restoringTask));
+	}
+
+	/**
+	 * Wraps a task so it runs with a snapshot of the current thread attributes
+	 * (taken now), and the executing thread context is reset afterwards.
+	 *
+	 * @param  <Type> Result type.
+	 * @param  task   Task.
+	 * @return        The wrapped task.
+	 */
+	public static <Type> Callable<Type> wrap(
+			final Callable<Type> task) {
+		final Map<String, Object> snapshot = ThreadMapContextHolder.snapshot();
+		final PersistentAttributeMap scopedSnapshot = ThreadMapScopedBinding.get();
+		final Callable<Type> restoringTask = () -> {
+			final ThreadMapContext previous = ThreadMapContextHolder.restore(snapshot);
+			try {
+				return task.call();
+			}
+			finally {
+				ThreadMapContextHolder.reset(previous);
+			}
+		};
+		// Binds the scoped attributes again, if any.
+		return (scopedSnapshot == null ? restoringTask : () -> ThreadMapContextHolder.callWith(scopedSnapshot, restoringTask));
+	}
+
 }
@@ -0,0 +1,151 @@
+package org.coldis.library.thread;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scoped binding for thread map context attributes. Uses
+ * <code>java.lang.ScopedValue</code> when the runtime provides it (so bindings
+ * are inherited by structured subtasks and no per-thread map is kept), and
+ * falls back to a thread local that is set and reset around the scope.
+ * <code>ScopedValue</code> is accessed through method handles, so the library
+ * still compiles for runtimes where it is a preview API.
+ */
+class ThreadMapScopedBinding {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ThreadMapScopedBinding.class);
+
+	/** Scoped value (<code>null</code> if not available). */
+	private static final Object SCOPED_VALUE;
+
+	/** Scoped value where handle: (ScopedValue, Object) -> Carrier. */
+	private static final MethodHandle WHERE;
+
+	/** Carrier run handle: (Carrier, Runnable) -> void. */
+	private static final MethodHandle RUN;
+
+	/** Scoped value is bound handle: (ScopedValue) -> boolean. */
+	private static final MethodHandle IS_BOUND;
+
+	/** Scoped value get handle: (ScopedValue) -> Object. */
+	private static final MethodHandle GET;
+
+	/** Thread local fallback. */
+	private static final ThreadLocal<PersistentAttributeMap> THREAD_LOCAL_SCOPED_CONTEXT = new ThreadLocal<>();
+
+	static {
+		Object scopedValue = null;
+		MethodHandle where = null;
+		MethodHandle run = null;
+		MethodHandle isBound = null;
+		MethodHandle get = null;
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			final Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+			final Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+			scopedValue = lookup.findStatic(scopedValueClass, "newInstance", MethodType.methodType(scopedValueClass)).invoke();
+			where = lookup.findStatic(scopedValueClass, "where", MethodType.methodType(carrierClass, scopedValueClass, Object.class))
+					.asType(MethodType.methodType(Object.class, Object.class, Object.class));
+			run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class))
+					.asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+			isBound = lookup.findVirtual(scopedValueClass, "isBound", MethodType.methodType(boolean.class))
+					.asType(MethodType.methodType(boolean.class, Object.class));
+			get = lookup.findVirtual(scopedValueClass, "get", MethodType.methodType(Object.class)).asType(MethodType.methodType(Object.class, Object.class));
+		}
+		catch (final Throwable throwable) {
+			ThreadMapScopedBinding.LOGGER.debug("Scoped values are not available, using thread local scoped context: " + throwable.getLocalizedMessage());
+			scopedValue = null;
+		}
+		SCOPED_VALUE = scopedValue;
+		WHERE = where;
+		RUN = run;
+		IS_BOUND = isBound;
+		GET = get;
+	}
+
+	/**
+	 * If scoped values are used.
+	 *
+	 * @return If scoped values are used.
+	 */
+	static boolean isScopedValue() {
+		return ThreadMapScopedBinding.SCOPED_VALUE != null;
+	}
+
+	/**
+	 * Gets the bound attributes.
+	 *
+	 * @return The bound attributes (<code>null</code> if none).
+	 */
+	static PersistentAttributeMap get() {
+		PersistentAttributeMap attributes = null;
+		if (ThreadMapScopedBinding.SCOPED_VALUE == null) {
+			attributes = ThreadMapScopedBinding.THREAD_LOCAL_SCOPED_CONTEXT.get();
+		}
+		else {
+			try {
+				if ((boolean) ThreadMapScopedBinding.IS_BOUND.invokeExact(ThreadMapScopedBinding.SCOPED_VALUE)) {
+					attributes = (PersistentAttributeMap) (Object) ThreadMapScopedBinding.GET.invokeExact(ThreadMapScopedBinding.SCOPED_VALUE);
+				}
+			}
+			catch (final Throwable throwable) {
+				throw new IllegalStateException("Could not get scoped context.", throwable);
+			}
+		}
+		return attributes;
+	}
+
+	/**
+	 * Runs a task with attributes bound.
+	 *
+	 * @param attributes Attributes.
+	 * @param task       Task.
+	 */
+	static void run(
+			final PersistentAttributeMap attributes,
+			final Runnable task) {
+		// Uses the thread local if scoped values are not available.
+		if (ThreadMapScopedBinding.SCOPED_VALUE == null) {
+			final PersistentAttributeMap previous = ThreadMapScopedBinding.THREAD_LOCAL_SCOPED_CONTEXT.get();
+			ThreadMapScopedBinding.THREAD_LOCAL_SCOPED_CONTEXT.set(attributes);
+			try {
+				task.run();
+			}
+			finally {
+				if (previous == null) {
+					ThreadMapScopedBinding.THREAD_LOCAL_SCOPED_CONTEXT.remove();
+				}
+				else {
+					ThreadMapScopedBinding.THREAD_LOCAL_SCOPED_CONTEXT.set(previous);
+				}
+			}
+		}
+		// Otherwise, binds the scoped value.
+		else {
+			final Object carrier;
+			try {
+				carrier = (Object) ThreadMapScopedBinding.WHERE.invokeExact(ThreadMapScopedBinding.SCOPED_VALUE, (Object) attributes);
+			}
+			catch (final Throwable throwable) {
+				throw new IllegalStateException("Could not bind scoped context.", throwable);
+			}
+			try {
+				ThreadMapScopedBinding.RUN.invokeExact(carrier, task);
+			}
+			catch (final RuntimeException | Error exception) {
+				throw exception;
+			}
+			catch (final Throwable throwable) {
+				throw new IllegalStateException(throwable);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,727 @@
+package org.coldis.library.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.coldis.library.helper.DateTimeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduled executor backed by a hierarchical hashed timing wheel. Scheduling
+ * and cancelling are O(1) (tasks are handed over to a single ticker thread
+ * through lock-free queues, and each wheel bucket is a doubly linked list), so
+ * it holds many delayed tasks (such as retries) much more cheaply than a heap
+ * based delay queue. Timers fire with tick resolution (never early), and due
+ * tasks run on a separate worker executor. Time is read from
+ * {@link DateTimeHelper#getClock()}: if it jumps forward, due tasks run at once
+ * (by deadline), and if it goes back, tasks keep their remaining delays.
+ */
+public final class TimingWheelScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheelScheduledExecutor.class);
+
+	/** Default tick duration. */
+	public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(10);
+
+	/** Default wheel size (buckets per level). */
+	public static final Integer DEFAULT_WHEEL_SIZE = 512;
+
+	/** Wheel levels. */
+	private static final int LEVELS = 4;
+
+	/** Worker executor. */
+	private final ExecutorService worker;
+
+	/** Tick duration (millis). */
+	private final long tickMillis;
+
+	/** Bits per wheel level. */
+	private final int wheelBits;
+
+	/** Wheel index mask. */
+	private final long wheelMask;
+
+	/** Max ticks covered by the wheel. */
+	private final long maxTicks;
+
+	/** Wheel buckets (by level and index). */
+	private final Bucket[][] buckets;
+
+	/** Start time, moved back with the clock (millis, ticker thread only). */
+	private long startMillis;
+
+	/** Time of the last tick (millis, ticker thread only). */
+	private long lastMillis;
+
+	/** Current tick (ticker thread only). */
+	private long currentTick;
+
+	/** Tasks to be added to the wheel. */
+	private final Queue<TimerTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+
+	/** Tasks to be removed from the wheel. */
+	private final Queue<TimerTask<?>> cancelledTasks = new ConcurrentLinkedQueue<>();
+
+	/** Scheduled tasks not yet dispatched. */
+	private final AtomicInteger scheduledCount = new AtomicInteger();
+
+	/** Tasks left when the executor was shut down. */
+	private final List<Runnable> remainingTasks = new ArrayList<>();
+
+	/** Ticker thread. */
+	private final Thread ticker;
+
+	/** If the executor is shut down. */
+	private volatile boolean shutdown;
+
+	/** Wheel bucket. */
+	private static class Bucket {
+
+		/** First task. */
+		private TimerTask<?> head;
+
+		/** Last task. */
+		private TimerTask<?> tail;
+
+		/**
+		 * Adds a task.
+		 *
+		 * @param task Task.
+		 */
+		void add(
+				final TimerTask<?> task) {
+			task.bucket = this;
+			task.previous = this.tail;
+			task.next = null;
+			if (this.tail == null) {
+				this.head = task;
+			}
+			else {
+				this.tail.next = task;
+			}
+			this.tail = task;
+		}
+
+		/**
+		 * Removes a task.
+		 *
+		 * @param task Task.
+		 */
+		void remove(
+				final TimerTask<?> task) {
+			if (task.previous == null) {
+				this.head = task.next;
+			}
+			else {
+				task.previous.next = task.next;
+			}
+			if (task.next == null) {
+				this.tail = task.previous;
+			}
+			else {
+				task.next.previous = task.previous;
+			}
+			task.bucket = null;
+			task.previous = null;
+			task.next = null;
+		}
+
+		/**
+		 * Removes all tasks.
+		 *
+		 * @return The first removed task (tasks are still linked by next).
+		 */
+		TimerTask<?> clear() {
+			final TimerTask<?> first = this.head;
+			for (TimerTask<?> task = first; task != null; task = task.next) {
+				task.bucket = null;
+			}
+			this.head = null;
+			this.tail = null;
+			return first;
+		}
+
+	}
+
+	/**
+	 * Timer task.
+	 *
+	 * @param <Type> Result type.
+	 */
+	private class TimerTask<Type> extends FutureTask<Type> implements RunnableScheduledFuture<Type> {
+
+		/**
+		 * Period in millis (0 if not periodic, positive for fixed rate and negative
+		 * for fixed delay).
+		 */
+		private final long period;
+
+		/** Deadline (millis). */
+		private volatile long deadlineMillis;
+
+		/** Bucket (ticker thread only). */
+		private Bucket bucket;
+
+		/** Previous task in the bucket (ticker thread only). */
+		private TimerTask<?> previous;
+
+		/** Next task in the bucket (ticker thread only). */
+		private TimerTask<?> next;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param callable       Callable.
+		 * @param deadlineMillis Deadline (millis).
+		 * @param period         Period in millis.
+		 */
+		TimerTask(final Callable<Type> callable, final long deadlineMillis, final long period) {
+			super(callable);
+			this.deadlineMillis = deadlineMillis;
+			this.period = period;
+		}
+
+		/**
+		 * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
+		 */
+		@Override
+		public long getDelay(
+				final TimeUnit unit) {
+			return unit.convert(this.deadlineMillis - TimingWheelScheduledExecutor.now(), TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(
+				final Delayed other) {
+			return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		/**
+		 * @see java.util.concurrent.RunnableScheduledFuture#isPeriodic()
+		 */
+		@Override
+		public boolean isPeriodic() {
+			return this.period != 0;
+		}
+
+		/**
+		 * @see java.util.concurrent.FutureTask#run()
+		 */
+		@Override
+		public void run() {
+			if (!this.isPeriodic()) {
+				super.run();
+			}
+			// Schedules the next run of periodic tasks.
+			else if (super.runAndReset()) {
+				this.deadlineMillis = (this.period > 0 ? this.deadlineMillis + this.period
+						: TimingWheelScheduledExecutor.getDeadline(-this.period, TimeUnit.MILLISECONDS));
+				try {
+					TimingWheelScheduledExecutor.this.schedule(this);
+				}
+				// Periodic tasks stop once the executor is shut down.
+				catch (final RejectedExecutionException exception) {
+					super.cancel(false);
+				}
+			}
+		}
+
+		/**
+		 * Fails the task (if it is rejected by the worker).
+		 *
+		 * @param exception Rejection.
+		 */
+		void reject(
+				final RejectedExecutionException exception) {
+			super.setException(exception);
+		}
+
+		/**
+		 * @see java.util.concurrent.FutureTask#cancel(boolean)
+		 */
+		@Override
+		public boolean cancel(
+				final boolean mayInterruptIfRunning) {
+			final boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				TimingWheelScheduledExecutor.this.cancelledTasks.offer(this);
+			}
+			return cancelled;
+		}
+
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param worker        Worker executor (owned by this executor).
+	 * @param tickerFactory Ticker thread factory.
+	 * @param tickDuration  Tick duration.
+	 * @param wheelSize     Wheel size (rounded up to a power of two).
+	 */
+	public TimingWheelScheduledExecutor(
+			final ExecutorService worker,
+			final ThreadFactory tickerFactory,
+			final Duration tickDuration,
+			final Integer wheelSize) {
+		super();
+		this.worker = worker;
+		this.tickMillis = Math.max(tickDuration.toMillis(), 1);
+		this.wheelBits = Math.max(32 - Integer.numberOfLeadingZeros(Math.max(wheelSize, 2) - 1), 1);
+		this.wheelMask = (1L << this.wheelBits) - 1;
+		this.maxTicks = (this.wheelBits * TimingWheelScheduledExecutor.LEVELS >= 63 ? Long.MAX_VALUE
+				: 1L << (this.wheelBits * TimingWheelScheduledExecutor.LEVELS));
+		this.buckets = new Bucket[TimingWheelScheduledExecutor.LEVELS][1 << this.wheelBits];
+		for (final Bucket[] level : this.buckets) {
+			for (int index = 0; index < level.length; index++) {
+				level[index] = new Bucket();
+			}
+		}
+		this.startMillis = TimingWheelScheduledExecutor.now();
+		this.lastMillis = this.startMillis;
+		this.ticker = tickerFactory.newThread(this::tick);
+		this.ticker.start();
+	}
+
+	/**
+	 * Gets the current time.
+	 *
+	 * @return The current time (millis).
+	 */
+	private static long now() {
+		return DateTimeHelper.getClock().millis();
+	}
+
+	/**
+	 * Gets the deadline for a delay (rounded up, and skipping the current
+	 * millisecond, which may be partially elapsed, so tasks never run early).
+	 *
+	 * @param  delay Delay.
+	 * @param  unit  Delay unit.
+	 * @return       The deadline (millis).
+	 */
+	private static long getDeadline(
+			final long delay,
+			final TimeUnit unit) {
+		final long delayNanos = unit.toNanos(delay);
+		return TimingWheelScheduledExecutor.now() + (delayNanos <= 0 ? 0 : Math.ceilDiv(delayNanos, TimeUnit.MILLISECONDS.toNanos(1)) + 1);
+	}
+
+	/**
+	 * Gets the worker executor.
+	 *
+	 * @return The worker executor.
+	 */
+	public ExecutorService getWorker() {
+		return this.worker;
+	}
+
+	/**
+	 * Gets the number of scheduled tasks that are not due yet.
+	 *
+	 * @return The number of scheduled tasks that are not due yet.
+	 */
+	public int getScheduledCount() {
+		return this.scheduledCount.get();
+	}
+
+	/**
+	 * Gets the tick duration.
+	 *
+	 * @return The tick duration.
+	 */
+	public Duration getTickDuration() {
+		return Duration.ofMillis(this.tickMillis);
+	}
+
+	/**
+	 * Runs the ticker (until the executor is shut down).
+	 */
+	private void tick() {
+		while (!this.shutdown) {
+			try {
+				this.removeCancelled();
+				this.addPending();
+				final long now = TimingWheelScheduledExecutor.now();
+				// If the clock went back, the wheel is moved back with it (so tasks keep
+				// their remaining delays instead of waiting for the clock to catch up).
+				if (now < this.lastMillis) {
+					this.moveBack(this.lastMillis - now);
+				}
+				this.lastMillis = now;
+				final long targetTick = Math.floorDiv(now - this.startMillis, this.tickMillis);
+				// Long catch ups (such as when the clock jumps forward) add the tasks
+				// again at once, instead of advancing through every tick.
+				if ((targetTick - this.currentTick) > (1L << this.wheelBits)) {
+					this.catchUp(targetTick);
+				}
+				while (this.currentTick < targetTick) {
+					this.currentTick++;
+					this.advance();
+				}
+			}
+			catch (final Throwable throwable) {
+				TimingWheelScheduledExecutor.LOGGER.error("Timing wheel tick failed: " + throwable.getLocalizedMessage());
+				TimingWheelScheduledExecutor.LOGGER.debug("Timing wheel tick failed.", throwable);
+			}
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(this.tickMillis));
+		}
+
+		// Cancels the remaining tasks.
+		this.removeCancelled();
+		this.addPending();
+		for (final TimerTask<?> task : this.clear()) {
+			task.cancel(false);
+			this.remainingTasks.add(task);
+		}
+		this.cancelledTasks.clear();
+		this.scheduledCount.set(0);
+	}
+
+	/**
+	 * Removes cancelled tasks from the wheel.
+	 */
+	private void removeCancelled() {
+		for (TimerTask<?> task = this.cancelledTasks.poll(); task != null; task = this.cancelledTasks.poll()) {
+			if (task.bucket != null) {
+				task.bucket.remove(task);
+				this.scheduledCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Adds pending tasks to the wheel.
+	 */
+	private void addPending() {
+		for (TimerTask<?> task = this.pendingTasks.poll(); task != null; task = this.pendingTasks.poll()) {
+			if (task.isCancelled()) {
+				this.scheduledCount.decrementAndGet();
+			}
+			else {
+				this.add(task);
+			}
+		}
+	}
+
+	/**
+	 * Adds a task to the wheel (or dispatches it if it is due).
+	 *
+	 * @param task Task.
+	 */
+	private void add(
+			final TimerTask<?> task) {
+		final long deadlineTick = Math.ceilDiv(task.deadlineMillis - this.startMillis, this.tickMillis);
+		if (deadlineTick <= this.currentTick) {
+			this.scheduledCount.decrementAndGet();
+			this.dispatch(task);
+		}
+		else {
+			// Tasks beyond the wheel range are placed at its end and added again later.
+			final long placementTick = (deadlineTick - this.currentTick >= this.maxTicks ? (this.currentTick + this.maxTicks) - 1 : deadlineTick);
+			final long ticks = placementTick - this.currentTick;
+			int level = 0;
+			while ((level < (TimingWheelScheduledExecutor.LEVELS - 1)) && (ticks >= (1L << (this.wheelBits * (level + 1))))) {
+				level++;
+			}
+			this.buckets[level][(int) ((placementTick >>> (this.wheelBits * level)) & this.wheelMask)].add(task);
+		}
+	}
+
+	/**
+	 * Removes all tasks from the wheel.
+	 *
+	 * @return The removed tasks.
+	 */
+	private List<TimerTask<?>> clear() {
+		final List<TimerTask<?>> tasks = new ArrayList<>();
+		for (final Bucket[] level : this.buckets) {
+			for (final Bucket bucket : level) {
+				for (TimerTask<?> task = bucket.clear(); task != null; task = task.next) {
+					tasks.add(task);
+				}
+			}
+		}
+		return tasks;
+	}
+
+	/**
+	 * Moves the wheel (and the deadlines of its tasks) back.
+	 *
+	 * @param millis Millis to move back.
+	 */
+	private void moveBack(
+			final long millis) {
+		this.startMillis -= millis;
+		for (final Bucket[] level : this.buckets) {
+			for (final Bucket bucket : level) {
+				for (TimerTask<?> task = bucket.head; task != null; task = task.next) {
+					task.deadlineMillis -= millis;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the wheel straight to a tick, adding its tasks again (due tasks are
+	 * dispatched by deadline).
+	 *
+	 * @param targetTick Target tick.
+	 */
+	private void catchUp(
+			final long targetTick) {
+		final List<TimerTask<?>> tasks = this.clear();
+		tasks.sort(Comparator.comparingLong(task -> task.deadlineMillis));
+		this.currentTick = targetTick;
+		for (final TimerTask<?> task : tasks) {
+			this.add(task);
+		}
+	}
+
+	/**
+	 * Advances the wheel to the current tick.
+	 */
+	private void advance() {
+		// Moves tasks down from the higher levels whose slot starts now (higher
+		// levels first, since their tasks may go to lower levels slots starting now).
+		int cascadeLevel = 0;
+		while ((cascadeLevel < (TimingWheelScheduledExecutor.LEVELS - 1)) && ((this.currentTick & ((1L << (this.wheelBits * (cascadeLevel + 1))) - 1)) == 0)) {
+			cascadeLevel++;
+		}
+		for (int level = cascadeLevel; level > 0; level--) {
+			TimerTask<?> task = this.buckets[level][(int) ((this.currentTick >>> (this.wheelBits * level)) & this.wheelMask)].clear();
+			while (task != null) {
+				final TimerTask<?> next = task.next;
+				this.add(task);
+				task = next;
+			}
+		}
+
+		// Dispatches the tasks that are due.
+		TimerTask<?> task = this.buckets[0][(int) (this.currentTick & this.wheelMask)].clear();
+		while (task != null) {
+			final TimerTask<?> next = task.next;
+			this.add(task);
+			task = next;
+		}
+	}
+
+	/**
+	 * Dispatches a due task to the worker.
+	 *
+	 * @param task Task.
+	 */
+	private void dispatch(
+			final TimerTask<?> task) {
+		try {
+			this.worker.execute(task);
+		}
+		catch (final RejectedExecutionException exception) {
+			TimingWheelScheduledExecutor.LOGGER.warn("Scheduled task rejected by the worker: " + exception.getLocalizedMessage());
+			task.reject(exception);
+		}
+	}
+
+	/**
+	 * Schedules a task.
+	 *
+	 * @param  <Type> Result type.
+	 * @param  task   Task.
+	 * @return        The task.
+	 */
+	private <Type> TimerTask<Type> schedule(
+			final TimerTask<Type> task) {
+		if (this.shutdown) {
+			throw new RejectedExecutionException("Task " + task + " rejected: executor is shut down.");
+		}
+		// Due tasks go straight to the worker.
+		if (task.deadlineMillis <= TimingWheelScheduledExecutor.now()) {
+			this.dispatch(task);
+		}
+		else {
+			this.scheduledCount.incrementAndGet();
+			this.pendingTasks.offer(task);
+			// If the executor was shut down meanwhile, the ticker may have already
+			// drained the pending tasks for the last time (if it has not, the task is
+			// cancelled by the ticker instead).
+			if (this.shutdown && this.pendingTasks.remove(task)) {
+				this.scheduledCount.decrementAndGet();
+				throw new RejectedExecutionException("Task " + task + " rejected: executor is shut down.");
+			}
+		}
+		return task;
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#schedule(java.lang.Runnable,
+	 *      long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> schedule(
+			final Runnable command,
+			final long delay,
+			final TimeUnit unit) {
+		return this.schedule(new TimerTask<>(Executors.callable(command), TimingWheelScheduledExecutor.getDeadline(delay, unit), 0));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#schedule(java.util.concurrent.Callable,
+	 *      long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public <Type> ScheduledFuture<Type> schedule(
+			final Callable<Type> callable,
+			final long delay,
+			final TimeUnit unit) {
+		return this.schedule(new TimerTask<>(callable, TimingWheelScheduledExecutor.getDeadline(delay, unit), 0));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate(java.lang.Runnable,
+	 *      long, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(
+			final Runnable command,
+			final long initialDelay,
+			final long period,
+			final TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive.");
+		}
+		return this.schedule(
+				new TimerTask<>(Executors.callable(command), TimingWheelScheduledExecutor.getDeadline(initialDelay, unit), Math.max(unit.toMillis(period), 1)));
+	}
+
+	/**
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay(java.lang.Runnable,
+	 *      long, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(
+			final Runnable command,
+			final long initialDelay,
+			final long delay,
+			final TimeUnit unit) {
+		if (delay <= 0) {
+			throw new IllegalArgumentException("Delay must be positive.");
+		}
+		return this.schedule(
+				new TimerTask<>(Executors.callable(command), TimingWheelScheduledExecutor.getDeadline(initialDelay, unit), -Math.max(unit.toMillis(delay), 1)));
+	}
+
+	/**
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(
+			final Runnable command) {
+		if (this.shutdown) {
+			throw new RejectedExecutionException("Task " + command + " rejected: executor is shut down.");
+		}
+		this.worker.execute(command);
+	}
+
+	/**
+	 * Stops the ticker (cancelling the tasks that are not due yet).
+	 */
+	private void stopTicker() {
+		this.shutdown = true;
+		LockSupport.unpark(this.ticker);
+		if (Thread.currentThread() != this.ticker) {
+			try {
+				this.ticker.join();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Shuts the executor down. Tasks that are not due yet are cancelled, and the
+	 * worker finishes the tasks already dispatched.
+	 *
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		this.stopTicker();
+		this.worker.shutdown();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdownNow()
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		this.stopTicker();
+		final List<Runnable> tasks = new ArrayList<>(this.remainingTasks);
+		tasks.addAll(this.worker.shutdownNow());
+		return tasks;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return this.shutdown;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return this.shutdown && !this.ticker.isAlive() && this.worker.isTerminated();
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long,
+	 *      java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean awaitTermination(
+			final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.ticker.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+		return !this.ticker.isAlive() && this.worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TimingWheelScheduledExecutor [tick=" + this.tickMillis + "ms, wheelSize=" + (1 << this.wheelBits) + ", scheduled=" + this.scheduledCount.get()
+				+ ", worker=" + this.worker + "]";
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.coldis.library.test.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import org.coldis.library.cache.LocalDecayingStatisticsCache;
+import org.coldis.library.helper.DateTimeHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Decaying statistics cache test.
+ */
+public class LocalDecayingStatisticsCacheTest {
+
+	/**
+	 * Tests decayed rates, means and quantiles following recent values.
+	 */
+	@Test
+	public void testDecay() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(Instant.parse("2024-01-01T10:00:00Z"), ZoneId.systemDefault()));
+			final LocalDecayingStatisticsCache cache = new LocalDecayingStatisticsCache(Duration.ofMinutes(1), Duration.ofSeconds(1), 128);
+			Assertions.assertTrue(cache.getMean().isNaN());
+			Assertions.assertTrue(cache.getQuantile(0.5).isNaN());
+			Assertions.assertEquals(0.0, cache.getRate());
+
+			// Adds 10 values (of 10) per second for 5 minutes.
+			for (int second = 0; second < 300; second++) {
+				for (int value = 0; value < 10; value++) {
+					cache.addValue(10);
+				}
+				DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			}
+			Assertions.assertEquals(10, cache.getRate(), 0.000001);
+			Assertions.assertEquals(10, cache.getMean(), 0.000001);
+			Assertions.assertEquals(0, cache.getVariance(), 0.000001);
+			Assertions.assertEquals(10.0, cache.getQuantile(0.5));
+
+			// Adds 20 values (of 100) per second for one half life.
+			for (int second = 0; second < 60; second++) {
+				for (int value = 0; value < 20; value++) {
+					cache.addValue(100);
+				}
+				DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			}
+			// The rate moves half way, and the mean is weighted by the decayed counts.
+			Assertions.assertEquals(15, cache.getRate(), 0.1);
+			Assertions.assertEquals(70, cache.getMean(), 1);
+			Assertions.assertTrue(cache.getVariance() > 0);
+			Assertions.assertEquals(100.0, cache.getQuantile(0.5));
+
+			// Values decay without new ones.
+			DateTimeHelper.adjustClock(Duration.ofMinutes(1));
+			Assertions.assertEquals(7.5, cache.getRate(), 0.1);
+			Assertions.assertEquals(70, cache.getMean(), 1);
+
+			// Recent values outweigh older ones many half lives later.
+			DateTimeHelper.adjustClock(Duration.ofHours(2));
+			for (int value = 0; value < 128; value++) {
+				cache.addValue(1);
+			}
+			DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			Assertions.assertEquals(1, cache.getMean(), 0.000001);
+			Assertions.assertEquals(1.0, cache.getQuantile(0.5));
+			Assertions.assertEquals(1.0, cache.getQuantile(1));
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.coldis.library.test.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.coldis.library.cache.LocalStatisticsSeriesCache;
+import org.coldis.library.helper.DateTimeHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Statistics series cache test.
+ */
+public class LocalStatisticsSeriesCacheTest {
+
+	/**
+	 * Tests windowed summaries and rates.
+	 */
+	@Test
+	public void testWindows() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(Instant.parse("2024-01-01T10:00:00Z"), ZoneId.systemDefault()));
+			final LocalStatisticsSeriesCache cache = new LocalStatisticsSeriesCache(Duration.ofSeconds(1), 10);
+			Assertions.assertNull(cache.getSummary("series1", Duration.ofSeconds(1)));
+			Assertions.assertEquals(0.0, cache.getRate("series1", Duration.ofSeconds(1)));
+
+			// Adds values 1 to 10 in consecutive seconds.
+			for (int value = 1; value <= 10; value++) {
+				cache.addValue("series1", value);
+				cache.addValue("series1", value);
+				DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			}
+			DateTimeHelper.adjustClock(Duration.ofSeconds(-1));
+			StatisticalSummary summary = cache.getSummary("series1", Duration.ofSeconds(1));
+			Assertions.assertEquals(2, summary.getN());
+			Assertions.assertEquals(10.0, summary.getMean());
+			Assertions.assertEquals(0.0, summary.getVariance());
+			summary = cache.getSummary("series1", Duration.ofSeconds(5));
+			Assertions.assertEquals(10, summary.getN());
+			Assertions.assertEquals(8.0, summary.getMean());
+			Assertions.assertEquals(6.0, summary.getMin());
+			Assertions.assertEquals(10.0, summary.getMax());
+			Assertions.assertEquals(2.0, cache.getRate("series1", Duration.ofSeconds(5)));
+			// Windows are capped at the intervals.
+			summary = cache.getSummary("series1", Duration.ofMinutes(1));
+			Assertions.assertEquals(20, summary.getN());
+			Assertions.assertEquals(110.0, summary.getSum());
+			Assertions.assertEquals(5.5, summary.getMean());
+			Assertions.assertEquals(8.684210526, summary.getVariance(), 0.000001);
+
+			// Buckets are reused by newer intervals.
+			DateTimeHelper.adjustClock(Duration.ofSeconds(3));
+			cache.addValue("series1", 100);
+			summary = cache.getSummary("series1", Duration.ofSeconds(10));
+			Assertions.assertEquals(15, summary.getN());
+			Assertions.assertEquals(4.0, summary.getMin());
+			Assertions.assertEquals(100.0, summary.getMax());
+
+			// Series without values within their intervals are cleared.
+			cache.addValue("series2", 1);
+			DateTimeHelper.adjustClock(Duration.ofSeconds(10));
+			cache.addValue("series2", 2);
+			Assertions.assertEquals(2, cache.getSize());
+			cache.clearExpired();
+			Assertions.assertEquals(1, cache.getSize());
+			Assertions.assertNull(cache.getSummary("series1", Duration.ofSeconds(10)));
+			Assertions.assertEquals(1, cache.getSummary("series2", Duration.ofSeconds(10)).getN());
+			cache.addValue("series1", 1);
+			Assertions.assertEquals(1, cache.getSummary("series1", Duration.ofSeconds(10)).getN());
+
+			// Variance is accurate for values far from zero.
+			for (int value = 1; value <= 3; value++) {
+				cache.addValue("series3", 1_000_000_000d + value);
+			}
+			Assertions.assertEquals(1.0, cache.getSummary("series3", Duration.ofSeconds(1)).getVariance(), 0.000001);
+
+			// Values added concurrently to the same bucket are all kept.
+			final List<Thread> threads = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				final Thread actualThread = new Thread(() -> {
+					for (int value = 0; value < 10000; value++) {
+						cache.addValue("series4", ((value % 2) * 2) + 1);
+					}
+				});
+				threads.add(actualThread);
+				actualThread.start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			summary = cache.getSummary("series4", Duration.ofSeconds(1));
+			Assertions.assertEquals(40000, summary.getN());
+			Assertions.assertEquals(2.0, summary.getMean(), 0.000001);
+			Assertions.assertEquals(40000.0 / 39999, summary.getVariance(), 0.000001);
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
+	/**
+	 * Tests snapshots and merges of all series.
+	 */
+	@Test
+	public void testSnapshotAndMerge() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(Instant.parse("2024-01-01T10:00:00Z"), ZoneId.systemDefault()));
+			final LocalStatisticsSeriesCache cache = new LocalStatisticsSeriesCache();
+			final LocalStatisticsSeriesCache otherCache = new LocalStatisticsSeriesCache();
+			for (int series = 0; series < 1000; series++) {
+				cache.addValue("series" + series, series);
+				otherCache.addValue("series" + (series + 500), series);
+			}
+			DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			cache.addValue("series0", 10);
+			otherCache.addValue("series0", 20);
+			cache.merge(otherCache);
+			final Map<String, StatisticalSummary> summaries = cache.getSummaries(Duration.ofMinutes(1));
+			Assertions.assertEquals(1500, summaries.size());
+			Assertions.assertEquals(3, summaries.get("series0").getN());
+			Assertions.assertEquals(30.0, summaries.get("series0").getSum());
+			Assertions.assertEquals(20.0, summaries.get("series0").getMax());
+			Assertions.assertEquals(2, summaries.get("series600").getN());
+			Assertions.assertEquals(700.0, summaries.get("series600").getSum());
+			Assertions.assertEquals(1, summaries.get("series1200").getN());
+			Assertions.assertEquals(2, cache.getSummaries(Duration.ofSeconds(1)).get("series0").getN());
+
+			// Only caches with the same intervals are merged.
+			Assertions.assertThrows(IllegalArgumentException.class, () -> cache.merge(new LocalStatisticsSeriesCache(Duration.ofSeconds(1), 10)));
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.coldis.library.test.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+import org.coldis.library.cache.LocalStatisticsSummaryCache;
+import org.coldis.library.cache.QuantileSketch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Statistics summary cache test.
+ */
+public class LocalStatisticsSummaryCacheTest {
+
+	/**
+	 * Tests merging recorded values with the main statistics.
+	 */
+	@Test
+	public void testMergeAndClear() throws Exception {
+		final LocalStatisticsSummaryCache cache = new LocalStatisticsSummaryCache();
+		for (int value = 1; value <= 100; value++) {
+			cache.addValue(value);
+		}
+		final StatisticalSummary statistics = cache.mergeAndClear(new StatisticalSummaryValues(0, 0, 1, 0, 0, 0));
+		Assertions.assertEquals(101, statistics.getN());
+		Assertions.assertEquals(5050.0, statistics.getSum());
+		Assertions.assertEquals(0.0, statistics.getMin());
+		Assertions.assertEquals(100.0, statistics.getMax());
+		Assertions.assertEquals(50, statistics.getMean(), 0.000001);
+		// Variance of 0 to 100.
+		Assertions.assertEquals(858.5, statistics.getVariance(), 0.000001);
+
+		// Cleared values are not merged again.
+		final StatisticalSummary clearedStatistics = cache.mergeAndClear(statistics);
+		Assertions.assertEquals(101, clearedStatistics.getN());
+		Assertions.assertEquals(5050.0, clearedStatistics.getSum());
+	}
+
+	/**
+	 * Tests that no values are lost while merging concurrently.
+	 */
+	@Test
+	public void testConcurrentMergeAndClear() throws Exception {
+		final LocalStatisticsSummaryCache cache = new LocalStatisticsSummaryCache();
+		final AtomicBoolean recording = new AtomicBoolean(true);
+		final List<CompletableFuture<Void>> recorders = new ArrayList<>();
+		for (int thread = 0; thread < 8; thread++) {
+			recorders.add(CompletableFuture.runAsync(() -> {
+				for (int value = 1; value <= 100000; value++) {
+					cache.addValue(value);
+				}
+			}));
+		}
+		final CompletableFuture<StatisticalSummary> merger = CompletableFuture.supplyAsync(() -> {
+			StatisticalSummary statistics = new StatisticalSummaryValues(0, 0, 1, 0, 0, 0);
+			while (recording.get()) {
+				statistics = cache.mergeAndClear(statistics);
+			}
+			return statistics;
+		});
+		CompletableFuture.allOf(recorders.toArray(CompletableFuture[]::new)).join();
+		recording.set(false);
+		final StatisticalSummary statistics = cache.mergeAndClear(merger.join());
+		Assertions.assertEquals((8 * 100000) + 1, statistics.getN());
+		Assertions.assertEquals(8.0 * ((100000L * 100001L) / 2), statistics.getSum());
+		Assertions.assertEquals(100000.0, statistics.getMax());
+	}
+
+	/**
+	 * Tests merging local quantiles into the main quantiles.
+	 */
+	@Test
+	public void testMergeAndClearQuantiles() throws Exception {
+		final QuantileSketch mainQuantiles = new QuantileSketch();
+		final LocalStatisticsSummaryCache cache = new LocalStatisticsSummaryCache(mainQuantiles.newEmptySketch());
+		StatisticalSummary statistics = new StatisticalSummaryValues(0, 0, 1, 0, 0, 0);
+		for (int merge = 0; merge < 10; merge++) {
+			for (int value = 1; value <= 100; value++) {
+				cache.addValue((merge * 100) + value);
+			}
+			statistics = cache.mergeAndClear(statistics, mainQuantiles);
+		}
+		Assertions.assertEquals(1001, statistics.getN());
+		Assertions.assertEquals(1000L, mainQuantiles.getCount());
+		Assertions.assertEquals(500, mainQuantiles.getQuantile(0.5), 5);
+		Assertions.assertEquals(990, mainQuantiles.getQuantile(0.99), 10);
+	}
+
+	/**
+	 * Tests that no quantile values are lost while merging concurrently.
+	 */
+	@Test
+	public void testConcurrentMergeAndClearQuantiles() throws Exception {
+		final QuantileSketch mainQuantiles = new QuantileSketch();
+		final LocalStatisticsSummaryCache cache = new LocalStatisticsSummaryCache(mainQuantiles.newEmptySketch());
+		final AtomicBoolean recording = new AtomicBoolean(true);
+		final List<CompletableFuture<Void>> recorders = new ArrayList<>();
+		for (int thread = 0; thread < 8; thread++) {
+			recorders.add(CompletableFuture.runAsync(() -> {
+				for (int value = 1; value <= 100000; value++) {
+					cache.addValue(value);
+				}
+			}));
+		}
+		final CompletableFuture<StatisticalSummary> merger = CompletableFuture.supplyAsync(() -> {
+			StatisticalSummary statistics = new StatisticalSummaryValues(0, 0, 1, 0, 0, 0);
+			while (recording.get()) {
+				statistics = cache.mergeAndClear(statistics, mainQuantiles);
+			}
+			return statistics;
+		});
+		CompletableFuture.allOf(recorders.toArray(CompletableFuture[]::new)).join();
+		recording.set(false);
+		final StatisticalSummary statistics = cache.mergeAndClear(merger.join(), mainQuantiles);
+		Assertions.assertEquals((8 * 100000) + 1, statistics.getN());
+		Assertions.assertEquals(8L * 100000, mainQuantiles.getCount());
+		Assertions.assertEquals(50000, mainQuantiles.getQuantile(0.5), 1000);
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.coldis.library.test.cache;
+
+import org.coldis.library.cache.QuantileSketch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Quantile sketch test.
+ */
+public class QuantileSketchTest {
+
+	/**
+	 * Asserts a value is within a relative error of the expected value.
+	 *
+	 * @param expected      Expected value.
+	 * @param actual        Actual value.
+	 * @param relativeError Relative error.
+	 */
+	private static void assertRelativelyEquals(
+			final double expected,
+			final double actual,
+			final double relativeError) {
+		Assertions.assertTrue(Math.abs(actual - expected) <= (Math.abs(expected) * relativeError), "expected " + expected + " got " + actual);
+	}
+
+	/**
+	 * Tests quantiles being estimated within the relative accuracy.
+	 */
+	@Test
+	public void testQuantiles() throws Exception {
+		final QuantileSketch sketch = new QuantileSketch(0.01);
+		Assertions.assertTrue(sketch.getQuantile(0.5).isNaN());
+		for (int value = 1; value <= 100000; value++) {
+			sketch.add(value);
+		}
+		Assertions.assertEquals(100000L, sketch.getCount());
+		QuantileSketchTest.assertRelativelyEquals(1, sketch.getQuantile(0), 0.01);
+		QuantileSketchTest.assertRelativelyEquals(50000, sketch.getQuantile(0.5), 0.01);
+		QuantileSketchTest.assertRelativelyEquals(99000, sketch.getQuantile(0.99), 0.01);
+		QuantileSketchTest.assertRelativelyEquals(99900, sketch.getQuantile(0.999), 0.01);
+		QuantileSketchTest.assertRelativelyEquals(100000, sketch.getQuantile(1), 0.01);
+
+		// Negative and zero values are ordered below positive ones.
+		final QuantileSketch signedSketch = new QuantileSketch();
+		signedSketch.add(-1000);
+		signedSketch.add(-10);
+		signedSketch.add(0);
+		signedSketch.add(10);
+		QuantileSketchTest.assertRelativelyEquals(-1000, signedSketch.getQuantile(0), 0.01);
+		QuantileSketchTest.assertRelativelyEquals(-10, signedSketch.getQuantile(0.34), 0.01);
+		Assertions.assertEquals(0.0, signedSketch.getQuantile(0.67));
+		QuantileSketchTest.assertRelativelyEquals(10, signedSketch.getQuantile(1), 0.01);
+	}
+
+	/**
+	 * Tests merging sketches.
+	 */
+	@Test
+	public void testMerge() throws Exception {
+		final QuantileSketch sketch = new QuantileSketch();
+		final QuantileSketch otherSketch = sketch.newEmptySketch();
+		final QuantileSketch allSketch = sketch.newEmptySketch();
+		for (int value = 1; value <= 1000; value++) {
+			(value % 2 == 0 ? sketch : otherSketch).add(value);
+			allSketch.add(value);
+		}
+		sketch.merge(otherSketch);
+		Assertions.assertEquals(1000L, sketch.getCount());
+		for (final double quantile : new double[] { 0, 0.1, 0.5, 0.9, 0.99, 1 }) {
+			Assertions.assertEquals(allSketch.getQuantile(quantile), sketch.getQuantile(quantile));
+		}
+
+		// Only sketches with the same parameters are merged.
+		Assertions.assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.02)));
+	}
+
+}
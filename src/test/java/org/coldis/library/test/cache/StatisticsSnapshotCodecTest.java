@@ -0,0 +1,147 @@
+package org.coldis.library.test.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+import org.coldis.library.cache.LocalStatisticsSummaryCache;
+import org.coldis.library.cache.QuantileSketch;
+import org.coldis.library.cache.StatisticsSnapshotCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Statistics snapshot codec test.
+ */
+public class StatisticsSnapshotCodecTest {
+
+	/**
+	 * Tests encoding, decoding and merging summaries.
+	 */
+	@Test
+	public void testSummaries() throws Exception {
+		final LocalStatisticsSummaryCache cache = new LocalStatisticsSummaryCache();
+		final StatisticalSummary empty = new StatisticalSummaryValues(Double.NaN, Double.NaN, 0, Double.NaN, Double.NaN, 0);
+		for (int value = 1; value <= 50; value++) {
+			cache.addValue(value);
+		}
+		final StatisticalSummary firstSummary = cache.mergeAndClear(empty);
+		for (int value = 51; value <= 100; value++) {
+			cache.addValue(value);
+		}
+		final StatisticalSummary secondSummary = cache.mergeAndClear(empty);
+
+		// Snapshots are concatenated and decoded in order.
+		final ByteBuffer buffer = ByteBuffer.allocate(StatisticsSnapshotCodec.getEncodedSize(firstSummary)
+				+ StatisticsSnapshotCodec.getEncodedSize(secondSummary) + StatisticsSnapshotCodec.getEncodedSize(empty));
+		StatisticsSnapshotCodec.encode(firstSummary, buffer);
+		StatisticsSnapshotCodec.encode(empty, buffer);
+		StatisticsSnapshotCodec.encode(secondSummary, buffer);
+		Assertions.assertEquals(89, buffer.flip().remaining());
+		final StatisticalSummary decodedSummary = StatisticsSnapshotCodec.decodeSummary(buffer);
+		Assertions.assertEquals(50, decodedSummary.getN());
+		Assertions.assertEquals(1275.0, decodedSummary.getSum());
+		Assertions.assertEquals(firstSummary.getVariance(), decodedSummary.getVariance());
+		Assertions.assertEquals(0, StatisticsSnapshotCodec.decodeSummary(buffer).getN());
+		final StatisticalSummary mergedSummary = StatisticsSnapshotCodec.mergeSummary(buffer, decodedSummary);
+		Assertions.assertFalse(buffer.hasRemaining());
+		Assertions.assertEquals(100, mergedSummary.getN());
+		Assertions.assertEquals(5050.0, mergedSummary.getSum());
+		Assertions.assertEquals(1.0, mergedSummary.getMin());
+		Assertions.assertEquals(100.0, mergedSummary.getMax());
+		Assertions.assertEquals(50.5, mergedSummary.getMean(), 0.000001);
+		// Variance of 1 to 100.
+		Assertions.assertEquals(841.666667, mergedSummary.getVariance(), 0.000001);
+
+		// Encoded summaries are merged without decoding them.
+		final ByteBuffer output = ByteBuffer.allocate(128);
+		StatisticsSnapshotCodec.merge(StatisticsSnapshotCodec.encode(firstSummary), StatisticsSnapshotCodec.encode(secondSummary), output);
+		final StatisticalSummary encodedMergedSummary = StatisticsSnapshotCodec.decodeSummary(output.flip());
+		Assertions.assertEquals(100, encodedMergedSummary.getN());
+		Assertions.assertEquals(841.666667, encodedMergedSummary.getVariance(), 0.000001);
+
+		// Other versions and types are rejected.
+		final ByteBuffer invalidBuffer = StatisticsSnapshotCodec.encode(firstSummary);
+		invalidBuffer.put(0, (byte) 2);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> StatisticsSnapshotCodec.decodeSummary(invalidBuffer));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> StatisticsSnapshotCodec.decodeSketch(StatisticsSnapshotCodec.encode(firstSummary)));
+	}
+
+	/**
+	 * Tests encoding, decoding and merging sketches.
+	 */
+	@Test
+	public void testSketches() throws Exception {
+		final QuantileSketch firstSketch = new QuantileSketch();
+		final QuantileSketch secondSketch = firstSketch.newEmptySketch();
+		final QuantileSketch allSketch = firstSketch.newEmptySketch();
+		for (int value = -100; value <= 1000; value++) {
+			(value % 3 == 0 ? firstSketch : secondSketch).add(value);
+			allSketch.add(value);
+		}
+
+		// Sketches are encoded sparsely.
+		final ByteBuffer firstBuffer = StatisticsSnapshotCodec.encode(firstSketch);
+		Assertions.assertTrue(firstBuffer.remaining() < 2048);
+		final QuantileSketch decodedSketch = StatisticsSnapshotCodec.decodeSketch(firstBuffer);
+		Assertions.assertFalse(firstBuffer.hasRemaining());
+		Assertions.assertEquals(firstSketch.getCount(), decodedSketch.getCount());
+		for (final double quantile : new double[] { 0, 0.1, 0.5, 0.9, 1 }) {
+			Assertions.assertEquals(firstSketch.getQuantile(quantile), decodedSketch.getQuantile(quantile));
+		}
+
+		// Encoded sketches are merged into sketches and into encoded sketches.
+		StatisticsSnapshotCodec.mergeSketch(StatisticsSnapshotCodec.encode(secondSketch), decodedSketch);
+		final ByteBuffer secondBuffer = ByteBuffer.allocate(StatisticsSnapshotCodec.getEncodedSize(secondSketch)).order(ByteOrder.LITTLE_ENDIAN);
+		StatisticsSnapshotCodec.encode(secondSketch, secondBuffer);
+		final ByteBuffer output = ByteBuffer.allocate(4096);
+		StatisticsSnapshotCodec.merge(firstBuffer.rewind(), secondBuffer.flip(), output);
+		Assertions.assertEquals(StatisticsSnapshotCodec.getEncodedSize(allSketch), output.position());
+		final QuantileSketch mergedSketch = StatisticsSnapshotCodec.decodeSketch(output.flip());
+		Assertions.assertEquals(1101L, decodedSketch.getCount());
+		Assertions.assertEquals(1101L, mergedSketch.getCount());
+		for (final double quantile : new double[] { 0, 0.05, 0.1, 0.5, 0.9, 0.99, 1 }) {
+			Assertions.assertEquals(allSketch.getQuantile(quantile), decodedSketch.getQuantile(quantile));
+			Assertions.assertEquals(allSketch.getQuantile(quantile), mergedSketch.getQuantile(quantile));
+		}
+
+		// Only sketches with the same parameters are merged.
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> StatisticsSnapshotCodec.mergeSketch(StatisticsSnapshotCodec.encode(new QuantileSketch(0.02)), mergedSketch));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> StatisticsSnapshotCodec.merge(StatisticsSnapshotCodec.encode(new QuantileSketch(0.02)),
+				StatisticsSnapshotCodec.encode(allSketch), ByteBuffer.allocate(4096)));
+	}
+
+	/**
+	 * Tests that snapshots are read with any buffer byte order.
+	 */
+	@Test
+	public void testByteOrders() throws Exception {
+		final QuantileSketch sketch = new QuantileSketch();
+		for (int value = -100; value <= 1000; value++) {
+			sketch.add(value);
+		}
+		final StatisticalSummary summary = new StatisticalSummaryValues(2, 1, 3, 3, 1, 6);
+		for (final ByteOrder writeOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			final ByteBuffer written = ByteBuffer.allocate(StatisticsSnapshotCodec.getEncodedSize(sketch) + StatisticsSnapshotCodec.getEncodedSize(summary))
+					.order(writeOrder);
+			StatisticsSnapshotCodec.encode(sketch, written);
+			StatisticsSnapshotCodec.encode(summary, written);
+			// The encoded bytes are the same whatever the order.
+			Assertions.assertEquals(StatisticsSnapshotCodec.encode(sketch), ByteBuffer.wrap(written.array(), 0, StatisticsSnapshotCodec.getEncodedSize(sketch)));
+			for (final ByteOrder readOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+				final ByteBuffer read = ByteBuffer.wrap(written.array()).order(readOrder);
+				final QuantileSketch decodedSketch = StatisticsSnapshotCodec.decodeSketch(read);
+				final StatisticalSummary decodedSummary = StatisticsSnapshotCodec.decodeSummary(read);
+				Assertions.assertFalse(read.hasRemaining());
+				Assertions.assertEquals(sketch.getCount(), decodedSketch.getCount());
+				Assertions.assertEquals(sketch.getQuantile(0.5), decodedSketch.getQuantile(0.5));
+				Assertions.assertEquals(3, decodedSummary.getN());
+				Assertions.assertEquals(2.0, decodedSummary.getMean());
+				Assertions.assertEquals(1.0, decodedSummary.getVariance());
+			}
+		}
+	}
+
+}
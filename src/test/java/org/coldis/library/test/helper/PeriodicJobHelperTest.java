@@ -1,9 +1,15 @@
 package org.coldis.library.test.helper;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.coldis.library.cache.LocalPeriodicJobCache;
 import org.coldis.library.cache.LocalPeriodicJobCacheEntry;
@@ -124,4 +130,196 @@ public class PeriodicJobHelperTest {
 
 	}
 
+	/**
+	 * Tests runs decided by many threads at the same time with a fixed clock.
+	 */
+	@Test
+	public void testShouldRunWithContention() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(LocalDateTime.of(2024, 1, 1, 10, 59, 59, 999_000_000).atZone(ZoneId.systemDefault()).toInstant(),
+					ZoneId.systemDefault()));
+			final LocalPeriodicJobCache jobCache = new LocalPeriodicJobCache();
+			final Duration wait = Duration.ofDays(1L);
+			final AtomicInteger runs = new AtomicInteger();
+			final Runnable tryRuns = () -> {
+				for (int call = 0; call < 10000; call++) {
+					jobCache.run(runs::incrementAndGet, "value", wait, ChronoUnit.HOURS);
+				}
+			};
+
+			// Only one of the threads runs the job.
+			final List<CompletableFuture<Void>> calls = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				calls.add(CompletableFuture.runAsync(tryRuns));
+			}
+			CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+			Assertions.assertEquals(1, runs.get());
+			Assertions.assertEquals(LocalDateTime.of(2024, 1, 1, 10, 59, 59, 999_000_000), jobCache.getLastRun("value").getLastRunAt());
+			Assertions.assertEquals(LocalDateTime.of(2024, 1, 1, 11, 0), jobCache.getLastRun("value").getNextRunAfter());
+
+			// Runs again once the maximum wait unit changes.
+			DateTimeHelper.adjustClock(Duration.ofMillis(1));
+			calls.clear();
+			for (int thread = 0; thread < 8; thread++) {
+				calls.add(CompletableFuture.runAsync(tryRuns));
+			}
+			CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+			Assertions.assertEquals(2, runs.get());
+
+			// Expired runs are cleared, and cleared keys run again.
+			jobCache.clearExpired();
+			Assertions.assertNotEquals(new LocalPeriodicJobCacheEntry(), jobCache.getLastRun("value"));
+			DateTimeHelper.adjustClock(Duration.ofHours(1), Duration.ofMillis(1));
+			jobCache.clearExpired();
+			Assertions.assertEquals(new LocalPeriodicJobCacheEntry(), jobCache.getLastRun("value"));
+			Assertions.assertTrue(jobCache.shouldRun("value", wait, ChronoUnit.HOURS));
+			jobCache.clear();
+			Assertions.assertTrue(jobCache.shouldRun("value", wait, ChronoUnit.HOURS));
+			Assertions.assertFalse(jobCache.shouldRun("value", wait, ChronoUnit.HOURS));
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
+	/**
+	 * Tests expired runs being cleared in the background.
+	 */
+	@Test
+	public void testExpiration() throws Exception {
+		final LocalPeriodicJobCache jobCache = new LocalPeriodicJobCache(Duration.ofMillis(10), 100);
+		final Duration wait = Duration.ofMillis(50L);
+		for (int key = 0; key < 1000; key++) {
+			Assertions.assertTrue(jobCache.shouldRun("value" + key, key % 2 == 0 ? wait : Duration.ofDays(1L), null));
+		}
+
+		// Only expired runs are cleared (in steps).
+		final long expireUntil = System.currentTimeMillis() + 5000;
+		while (!jobCache.getLastRun("value998").equals(new LocalPeriodicJobCacheEntry()) && (System.currentTimeMillis() < expireUntil)) {
+			Thread.sleep(10);
+		}
+		for (int key = 0; key < 1000; key++) {
+			Assertions.assertEquals(key % 2 == 0, jobCache.getLastRun("value" + key).equals(new LocalPeriodicJobCacheEntry()));
+		}
+		Assertions.assertTrue(jobCache.shouldRun("value0", wait, null));
+		Assertions.assertFalse(jobCache.shouldRun("value1", Duration.ofDays(1L), null));
+	}
+
+	/**
+	 * Tests that runs not expired yet in the current bucket do not keep the
+	 * expiration busy.
+	 */
+	@Test
+	public void testExpirationWithFixedClock() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(LocalDateTime.of(2024, 1, 1, 10, 0, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+			final LocalPeriodicJobCache jobCache = new LocalPeriodicJobCache(Duration.ofSeconds(1), 100);
+			for (int key = 0; key < 5000; key++) {
+				Assertions.assertTrue(jobCache.shouldRun("value" + key, Duration.ofMillis(500), null));
+			}
+			CompletableFuture.runAsync(jobCache::clearExpired).get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(5000L, jobCache.getSize());
+			DateTimeHelper.adjustClock(Duration.ofSeconds(1));
+			CompletableFuture.runAsync(jobCache::clearExpired).get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(0L, jobCache.getSize());
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
+	/**
+	 * Tests bounding the cache size, keeping hot keys under a flood of new keys.
+	 */
+	@Test
+	public void testEviction() throws Exception {
+		final LocalPeriodicJobCache jobCache = new LocalPeriodicJobCache(100L, null);
+		final Duration wait = Duration.ofDays(1L);
+		for (int access = 0; access < 20; access++) {
+			for (int key = 0; key < 10; key++) {
+				Assertions.assertEquals(access == 0, jobCache.shouldRun("hot" + key, wait, null));
+			}
+		}
+
+		// One-off keys are evicted, not the hot keys still in use.
+		for (int key = 0; key < 10000; key++) {
+			Assertions.assertTrue(jobCache.shouldRun("flood" + key, wait, null));
+			if ((key % 100) == 0) {
+				for (int hotKey = 0; hotKey < 10; hotKey++) {
+					Assertions.assertFalse(jobCache.shouldRun("hot" + hotKey, wait, null));
+				}
+			}
+		}
+		Assertions.assertTrue(jobCache.getSize() <= 100);
+		Assertions.assertTrue(jobCache.getEvictions() >= 9910);
+
+		// Memory can be bounded too.
+		final LocalPeriodicJobCache memoryBoundJobCache = new LocalPeriodicJobCache(null, 100L * 1024);
+		for (int key = 0; key < 10000; key++) {
+			Assertions.assertTrue(memoryBoundJobCache.shouldRun("flood" + key, wait, null));
+		}
+		Assertions.assertTrue(memoryBoundJobCache.getEstimatedMemory() <= (100L * 1024));
+		Assertions.assertTrue(memoryBoundJobCache.getSize() < 1000);
+		Assertions.assertEquals(10000 - memoryBoundJobCache.getSize(), memoryBoundJobCache.getEvictions());
+	}
+
+	/**
+	 * Tests acquiring permits for a key.
+	 */
+	@Test
+	public void testTryAcquire() throws Exception {
+		final Clock originalClock = DateTimeHelper.getClock();
+		try {
+			DateTimeHelper.setClock(Clock.fixed(LocalDateTime.of(2024, 1, 1, 10, 59, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+			final LocalPeriodicJobCache jobCache = new LocalPeriodicJobCache();
+			final Duration window = Duration.ofSeconds(10);
+
+			// At most the limit is acquired per window, in single or batch permits.
+			for (int permit = 0; permit < 8; permit++) {
+				Assertions.assertTrue(jobCache.tryAcquire("value", 10, window));
+			}
+			Assertions.assertFalse(jobCache.tryAcquire("value", 3, 10, window, null));
+			Assertions.assertTrue(jobCache.tryAcquire("value", 2, 10, window, null));
+			Assertions.assertFalse(jobCache.tryAcquire("value", 10, window));
+			Assertions.assertTrue(jobCache.tryAcquire("other", 10, 10, window, null));
+
+			// The previous window counts as much as it overlaps the sliding window.
+			DateTimeHelper.adjustClock(Duration.ofSeconds(15));
+			Assertions.assertTrue(jobCache.tryAcquire("value", 5, 10, window, null));
+			Assertions.assertFalse(jobCache.tryAcquire("value", 10, window));
+			DateTimeHelper.adjustClock(Duration.ofSeconds(10));
+			Assertions.assertTrue(jobCache.tryAcquire("value", 7, 10, window, null));
+			Assertions.assertFalse(jobCache.tryAcquire("value", 1, 10, window, null));
+
+			// Permits from before the maximum wait unit are not counted.
+			jobCache.clear();
+			DateTimeHelper.setClock(Clock.fixed(LocalDateTime.of(2024, 1, 1, 10, 59, 55).atZone(ZoneId.systemDefault()).toInstant(),
+					ZoneId.systemDefault()));
+			Assertions.assertTrue(jobCache.tryAcquire("value", 10, 10, window, ChronoUnit.HOURS));
+			DateTimeHelper.adjustClock(Duration.ofMillis(5500));
+			Assertions.assertFalse(jobCache.tryAcquire("value", 1, 10, window, null));
+			Assertions.assertTrue(jobCache.tryAcquire("value", 10, 10, window, ChronoUnit.HOURS));
+
+			// Contending threads acquire exactly the limit.
+			final AtomicInteger acquired = new AtomicInteger();
+			final List<CompletableFuture<Void>> calls = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				calls.add(CompletableFuture.runAsync(() -> {
+					for (int call = 0; call < 10000; call++) {
+						if (jobCache.tryAcquire("contended", 1000, window)) {
+							acquired.incrementAndGet();
+						}
+					}
+				}));
+			}
+			CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+			Assertions.assertEquals(1000, acquired.get());
+		}
+		finally {
+			DateTimeHelper.setClock(originalClock);
+		}
+	}
+
 }
@@ -0,0 +1,139 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.coldis.library.thread.BatchingExecutor;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Batching executor test.
+ */
+public class BatchingExecutorTest {
+
+	/**
+	 * Tests size and linger thresholds.
+	 */
+	@Test
+	public void testThresholds() throws Exception {
+		final Queue<List<Integer>> batches = new ConcurrentLinkedQueue<>();
+		final BatchingExecutor<Integer> executor = new DynamicThreadPoolFactory().withName("batching-test").withCorePoolSize(2).withMaxPoolSize(2)
+				.buildBatching(batches::add, 10, Duration.ofMillis(100), 2);
+
+		// Full batches are dispatched right away.
+		for (int item = 0; item < 20; item++) {
+			executor.submit(item);
+		}
+		ThreadTestHelper.waitFor(() -> batches.size() == 2);
+		Assertions.assertEquals(10, batches.poll().size());
+		Assertions.assertEquals(10, batches.poll().size());
+
+		// Partial batches wait for the linger time.
+		final long submittedAt = System.nanoTime();
+		executor.submit(20);
+		executor.submit(21);
+		ThreadTestHelper.waitFor(() -> batches.size() == 1);
+		Assertions.assertTrue((System.nanoTime() - submittedAt) >= Duration.ofMillis(100).toNanos());
+		Assertions.assertEquals(List.of(20, 21), batches.poll());
+
+		// Partial batches can be flushed.
+		executor.submit(22);
+		executor.flush();
+		ThreadTestHelper.waitFor(() -> batches.size() == 1);
+		Assertions.assertEquals(List.of(22), batches.poll());
+		Assertions.assertEquals(4, executor.getBatches());
+		Assertions.assertEquals(23, executor.getItems());
+		((DynamicThreadPool) executor.getExecutor()).shutdown();
+	}
+
+	/**
+	 * Tests that every item is handled once, with bounded in-flight batches.
+	 */
+	@Test
+	public void testConcurrentSubmissions() throws Exception {
+		final Integer maxInFlightBatches = 2;
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicLong handled = new AtomicLong();
+		final AtomicLong sum = new AtomicLong();
+		final BatchingExecutor<Long> executor = new DynamicThreadPoolFactory().withName("batching-test").withCorePoolSize(8).withMaxPoolSize(8)
+				.buildBatching(batch -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					batch.forEach(sum::addAndGet);
+					handled.addAndGet(batch.size());
+					running.decrementAndGet();
+				}, 100, Duration.ofMillis(5), maxInFlightBatches);
+
+		// Submits from many threads.
+		final Integer producers = 8;
+		final Long itemsPerProducer = 50_000L;
+		final List<Thread> threads = new ArrayList<>();
+		for (int producer = 0; producer < producers; producer++) {
+			final long firstItem = producer * itemsPerProducer;
+			threads.add(Thread.ofPlatform().start(() -> {
+				for (long item = firstItem; item < (firstItem + itemsPerProducer); item++) {
+					executor.submit(item);
+				}
+			}));
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		final long total = producers * itemsPerProducer;
+		ThreadTestHelper.waitFor(() -> handled.get() == total);
+		Assertions.assertEquals((total * (total - 1)) / 2, sum.get());
+		Assertions.assertTrue(maxRunning.get() <= maxInFlightBatches);
+		Assertions.assertTrue(executor.getBatches() < (total / 50));
+		ThreadTestHelper.waitFor(() -> executor.getInFlightBatches() == 0);
+		Assertions.assertEquals(0, executor.getPending());
+		((DynamicThreadPool) executor.getExecutor()).shutdown();
+	}
+
+	/**
+	 * Tests that closing flushes the buffered items and rejects further items.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		final Queue<List<Integer>> batches = new ConcurrentLinkedQueue<>();
+		final BatchingExecutor<Integer> executor = new DynamicThreadPoolFactory().withName("batching-test").withCorePoolSize(1).withMaxPoolSize(1)
+				.buildBatching(batches::add, 10, Duration.ofHours(1), 1);
+		executor.submit(0);
+		executor.submit(1);
+		executor.close();
+		ThreadTestHelper.waitFor(() -> batches.size() == 1);
+		Assertions.assertEquals(List.of(0, 1), batches.poll());
+		Assertions.assertThrows(RejectedExecutionException.class, () -> executor.submit(2));
+		Assertions.assertEquals(0, executor.getPending());
+		((DynamicThreadPool) executor.getExecutor()).shutdown();
+	}
+
+	/**
+	 * Tests that rejected batches are dropped instead of running in the caller
+	 * thread.
+	 */
+	@Test
+	public void testRejection() throws Exception {
+		final Queue<List<Integer>> batches = new ConcurrentLinkedQueue<>();
+		final BatchingExecutor<Integer> executor = new BatchingExecutor<>(command -> {
+			throw new RejectedExecutionException("Rejected.");
+		}, batches::add, 2, Duration.ofHours(1), 1);
+		for (int item = 0; item < 4; item++) {
+			executor.submit(item);
+		}
+		Assertions.assertTrue(batches.isEmpty());
+		Assertions.assertEquals(4, executor.getRejectedItems());
+		Assertions.assertEquals(0, executor.getBatches());
+		Assertions.assertEquals(0, executor.getPending());
+		Assertions.assertEquals(0, executor.getInFlightBatches());
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.coldis.library.test.thread;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.coldis.library.thread.CpuBudget;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CPU budget test.
+ */
+public class CpuBudgetTest {
+
+	/**
+	 * Writes a fake cgroup file.
+	 *
+	 * @param  root    Cgroup root.
+	 * @param  path    File path.
+	 * @param  content File content.
+	 * @throws Exception If the file cannot be written.
+	 */
+	private void write(
+			final Path root,
+			final String path,
+			final String content) throws Exception {
+		final Path file = root.resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content + "\n");
+	}
+
+	/**
+	 * Tests the cgroup v2 detection.
+	 */
+	@Test
+	public void testCgroupV2() throws Exception {
+		final Path root = Files.createTempDirectory("cgroup-v2");
+		Assertions.assertEquals(64D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpu.max", "max 100000");
+		Assertions.assertEquals(64D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpu.max", "150000 100000");
+		Assertions.assertEquals(1.5D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpuset.cpus.effective", "0");
+		Assertions.assertEquals(1D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpu.max", "400000 100000");
+		this.write(root, "cpuset.cpus.effective", "0-1,4,6-7");
+		Assertions.assertEquals(4D, new CpuBudget(root, 64).getCpus());
+		Assertions.assertEquals(2D, new CpuBudget(root, 2).getCpus());
+	}
+
+	/**
+	 * Tests the cgroup v1 detection.
+	 */
+	@Test
+	public void testCgroupV1() throws Exception {
+		final Path root = Files.createTempDirectory("cgroup-v1");
+		this.write(root, "cpu,cpuacct/cpu.cfs_quota_us", "-1");
+		this.write(root, "cpu,cpuacct/cpu.cfs_period_us", "100000");
+		Assertions.assertEquals(64D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpu,cpuacct/cpu.cfs_quota_us", "50000");
+		Assertions.assertEquals(0.5D, new CpuBudget(root, 64).getCpus());
+		this.write(root, "cpu,cpuacct/cpu.cfs_quota_us", "800000");
+		this.write(root, "cpuset/cpuset.cpus", "0-2");
+		Assertions.assertEquals(3D, new CpuBudget(root, 64).getCpus());
+	}
+
+	/**
+	 * Tests that pools are sized and rescaled by the CPU budget.
+	 */
+	@Test
+	public void testRescale() throws Exception {
+		final Path root = Files.createTempDirectory("cgroup-rescale");
+		this.write(root, "cpu.max", "50000 100000");
+		final CpuBudget budget = new CpuBudget(root, 64);
+		final List<Double> changes = new ArrayList<>();
+		budget.addListener(changes::add);
+
+		// Fractional budgets still get at least one thread.
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("cpu-budget-test").withCpuBudget(budget).withCpuBudgetRescale(true)
+				.withCorePoolSizeCpuMultiplier(2D)
+				.withMaxPoolSizeCpuMultiplier(4D).withMaxQueueSize(100).buildPool();
+		final DynamicThreadPool forkJoinPool = new DynamicThreadPoolFactory().withName("cpu-budget-fork-join-test").withCpuBudget(budget).withCpuBudgetRescale(true)
+				.withParallelismCpuMultiplier(0.5D).buildPool();
+		final DynamicThreadPool fixedPool = new DynamicThreadPoolFactory().withName("cpu-budget-fixed-test").withCpuBudget(budget).withCpuBudgetRescale(true)
+				.withCorePoolSize(3)
+				.withMaxPoolSize(3).buildPool();
+		Assertions.assertEquals(1, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+		Assertions.assertEquals(2, ((ThreadPoolExecutor) pool.getExecutor()).getMaximumPoolSize());
+		Assertions.assertEquals(1, ((ForkJoinPool) forkJoinPool.getExecutor()).getParallelism());
+		// Pools are only rescaled if enabled.
+		final DynamicThreadPool staticPool = new DynamicThreadPoolFactory().withName("cpu-budget-static-test").withCpuBudget(budget)
+				.withCorePoolSizeCpuMultiplier(2D).withMaxPoolSizeCpuMultiplier(4D).withMaxQueueSize(100).buildPool();
+
+		// Budget changes resize the pools.
+		Assertions.assertFalse(budget.refresh());
+		this.write(root, "cpu.max", "400000 100000");
+		Assertions.assertTrue(budget.refresh());
+		Assertions.assertEquals(List.of(4D), changes);
+		Assertions.assertEquals(8, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+		Assertions.assertEquals(16, ((ThreadPoolExecutor) pool.getExecutor()).getMaximumPoolSize());
+		Assertions.assertEquals(2, ((ForkJoinPool) forkJoinPool.getExecutor()).getParallelism());
+		Assertions.assertEquals(3, ((ThreadPoolExecutor) fixedPool.getExecutor()).getCorePoolSize());
+		this.write(root, "cpu.max", "100000 100000");
+		Assertions.assertTrue(budget.refresh());
+		Assertions.assertEquals(2, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+		Assertions.assertEquals(4, ((ThreadPoolExecutor) pool.getExecutor()).getMaximumPoolSize());
+		Assertions.assertEquals(1, ((ThreadPoolExecutor) staticPool.getExecutor()).getCorePoolSize());
+
+		// Pools resized at runtime are not rescaled.
+		((ThreadPoolExecutor) pool.getExecutor()).setCorePoolSize(3);
+		this.write(root, "cpu.max", "200000 100000");
+		Assertions.assertTrue(budget.refresh());
+		Assertions.assertEquals(3, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+		Assertions.assertEquals(4, ((ThreadPoolExecutor) pool.getExecutor()).getMaximumPoolSize());
+		Assertions.assertEquals(1, ((ForkJoinPool) forkJoinPool.getExecutor()).getParallelism());
+		// Rescaling resumes once back to the last rescaled sizes.
+		((ThreadPoolExecutor) pool.getExecutor()).setCorePoolSize(2);
+		this.write(root, "cpu.max", "300000 100000");
+		Assertions.assertTrue(budget.refresh());
+		Assertions.assertEquals(6, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+
+		// Pools that were shut down are not resized anymore.
+		pool.shutdown();
+		forkJoinPool.shutdown();
+		fixedPool.shutdown();
+		staticPool.shutdown();
+		this.write(root, "cpu.max", "100000 100000");
+		Assertions.assertTrue(budget.refresh());
+		Assertions.assertEquals(6, ((ThreadPoolExecutor) pool.getExecutor()).getCorePoolSize());
+		budget.stop();
+	}
+
+}
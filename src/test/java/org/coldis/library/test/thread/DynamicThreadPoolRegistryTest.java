@@ -0,0 +1,129 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Dynamic thread pool registry test.
+ */
+public class DynamicThreadPoolRegistryTest {
+
+	/**
+	 * Tests that pools are deduplicated by name and configuration.
+	 */
+	@Test
+	public void testGetOrBuild() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool pool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-test").withCorePoolSize(2));
+		Assertions.assertSame(pool, registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-test").withCorePoolSize(2)));
+		Assertions.assertSame(pool, registry.get("registry-test"));
+		Assertions.assertEquals(List.of(pool), registry.getPools());
+
+		// A different configuration with the same name is not allowed.
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-test").withCorePoolSize(3)));
+
+		// A pool that was shut down is replaced.
+		pool.shutdown();
+		final DynamicThreadPool newPool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-test").withCorePoolSize(2));
+		Assertions.assertNotSame(pool, newPool);
+		Assertions.assertTrue(registry.drainAll(Duration.ofSeconds(5)));
+		Assertions.assertTrue(registry.getPools().isEmpty());
+		Assertions.assertTrue(newPool.isTerminated());
+	}
+
+	/**
+	 * Tests that concurrent requests for a pool get the same one.
+	 */
+	@Test
+	public void testConcurrentGetOrBuild() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<CompletableFuture<DynamicThreadPool>> pools = new ArrayList<>();
+		try (final ExecutorService requesters = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int requester = 0; requester < 8; requester++) {
+				pools.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						start.await();
+					}
+					catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+					}
+					return registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-concurrent-test").withCorePoolSize(2));
+				}, requesters));
+			}
+			start.countDown();
+		}
+		final DynamicThreadPool pool = pools.get(0).get();
+		for (final CompletableFuture<DynamicThreadPool> requestedPool : pools) {
+			Assertions.assertSame(pool, requestedPool.get());
+		}
+		Assertions.assertSame(pool, registry.get("registry-concurrent-test"));
+		Assertions.assertEquals(1, registry.getPools().size());
+		Assertions.assertTrue(registry.drainAll(Duration.ofSeconds(5)));
+	}
+
+	/**
+	 * Tests that pools are drained in registration order.
+	 */
+	@Test
+	public void testDrainAll() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool producer = registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-producer-test").withCorePoolSize(2));
+		final DynamicThreadPool consumer = registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-consumer-test").withCorePoolSize(2));
+		Assertions.assertEquals(List.of(producer, consumer), registry.getPools());
+
+		// Producer tasks hand work over to the consumer.
+		final AtomicInteger consumed = new AtomicInteger();
+		for (int taskNumber = 0; taskNumber < 100; taskNumber++) {
+			producer.execute(() -> {
+				try {
+					Thread.sleep(1);
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+				consumer.execute(consumed::incrementAndGet);
+			});
+		}
+		Assertions.assertTrue(registry.drainAll(Duration.ofSeconds(10)));
+		Assertions.assertEquals(100, consumed.get());
+		Assertions.assertTrue(producer.isTerminated());
+		Assertions.assertTrue(consumer.isTerminated());
+	}
+
+	/**
+	 * Tests that tasks are cancelled once the drain deadline passes.
+	 */
+	@Test
+	public void testDrainTimeout() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool pool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("registry-timeout-test").withCorePoolSize(1));
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		pool.execute(() -> {
+			try {
+				Thread.sleep(Duration.ofMinutes(1));
+			}
+			catch (final InterruptedException exception) {
+				interrupted.countDown();
+			}
+		});
+		Assertions.assertFalse(registry.drain("registry-timeout-test", Duration.ofMillis(20)));
+		Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		Assertions.assertNull(registry.get("registry-timeout-test"));
+	}
+
+}
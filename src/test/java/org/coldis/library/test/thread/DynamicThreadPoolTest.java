@@ -0,0 +1,490 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.thread.BoundedVirtualThreadExecutor;
+import org.coldis.library.thread.DynamicScheduledThreadPool;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolMetrics;
+import org.coldis.library.thread.DynamicThreadPoolMetricsBinder;
+import org.coldis.library.thread.DynamicThreadPoolSaturationPolicy;
+import org.coldis.library.thread.LatencyHistogram;
+import org.coldis.library.thread.LatencyLoadShedder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Dynamic thread pool test.
+ */
+public class DynamicThreadPoolTest {
+
+	/**
+	 * Tests the adaptive sizing of a thread pool executor.
+	 */
+	@Test
+	public void testAdaptiveThreadPoolExecutor() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("adaptive-test").withAdaptive(true)
+				.withAdaptiveInterval(Duration.ofHours(1)).withMinPoolSize(2).withCorePoolSize(8).withMaxPoolSize(16).withMaxQueueSize(1000).buildPool();
+		final ThreadPoolExecutor executor = (ThreadPoolExecutor) pool.getExecutor();
+		Assertions.assertNotNull(pool.getController());
+		Assertions.assertEquals(2, pool.getController().getMinSize());
+		Assertions.assertEquals(16, pool.getController().getMaxSize());
+		Assertions.assertEquals(8, executor.getCorePoolSize());
+
+		// Idle pool should shrink down to the minimum size.
+		for (int sample = 0; sample < 20; sample++) {
+			pool.getController().sample();
+		}
+		Assertions.assertEquals(2, executor.getCorePoolSize());
+
+		// Saturated pool with queued tasks should grow up to the maximum size.
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int task = 0; task < 100; task++) {
+			pool.execute(() -> {
+				try {
+					release.await();
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		for (int sample = 0; sample < 20; sample++) {
+			Thread.sleep(10);
+			pool.getController().sample();
+		}
+		Assertions.assertEquals(16, executor.getCorePoolSize());
+		Assertions.assertTrue(pool.getController().getLastQueueDepth() > 0);
+
+		// Releases the tasks and shuts the pool down.
+		release.countDown();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests the adaptive sizing of a fork join pool.
+	 */
+	@Test
+	public void testAdaptiveForkJoinPool() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("adaptive-fork-join-test").withAdaptive(true)
+				.withAdaptiveInterval(Duration.ofHours(1)).withParallelism(8).withMinPoolSize(1).buildPool();
+		final ForkJoinPool executor = (ForkJoinPool) pool.getExecutor();
+		Assertions.assertEquals(8, executor.getParallelism());
+
+		// Idle pool should shrink down to the minimum size.
+		for (int sample = 0; sample < 30; sample++) {
+			pool.getController().sample();
+		}
+		Assertions.assertEquals(1, executor.getParallelism());
+		Assertions.assertEquals(8, pool.getController().resize(100));
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests that pools are not adaptive by default.
+	 */
+	@Test
+	public void testNonAdaptivePool() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("non-adaptive-test").withCorePoolSize(2).buildPool();
+		Assertions.assertNull(pool.getController());
+		Assertions.assertEquals("non-adaptive-test", pool.getName());
+		Assertions.assertEquals(3, pool.submit(() -> 3).get());
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests the pool metrics.
+	 */
+	@Test
+	public void testMetrics() throws Exception {
+		final List<String> boundPools = new ArrayList<>();
+		final DynamicThreadPoolMetricsBinder binder = new DynamicThreadPoolMetricsBinder() {
+
+			@Override
+			public void bind(
+					final DynamicThreadPool pool) {
+				boundPools.add(pool.getName());
+			}
+
+			@Override
+			public void unbind(
+					final DynamicThreadPool pool) {
+				boundPools.remove(pool.getName());
+			}
+		};
+		DynamicThreadPoolMetrics.registerBinder(binder);
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("metrics-test").withCorePoolSize(1).withMaxPoolSize(1).withMaxQueueSize(1)
+				.buildPool();
+		Assertions.assertEquals(List.of("metrics-test"), boundPools);
+
+		// Runs a task that succeeds, one that fails and one that blocks the pool.
+		pool.submit(() -> {
+			Thread.sleep(20);
+			return null;
+		}).get();
+		Assertions.assertThrows(ExecutionException.class, () -> pool.submit(() -> {
+			throw new IllegalStateException();
+		}).get());
+		pool.execute(() -> {
+			throw new IllegalStateException();
+		});
+		while (pool.getMetrics().getFailed() < 2) {
+			Thread.sleep(1);
+		}
+		final CountDownLatch release = new CountDownLatch(1);
+		pool.execute(() -> {
+			try {
+				release.await();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		while ((pool.getMetrics().getActiveThreads() < 1) || (pool.getMetrics().getQueueDepth() > 0)) {
+			Thread.sleep(1);
+		}
+		pool.execute(() -> {});
+		Assertions.assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> {}));
+
+		// Checks the metrics.
+		final DynamicThreadPoolMetrics metrics = pool.getMetrics();
+		Assertions.assertEquals(6, metrics.getSubmitted());
+		Assertions.assertEquals(1, metrics.getRejected());
+		Assertions.assertEquals(1, metrics.getActiveThreads());
+		Assertions.assertEquals(1, metrics.getQueueDepth());
+		Assertions.assertTrue(metrics.getExecutionTime().getMax() >= Duration.ofMillis(20).toNanos());
+		release.countDown();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(3, metrics.getCompleted());
+		Assertions.assertEquals(2, metrics.getFailed());
+		Assertions.assertTrue(boundPools.isEmpty());
+		DynamicThreadPoolMetrics.unregisterBinder(binder);
+	}
+
+	/**
+	 * Tests the scheduled pool metrics.
+	 */
+	@Test
+	public void testScheduledMetrics() throws Exception {
+		final DynamicScheduledThreadPool pool = (DynamicScheduledThreadPool) new DynamicThreadPoolFactory().withName("scheduled-metrics-test").withScheduled(true)
+				.withCorePoolSize(1).buildPool();
+		Assertions.assertEquals(1, pool.schedule(() -> 1, 1, TimeUnit.MILLISECONDS).get());
+		final Future<?> failedFuture = pool.schedule(() -> {
+			throw new IllegalStateException();
+		}, 1, TimeUnit.MILLISECONDS);
+		Assertions.assertThrows(ExecutionException.class, failedFuture::get);
+		final CountDownLatch periodicRuns = new CountDownLatch(3);
+		final Future<?> periodicFuture = pool.scheduleAtFixedRate(periodicRuns::countDown, 1, 1, TimeUnit.MILLISECONDS);
+		Assertions.assertTrue(periodicRuns.await(5, TimeUnit.SECONDS));
+		periodicFuture.cancel(false);
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+		// Each run of the periodic task is recorded.
+		final DynamicThreadPoolMetrics metrics = pool.getMetrics();
+		Assertions.assertEquals(3, metrics.getSubmitted());
+		Assertions.assertEquals(1, metrics.getFailed());
+		Assertions.assertTrue(metrics.getCompleted() >= 4);
+		Assertions.assertEquals(metrics.getCompleted() + metrics.getFailed(), metrics.getExecutionTime().getCount());
+	}
+
+	/**
+	 * Tests the latency histogram percentiles.
+	 */
+	@Test
+	public void testLatencyHistogram() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value);
+		}
+		Assertions.assertEquals(100000, histogram.getCount());
+		Assertions.assertEquals(100000, histogram.getMax());
+		Assertions.assertEquals(50000.5D, histogram.getMean(), 0.0001D);
+		Assertions.assertEquals(50000D, histogram.getPercentile(50), 50000D / LatencyHistogram.SUB_BUCKETS);
+		Assertions.assertEquals(99000D, histogram.getPercentile(99), 99000D / LatencyHistogram.SUB_BUCKETS);
+		Assertions.assertEquals(100000, histogram.getPercentile(100));
+	}
+
+	/**
+	 * Tests the bounded virtual thread pool.
+	 */
+	@Test
+	public void testBoundedVirtualThreadPool() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("virtual-test").withVirtual(true).withMaxPoolSize(2).withMaxQueueSize(1)
+				.buildPool();
+		final BoundedVirtualThreadExecutor executor = (BoundedVirtualThreadExecutor) pool.getExecutor();
+		Assertions.assertEquals(2, executor.getMaxConcurrency());
+
+		// Fills the running and waiting permits.
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final Runnable task = () -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Assertions.assertTrue(Thread.currentThread().isVirtual());
+				release.await();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		};
+		for (int taskNumber = 0; taskNumber < 3; taskNumber++) {
+			pool.execute(task);
+		}
+		while ((executor.getActiveCount() < 2) || (executor.getQueueSize() < 1)) {
+			Thread.sleep(1);
+		}
+
+		// Further tasks should be rejected right away.
+		Assertions.assertThrows(RejectedExecutionException.class, () -> pool.execute(task));
+		Assertions.assertEquals(1, pool.getMetrics().getRejected());
+		release.countDown();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, maxRunning.get());
+		Assertions.assertEquals(3, pool.getMetrics().getCompleted());
+	}
+
+	/**
+	 * Tests the timed admission of the bounded virtual thread pool.
+	 */
+	@Test
+	public void testBoundedVirtualThreadPoolTimedAdmission() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("virtual-admission-test").withVirtual(true).withMaxPoolSize(1)
+				.withMaxQueueSize(0).withAdmissionTimeout(Duration.ofSeconds(5)).buildPool();
+		final AtomicInteger completed = new AtomicInteger();
+		for (int taskNumber = 0; taskNumber < 10; taskNumber++) {
+			pool.execute(() -> {
+				try {
+					Thread.sleep(5);
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+				completed.incrementAndGet();
+			});
+		}
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(10, completed.get());
+		Assertions.assertEquals(0, pool.getMetrics().getRejected());
+	}
+
+	/**
+	 * Tests the bounded virtual thread pool tasks that do not start.
+	 */
+	@Test
+	public void testBoundedVirtualThreadPoolNotStarted() throws Exception {
+		final List<Thread> threads = new CopyOnWriteArrayList<>();
+		final BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(task -> {
+			final Thread thread = Thread.ofVirtual().unstarted(task);
+			threads.add(thread);
+			return thread;
+		}, 1, 3, null);
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				release.await();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		final Future<?> interrupted = executor.submit(() -> {});
+		final Future<?> waiting = executor.submit(() -> {});
+		final Runnable waitingCommand = () -> {};
+		executor.execute(waitingCommand);
+		ThreadTestHelper.waitFor(() -> executor.getQueueSize() == 3);
+
+		// A task interrupted while waiting is cancelled.
+		threads.get(1).interrupt();
+		Assertions.assertThrows(CancellationException.class, () -> interrupted.get(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, executor.getDroppedCount());
+
+		// Tasks still waiting are handed back by shutdown now.
+		final List<Runnable> notStarted = executor.shutdownNow();
+		Assertions.assertEquals(2, notStarted.size());
+		Assertions.assertTrue(notStarted.contains(waiting));
+		Assertions.assertTrue(notStarted.contains(waitingCommand));
+		Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertFalse(waiting.isDone());
+		Assertions.assertEquals(1, executor.getDroppedCount());
+	}
+
+	/**
+	 * Builds a saturated pool (one busy thread and a full queue).
+	 *
+	 * @param  policy  Saturation policy.
+	 * @param  release Latch that releases the busy thread.
+	 * @param  ran     Tasks that ran.
+	 * @return         The saturated pool.
+	 */
+	private DynamicThreadPool buildSaturatedPool(
+			final DynamicThreadPoolSaturationPolicy policy,
+			final CountDownLatch release,
+			final List<String> ran) throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("saturation-test").withCorePoolSize(1).withMaxPoolSize(1).withMaxQueueSize(1)
+				.withSaturationPolicy(policy).withSaturationTimeout(Duration.ofMillis(50)).buildPool();
+		pool.execute(() -> {
+			try {
+				release.await();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			ran.add("busy");
+		});
+		while (pool.getMetrics().getActiveThreads() < 1) {
+			Thread.sleep(1);
+		}
+		pool.execute(() -> ran.add("queued"));
+		return pool;
+	}
+
+	/**
+	 * Tests the caller runs saturation policy.
+	 */
+	@Test
+	public void testCallerRunsPolicy() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> ran = new CopyOnWriteArrayList<>();
+		final DynamicThreadPool pool = this.buildSaturatedPool(DynamicThreadPoolSaturationPolicy.CALLER_RUNS, release, ran);
+		final String callerThread = Thread.currentThread().getName();
+		pool.execute(() -> ran.add(Thread.currentThread().getName()));
+		Assertions.assertEquals(List.of(callerThread), ran);
+		release.countDown();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(callerThread, "busy", "queued"), ran);
+	}
+
+	/**
+	 * Tests the discard oldest saturation policy.
+	 */
+	@Test
+	public void testDiscardOldestPolicy() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> ran = new CopyOnWriteArrayList<>();
+		final DynamicThreadPool pool = this.buildSaturatedPool(DynamicThreadPoolSaturationPolicy.DISCARD_OLDEST, release, ran);
+		pool.execute(() -> ran.add("newest"));
+		release.countDown();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of("busy", "newest"), ran);
+	}
+
+	/**
+	 * Tests the blocking saturation policy.
+	 */
+	@Test
+	public void testBlockPolicy() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> ran = new CopyOnWriteArrayList<>();
+		final DynamicThreadPool pool = this.buildSaturatedPool(DynamicThreadPoolSaturationPolicy.BLOCK, release, ran);
+
+		// Rejects the task once the timeout elapses.
+		final long blockedAt = System.nanoTime();
+		Assertions.assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> ran.add("rejected")));
+		Assertions.assertTrue((System.nanoTime() - blockedAt) >= Duration.ofMillis(50).toNanos());
+		Assertions.assertEquals(1, pool.getMetrics().getRejected());
+
+		// Waits for room in the queue.
+		final Thread releaser = new Thread(() -> {
+			try {
+				Thread.sleep(10);
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			release.countDown();
+		});
+		releaser.start();
+		pool.execute(() -> ran.add("blocked"));
+		releaser.join();
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of("busy", "queued", "blocked"), ran);
+	}
+
+	/**
+	 * Tests the latency load shedder.
+	 */
+	@Test
+	public void testLatencyLoadShedder() throws Exception {
+		final long interval = Duration.ofMillis(100).toNanos();
+		final long target = Duration.ofMillis(5).toNanos();
+		final LatencyLoadShedder shedder = new LatencyLoadShedder(Duration.ofNanos(target), Duration.ofNanos(interval));
+		final long start = System.nanoTime();
+
+		// A burst (some tasks within the target) does not shed.
+		Assertions.assertFalse(shedder.shouldShed(start, target * 10));
+		Assertions.assertFalse(shedder.shouldShed(start, target / 2));
+		Assertions.assertFalse(shedder.shouldShed(start + interval, target * 10));
+		Assertions.assertFalse(shedder.isOverloaded());
+
+		// A standing queue (every task above the target) sheds slow tasks.
+		Assertions.assertTrue(shedder.shouldShed(start + (interval * 2), target * 2));
+		Assertions.assertTrue(shedder.isOverloaded());
+		Assertions.assertTrue(shedder.shouldShed(start + (interval * 2), target * 3));
+		Assertions.assertFalse(shedder.shouldShed(start + (interval * 2), target / 2));
+		Assertions.assertEquals(2, shedder.getShed());
+
+		// Recovers once the queue wait is back within the target.
+		Assertions.assertFalse(shedder.shouldShed(start + (interval * 3), target * 2));
+		Assertions.assertFalse(shedder.isOverloaded());
+	}
+
+	/**
+	 * Tests the latency shedding of an overloaded pool.
+	 */
+	@Test
+	public void testLatencySheddingPool() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("shedding-test").withCorePoolSize(1).withMaxPoolSize(1).withMaxQueueSize(1000)
+				.withSaturationPolicy(DynamicThreadPoolSaturationPolicy.SHED_LATENCY).withSheddingTargetQueueWait(Duration.ofMillis(2))
+				.withSheddingInterval(Duration.ofMillis(10)).withMetrics(false).buildPool();
+		Assertions.assertNotNull(pool.getMetrics().getShedder());
+
+		// Submits much more work than the pool can handle within the target.
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int taskNumber = 0; taskNumber < 300; taskNumber++) {
+			futures.add(pool.submit(() -> {
+				Thread.sleep(1);
+				return null;
+			}));
+		}
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+		// Shed tasks are cancelled, and the rest are completed.
+		Integer cancelled = 0;
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final CancellationException exception) {
+				cancelled++;
+			}
+		}
+		Assertions.assertTrue(cancelled > 0);
+		Assertions.assertEquals(cancelled.longValue(), pool.getMetrics().getShed());
+		Assertions.assertEquals(300 - cancelled, pool.getMetrics().getCompleted());
+	}
+
+}
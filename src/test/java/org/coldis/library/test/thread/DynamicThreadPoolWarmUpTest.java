@@ -0,0 +1,100 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Thread pool prestart and warm-up test.
+ */
+public class DynamicThreadPoolWarmUpTest {
+
+	/**
+	 * Tests prestarting workers.
+	 */
+	@Test
+	public void testPrestart() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("warm-up-test").withCorePoolSize(3).withMaxPoolSize(3).withPrestart(true)
+				.buildPool();
+		Assertions.assertEquals(3, ((ThreadPoolExecutor) pool.getExecutor()).getPoolSize());
+		Assertions.assertTrue(pool.isReady());
+		pool.shutdown();
+
+		// Pools are not prestarted by default.
+		final DynamicThreadPool lazyPool = new DynamicThreadPoolFactory().withName("warm-up-test").withCorePoolSize(3).withMaxPoolSize(3).buildPool();
+		Assertions.assertEquals(0, ((ThreadPoolExecutor) lazyPool.getExecutor()).getPoolSize());
+		Assertions.assertTrue(lazyPool.isReady());
+		lazyPool.shutdown();
+	}
+
+	/**
+	 * Tests warming up every worker before the pool is ready.
+	 */
+	@Test
+	public void testWarmUp() throws Exception {
+		final Map<String, AtomicInteger> warmedUp = new ConcurrentHashMap<>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool pool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("warm-up-test").withCorePoolSize(4)
+				.withMaxPoolSize(4).withPrestart(true).withWarmUp(() -> {
+					warmedUp.computeIfAbsent(Thread.currentThread().getName(), name -> new AtomicInteger()).incrementAndGet();
+					try {
+						release.await();
+					}
+					catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+					}
+				}));
+
+		// The pool is not ready until the warm-up finishes.
+		Thread.sleep(50);
+		Assertions.assertFalse(pool.isReady());
+		Assertions.assertFalse(registry.isReady());
+		release.countDown();
+		pool.getReadiness().get(5, TimeUnit.SECONDS);
+		Assertions.assertTrue(pool.isReady());
+		Assertions.assertTrue(registry.isReady());
+
+		// Every worker ran the warm-up once.
+		Assertions.assertEquals(4, warmedUp.size());
+		Assertions.assertTrue(warmedUp.values().stream().allMatch(count -> count.get() == 1));
+		Assertions.assertEquals(0, pool.getMetrics().getSubmitted());
+		registry.drainAll(Duration.ofSeconds(5));
+
+		// A registered pool is only returned for the same warm-up.
+		final Runnable warmUp = () -> {};
+		final DynamicThreadPoolRegistry otherRegistry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool warmedUpPool = otherRegistry.getOrBuild(new DynamicThreadPoolFactory().withName("warm-up-test").withWarmUp(warmUp));
+		Assertions.assertSame(warmedUpPool, otherRegistry.getOrBuild(new DynamicThreadPoolFactory().withName("warm-up-test").withWarmUp(warmUp)));
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> otherRegistry.getOrBuild(new DynamicThreadPoolFactory().withName("warm-up-test").withWarmUp(() -> {})));
+		Assertions.assertThrows(IllegalStateException.class, () -> otherRegistry.getOrBuild(new DynamicThreadPoolFactory().withName("warm-up-test")));
+		otherRegistry.drainAll(Duration.ofSeconds(5));
+	}
+
+	/**
+	 * Tests warming up fork join pool workers.
+	 */
+	@Test
+	public void testForkJoinWarmUp() throws Exception {
+		final Map<String, AtomicInteger> warmedUp = new ConcurrentHashMap<>();
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("warm-up-test").withParallelism(3)
+				.withWarmUp(() -> warmedUp.computeIfAbsent(Thread.currentThread().getName(), name -> new AtomicInteger()).incrementAndGet()).buildPool();
+		pool.getReadiness().get(5, TimeUnit.SECONDS);
+		Assertions.assertEquals(3, warmedUp.size());
+		Assertions.assertEquals(3, ((ForkJoinPool) pool.getExecutor()).getPoolSize());
+		pool.shutdown();
+	}
+
+}
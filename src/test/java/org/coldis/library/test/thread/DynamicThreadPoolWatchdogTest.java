@@ -0,0 +1,123 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.coldis.library.thread.DynamicScheduledThreadPool;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolRegistry;
+import org.coldis.library.thread.DynamicThreadPoolWatchdog;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Thread pool watchdog test.
+ */
+public class DynamicThreadPoolWatchdogTest {
+
+	/**
+	 * Tests detecting a pool with all workers blocked and tasks queued.
+	 */
+	@Test
+	public void testStall() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool pool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("watchdog-test").withCorePoolSize(2).withMaxPoolSize(2));
+		final DynamicThreadPool idlePool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("watchdog-test-idle").withCorePoolSize(2)
+				.withMaxPoolSize(2));
+		final DynamicThreadPoolWatchdog watchdog = new DynamicThreadPoolWatchdog(registry);
+
+		// Idle pools are not stalled.
+		for (int task = 0; task < 4; task++) {
+			idlePool.execute(() -> {});
+			pool.execute(() -> {});
+		}
+		Thread.sleep(50);
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+
+		// Blocks all workers, and queues more tasks.
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(2);
+		for (int task = 0; task < 4; task++) {
+			pool.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		started.await();
+		Thread.sleep(50);
+		final List<String> diagnostics = watchdog.sample();
+		Assertions.assertEquals(1, diagnostics.size());
+		Assertions.assertTrue(diagnostics.get(0).contains("pool=watchdog-test,"));
+		Assertions.assertTrue(diagnostics.get(0).contains("blockedWorkers=2"));
+		Assertions.assertTrue(diagnostics.get(0).contains("CountDownLatch.await"));
+		Assertions.assertEquals(Set.of("watchdog-test"), watchdog.getStalledPools());
+
+		// Stalls are only reported once.
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Assertions.assertEquals(Set.of("watchdog-test"), watchdog.getStalledPools());
+
+		// Recovers once the workers are released.
+		release.countDown();
+		Thread.sleep(50);
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Assertions.assertTrue(watchdog.getStalledPools().isEmpty());
+		registry.drainAll(Duration.ofSeconds(5));
+	}
+
+	/**
+	 * Tests detecting a pool that makes no progress while tasks are queued.
+	 */
+	@Test
+	public void testNoProgress() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicThreadPool pool = registry.getOrBuild(new DynamicThreadPoolFactory().withName("watchdog-test-busy").withCorePoolSize(1)
+				.withMaxPoolSize(1));
+		// Busy (not blocked) workers are only detected by the lack of progress.
+		final DynamicThreadPoolWatchdog watchdog = new DynamicThreadPoolWatchdog(registry, 1.1, 16, 1);
+		final long busyUntil = System.nanoTime() + Duration.ofMillis(300).toNanos();
+		pool.execute(() -> {
+			while (System.nanoTime() < busyUntil) {
+				Thread.onSpinWait();
+			}
+		});
+		pool.execute(() -> {});
+		Thread.sleep(20);
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Thread.sleep(20);
+		final List<String> diagnostics = watchdog.sample();
+		Assertions.assertEquals(1, diagnostics.size());
+		Assertions.assertTrue(diagnostics.get(0).contains("reason=no-progress"));
+		registry.drainAll(Duration.ofSeconds(5));
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Assertions.assertTrue(watchdog.getStalledPools().isEmpty());
+	}
+
+	/**
+	 * Tests that scheduled tasks that are not due yet do not stall a pool.
+	 */
+	@Test
+	public void testScheduledNotDue() throws Exception {
+		final DynamicThreadPoolRegistry registry = new DynamicThreadPoolRegistry();
+		final DynamicScheduledThreadPool pool = (DynamicScheduledThreadPool) registry.getOrBuild(new DynamicThreadPoolFactory()
+				.withName("watchdog-test-scheduled").withScheduled(true).withCorePoolSize(1));
+		final DynamicThreadPoolWatchdog watchdog = new DynamicThreadPoolWatchdog(registry);
+		pool.scheduleAtFixedRate(() -> {}, 1, 1, TimeUnit.HOURS);
+		Thread.sleep(20);
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Thread.sleep(20);
+		Assertions.assertTrue(watchdog.sample().isEmpty());
+		Assertions.assertTrue(watchdog.getStalledPools().isEmpty());
+		registry.drainAll(Duration.ofSeconds(5));
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.coldis.library.test.thread;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.exception.IntegrationException;
+import org.coldis.library.model.SimpleMessage;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.FanOut;
+import org.coldis.library.thread.FanOutFailurePolicy;
+import org.coldis.library.thread.ThreadMapContextHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fan-out test.
+ */
+public class FanOutTest {
+
+	/**
+	 * Clears the context after each test.
+	 */
+	@AfterEach
+	public void clear() {
+		ThreadMapContextHolder.clear();
+	}
+
+	/**
+	 * Tests joining all results (with platform and virtual thread pools).
+	 */
+	@Test
+	public void testJoinAll() throws Exception {
+		for (final DynamicThreadPool pool : List.of(new DynamicThreadPoolFactory().withName("fan-out-test").withCorePoolSize(4).withMaxPoolSize(4).buildPool(),
+				new DynamicThreadPoolFactory().withName("fan-out-test").withVirtual(true).buildPool())) {
+			ThreadMapContextHolder.setAttribute("request", "request1");
+			final FanOut<String> fanOut = pool.fanOut();
+			for (int task = 0; task < 10; task++) {
+				final int actualTask = task;
+				// Later tasks finish first, but results are in fork order.
+				fanOut.fork(() -> {
+					Thread.sleep(20 - (actualTask * 2));
+					return ThreadMapContextHolder.getAttribute("request") + "-" + actualTask;
+				});
+			}
+			final List<String> results = fanOut.withTimeout(Duration.ofSeconds(5)).join();
+			Assertions.assertEquals(10, results.size());
+			for (int task = 0; task < 10; task++) {
+				Assertions.assertEquals("request1-" + task, results.get(task));
+			}
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests joining the first results and cancelling the others.
+	 */
+	@Test
+	public void testJoinFirst() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("fan-out-test").withVirtual(true).buildPool();
+		final AtomicInteger interrupted = new AtomicInteger();
+		final AtomicInteger losersStarted = new AtomicInteger();
+		final AtomicInteger losersDone = new AtomicInteger();
+		final FanOut<Integer> fanOut = pool.<Integer>fanOut().withRequired(2);
+		for (int task = 0; task < 5; task++) {
+			final int actualTask = task;
+			fanOut.fork(() -> {
+				if (actualTask % 2 == 0) {
+					losersStarted.incrementAndGet();
+					try {
+						Thread.sleep(10_000);
+					}
+					catch (final InterruptedException exception) {
+						interrupted.incrementAndGet();
+					}
+					finally {
+						losersDone.incrementAndGet();
+					}
+				}
+				return actualTask;
+			});
+		}
+		Assertions.assertEquals(List.of(1, 3), fanOut.join());
+		// Losers cancelled before starting never run, and started ones are
+		// interrupted and finished before the join returns.
+		Assertions.assertEquals(losersStarted.get(), losersDone.get());
+		Assertions.assertEquals(losersStarted.get(), interrupted.get());
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests the deadline.
+	 */
+	@Test
+	public void testDeadline() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("fan-out-test").withVirtual(true).buildPool();
+		final CountDownLatch stragglerDone = new CountDownLatch(1);
+		final FanOut<Integer> fanOut = pool.<Integer>fanOut().withTimeout(Duration.ofMillis(50)).fork(() -> 1).fork(() -> {
+			try {
+				Thread.sleep(10_000);
+			}
+			finally {
+				stragglerDone.countDown();
+			}
+			return 2;
+		});
+		final long startedAt = System.nanoTime();
+		final IntegrationException exception = Assertions.assertThrows(IntegrationException.class, fanOut::join);
+		Assertions.assertTrue((System.nanoTime() - startedAt) >= Duration.ofMillis(50).toNanos());
+		Assertions.assertEquals(504, exception.getStatusCode());
+		Assertions.assertEquals(IntegrationException.DEFAULT_RETRY_IN, exception.getRetryIn());
+		Assertions.assertEquals(0, stragglerDone.getCount());
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests the failure policies.
+	 */
+	@Test
+	public void testFailurePolicies() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("fan-out-test").withVirtual(true).buildPool();
+
+		// Fails fast with the retry of the failure.
+		final IntegrationException failFast = Assertions.assertThrows(IntegrationException.class, () -> pool.<Integer>fanOut().fork(() -> {
+			Thread.sleep(10_000);
+			return 1;
+		}).fork(() -> {
+			throw new IntegrationException(new SimpleMessage("test"), 503, Duration.ofSeconds(5), null);
+		}).join());
+		Assertions.assertEquals(503, failFast.getStatusCode());
+		Assertions.assertEquals(Duration.ofSeconds(5), failFast.getRetryIn());
+
+		// Tolerates failures while enough results are possible.
+		Assertions.assertEquals(List.of(2), pool.<Integer>fanOut().withRequired(1).withFailurePolicy(FanOutFailurePolicy.TOLERATE).fork(() -> {
+			throw new IllegalStateException();
+		}).fork(() -> {
+			Thread.sleep(20);
+			return 2;
+		}).join());
+
+		// Fails with the longest retry once the results cannot be reached.
+		final IntegrationException tolerated = Assertions.assertThrows(IntegrationException.class,
+				() -> pool.<Integer>fanOut().withRequired(2).withFailurePolicy(FanOutFailurePolicy.TOLERATE).fork(() -> 1).fork(() -> {
+					throw new IntegrationException(new SimpleMessage("test"), 503, Duration.ofSeconds(5), null);
+				}).fork(() -> {
+					throw new IntegrationException(new SimpleMessage("test"), 503, Duration.ofMinutes(5), null);
+				}).join());
+		Assertions.assertEquals(Duration.ofMinutes(5), tolerated.getRetryIn());
+		Assertions.assertEquals(1, tolerated.getSuppressed().length);
+		pool.shutdown();
+	}
+
+}
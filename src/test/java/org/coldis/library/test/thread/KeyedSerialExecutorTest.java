@@ -0,0 +1,122 @@
+package org.coldis.library.test.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.KeyedSerialExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Keyed serial executor test.
+ */
+public class KeyedSerialExecutorTest {
+
+	/**
+	 * Tests that tasks for the same key run in order and one at a time.
+	 */
+	@Test
+	public void testPerKeyOrder() throws Exception {
+		final KeyedSerialExecutor<Integer> executor = new DynamicThreadPoolFactory().withName("keyed-test").withParallelism(4).buildKeyedSerial();
+		final Integer keys = 50;
+		final Integer tasksPerKey = 500;
+		final Map<Integer, List<Integer>> executed = new ConcurrentHashMap<>();
+		final Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+		final AtomicInteger overlaps = new AtomicInteger();
+		final List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+		// Submits the tasks for all keys from a few threads (one thread per key
+		// range, so the submission order for each key is known).
+		final List<Thread> producers = new ArrayList<>();
+		for (int producer = 0; producer < 5; producer++) {
+			final int firstKey = producer * 10;
+			final Thread producerThread = new Thread(() -> {
+				for (int task = 0; task < tasksPerKey; task++) {
+					for (int key = firstKey; key < (firstKey + 10); key++) {
+						final int actualKey = key;
+						final int actualTask = task;
+						executor.execute(actualKey, () -> {
+							if (running.computeIfAbsent(actualKey, runningKey -> new AtomicInteger()).incrementAndGet() > 1) {
+								overlaps.incrementAndGet();
+							}
+							executed.computeIfAbsent(actualKey, executedKey -> new ArrayList<>()).add(actualTask);
+							running.get(actualKey).decrementAndGet();
+						});
+					}
+				}
+			});
+			producers.add(producerThread);
+			producerThread.start();
+		}
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		for (int key = 0; key < keys; key++) {
+			final int actualKey = key;
+			results.add(executor.submit(actualKey, () -> executed.get(actualKey).size()));
+		}
+
+		// Checks the order for every key.
+		for (int key = 0; key < keys; key++) {
+			Assertions.assertEquals(tasksPerKey, results.get(key).get());
+			for (int task = 0; task < tasksPerKey; task++) {
+				Assertions.assertEquals(task, executed.get(key).get(task));
+			}
+		}
+		Assertions.assertEquals(0, overlaps.get());
+
+		// Idle keys should be removed.
+		while (executor.getActiveKeys() > 0) {
+			Thread.sleep(1);
+		}
+		((DynamicThreadPool) executor.getExecutor()).shutdown();
+	}
+
+	/**
+	 * Tests that a failing task does not block the key.
+	 */
+	@Test
+	public void testFailingTask() throws Exception {
+		final KeyedSerialExecutor<String> executor = new DynamicThreadPoolFactory().withName("keyed-failure-test").withCorePoolSize(2).buildKeyedSerial();
+		final CompletableFuture<Object> failed = executor.submit("key", () -> {
+			throw new IllegalStateException();
+		});
+		Assertions.assertEquals("next", executor.submit("key", () -> "next").get());
+		Assertions.assertTrue(failed.isCompletedExceptionally());
+		((DynamicThreadPool) executor.getExecutor()).shutdown();
+	}
+
+	/**
+	 * Tests that the tasks left for a key are rejected once the executor is shut
+	 * down (instead of running in the caller thread).
+	 */
+	@Test
+	public void testShutdown() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("keyed-shutdown-test").withCorePoolSize(1).buildPool();
+		final KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool, false, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CompletableFuture<Boolean> blocking = executor.submit("key", () -> release.await(5, TimeUnit.SECONDS));
+		final CompletableFuture<Thread> queued = executor.submit("key", Thread::currentThread);
+		pool.shutdown();
+		release.countDown();
+		Assertions.assertTrue(blocking.get());
+		final ExecutionException exception = Assertions.assertThrows(ExecutionException.class, queued::get);
+		Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+		while (executor.getActiveKeys() > 0) {
+			Thread.sleep(1);
+		}
+		Assertions.assertThrows(RejectedExecutionException.class, () -> executor.submit("key", () -> "rejected"));
+		Assertions.assertEquals(0, executor.getActiveKeys());
+	}
+
+}
@@ -0,0 +1,167 @@
+package org.coldis.library.test.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.MpmcArrayBlockingQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lock-free MPMC queue test.
+ */
+public class MpmcArrayBlockingQueueTest {
+
+	/**
+	 * Tests the queue bounds and order.
+	 */
+	@Test
+	public void testBoundsAndOrder() throws Exception {
+		// Capacity is not rounded to the ring size.
+		final MpmcArrayBlockingQueue<Integer> queue = new MpmcArrayBlockingQueue<>(5);
+		for (int element = 0; element < 5; element++) {
+			Assertions.assertTrue(queue.offer(element));
+		}
+		Assertions.assertFalse(queue.offer(5));
+		Assertions.assertFalse(queue.offer(5, 10, TimeUnit.MILLISECONDS));
+		Assertions.assertEquals(5, queue.size());
+		Assertions.assertEquals(0, queue.remainingCapacity());
+		Assertions.assertEquals(List.of(0, 1, 2, 3, 4), new ArrayList<>(queue));
+		Assertions.assertEquals(0, queue.peek());
+
+		// Elements are removed from the middle of the queue, and skipped by consumers.
+		Assertions.assertTrue(queue.remove(Integer.valueOf(2)));
+		Assertions.assertFalse(queue.remove(Integer.valueOf(2)));
+		Assertions.assertTrue(queue.remove(Integer.valueOf(0)));
+		Assertions.assertEquals(1, queue.peek());
+		Assertions.assertEquals(List.of(1, 3, 4), new ArrayList<>(queue));
+		Assertions.assertEquals(1, queue.poll());
+		Assertions.assertEquals(3, queue.poll());
+		Assertions.assertEquals(4, queue.poll());
+		Assertions.assertTrue(queue.isEmpty());
+		for (int element = 0; element < 5; element++) {
+			Assertions.assertTrue(queue.offer(element));
+		}
+
+		// Elements wrap around the ring in order.
+		for (int element = 5; element < 50; element++) {
+			Assertions.assertEquals(element - 5, queue.poll());
+			Assertions.assertTrue(queue.offer(element));
+		}
+		final List<Integer> drained = new ArrayList<>();
+		Assertions.assertEquals(2, queue.drainTo(drained, 2));
+		Assertions.assertEquals(3, queue.drainTo(drained));
+		Assertions.assertEquals(List.of(45, 46, 47, 48, 49), drained);
+		Assertions.assertTrue(queue.isEmpty());
+		Assertions.assertNull(queue.poll());
+		Assertions.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Tests that blocked consumers are woken up.
+	 */
+	@Test
+	public void testBlockingTake() throws Exception {
+		final MpmcArrayBlockingQueue<Integer> queue = new MpmcArrayBlockingQueue<>(4);
+		final Integer consumers = 4;
+		final AtomicLong sum = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(consumers);
+		for (int consumer = 0; consumer < consumers; consumer++) {
+			Thread.ofPlatform().start(() -> {
+				try {
+					sum.addAndGet(queue.take());
+					done.countDown();
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		// Gives consumers time to park before producing.
+		Thread.sleep(50);
+		for (int element = 1; element <= consumers; element++) {
+			queue.put(element);
+			Thread.sleep(5);
+		}
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(10, sum.get());
+	}
+
+	/**
+	 * Tests that every element is consumed exactly once with many producers and
+	 * consumers.
+	 */
+	@Test
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		final MpmcArrayBlockingQueue<Long> queue = new MpmcArrayBlockingQueue<>(1000);
+		final Integer producers = 4;
+		final Integer consumers = 4;
+		final Long elementsPerProducer = 100_000L;
+		final AtomicLong consumed = new AtomicLong();
+		final AtomicLong sum = new AtomicLong();
+		final List<Thread> threads = new ArrayList<>();
+		for (int producer = 0; producer < producers; producer++) {
+			final long firstElement = producer * elementsPerProducer;
+			threads.add(Thread.ofPlatform().start(() -> {
+				try {
+					for (long element = firstElement; element < (firstElement + elementsPerProducer); element++) {
+						queue.put(element);
+					}
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+		for (int consumer = 0; consumer < consumers; consumer++) {
+			threads.add(Thread.ofPlatform().start(() -> {
+				try {
+					for (Long element = queue.poll(1, TimeUnit.SECONDS); element != null; element = queue.poll(1, TimeUnit.SECONDS)) {
+						sum.addAndGet(element);
+						consumed.incrementAndGet();
+					}
+				}
+				catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		final long total = producers * elementsPerProducer;
+		Assertions.assertEquals(total, consumed.get());
+		Assertions.assertEquals((total * (total - 1)) / 2, sum.get());
+	}
+
+	/**
+	 * Tests a bounded pool with a lock-free queue.
+	 */
+	@Test
+	public void testLockFreeQueuePool() throws Exception {
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("lock-free-queue-test").withCorePoolSize(4).withMaxPoolSize(4)
+				.withMaxQueueSize(100_000).withLockFreeQueue(true).buildPool();
+		Assertions.assertTrue(((ThreadPoolExecutor) pool.getExecutor()).getQueue() instanceof MpmcArrayBlockingQueue);
+		final Integer tasks = 50_000;
+		final CountDownLatch done = new CountDownLatch(tasks);
+		for (int task = 0; task < tasks; task++) {
+			pool.execute(done::countDown);
+		}
+		Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+		// Unbounded pools keep the regular queue.
+		final DynamicThreadPool unboundedPool = new DynamicThreadPoolFactory().withName("lock-free-queue-test").withCorePoolSize(1)
+				.withLockFreeQueue(true).buildPool();
+		Assertions.assertFalse(((ThreadPoolExecutor) unboundedPool.getExecutor()).getQueue() instanceof MpmcArrayBlockingQueue);
+		unboundedPool.shutdown();
+	}
+
+}
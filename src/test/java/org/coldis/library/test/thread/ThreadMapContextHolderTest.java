@@ -0,0 +1,166 @@
+package org.coldis.library.test.thread;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.coldis.library.thread.DynamicScheduledThreadPool;
+import org.coldis.library.thread.DynamicThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.PersistentAttributeMap;
+import org.coldis.library.thread.ThreadMapContextHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Thread map context holder test.
+ */
+public class ThreadMapContextHolderTest {
+
+	/**
+	 * Clears the context after each test.
+	 */
+	@AfterEach
+	public void clear() {
+		ThreadMapContextHolder.clear();
+	}
+
+	/**
+	 * Tests the snapshot semantics of wrapped tasks.
+	 */
+	@Test
+	public void testWrap() throws Exception {
+		ThreadMapContextHolder.setAttribute("key", "value1");
+		final Object[] seen = new Object[2];
+		final Runnable task = ThreadMapContextHolder.wrap(() -> {
+			seen[0] = ThreadMapContextHolder.getAttribute("key");
+			ThreadMapContextHolder.setAttribute("other", "changed");
+		});
+
+		// Changes after the snapshot should not be seen by the task.
+		ThreadMapContextHolder.setAttribute("key", "value2");
+		final Thread thread = new Thread(() -> {
+			ThreadMapContextHolder.setAttribute("own", "value");
+			task.run();
+			seen[1] = ThreadMapContextHolder.getAttribute("own");
+		});
+		thread.start();
+		thread.join();
+		Assertions.assertEquals("value1", seen[0]);
+		Assertions.assertEquals("value", seen[1]);
+
+		// Changes made by the task should not leak into the caller.
+		Assertions.assertEquals("value2", ThreadMapContextHolder.getAttribute("key"));
+		Assertions.assertNull(ThreadMapContextHolder.getAttribute("other"));
+	}
+
+	/**
+	 * Tests changing the attributes through their views after a snapshot.
+	 */
+	@Test
+	public void testViewsAfterSnapshot() throws Exception {
+		ThreadMapContextHolder.setAttribute("key1", "value1");
+		ThreadMapContextHolder.setAttribute("key2", "value2");
+		ThreadMapContextHolder.setAttribute("key3", "value3");
+		final Object[] seen = new Object[1];
+		final Runnable task = ThreadMapContextHolder.wrap(() -> {
+			seen[0] = Map.copyOf(ThreadMapContextHolder.getAttributes());
+		});
+
+		// Views copy the attributes on write, so the snapshot is not changed.
+		final Map<String, Object> attributes = ThreadMapContextHolder.getAttributes();
+		attributes.keySet().remove("key1");
+		attributes.entrySet().removeIf(entry -> "key2".equals(entry.getKey()));
+		attributes.entrySet().iterator().next().setValue("changed3");
+		attributes.put("key4", "value4");
+		attributes.replaceAll((key, value) -> value + "!");
+		Assertions.assertEquals(Map.of("key3", "changed3!", "key4", "value4!"), attributes);
+		task.run();
+		Assertions.assertEquals(Map.of("key1", "value1", "key2", "value2", "key3", "value3"), seen[0]);
+	}
+
+	/**
+	 * Tests the propagation of the context with the different pool kinds.
+	 */
+	@Test
+	public void testPropagation() throws Exception {
+		final List<DynamicThreadPool> pools = List.of(
+				new DynamicThreadPoolFactory().withName("context-test").withPropagateContext(true).withCorePoolSize(1).withMaxPoolSize(1).buildPool(),
+				new DynamicThreadPoolFactory().withName("context-fork-join-test").withPropagateContext(true).withParallelism(2).buildPool(),
+				new DynamicThreadPoolFactory().withName("context-virtual-test").withPropagateContext(true).withVirtual(true).buildPool(),
+				new DynamicThreadPoolFactory().withName("context-scheduled-test").withPropagateContext(true).withScheduled(true).withCorePoolSize(1)
+						.buildPool());
+		for (final DynamicThreadPool pool : pools) {
+			ThreadMapContextHolder.setAttribute("key", pool.getName());
+			Assertions.assertEquals(pool.getName(), pool.submit(() -> ThreadMapContextHolder.getAttribute("key")).get());
+			// Worker threads should not keep the context afterwards.
+			ThreadMapContextHolder.clear();
+			Assertions.assertNull(pool.submit(() -> ThreadMapContextHolder.getAttribute("key")).get());
+		}
+
+		// Scheduled tasks should also get the context.
+		final DynamicScheduledThreadPool scheduledPool = (DynamicScheduledThreadPool) pools.get(3);
+		ThreadMapContextHolder.setAttribute("key", "scheduled");
+		final ScheduledFuture<Object> scheduled = scheduledPool.schedule(() -> ThreadMapContextHolder.getAttribute("key"), 10, TimeUnit.MILLISECONDS);
+		Assertions.assertEquals("scheduled", scheduled.get());
+		pools.forEach(DynamicThreadPool::shutdown);
+	}
+
+	/**
+	 * Tests the persistent attribute map.
+	 */
+	@Test
+	public void testPersistentAttributeMap() throws Exception {
+		final PersistentAttributeMap map1 = PersistentAttributeMap.EMPTY.with("key1", 1).with("key2", 2);
+		final PersistentAttributeMap map2 = map1.with("key1", 3).without("key2");
+		Assertions.assertEquals(Map.of("key1", 1, "key2", 2), map1);
+		Assertions.assertEquals(Map.of("key1", 3), map2);
+		Assertions.assertEquals(map1, PersistentAttributeMap.of(Map.of("key1", 1, "key2", 2)));
+		Assertions.assertTrue(PersistentAttributeMap.EMPTY.isEmpty());
+	}
+
+	/**
+	 * Tests binding attributes to a scope.
+	 */
+	@Test
+	public void testRunWith() throws Exception {
+		Assertions.assertTrue(ThreadMapContextHolder.getScopedAttributes().isEmpty());
+		ThreadMapContextHolder.runWith(Map.of("key", "scoped"), () -> {
+			Assertions.assertEquals("scoped", ThreadMapContextHolder.getAttribute("key"));
+			ThreadMapContextHolder.runWith("other", "nested", () -> {
+				Assertions.assertEquals("scoped", ThreadMapContextHolder.getAttribute("key"));
+				Assertions.assertEquals("nested", ThreadMapContextHolder.getAttribute("other"));
+			});
+			Assertions.assertNull(ThreadMapContextHolder.getAttribute("other"));
+
+			// Reading the thread attributes does not create a thread map.
+			final Map<String, Object> attributes = ThreadMapContextHolder.getAttributes();
+			Assertions.assertEquals("scoped", attributes.get("key"));
+			Assertions.assertEquals(Set.of("key"), attributes.keySet());
+			Assertions.assertSame(ThreadMapContextHolder.getScopedAttributes(), ThreadMapContextHolder.getSnapshot());
+
+			// Thread attributes start from the scoped ones and are discarded afterwards.
+			ThreadMapContextHolder.setAttribute("changed", true);
+			Assertions.assertNotSame(ThreadMapContextHolder.getScopedAttributes(), ThreadMapContextHolder.getSnapshot());
+			Assertions.assertEquals("scoped", ThreadMapContextHolder.getAttributes().get("key"));
+			Assertions.assertEquals(true, ThreadMapContextHolder.getAttribute("changed"));
+			Assertions.assertEquals(true, attributes.get("changed"));
+			attributes.put("viewed", true);
+			Assertions.assertEquals(true, ThreadMapContextHolder.getAttribute("viewed"));
+		});
+		Assertions.assertNull(ThreadMapContextHolder.getAttribute("key"));
+		Assertions.assertNull(ThreadMapContextHolder.getAttribute("changed"));
+		Assertions.assertEquals("result", ThreadMapContextHolder.callWith(Map.of("key", "result"), () -> ThreadMapContextHolder.getAttribute("key")));
+
+		// Scoped attributes should also be propagated to pools.
+		final DynamicThreadPool pool = new DynamicThreadPoolFactory().withName("scoped-context-test").withPropagateContext(true).withVirtual(true)
+				.buildPool();
+		Assertions.assertEquals("pool",
+				ThreadMapContextHolder.callWith(Map.of("key", "pool"), () -> pool.submit(() -> ThreadMapContextHolder.getAttribute("key")).get()));
+		pool.shutdown();
+	}
+
+}
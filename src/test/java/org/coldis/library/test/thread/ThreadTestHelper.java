@@ -0,0 +1,30 @@
+package org.coldis.library.test.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Thread test helper.
+ */
+public class ThreadTestHelper {
+
+	/** How long conditions are waited for. */
+	private static final long WAIT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	/**
+	 * Waits for a condition (failing if it does not hold in time).
+	 *
+	 * @param condition Condition.
+	 */
+	public static void waitFor(
+			final BooleanSupplier condition) throws Exception {
+		final long deadline = System.nanoTime() + ThreadTestHelper.WAIT_TIMEOUT_NANOS;
+		while (!condition.getAsBoolean() && (System.nanoTime() < deadline)) {
+			Thread.sleep(1);
+		}
+		Assertions.assertTrue(condition.getAsBoolean());
+	}
+
+}
@@ -0,0 +1,255 @@
+package org.coldis.library.test.thread;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.coldis.library.helper.DateTimeHelper;
+import org.coldis.library.thread.DynamicScheduledThreadPool;
+import org.coldis.library.thread.DynamicThreadPoolFactory;
+import org.coldis.library.thread.DynamicThreadPoolSaturationPolicy;
+import org.coldis.library.thread.TimingWheelScheduledExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Timing wheel scheduled executor test.
+ */
+public class TimingWheelScheduledExecutorTest {
+
+	/** The clock to use for the tests. */
+	private static final Clock CLOCK = DateTimeHelper.getClock();
+
+	/**
+	 * Sets the clock to use for the tests.
+	 */
+	@BeforeEach
+	@AfterEach
+	public void setUp() {
+		DateTimeHelper.setClock(TimingWheelScheduledExecutorTest.CLOCK);
+	}
+
+	/**
+	 * Builds a timing wheel pool.
+	 *
+	 * @return The timing wheel pool.
+	 */
+	private DynamicScheduledThreadPool buildPool() {
+		return (DynamicScheduledThreadPool) new DynamicThreadPoolFactory().withName("timing-wheel-test").withScheduled(true).withTimingWheel(true)
+				.withTickDuration(Duration.ofMillis(5)).withCorePoolSize(2).buildPool();
+	}
+
+	/**
+	 * Tests tasks scheduled at different wheel levels.
+	 */
+	@Test
+	public void testSchedule() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final TimingWheelScheduledExecutor executor = (TimingWheelScheduledExecutor) pool.getExecutor();
+		final AtomicInteger minuteRuns = new AtomicInteger();
+		final AtomicInteger hourRuns = new AtomicInteger();
+		final AtomicInteger weekRuns = new AtomicInteger();
+		pool.schedule(minuteRuns::incrementAndGet, 1, TimeUnit.MINUTES);
+		pool.schedule(hourRuns::incrementAndGet, 2, TimeUnit.HOURS);
+		final ScheduledFuture<String> weekResult = pool.schedule(() -> {
+			weekRuns.incrementAndGet();
+			return "week";
+		}, 7, TimeUnit.DAYS);
+		ThreadTestHelper.waitFor(() -> executor.getScheduledCount() == 3);
+
+		// Tasks run only once their delay elapses.
+		Thread.sleep(20);
+		Assertions.assertEquals(0, minuteRuns.get() + hourRuns.get() + weekRuns.get());
+		DateTimeHelper.adjustClock(Duration.ofMinutes(1));
+		ThreadTestHelper.waitFor(() -> minuteRuns.get() == 1);
+		Assertions.assertEquals(0, hourRuns.get() + weekRuns.get());
+		DateTimeHelper.adjustClock(Duration.ofHours(2));
+		ThreadTestHelper.waitFor(() -> hourRuns.get() == 1);
+		Assertions.assertEquals(0, weekRuns.get());
+		Assertions.assertTrue(weekResult.getDelay(TimeUnit.DAYS) >= 6);
+		DateTimeHelper.adjustClock(Duration.ofDays(7));
+		Assertions.assertEquals("week", weekResult.get(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, minuteRuns.get());
+		Assertions.assertEquals(1, hourRuns.get());
+		Assertions.assertEquals(0, executor.getScheduledCount());
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that tasks keep their remaining delays when the clock goes back.
+	 */
+	@Test
+	public void testClockBack() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final TimingWheelScheduledExecutor executor = (TimingWheelScheduledExecutor) pool.getExecutor();
+		final AtomicInteger runs = new AtomicInteger();
+		final ScheduledFuture<?> result = pool.schedule(runs::incrementAndGet, 1, TimeUnit.MINUTES);
+		ThreadTestHelper.waitFor(() -> executor.getScheduledCount() == 1);
+
+		// Once the ticker sees the clock going back, the task is moved back with it.
+		DateTimeHelper.adjustClock(Duration.ofHours(-1));
+		ThreadTestHelper.waitFor(() -> result.getDelay(TimeUnit.MINUTES) < 2);
+		Assertions.assertEquals(0, runs.get());
+		DateTimeHelper.adjustClock(Duration.ofMinutes(1));
+		result.get(5, TimeUnit.SECONDS);
+		Assertions.assertEquals(1, runs.get());
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that tasks never run before their delay.
+	 */
+	@Test
+	public void testNotEarly() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final List<ScheduledFuture<Long>> results = new ArrayList<>();
+		for (long delay = 0; delay < 100; delay += 7) {
+			final long scheduledAt = System.nanoTime();
+			final long actualDelay = delay;
+			results.add(pool.schedule(() -> (System.nanoTime() - scheduledAt) - TimeUnit.MILLISECONDS.toNanos(actualDelay), delay, TimeUnit.MILLISECONDS));
+		}
+		for (final ScheduledFuture<Long> result : results) {
+			Assertions.assertTrue(result.get(5, TimeUnit.SECONDS) >= 0);
+		}
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests cancelling many tasks.
+	 */
+	@Test
+	public void testCancel() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final TimingWheelScheduledExecutor executor = (TimingWheelScheduledExecutor) pool.getExecutor();
+		final AtomicInteger runs = new AtomicInteger();
+		final List<ScheduledFuture<?>> futures = new ArrayList<>();
+		for (int taskNumber = 0; taskNumber < 100000; taskNumber++) {
+			futures.add(pool.schedule(runs::incrementAndGet, 1 + (taskNumber % 3600), TimeUnit.SECONDS));
+		}
+		for (int taskNumber = 0; taskNumber < futures.size(); taskNumber += 2) {
+			Assertions.assertTrue(futures.get(taskNumber).cancel(false));
+		}
+		ThreadTestHelper.waitFor(() -> executor.getScheduledCount() == 50000);
+		DateTimeHelper.adjustClock(Duration.ofHours(2));
+		ThreadTestHelper.waitFor(() -> (runs.get() == 50000) && futures.stream().allMatch(ScheduledFuture::isDone));
+		Assertions.assertEquals(0, executor.getScheduledCount());
+		for (int taskNumber = 0; taskNumber < futures.size(); taskNumber++) {
+			Assertions.assertEquals((taskNumber % 2) == 0, futures.get(taskNumber).isCancelled());
+			Assertions.assertTrue(futures.get(taskNumber).isDone());
+		}
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests periodic tasks.
+	 */
+	@Test
+	public void testPeriodic() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final AtomicInteger fixedRateRuns = new AtomicInteger();
+		final AtomicInteger fixedDelayRuns = new AtomicInteger();
+		final ScheduledFuture<?> fixedRate = pool.scheduleAtFixedRate(fixedRateRuns::incrementAndGet, 1, 1, TimeUnit.MINUTES);
+		pool.scheduleWithFixedDelay(fixedDelayRuns::incrementAndGet, 1, 1, TimeUnit.MINUTES);
+		for (int period = 1; period <= 3; period++) {
+			final int actualPeriod = period;
+			DateTimeHelper.adjustClock(Duration.ofMinutes(1));
+			ThreadTestHelper.waitFor(() -> (fixedRateRuns.get() == actualPeriod) && (fixedDelayRuns.get() == actualPeriod));
+		}
+		fixedRate.cancel(false);
+		DateTimeHelper.adjustClock(Duration.ofMinutes(1));
+		ThreadTestHelper.waitFor(() -> fixedDelayRuns.get() == 4);
+		Assertions.assertEquals(3, fixedRateRuns.get());
+
+		// Periodic tasks are cancelled on shutdown.
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(pool.isTerminated());
+	}
+
+	/**
+	 * Tests tasks scheduled while the executor is shut down.
+	 */
+	@Test
+	public void testScheduleDuringShutdown() throws Exception {
+		final DynamicScheduledThreadPool pool = this.buildPool();
+		final List<ScheduledFuture<?>> futures = new ArrayList<>();
+		final Thread scheduler = new Thread(() -> {
+			try {
+				while (true) {
+					futures.add(pool.schedule(() -> {}, 1, TimeUnit.MINUTES));
+				}
+			}
+			catch (final RejectedExecutionException exception) {
+				// Expected once the executor is shut down.
+			}
+		});
+		scheduler.start();
+		final TimingWheelScheduledExecutor executor = (TimingWheelScheduledExecutor) pool.getExecutor();
+		ThreadTestHelper.waitFor(() -> executor.getScheduledCount() > 1000);
+		pool.shutdown();
+		scheduler.join(TimeUnit.SECONDS.toMillis(5));
+		Assertions.assertFalse(scheduler.isAlive());
+
+		// Accepted tasks are cancelled rather than left pending forever.
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(futures.stream().allMatch(ScheduledFuture::isCancelled));
+	}
+
+	/**
+	 * Tests that tasks rejected by the worker fail, instead of running on the
+	 * ticker.
+	 */
+	@Test
+	public void testWorkerRejection() throws Exception {
+		final DynamicScheduledThreadPool pool = (DynamicScheduledThreadPool) new DynamicThreadPoolFactory().withName("timing-wheel-rejection-test")
+				.withScheduled(true).withTimingWheel(true).withTickDuration(Duration.ofMillis(5)).withCorePoolSize(1).withMaxPoolSize(1)
+				.withMaxQueueSize(1).withSaturationPolicy(DynamicThreadPoolSaturationPolicy.CALLER_RUNS).buildPool();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		pool.schedule(() -> {
+			blocked.countDown();
+			release.await();
+			return null;
+		}, 10, TimeUnit.MILLISECONDS);
+		Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+		// With the worker busy and its queue full, further due tasks are rejected.
+		final List<String> threads = new CopyOnWriteArrayList<>();
+		final List<ScheduledFuture<?>> futures = new ArrayList<>();
+		for (int task = 0; task < 3; task++) {
+			futures.add(pool.schedule(() -> threads.add(Thread.currentThread().getName()), 10, TimeUnit.MILLISECONDS));
+		}
+		ThreadTestHelper.waitFor(() -> futures.stream().filter(ScheduledFuture::isDone).count() == 2);
+		release.countDown();
+		int rejected = 0;
+		for (final ScheduledFuture<?> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+			}
+			catch (final ExecutionException exception) {
+				Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+				rejected++;
+			}
+		}
+		Assertions.assertEquals(2, rejected);
+		Assertions.assertEquals(1, threads.size());
+		Assertions.assertFalse(threads.get(0).contains("ticker"));
+		pool.shutdown();
+		Assertions.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+}